@@ -0,0 +1,56 @@
+package com.company.invoice_scanner_service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Controls how scanned IBANs are checked against the blacklist.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "iban.blacklist")
+public class BlacklistProperties {
+
+    /**
+     * INDEX answers lookups from an in-memory copy of the blacklist, DATABASE queries the table for every scan.
+     * BLOOM_FILTER keeps only a Bloom filter of the blacklist in memory, for blacklists too large for the heap, and
+     * queries the table just for the IBANs the filter cannot rule out.
+     */
+    private Mode mode = Mode.INDEX;
+
+    /**
+     * Delay between two refreshes of the in-memory copy with rows added in the meantime.
+     */
+    private Duration refreshInterval = Duration.ofSeconds(30);
+
+    /**
+     * Rows created up to this long before the newest known row are read again, so rows committed late are not missed.
+     */
+    private Duration refreshOverlap = Duration.ofMinutes(1);
+
+    /**
+     * Interval of complete reloads, which also drop rows deleted directly in the database.
+     */
+    private Duration fullReloadInterval = Duration.ofHours(1);
+
+    /**
+     * Share of clean IBANs the Bloom filter lets through to the database, between 0 and 1 (exclusive).
+     */
+    private double bloomFilterFalsePositiveRate = 0.001;
+
+    /**
+     * Number of rows written per batch by the bulk import.
+     */
+    private int importBatchSize = 1000;
+
+    public enum Mode {
+        INDEX,
+        BLOOM_FILTER,
+        DATABASE
+    }
+}
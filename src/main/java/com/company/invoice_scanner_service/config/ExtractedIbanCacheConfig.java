@@ -0,0 +1,18 @@
+package com.company.invoice_scanner_service.config;
+
+import com.company.invoice_scanner_service.repository.RedisSharedIbanStore;
+import com.company.invoice_scanner_service.service.iban.SharedIbanStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+@Configuration
+public class ExtractedIbanCacheConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "pdf.extraction.cache.shared-store", havingValue = "REDIS")
+    public SharedIbanStore sharedIbanStore(PdfExtractionProperties properties, RedisConnectionFactory redisConnectionFactory) {
+        return new RedisSharedIbanStore(redisConnectionFactory, properties.getCache().getSharedKeyPrefix());
+    }
+}
@@ -0,0 +1,29 @@
+package com.company.invoice_scanner_service.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.Executor;
+
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Shared client for invoice downloads, so connections to the storage hosts are pooled and reused.
+     * With virtual threads the response bodies are also written on the I/O executor instead of the client's own pool.
+     */
+    @Bean
+    public HttpClient pdfHttpClient(PdfDownloadProperties properties, ScanExecutorProperties scanExecutorProperties,
+                                    @Qualifier("scanIoExecutor") Executor scanIoExecutor) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (scanExecutorProperties.getIoMode() == ScanExecutorProperties.IoMode.VIRTUAL_THREADS) {
+            builder.executor(scanIoExecutor);
+        }
+        return builder.build();
+    }
+}
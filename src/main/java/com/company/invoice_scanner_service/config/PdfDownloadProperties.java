@@ -0,0 +1,168 @@
+package com.company.invoice_scanner_service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the shared HTTP client used to download invoices.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "pdf.download")
+public class PdfDownloadProperties {
+
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Maximum time to wait for the response headers.
+     */
+    private Duration responseTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Maximum time for the whole download including the body, after which the exchange is cancelled.
+     */
+    private Duration downloadTimeout = Duration.ofMinutes(2);
+
+    /**
+     * Prefer HTTP/2 so that downloads from the same host are multiplexed over one connection.
+     */
+    private boolean http2 = true;
+
+    /**
+     * Maximum number of downloads in flight per host, further downloads wait for a free slot. With an adaptive host
+     * limit this is the ceiling the limit grows back to.
+     */
+    private int maxConcurrentPerHost = 8;
+
+    /**
+     * Largest document accepted, checked against {@code Content-Length} and while the body arrives, 0 disables the
+     * limit. Also applies to a PDF uploaded as the raw request body.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(50);
+
+    /**
+     * Rejects a response whose {@code Content-Type} is not a PDF or generic binary type, or whose first bytes hold no
+     * {@code %PDF-} signature, before the rest of the body is downloaded.
+     */
+    private boolean verifyPdf = true;
+
+    private HostLimit hostLimit = new HostLimit();
+
+    private Retry retry = new Retry();
+
+    private Hedging hedging = new Hedging();
+
+    private ExtraRequests extraRequests = new ExtraRequests();
+
+    private Cache cache = new Cache();
+
+    @Getter
+    @Setter
+    public static class HostLimit {
+
+        /**
+         * Lowers the limit of a host that fails or is slow and raises it again while the host keeps up (AIMD).
+         * Otherwise every host has {@code max-concurrent-per-host}.
+         */
+        private boolean adaptive = true;
+
+        /**
+         * Floor of an adaptive limit.
+         */
+        private int minConcurrency = 1;
+
+        /**
+         * Time until the response headers arrived above which a download counts as slow, which lowers the limit like
+         * an error. The transfer of the body does not count, it depends on the size of the document.
+         */
+        private Duration latencyThreshold = Duration.ofSeconds(10);
+
+        /**
+         * Factor the limit is multiplied with on an error, a 429 or 5xx response, or a slow download.
+         */
+        private double backoffRatio = 0.5;
+
+        /**
+         * Downloads waiting per host, further downloads of the host fail right away instead of waiting.
+         */
+        private int maxQueued = 256;
+    }
+
+    @Getter
+    @Setter
+    public static class Retry {
+
+        /**
+         * Attempts per download including the first one, 1 disables retries. Connection errors and 429, 502, 503
+         * and 504 responses are retried.
+         */
+        private int maxAttempts = 3;
+
+        /**
+         * Bound of the delay before the first retry, doubled for every further retry. The delay is drawn at random
+         * below the bound (full jitter), so retries of many downloads do not hit the host at the same time.
+         */
+        private Duration initialBackoff = Duration.ofMillis(200);
+
+        private Duration maxBackoff = Duration.ofSeconds(2);
+    }
+
+    @Getter
+    @Setter
+    public static class Hedging {
+
+        /**
+         * Sends a second request for a download that takes longer than the 95th percentile of recent downloads, and
+         * uses whichever response arrives first.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Floor of the hedging delay, so fast downloads are not doubled by small fluctuations.
+         */
+        private Duration minDelay = Duration.ofMillis(200);
+
+        /**
+         * Downloads to observe before the percentile is trusted, no download is hedged before.
+         */
+        private int minSamples = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class ExtraRequests {
+
+        /**
+         * Retries and hedges allowed per download, as a share of downloads. Caps the extra load on the hosts when
+         * many downloads fail or are slow at once.
+         */
+        private double ratio = 0.1;
+
+        /**
+         * Retries and hedges that may be sent at once regardless of the ratio, e.g. after a quiet period.
+         */
+        private int burst = 10;
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+
+        /**
+         * Disk space for downloaded PDFs that can be revalidated, 0 disables the cache.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(512);
+
+        /**
+         * Directory in which every instance creates a directory of its own for its copies, deleted on shutdown.
+         */
+        private String directory = Path.of(System.getProperty("java.io.tmpdir"), "invoice-scanner-pdf-cache").toString();
+    }
+}
@@ -0,0 +1,89 @@
+package com.company.invoice_scanner_service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Controls how the text of large documents is extracted in parallel, and how long extracted IBANs are kept.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "pdf.extraction")
+public class PdfExtractionProperties {
+
+    /**
+     * Documents with fewer pages are extracted on the calling thread.
+     */
+    private int parallelMinPages = 32;
+
+    /**
+     * Number of consecutive pages extracted by one task, each task loads its own copy of the document. The tasks run
+     * on the parse pool, see {@code scan.pipeline.parse}.
+     */
+    private int pagesPerChunk = 16;
+
+    private Cache cache = new Cache();
+
+    @Getter
+    @Setter
+    public static class Cache {
+
+        /**
+         * Documents whose IBANs are kept, 0 disables the cache.
+         */
+        private long maximumSize = 10_000;
+
+        /**
+         * Time after which a document is parsed again.
+         */
+        private Duration ttl = Duration.ofHours(1);
+
+        /**
+         * NONE keeps extracted IBANs per replica only. REDIS also shares them with the other replicas through
+         * {@code spring.data.redis}, looked up on a local miss.
+         */
+        private SharedStore sharedStore = SharedStore.NONE;
+
+        /**
+         * Time documents are kept in the shared store.
+         */
+        private Duration sharedTtl = Duration.ofHours(24);
+
+        /**
+         * Prefix of the shared store's keys, followed by the document hash.
+         */
+        private String sharedKeyPrefix = "invoice-scanner:ibans:";
+
+        /**
+         * Maximum wait for a lookup in the shared store, after which the document is parsed instead.
+         */
+        private Duration sharedTimeout = Duration.ofMillis(50);
+
+        /**
+         * Lookups in the shared store at once. While that many are stuck, e.g. on an unreachable store, further
+         * local misses skip the shared store.
+         */
+        private int sharedConcurrency = 16;
+
+        /**
+         * Interval in which extracted IBANs are written to the shared store in one pipelined batch, by a thread of
+         * the cache's own.
+         */
+        private Duration writeBehindInterval = Duration.ofMillis(100);
+
+        /**
+         * Writes waiting for the shared store, beyond which new writes are dropped.
+         */
+        private int writeBehindCapacity = 10_000;
+    }
+
+    public enum SharedStore {
+        NONE,
+        REDIS
+    }
+}
@@ -0,0 +1,54 @@
+package com.company.invoice_scanner_service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Controls how downloaded PDFs are handed over to PDFBox.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "pdf.ingestion")
+public class PdfIngestionProperties {
+
+    /**
+     * STREAMING keeps documents in (pooled) memory and only spills to a memory-mapped file above the threshold.
+     * TEMP_FILE always writes the document to a temp file first, which is deleted once the scan is done.
+     */
+    private Mode mode = Mode.STREAMING;
+
+    /**
+     * Documents up to this size are kept in memory, larger ones are spilled to disk.
+     */
+    private DataSize inMemoryThreshold = DataSize.ofMegabytes(4);
+
+    /**
+     * Whether pooled buffers are allocated off-heap.
+     */
+    private boolean directBuffers = true;
+
+    /**
+     * Off-heap memory the pooled buffers may take, idle or in use. Buffers needed beyond that are allocated on the
+     * heap.
+     */
+    private DataSize directMemoryLimit = DataSize.ofMegabytes(128);
+
+    /**
+     * Maximum number of idle buffers kept around for reuse.
+     */
+    private int bufferPoolSize = 16;
+
+    /**
+     * Directory for spill files, defaults to the system temp directory.
+     */
+    private String spillDirectory = System.getProperty("java.io.tmpdir");
+
+    public enum Mode {
+        STREAMING,
+        TEMP_FILE
+    }
+}
@@ -0,0 +1,47 @@
+package com.company.invoice_scanner_service.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class ScanExecutorConfig {
+
+    /**
+     * Runs the blocking steps of a scan. Both variants finish running tasks on shutdown, up to the shutdown timeout.
+     */
+    @Bean
+    public AsyncTaskExecutor scanIoExecutor(ScanExecutorProperties properties) {
+        if (properties.getIoMode() == ScanExecutorProperties.IoMode.VIRTUAL_THREADS) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("scan-io-");
+            executor.setVirtualThreads(true);
+            executor.setTaskTerminationTimeout(properties.getShutdownTimeout().toMillis());
+            return executor;
+        }
+        return newPlatformPool("scan-io-", properties.getIoPoolSize(), properties);
+    }
+
+    /**
+     * Bounded CPU pool for parsing, sized like the parse stage, so a burst of scans cannot start more PDFBox parses
+     * than there are cores. The page chunks of large documents run on the same pool, so they share its threads with
+     * the parses instead of adding a pool of their own.
+     */
+    @Bean
+    public AsyncTaskExecutor pdfParseExecutor(ScanExecutorProperties properties, ScanPipelineProperties pipelineProperties) {
+        return newPlatformPool("pdf-parse-", pipelineProperties.getParse().getConcurrency(), properties);
+    }
+
+    private static ThreadPoolTaskExecutor newPlatformPool(String threadNamePrefix, int threads,
+                                                          ScanExecutorProperties properties) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setCorePoolSize(Math.max(1, threads));
+        executor.setMaxPoolSize(Math.max(1, threads));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationMillis(properties.getShutdownTimeout().toMillis());
+        // Initialized by the container, which also shuts it down
+        return executor;
+    }
+}
@@ -0,0 +1,39 @@
+package com.company.invoice_scanner_service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Threads used by the scan orchestrator, split into blocking I/O (downloads, database lookups) and PDF parsing.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "scan.executor")
+public class ScanExecutorProperties {
+
+    /**
+     * VIRTUAL_THREADS runs every I/O step on its own virtual thread, so blocking calls do not limit concurrency.
+     * FIXED_POOL runs them on a fixed pool of {@link #ioPoolSize} platform threads.
+     */
+    private IoMode ioMode = IoMode.VIRTUAL_THREADS;
+
+    /**
+     * Size of the I/O pool in FIXED_POOL mode.
+     */
+    private int ioPoolSize = 10;
+
+    /**
+     * Maximum time to wait for running scans on shutdown.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    public enum IoMode {
+        VIRTUAL_THREADS,
+        FIXED_POOL
+    }
+}
@@ -0,0 +1,21 @@
+package com.company.invoice_scanner_service.config;
+
+import com.company.invoice_scanner_service.repository.JdbcScanJobStore;
+import com.company.invoice_scanner_service.service.job.InMemoryScanJobStore;
+import com.company.invoice_scanner_service.service.job.ScanJobStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+public class ScanJobConfig {
+
+    @Bean
+    public ScanJobStore scanJobStore(ScanJobProperties properties, ObjectProvider<JdbcTemplate> jdbcTemplate) {
+        if (properties.getStore() == ScanJobProperties.Store.IN_MEMORY) {
+            return new InMemoryScanJobStore();
+        }
+        return new JdbcScanJobStore(jdbcTemplate.getObject());
+    }
+}
@@ -0,0 +1,52 @@
+package com.company.invoice_scanner_service.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Controls the background scan jobs and where their state is kept.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "scan.jobs")
+public class ScanJobProperties {
+
+    /**
+     * DATABASE keeps jobs in the scan_jobs tables, IN_MEMORY on the heap of this instance, e.g. for tests.
+     */
+    private Store store = Store.DATABASE;
+
+    /**
+     * How long a job can be polled after it was created, before it is purged.
+     */
+    private Duration retention = Duration.ofHours(24);
+
+    /**
+     * URL results are collected and written in one batch per interval.
+     */
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    /**
+     * Maximum number of URL results written in one batch.
+     */
+    private int flushBatchSize = 500;
+
+    private Duration purgeInterval = Duration.ofMinutes(10);
+
+    /**
+     * Age after which the URLs of a job that are still pending are failed by the purge, e.g. because the instance
+     * that scanned them was restarted. Must exceed {@code scan.pipeline.url-timeout}, after which every URL of a
+     * running instance has a result.
+     */
+    private Duration abandonedAfter = Duration.ofMinutes(10);
+
+    public enum Store {
+        DATABASE,
+        IN_MEMORY
+    }
+}
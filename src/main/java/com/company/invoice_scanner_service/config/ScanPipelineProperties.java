@@ -0,0 +1,71 @@
+package com.company.invoice_scanner_service.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Sizes of the download, parse and lookup stages of a scan, and the time a scan may take. When a stage and its queue are full, work handed to it
+ * waits, and the stage before keeps the slot of that work meanwhile, which slows it down. No thread is blocked for that.
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "scan.pipeline")
+public class ScanPipelineProperties {
+
+    /**
+     * Downloads in flight across all hosts, the per-host limit applies on top.
+     */
+    private Stage download = new Stage(64, 256);
+
+    /**
+     * Concurrent parses, also the size of the parse pool, which also runs the page chunks of large documents.
+     * Defaults to the number of available cores.
+     */
+    private Stage parse = new Stage(Runtime.getRuntime().availableProcessors(), 32);
+
+    /**
+     * Concurrent validations and blacklist lookups. Should not exceed the database connection pool, otherwise
+     * lookups that need the database wait for a connection and may time out.
+     */
+    private Stage lookup = new Stage(10, 256);
+
+    /**
+     * Time one URL may take from submission to result, after which its download or parse is cancelled and the URL
+     * is reported as timed out.
+     */
+    private Duration urlTimeout = Duration.ofMinutes(2);
+
+    /**
+     * Time a synchronous batch may take, URLs still running then are reported as timed out. Kept below
+     * {@code spring.mvc.async.request-timeout}, so the finished URLs are still returned.
+     */
+    private Duration requestDeadline = Duration.ofSeconds(150);
+
+    /**
+     * URLs of a streamed batch that are scanned at once, reading the request body pauses beyond that. Bounds the
+     * memory a streamed batch takes independently of its size.
+     */
+    private int streamedUrlsInFlight = 1024;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Stage {
+
+        private int concurrency;
+
+        /**
+         * Work waiting for a free slot, beyond which more work waits to be admitted, while the stage before keeps
+         * the slot of that work.
+         */
+        private int queueCapacity;
+    }
+}
@@ -1,6 +1,8 @@
 package com.company.invoice_scanner_service.controller;
 
+import com.company.invoice_scanner_service.dto.BlacklistImportResponse;
 import com.company.invoice_scanner_service.exception.ErrorResponse;
+import com.company.invoice_scanner_service.service.iban.BlacklistImportService;
 import com.company.invoice_scanner_service.service.iban.BlacklistedIbanService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -9,16 +11,25 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/api/blacklisted-ibans")
 @RequiredArgsConstructor
 @Slf4j
 public class BlacklistedIbanController {
 
+    private static final String TEXT_CSV = "text/csv";
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final BlacklistedIbanService blacklistedIbanService;
+    private final BlacklistImportService blacklistImportService;
 
     @PostMapping
     @Operation(summary = "Blacklist an IBAN", description = "Adds an IBAN to the blacklist with the provided reason.")
@@ -46,4 +57,31 @@ public class BlacklistedIbanController {
         blacklistedIbanService.blacklistIban(iban, reason);
         return ResponseEntity.ok("IBAN successfully blacklisted.");
     }
+
+    @PostMapping(path = "/import", consumes = {TEXT_CSV, APPLICATION_NDJSON})
+    @Operation(summary = "Import a list of IBANs",
+            description = "Blacklists all IBANs of a CSV (iban[,reason] per line) or NDJSON ({\"iban\", \"reason\"} per line) body. "
+                    + "The body is processed while it is received, IBANs that are blacklisted already are skipped.")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Number of inserted, duplicate and invalid IBANs.",
+                    content = @Content(schema = @Schema(implementation = BlacklistImportResponse.class))
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Unexpected error during processing",
+                    content = @Content(schema = @Schema(implementation = ErrorResponse.class))
+            )
+    })
+    public ResponseEntity<BlacklistImportResponse> importIbans(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            @RequestParam(defaultValue = "Bulk import") @Schema(description = "Reason for rows without one") String reason,
+            InputStream body
+    ) throws IOException {
+        BlacklistImportService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV))
+                ? BlacklistImportService.Format.CSV
+                : BlacklistImportService.Format.NDJSON;
+        return ResponseEntity.ok(blacklistImportService.importIbans(body, format, reason));
+    }
 }
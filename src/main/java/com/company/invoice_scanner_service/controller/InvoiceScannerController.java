@@ -1,19 +1,38 @@
 package com.company.invoice_scanner_service.controller;
 
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
 import com.company.invoice_scanner_service.dto.InvoiceScanResponse;
+import com.company.invoice_scanner_service.dto.UrlScanResponse;
 import com.company.invoice_scanner_service.exception.ErrorResponse;
+import com.company.invoice_scanner_service.exception.InvalidUrlException;
+import com.company.invoice_scanner_service.exception.PdfProcessingException;
 import com.company.invoice_scanner_service.service.TaskOrchestratorService;
+import com.company.invoice_scanner_service.service.UrlScanResult;
+import com.company.invoice_scanner_service.service.pdf.PdfSource;
+import com.company.invoice_scanner_service.service.pdf.PdfSourceFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.Instant;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @RestController
@@ -21,32 +40,187 @@ import java.util.List;
 @RequiredArgsConstructor
 public class InvoiceScannerController {
 
+    // A streamed batch runs as long as its URLs, each of which has its own timeout
+    private static final long NO_TIMEOUT = -1;
+
     private final TaskOrchestratorService taskOrchestratorService;
+    private final PdfSourceFactory pdfSourceFactory;
+    private final PdfDownloadProperties pdfDownloadProperties;
+    private final ObjectMapper objectMapper;
 
     /**
      * Endpoint to process PDFs from a given URL and extract IBANs.
+     * Every URL is reported on its own in {@code results}, a failing or timed out URL does not fail the others.
+     * The request thread is released while the URLs are scanned, the response is written once every URL has a
+     * result, at the latest after {@code scan.pipeline.request-deadline}.
      */
     @Operation(
             summary = "Process PDFs from a given URLs and extract IBANs",
-            description = "Downloads PDF files, extracts IBANs, validates them, and checks against a blacklist",
+            description = "Downloads PDF files, extracts IBANs, validates them, and checks against a blacklist. "
+                    + "If no URL could be scanned, the error of the first URL is returned",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "IBAN extraction successful",
+                            content = @Content(schema = @Schema(example = "{ \"message\": \"IBAN extraction successful.\", \"validIbans\": [\"DE44500105175407324931\"], \"timestamp\": \"2025-03-12T12:00:00Z\", \"results\": [{ \"url\": \"https://example.com/invoice.pdf\", \"status\": \"SUCCEEDED\", \"validIbans\": [\"DE44500105175407324931\"] }] }"))),
+                    @ApiResponse(responseCode = "400", description = "Bad Request",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "403", description = "Blacklisted IBANs found",
+                            content = @Content(schema = @Schema(implementation = InvoiceScanResponse.class))),
+                    @ApiResponse(responseCode = "503", description = "Scan did not complete in time",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            }
+    )
+    @PostMapping(value = "/process", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> processInvoices(@RequestBody List<String> urls) {
+        if (CollectionUtils.isEmpty(urls)) {
+            throw new InvalidUrlException("At least one URL is required.");
+        }
+        log.info("Received request to process PDFs from {} URLs", urls.size());
+
+        return taskOrchestratorService.scanUrlsAsync(urls).thenApply(ScanResponses::of);
+    }
+
+    /**
+     * Streaming variant of {@link #processInvoices(List)} for large batches, selected with
+     * {@code Accept: application/x-ndjson}. The URL array is parsed while it is received and URLs are scanned as
+     * they are read, at most {@code scan.pipeline.streamed-urls-in-flight} at once. One {@link UrlScanResponse} line
+     * is written per URL as soon as the URL is done, in completion order, so neither the caller nor the server waits
+     * for or holds the whole batch. The response has no overall timeout, each URL has
+     * {@code scan.pipeline.url-timeout}.
+     */
+    @Operation(summary = "Process PDFs from given URLs and stream one result per URL as NDJSON",
+            description = "Like /process, but URLs are scanned while the body is received and every URL's result is "
+                    + "written as soon as it is available")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "URLs of the PDFs to scan",
+            content = @Content(array = @ArraySchema(schema = @Schema(type = "string"))))
+    @PostMapping(value = "/process", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter streamInvoices(HttpServletRequest request) throws IOException {
+        log.info("Received request to stream the results of a URL batch");
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(NO_TIMEOUT);
+        return stream(request, emitter, result -> emitter.send(
+                objectMapper.writeValueAsString(UrlScanResponse.of(result)) + "\n", MediaType.APPLICATION_NDJSON));
+    }
+
+    /**
+     * Server-Sent Events variant of {@link #streamInvoices(HttpServletRequest)}, selected with
+     * {@code Accept: text/event-stream}. Every URL is sent as a {@code result} event.
+     */
+    @Operation(summary = "Process PDFs from given URLs and stream one result per URL as Server-Sent Events",
+            description = "Like /process, but URLs are scanned while the body is received and every URL's result is "
+                    + "sent as a 'result' event as soon as it is available")
+    @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "URLs of the PDFs to scan",
+            content = @Content(array = @ArraySchema(schema = @Schema(type = "string"))))
+    @PostMapping(value = "/process", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamInvoiceEvents(HttpServletRequest request) throws IOException {
+        log.info("Received request to stream the result events of a URL batch");
+
+        SseEmitter emitter = new SseEmitter(NO_TIMEOUT);
+        return stream(request, emitter, result -> emitter.send(
+                SseEmitter.event().name("result").data(UrlScanResponse.of(result), MediaType.APPLICATION_JSON)));
+    }
+
+    /**
+     * Starts scanning the URLs of the request body, a body that is not a JSON array is rejected before the response
+     * starts. A malformed element later on ends the response with an error after the URLs before it were written.
+     */
+    private <T extends ResponseBodyEmitter> T stream(HttpServletRequest request, T emitter, ResultWriter writer)
+            throws IOException {
+        JsonUrlArrayReader urls = new JsonUrlArrayReader(objectMapper.createParser(request.getInputStream()));
+        taskOrchestratorService.scanUrlsAsync(urls, result -> {
+            try {
+                writer.write(result);
+            } catch (IOException | IllegalStateException e) {
+                // The client went away, the remaining URLs finish without being written
+                log.debug("Could not stream the result of {}", result.url(), e);
+            }
+        }).whenComplete((done, error) -> {
+            log.info("Streamed the results of {} URLs", urls.count());
+            closeQuietly(urls);
+            if (error == null) {
+                emitter.complete();
+            } else {
+                emitter.completeWithError(error);
+            }
+        });
+        return emitter;
+    }
+
+    private static void closeQuietly(JsonUrlArrayReader urls) {
+        try {
+            urls.close();
+        } catch (IOException e) {
+            log.debug("Could not close the URL reader", e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ResultWriter {
+        void write(UrlScanResult result) throws IOException;
+    }
+
+    /**
+     * Scans uploaded PDFs instead of downloading them, the files are scanned in parallel and reported like URLs,
+     * with the file name in {@code results[].url}. Files up to {@code pdf.ingestion.in-memory-threshold} are not
+     * written to disk.
+     */
+    @Operation(
+            summary = "Process uploaded PDFs and extract IBANs",
+            description = "Extracts IBANs from every uploaded file, validates them, and checks against a blacklist. "
+                    + "Responds like /process",
             responses = {
                     @ApiResponse(responseCode = "200", description = "IBAN extraction successful",
-                            content = @Content(schema = @Schema(example = "{ \"message\": \"IBAN extraction successful.\", \"validIbans\": [\"DE44500105175407324931\"], \"timestamp\": \"2025-03-12T12:00:00Z\" }"))),
+                            content = @Content(schema = @Schema(implementation = InvoiceScanResponse.class))),
                     @ApiResponse(responseCode = "400", description = "Bad Request",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "403", description = "Blacklisted IBANs found",
+                            content = @Content(schema = @Schema(implementation = InvoiceScanResponse.class))),
+                    @ApiResponse(responseCode = "413", description = "An uploaded PDF or the whole upload is too large (PDF_TOO_LARGE, UPLOAD_TOO_LARGE)",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class))),
+                    @ApiResponse(responseCode = "503", description = "Scan did not complete in time",
                             content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
             }
     )
-    @PostMapping("/process")
-    public ResponseEntity<?> processInvoices(@RequestBody List<String> urls) {
-        log.info("Received request to process PDFs from URL: {}", String.join(",", urls));
-        List<String> validIbans = taskOrchestratorService.processPdfsForIbans(urls);
-
-        return ResponseEntity.ok(
-            InvoiceScanResponse.builder()
-                .validIbans(validIbans)
-                .message("IBAN extraction successful. No blacklisted IBANs found")
-                .timestamp(Instant.now())
-                .build()
-        );
+    @PostMapping(value = "/process/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public CompletableFuture<ResponseEntity<?>> processUploadedInvoices(@RequestPart("files") List<MultipartFile> files) {
+        log.info("Received request to process {} uploaded PDFs", files.size());
+
+        List<PdfSource> pdfSources = new ArrayList<>();
+        try {
+            for (MultipartFile file : files) {
+                String name = StringUtils.hasText(file.getOriginalFilename()) ? file.getOriginalFilename() : file.getName();
+                try (InputStream inputStream = file.getInputStream()) {
+                    pdfSources.add(pdfSourceFactory.read(name, inputStream, file.getSize()));
+                }
+            }
+        } catch (IOException e) {
+            pdfSources.forEach(PdfSource::close);
+            throw new PdfProcessingException("Failed to read the uploaded PDFs.", e);
+        }
+        return taskOrchestratorService.scanSourcesAsync(pdfSources).thenApply(ScanResponses::of);
+    }
+
+    /**
+     * Scans a PDF sent as the raw request body, which is streamed into the scan without a multipart envelope.
+     * The body is held to the same maximum size as a download, {@code pdf.download.max-size}, and the read stops as
+     * soon as a body without or beyond its announced length exceeds it.
+     */
+    @Operation(summary = "Process a PDF sent as the request body and extract IBANs",
+            description = "Like /process/upload for a single file sent as application/pdf")
+    @PostMapping(value = "/process/upload", consumes = MediaType.APPLICATION_PDF_VALUE)
+    public CompletableFuture<ResponseEntity<?>> processUploadedInvoice(
+            @RequestParam(value = "name", defaultValue = "upload.pdf") String name,
+            HttpServletRequest request) {
+        log.info("Received request to process uploaded PDF: {}", name);
+
+        PdfSource pdfSource;
+        try {
+            pdfSource = pdfSourceFactory.read(name, request.getInputStream(), request.getContentLengthLong(),
+                    pdfDownloadProperties.getMaxSize().toBytes());
+        } catch (IOException e) {
+            throw new PdfProcessingException("Failed to read the uploaded PDF: " + name, e);
+        }
+        return taskOrchestratorService.scanSourcesAsync(List.of(pdfSource)).thenApply(ScanResponses::of);
     }
 }
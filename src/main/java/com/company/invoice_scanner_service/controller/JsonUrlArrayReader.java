@@ -0,0 +1,89 @@
+package com.company.invoice_scanner_service.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the URLs of a JSON array one at a time with Jackson's streaming parser, so a large request body is never
+ * held in memory as a whole. A body that is not an array fails when the reader is created, a malformed element
+ * or a truncated body fails when it is reached, with an {@link IllegalArgumentException} or an
+ * {@link UncheckedIOException}.
+ */
+final class JsonUrlArrayReader implements Iterator<String>, Closeable {
+
+    private final JsonParser parser;
+    private String next;
+    private boolean finished;
+    private long count;
+
+    JsonUrlArrayReader(JsonParser parser) throws IOException {
+        this.parser = parser;
+        JsonToken first;
+        try {
+            first = parser.nextToken();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Expected a JSON array of URLs", e);
+        }
+        if (first != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Expected a JSON array of URLs");
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            advance();
+        }
+        return next != null;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String url = next;
+        next = null;
+        count++;
+        return url;
+    }
+
+    /**
+     * URLs read so far.
+     */
+    long count() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    private void advance() {
+        JsonToken token;
+        try {
+            token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING) {
+                next = parser.getText();
+                return;
+            }
+        } catch (IOException e) {
+            finished = true;
+            throw new UncheckedIOException("Could not read the URLs of the request body", e);
+        }
+        finished = true;
+        if (token != JsonToken.END_ARRAY) {
+            throw new IllegalArgumentException(token == null
+                    ? "The request body ended inside the URL array"
+                    : "Expected a URL but found " + token + " at " + parser.currentLocation().offsetDescription());
+        }
+    }
+}
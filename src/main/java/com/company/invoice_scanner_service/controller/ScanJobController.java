@@ -0,0 +1,63 @@
+package com.company.invoice_scanner_service.controller;
+
+import com.company.invoice_scanner_service.dto.ScanJobResponse;
+import com.company.invoice_scanner_service.exception.ErrorResponse;
+import com.company.invoice_scanner_service.service.job.ScanJob;
+import com.company.invoice_scanner_service.service.job.ScanJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/invoice-scanner/jobs")
+@RequiredArgsConstructor
+public class ScanJobController {
+
+    private final ScanJobService scanJobService;
+
+    /**
+     * Starts scanning the URLs in the background and returns the job to poll right away.
+     */
+    @Operation(
+            summary = "Start a background scan of the given URLs",
+            description = "Returns a job id immediately, the results are polled with GET /api/invoice-scanner/jobs/{id}",
+            responses = {
+                    @ApiResponse(responseCode = "202", description = "Scan job created"),
+                    @ApiResponse(responseCode = "400", description = "No URLs, or a URL is missing or blank",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            }
+    )
+    @PostMapping
+    public ResponseEntity<ScanJobResponse> submitJob(@RequestBody List<String> urls) {
+        ScanJob job = scanJobService.submit(urls);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(job.id()).toUri())
+                .body(ScanJobResponse.of(job));
+    }
+
+    /**
+     * Returns the job with the status and result of every URL.
+     */
+    @Operation(
+            summary = "Get the status and per-URL results of a scan job",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Scan job found"),
+                    @ApiResponse(responseCode = "404", description = "Unknown or expired scan job",
+                            content = @Content(schema = @Schema(implementation = ErrorResponse.class)))
+            }
+    )
+    @GetMapping("/{id}")
+    public ResponseEntity<ScanJobResponse> getJob(@PathVariable UUID id) {
+        return ResponseEntity.ok(ScanJobResponse.of(scanJobService.getJob(id)));
+    }
+}
@@ -0,0 +1,92 @@
+package com.company.invoice_scanner_service.controller;
+
+import com.company.invoice_scanner_service.dto.InvoiceScanResponse;
+import com.company.invoice_scanner_service.dto.UrlScanResponse;
+import com.company.invoice_scanner_service.exception.ErrorResponse;
+import com.company.invoice_scanner_service.exception.InvalidUrlException;
+import com.company.invoice_scanner_service.exception.PdfDownloadException;
+import com.company.invoice_scanner_service.exception.PdfNotFoundException;
+import com.company.invoice_scanner_service.exception.PdfProcessingException;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
+import com.company.invoice_scanner_service.exception.ScanTimeoutException;
+import com.company.invoice_scanner_service.service.ScanOutcome;
+import com.company.invoice_scanner_service.service.UrlScanResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Maps scan outcomes to HTTP responses, the one place that decides the status code of a scan.
+ * <p>
+ * Any blacklisted IBAN makes the response a 403, otherwise any clean URL a 200 with the valid IBANs of all URLs.
+ * Both list every URL in {@code results}. A batch without a clean URL is answered like its first URL alone, with
+ * the error body and status the exception handlers use for the same error.
+ */
+final class ScanResponses {
+
+    private ScanResponses() {
+    }
+
+    static ResponseEntity<?> of(List<UrlScanResult> results) {
+        List<UrlScanResponse> urlResults = results.stream().map(UrlScanResponse::of).toList();
+        List<String> blacklistedIbans = union(results, UrlScanResult::blacklistedIbans);
+        if (!blacklistedIbans.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(
+                    InvoiceScanResponse.builder()
+                            .message("Blacklisted IBANs found")
+                            .blackListedIbans(blacklistedIbans)
+                            .timestamp(Instant.now())
+                            .results(urlResults)
+                            .build());
+        }
+
+        if (!results.isEmpty() && results.stream().noneMatch(UrlScanResult::succeeded)) {
+            UrlScanResult first = results.getFirst();
+            return ResponseEntity.status(statusOf(first.outcome()))
+                    .body(ErrorResponse.of(first.errorKey(), first.errorMessage(), Map.of()));
+        }
+
+        boolean partial = results.stream().anyMatch(result -> !result.succeeded());
+        return ResponseEntity.ok(
+                InvoiceScanResponse.builder()
+                        .validIbans(union(results, UrlScanResult::validIbans))
+                        .message(partial
+                                ? "IBAN extraction completed for some URLs. No blacklisted IBANs found"
+                                : "IBAN extraction successful. No blacklisted IBANs found")
+                        .timestamp(Instant.now())
+                        .results(urlResults)
+                        .build());
+    }
+
+    /**
+     * Status of a single URL's outcome, missing and invalid IBANs are reported with a 200 and an error body.
+     */
+    static HttpStatus statusOf(ScanOutcome outcome) {
+        return switch (outcome) {
+            case ScanOutcome.Clean clean -> HttpStatus.OK;
+            case ScanOutcome.Blacklisted blacklisted -> HttpStatus.FORBIDDEN;
+            case ScanOutcome.NoIbanFound noIbanFound -> HttpStatus.OK;
+            case ScanOutcome.InvalidIbans invalidIbans -> HttpStatus.OK;
+            case ScanOutcome.Failed failed -> switch (failed.error()) {
+                case InvalidUrlException e -> HttpStatus.BAD_REQUEST;
+                case PdfNotFoundException e -> HttpStatus.NOT_FOUND;
+                case PdfDownloadException e -> HttpStatus.SERVICE_UNAVAILABLE;
+                case PdfTooLargeException e -> HttpStatus.PAYLOAD_TOO_LARGE;
+                case PdfProcessingException e -> HttpStatus.BAD_REQUEST;
+                case ScanTimeoutException e -> HttpStatus.SERVICE_UNAVAILABLE;
+                default -> HttpStatus.INTERNAL_SERVER_ERROR;
+            };
+        };
+    }
+
+    private static List<String> union(List<UrlScanResult> results, Function<UrlScanResult, List<String>> ibans) {
+        return results.stream()
+                .flatMap(result -> ibans.apply(result).stream())
+                .distinct()
+                .toList();
+    }
+}
@@ -0,0 +1,16 @@
+package com.company.invoice_scanner_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+public class BlacklistImportResponse {
+    long inserted;
+    long duplicates;
+    long invalid;
+}
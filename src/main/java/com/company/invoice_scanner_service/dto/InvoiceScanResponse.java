@@ -17,4 +17,5 @@ public class InvoiceScanResponse {
     List<String> validIbans;
     List<String> blackListedIbans;
     Instant timestamp;
+    List<UrlScanResponse> results;
 }
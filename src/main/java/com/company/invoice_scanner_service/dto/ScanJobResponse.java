@@ -0,0 +1,62 @@
+package com.company.invoice_scanner_service.dto;
+
+import com.company.invoice_scanner_service.service.job.ScanJob;
+import com.company.invoice_scanner_service.service.job.ScanJobStatus;
+import com.company.invoice_scanner_service.service.job.ScanJobUrl;
+import com.company.invoice_scanner_service.service.ScanUrlStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+public class ScanJobResponse {
+    UUID jobId;
+    ScanJobStatus status;
+    Instant createdAt;
+    Instant expiresAt;
+    List<UrlResult> urls;
+
+    @Getter
+    @Setter
+    @Builder
+    @AllArgsConstructor
+    public static class UrlResult {
+        String url;
+        ScanUrlStatus status;
+        List<String> validIbans;
+        List<String> blackListedIbans;
+        String errorKey;
+        String errorMessage;
+        Instant completedAt;
+    }
+
+    public static ScanJobResponse of(ScanJob job) {
+        return ScanJobResponse.builder()
+                .jobId(job.id())
+                .status(job.status())
+                .createdAt(job.createdAt())
+                .expiresAt(job.expiresAt())
+                .urls(job.urls().stream().map(ScanJobResponse::toUrlResult).toList())
+                .build();
+    }
+
+    private static UrlResult toUrlResult(ScanJobUrl url) {
+        return UrlResult.builder()
+                .url(url.url())
+                .status(url.status())
+                .validIbans(url.validIbans())
+                .blackListedIbans(url.blacklistedIbans())
+                .errorKey(url.errorKey())
+                .errorMessage(url.errorMessage())
+                .completedAt(url.completedAt())
+                .build();
+    }
+}
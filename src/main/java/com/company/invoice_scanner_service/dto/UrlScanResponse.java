@@ -0,0 +1,34 @@
+package com.company.invoice_scanner_service.dto;
+
+import com.company.invoice_scanner_service.service.ScanUrlStatus;
+import com.company.invoice_scanner_service.service.UrlScanResult;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+public class UrlScanResponse {
+    String url;
+    ScanUrlStatus status;
+    List<String> validIbans;
+    List<String> blackListedIbans;
+    String errorKey;
+    String errorMessage;
+
+    public static UrlScanResponse of(UrlScanResult result) {
+        return UrlScanResponse.builder()
+                .url(result.url())
+                .status(result.status())
+                .validIbans(result.validIbans())
+                .blackListedIbans(result.blacklistedIbans())
+                .errorKey(result.errorKey())
+                .errorMessage(result.errorMessage())
+                .build();
+    }
+}
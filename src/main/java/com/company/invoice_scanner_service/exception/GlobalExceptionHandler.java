@@ -1,14 +1,14 @@
 package com.company.invoice_scanner_service.exception;
 
-import com.company.invoice_scanner_service.dto.InvoiceScanResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.io.IOException;
-import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.CompletionException;
 
@@ -26,14 +26,14 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ErrorResponse.of("PDF_NOT_FOUND", ex.getMessage(), Map.of()));
     }
 
-    @ExceptionHandler(NoIbanFoundException.class)
-    public ResponseEntity<ErrorResponse> handleNoIbanFoundException(NoIbanFoundException ex) {
-        return ResponseEntity.ok(ErrorResponse.of("NO_IBAN_FOUND", ex.getMessage(), Map.of()));
+    @ExceptionHandler(PdfDownloadException.class)
+    public ResponseEntity<ErrorResponse> handlePdfDownloadException(PdfDownloadException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ErrorResponse.of("PDF_DOWNLOAD", ex.getMessage(), Map.of()));
     }
 
-    @ExceptionHandler(InvalidIbansException.class)
-    public ResponseEntity<ErrorResponse> handleInvalidIbansException(InvalidIbansException ex) {
-        return ResponseEntity.ok(ErrorResponse.of("INVALID_IBANS_PRESENT", ex.getMessage(), Map.of()));
+    @ExceptionHandler(PdfTooLargeException.class)
+    public ResponseEntity<ErrorResponse> handlePdfTooLargeException(PdfTooLargeException ex) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(ErrorResponse.of("PDF_TOO_LARGE", ex.getMessage(), Map.of()));
     }
 
     @ExceptionHandler(IllegalArgumentException.class)
@@ -41,26 +41,38 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ErrorResponse.of("ILLEGAL_ARGUMENT", ex.getMessage(), Map.of()));
     }
 
-    @ExceptionHandler(BlacklistedIbanFoundException.class)
-    public ResponseEntity<InvoiceScanResponse> handleBlacklistedIbanFoundException(BlacklistedIbanFoundException ex) {
-        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(
-                InvoiceScanResponse.builder()
-                        .message("Blacklisted IBANs found")
-                        .blackListedIbans(ex.getBlacklistedIbans())
-                        .timestamp(Instant.now())
-                        .build());
-    }
-
     @ExceptionHandler(PdfProcessingException.class)
     public ResponseEntity<ErrorResponse> handlePdfProcessingException(PdfProcessingException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ErrorResponse.of("PDF_PROCESSING", ex.getMessage(), Map.of()));
     }
 
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ErrorResponse> handleMaxUploadSizeExceededException(MaxUploadSizeExceededException ex) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(ErrorResponse.of("UPLOAD_TOO_LARGE", "The uploaded PDFs exceed the maximum size.", Map.of()));
+    }
+
     @ExceptionHandler(IOException.class)
     public ResponseEntity<ErrorResponse> handleIOException(IOException ex) {
         return ResponseEntity.internalServerError().body(ErrorResponse.of("INTERNAL_ERROR", ex.getMessage(), Map.of()));
     }
 
+    @ExceptionHandler(ScanJobNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleScanJobNotFoundException(ScanJobNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ErrorResponse.of("JOB_NOT_FOUND", ex.getMessage(), Map.of()));
+    }
+
+    @ExceptionHandler(ScanTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleScanTimeoutException(ScanTimeoutException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ErrorResponse.of("SCAN_TIMEOUT", ex.getMessage(), Map.of()));
+    }
+
+    @ExceptionHandler(AsyncRequestTimeoutException.class)
+    public ResponseEntity<ErrorResponse> handleAsyncRequestTimeoutException(AsyncRequestTimeoutException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ErrorResponse.of("SCAN_TIMEOUT", "The scan did not complete in time.", Map.of()));
+    }
+
     @ExceptionHandler(CompletionException.class)
     public ResponseEntity<?> handleCompletionException(CompletionException ex) {
         // Unwrap the CompletionException to get the actual cause
@@ -68,15 +80,14 @@ public class GlobalExceptionHandler {
 
         // Handle the actual cause
         return switch (cause) {
-            case BlacklistedIbanFoundException blacklistedIbanFoundException ->
-                    handleBlacklistedIbanFoundException(blacklistedIbanFoundException);
             case InvalidUrlException invalidUrlException -> handleInvalidUrlException(invalidUrlException);
             case PdfNotFoundException pdfNotFoundException -> handlePdfNotFoundException(pdfNotFoundException);
-            case NoIbanFoundException noIbanFoundException -> handleNoIbanFoundException(noIbanFoundException);
-            case InvalidIbansException invalidIbansException -> handleInvalidIbansException(invalidIbansException);
+            case PdfDownloadException pdfDownloadException -> handlePdfDownloadException(pdfDownloadException);
+            case PdfTooLargeException pdfTooLargeException -> handlePdfTooLargeException(pdfTooLargeException);
             case IllegalArgumentException illegalArgumentException ->
                     handleIllegalArgumentException(illegalArgumentException);
             case PdfProcessingException pdfProcessingException -> handlePdfProcessingException(pdfProcessingException);
+            case ScanTimeoutException scanTimeoutException -> handleScanTimeoutException(scanTimeoutException);
             case IOException ioException -> handleIOException(ioException);
             case RuntimeException runtimeException -> handleGenericException(runtimeException);
             case null, default ->
@@ -0,0 +1,7 @@
+package com.company.invoice_scanner_service.exception;
+
+public class PdfTooLargeException extends RuntimeException {
+    public PdfTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.company.invoice_scanner_service.exception;
+
+public class ScanJobNotFoundException extends RuntimeException {
+    public ScanJobNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.company.invoice_scanner_service.exception;
+
+public class ScanTimeoutException extends RuntimeException {
+    public ScanTimeoutException(String message) {
+        super(message);
+    }
+}
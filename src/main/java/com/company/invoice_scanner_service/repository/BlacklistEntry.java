@@ -0,0 +1,9 @@
+package com.company.invoice_scanner_service.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection of a blacklisted IBAN without the reason, used to build the in-memory blacklist.
+ */
+public record BlacklistEntry(Long id, String iban, LocalDateTime createdAt) {
+}
@@ -0,0 +1,45 @@
+package com.company.invoice_scanner_service.repository;
+
+import com.company.invoice_scanner_service.entity.BlacklistedIban;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JDBC writes for bulk imports, which JPA cannot batch because of the IDENTITY ids.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BlacklistedIbanBatchRepository {
+
+    private static final String INSERT_IGNORING_DUPLICATES =
+            "INSERT INTO iban_compliance.blacklisted_ibans (iban, reason, created_at) VALUES (?, ?, ?)"
+                    + " ON CONFLICT (iban) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts the IBANs in one JDBC batch, IBANs that are blacklisted already are skipped.
+     * @return the IBANs that were inserted
+     */
+    public List<String> insertIgnoringDuplicates(List<BlacklistedIban> blacklistedIbans) {
+        int[] updateCounts = jdbcTemplate.batchUpdate(INSERT_IGNORING_DUPLICATES, blacklistedIbans, blacklistedIbans.size(),
+                (statement, blacklistedIban) -> {
+                    statement.setString(1, blacklistedIban.getIban());
+                    statement.setString(2, blacklistedIban.getReason());
+                    statement.setTimestamp(3, Timestamp.valueOf(blacklistedIban.getCreatedAt()));
+                })[0];
+
+        List<String> inserted = new ArrayList<>();
+        for (int i = 0; i < updateCounts.length; i++) {
+            if (updateCounts[i] > 0) {
+                inserted.add(blacklistedIbans.get(i).getIban());
+            }
+        }
+        return inserted;
+    }
+}
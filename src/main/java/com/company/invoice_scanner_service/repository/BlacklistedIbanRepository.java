@@ -1,8 +1,12 @@
 package com.company.invoice_scanner_service.repository;
 
 import com.company.invoice_scanner_service.entity.BlacklistedIban;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface BlacklistedIbanRepository extends JpaRepository<BlacklistedIban, Long> {
@@ -18,4 +22,18 @@ public interface BlacklistedIbanRepository extends JpaRepository<BlacklistedIban
      * @return boolean value representing its existence.
      */
     boolean existsByIban(String iban);
+
+    /**
+     * Loads the next page of blacklisted IBANs with their creation time, ordered by id.
+     */
+    @Query("select new com.company.invoice_scanner_service.repository.BlacklistEntry(b.id, b.iban, b.createdAt)"
+            + " from BlacklistedIban b where b.id > :afterId order by b.id")
+    List<BlacklistEntry> findEntriesAfterId(@Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Loads the blacklisted IBANs created after the given time.
+     */
+    @Query("select new com.company.invoice_scanner_service.repository.BlacklistEntry(b.id, b.iban, b.createdAt)"
+            + " from BlacklistedIban b where b.createdAt > :since")
+    List<BlacklistEntry> findEntriesCreatedAfter(@Param("since") LocalDateTime since);
 }
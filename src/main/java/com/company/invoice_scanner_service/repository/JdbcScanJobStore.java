@@ -0,0 +1,121 @@
+package com.company.invoice_scanner_service.repository;
+
+import com.company.invoice_scanner_service.service.job.ScanJob;
+import com.company.invoice_scanner_service.service.job.ScanJobStore;
+import com.company.invoice_scanner_service.service.job.ScanJobUrl;
+import com.company.invoice_scanner_service.service.job.ScanJobUrlUpdate;
+import com.company.invoice_scanner_service.service.ScanUrlStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Stores scan jobs in {@code scan_jobs} and {@code scan_job_urls}, results are written in JDBC batches.
+ */
+@RequiredArgsConstructor
+public class JdbcScanJobStore implements ScanJobStore {
+
+    private static final String INSERT_JOB =
+            "INSERT INTO iban_compliance.scan_jobs (id, created_at, expires_at) VALUES (?, ?, ?)";
+    private static final String INSERT_URL =
+            "INSERT INTO iban_compliance.scan_job_urls (job_id, position, url, status) VALUES (?, ?, ?, ?)";
+    private static final String UPDATE_URL =
+            "UPDATE iban_compliance.scan_job_urls SET status = ?, valid_ibans = ?, blacklisted_ibans = ?,"
+                    + " error_key = ?, error_message = ?, completed_at = ? WHERE job_id = ? AND position = ?";
+    private static final String SELECT_JOB =
+            "SELECT created_at, expires_at FROM iban_compliance.scan_jobs WHERE id = ?";
+    private static final String SELECT_URLS =
+            "SELECT position, url, status, valid_ibans, blacklisted_ibans, error_key, error_message, completed_at"
+                    + " FROM iban_compliance.scan_job_urls WHERE job_id = ? ORDER BY position";
+    private static final String FAIL_PENDING_URLS =
+            "UPDATE iban_compliance.scan_job_urls SET status = ?, error_key = ?, error_message = ?, completed_at = ?"
+                    + " WHERE status = ? AND job_id IN (SELECT id FROM iban_compliance.scan_jobs WHERE created_at < ?)";
+    private static final String DELETE_EXPIRED =
+            "DELETE FROM iban_compliance.scan_jobs WHERE expires_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional
+    public void create(ScanJob job) {
+        jdbcTemplate.update(INSERT_JOB, job.id(), Timestamp.from(job.createdAt()), Timestamp.from(job.expiresAt()));
+        jdbcTemplate.batchUpdate(INSERT_URL, job.urls(), job.urls().size(), (statement, url) -> {
+            statement.setObject(1, job.id());
+            statement.setInt(2, url.position());
+            statement.setString(3, url.url());
+            statement.setString(4, url.status().name());
+        });
+    }
+
+    @Override
+    public void updateUrls(List<ScanJobUrlUpdate> updates) {
+        jdbcTemplate.batchUpdate(UPDATE_URL, updates, updates.size(), (statement, update) -> {
+            ScanJobUrl url = update.url();
+            statement.setString(1, url.status().name());
+            statement.setString(2, joinIbans(url.validIbans()));
+            statement.setString(3, joinIbans(url.blacklistedIbans()));
+            statement.setString(4, url.errorKey());
+            statement.setString(5, url.errorMessage());
+            statement.setTimestamp(6, url.completedAt() == null ? null : Timestamp.from(url.completedAt()));
+            statement.setObject(7, update.jobId());
+            statement.setInt(8, url.position());
+        });
+    }
+
+    @Override
+    public Optional<ScanJob> find(UUID jobId) {
+        List<ScanJob> jobs = jdbcTemplate.query(SELECT_JOB, (resultSet, rowNum) -> new ScanJob(jobId,
+                resultSet.getTimestamp("created_at").toInstant(),
+                resultSet.getTimestamp("expires_at").toInstant(),
+                List.of()), jobId);
+        if (jobs.isEmpty()) {
+            return Optional.empty();
+        }
+        // Read after the job row, so no second connection is taken while the first result set is open
+        ScanJob job = jobs.getFirst();
+        List<ScanJobUrl> urls = jdbcTemplate.query(SELECT_URLS, JdbcScanJobStore::mapUrl, jobId);
+        return Optional.of(new ScanJob(jobId, job.createdAt(), job.expiresAt(), urls));
+    }
+
+    @Override
+    public int failPendingUrls(Instant createdBefore, String errorKey, String errorMessage) {
+        return jdbcTemplate.update(FAIL_PENDING_URLS, ScanUrlStatus.FAILED.name(), errorKey, errorMessage,
+                Timestamp.from(Instant.now()), ScanUrlStatus.PENDING.name(), Timestamp.from(createdBefore));
+    }
+
+    @Override
+    public int deleteExpired(Instant now) {
+        return jdbcTemplate.update(DELETE_EXPIRED, Timestamp.from(now));
+    }
+
+    private static ScanJobUrl mapUrl(ResultSet resultSet, int rowNum) throws SQLException {
+        Timestamp completedAt = resultSet.getTimestamp("completed_at");
+        return new ScanJobUrl(
+                resultSet.getInt("position"),
+                resultSet.getString("url"),
+                ScanUrlStatus.valueOf(resultSet.getString("status")),
+                splitIbans(resultSet.getString("valid_ibans")),
+                splitIbans(resultSet.getString("blacklisted_ibans")),
+                resultSet.getString("error_key"),
+                resultSet.getString("error_message"),
+                completedAt == null ? null : completedAt.toInstant());
+    }
+
+    // IBANs never contain commas, so the lists are stored as plain comma-separated text
+    private static String joinIbans(List<String> ibans) {
+        return ibans.isEmpty() ? null : String.join(",", ibans);
+    }
+
+    private static List<String> splitIbans(String ibans) {
+        return ibans == null ? List.of() : Arrays.asList(ibans.split(","));
+    }
+}
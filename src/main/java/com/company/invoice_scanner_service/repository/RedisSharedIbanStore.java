@@ -0,0 +1,43 @@
+package com.company.invoice_scanner_service.repository;
+
+import com.company.invoice_scanner_service.service.iban.SharedIbanStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Keeps extracted IBANs in Redis as plain binary values, writes are pipelined.
+ */
+@RequiredArgsConstructor
+public class RedisSharedIbanStore implements SharedIbanStore {
+
+    private final RedisConnectionFactory connectionFactory;
+    private final String keyPrefix;
+
+    @Override
+    public byte[] get(String contentHash) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            return connection.stringCommands().get(key(contentHash));
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, byte[]> values, Duration ttl) {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.openPipeline();
+            values.forEach((contentHash, value) -> connection.stringCommands().set(key(contentHash), value,
+                    Expiration.from(ttl), RedisStringCommands.SetOption.upsert()));
+            connection.closePipeline();
+        }
+    }
+
+    private byte[] key(String contentHash) {
+        return (keyPrefix + contentHash).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+package com.company.invoice_scanner_service.service;
+
+import com.company.invoice_scanner_service.service.pdf.PdfUrls;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Scans that are currently running, keyed by the URL {@linkplain PdfUrls#normalize(String) normalised}, so concurrent scans of the same URL share one download
+ * and parse. A scan is forgotten as soon as it completes, later scans of the URL start a new one.
+ * <p>
+ * Callers get their own copy of the shared future, completing or cancelling it does not affect the other callers.
+ * Publishes {@code scan.coalesced}, tagged with {@code scope=in-flight}.
+ */
+final class InFlightScans {
+
+    private final Map<String, CompletableFuture<ScanOutcome>> scans = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+
+    InFlightScans(MeterRegistry meterRegistry) {
+        this.coalesced = Counter.builder("scan.coalesced").tag("scope", "in-flight")
+                .description("Scans that joined a running scan of the same URL").register(meterRegistry);
+    }
+
+    /**
+     * Joins the running scan of the URL, or starts one with {@code scan}. The returned future never fails.
+     */
+    CompletableFuture<ScanOutcome> join(String url, Supplier<CompletableFuture<ScanOutcome>> scan) {
+        String key = PdfUrls.normalize(url);
+        CompletableFuture<ScanOutcome> shared = new CompletableFuture<>();
+        CompletableFuture<ScanOutcome> running = scans.putIfAbsent(key, shared);
+        if (running != null) {
+            coalesced.increment();
+            return running.copy();
+        }
+
+        CompletableFuture<ScanOutcome> started;
+        try {
+            started = scan.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.completedFuture(ScanOutcome.failed(e));
+        }
+        // Forgotten before completing, so a caller woken up by the result does not join the finished scan
+        started.whenComplete((outcome, error) -> {
+            scans.remove(key, shared);
+            shared.complete(error == null ? outcome : ScanOutcome.failed(error));
+        });
+        return shared.copy();
+    }
+
+    int size() {
+        return scans.size();
+    }
+}
@@ -0,0 +1,55 @@
+package com.company.invoice_scanner_service.service;
+
+import com.company.invoice_scanner_service.exception.InvalidUrlException;
+import com.company.invoice_scanner_service.exception.PdfDownloadException;
+import com.company.invoice_scanner_service.exception.PdfNotFoundException;
+import com.company.invoice_scanner_service.exception.PdfProcessingException;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
+import com.company.invoice_scanner_service.exception.ScanTimeoutException;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Outcome of scanning one PDF. Blacklisted, missing and invalid IBANs are regular outcomes of a scan and returned
+ * as values, only {@link Failed} carries an exception, for downloads, parses and lookups that went wrong.
+ */
+public sealed interface ScanOutcome {
+
+    /**
+     * Valid IBANs were found and none of them is blacklisted.
+     */
+    record Clean(List<String> validIbans) implements ScanOutcome {
+    }
+
+    record Blacklisted(List<String> validIbans, List<String> blacklistedIbans) implements ScanOutcome {
+    }
+
+    record NoIbanFound() implements ScanOutcome {
+    }
+
+    /**
+     * IBAN candidates were found, but none of them passed validation.
+     */
+    record InvalidIbans(List<String> extractedIbans) implements ScanOutcome {
+    }
+
+    record Failed(Throwable error) implements ScanOutcome {
+
+        public String errorKey() {
+            return switch (error) {
+                case InvalidUrlException e -> "INVALID_URL";
+                case PdfNotFoundException e -> "PDF_NOT_FOUND";
+                case PdfDownloadException e -> "PDF_DOWNLOAD";
+                case PdfTooLargeException e -> "PDF_TOO_LARGE";
+                case PdfProcessingException e -> "PDF_PROCESSING";
+                case ScanTimeoutException e -> "SCAN_TIMEOUT";
+                default -> "INTERNAL_ERROR";
+            };
+        }
+    }
+
+    static Failed failed(Throwable error) {
+        return new Failed(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+    }
+}
@@ -0,0 +1,223 @@
+package com.company.invoice_scanner_service.service;
+
+import com.company.invoice_scanner_service.config.ScanPipelineProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * One stage of a scan, running at most {@code concurrency} tasks on its executor with a bounded queue in front.
+ * Submitting never blocks: work handed to a full stage waits to be admitted to the queue, and a task of the stage
+ * before that handed it over keeps its slot until then, so a saturated stage slows down the one before it without
+ * parking the thread that completed the previous step. A task keeps its slot until its result was handed to the
+ * next stage, that is until the work the result's dependents submitted to another stage while it was being
+ * completed was admitted there.
+ * <p>
+ * Cancelling a returned future drops the task if it has not started yet, and cancels its work otherwise. A value
+ * that arrives after the future was cancelled is closed if it is {@link AutoCloseable}, so downloads cancelled
+ * just as they finished do not leak their buffers.
+ * <p>
+ * Publishes {@code scan.pipeline.waiting}, {@code scan.pipeline.queue.size}, {@code scan.pipeline.active},
+ * {@code scan.pipeline.queue.wait} and {@code scan.pipeline.stage.duration}, tagged with the stage name.
+ */
+final class ScanStage {
+
+    /**
+     * Releases the slot of the task whose result is being completed on this thread, taken by the first stage a
+     * dependent of the result submits to.
+     */
+    private static final ThreadLocal<Runnable> HAND_OVER = new ThreadLocal<>();
+
+    private final Executor executor;
+    private final int concurrency;
+    private final Semaphore capacity;
+    private final Queue<Runnable> admissions = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Timer queueWait;
+    private final Timer duration;
+
+    ScanStage(String name, ScanPipelineProperties.Stage properties, Executor executor, MeterRegistry meterRegistry) {
+        this.executor = executor;
+        this.concurrency = Math.max(1, properties.getConcurrency());
+        this.capacity = new Semaphore(concurrency + Math.max(0, properties.getQueueCapacity()));
+        Gauge.builder("scan.pipeline.waiting", waiting, AtomicInteger::get).tag("stage", name)
+                .description("Tasks waiting for room in the queue").register(meterRegistry);
+        Gauge.builder("scan.pipeline.queue.size", queued, AtomicInteger::get).tag("stage", name)
+                .description("Tasks waiting for a free slot").register(meterRegistry);
+        Gauge.builder("scan.pipeline.active", active, AtomicInteger::get).tag("stage", name)
+                .description("Tasks holding a slot").register(meterRegistry);
+        this.queueWait = Timer.builder("scan.pipeline.queue.wait").tag("stage", name)
+                .description("Time from submission until a task started").register(meterRegistry);
+        this.duration = Timer.builder("scan.pipeline.stage.duration").tag("stage", name)
+                .description("Time a task took once started").register(meterRegistry);
+    }
+
+    /**
+     * Runs blocking or CPU-bound work in this stage.
+     */
+    <T> CompletableFuture<T> call(Supplier<T> work) {
+        return callAsync(() -> CompletableFuture.completedFuture(work.get()));
+    }
+
+    /**
+     * Starts asynchronous work in this stage, the slot is held until the work's future completes. Returns right
+     * away, also when the stage is full.
+     */
+    <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> work) {
+        Runnable handOver = HAND_OVER.get();
+        HAND_OVER.remove();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long submitted = System.nanoTime();
+        Runnable task = () -> {
+            long started = System.nanoTime();
+            queueWait.record(started - submitted, TimeUnit.NANOSECONDS);
+            if (result.isDone()) {
+                // Cancelled while queued
+                release();
+                return;
+            }
+            CompletableFuture<T> future;
+            try {
+                future = work.get();
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            CompletableFuture<T> running = future;
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    running.cancel(true);
+                }
+            });
+            running.whenComplete((value, error) -> {
+                duration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                complete(result, value, error);
+            });
+        };
+        waiting.incrementAndGet();
+        admissions.add(() -> {
+            waiting.decrementAndGet();
+            queued.incrementAndGet();
+            queue.add(task);
+            if (handOver != null) {
+                handOver.run();
+            }
+        });
+        admit();
+        drain();
+        return result;
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    int active() {
+        return active.get();
+    }
+
+    private static void closeQuietly(Object value) {
+        if (value instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception ignored) {
+                // Nobody is interested in the value anymore
+            }
+        }
+    }
+
+    /**
+     * Completes the result and releases the slot once the value was handed to the next stage, or right away if no
+     * dependent submitted anything to another stage.
+     */
+    private <T> void complete(CompletableFuture<T> result, T value, Throwable error) {
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable releaseOnce = () -> {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        };
+        Runnable outer = HAND_OVER.get();
+        HAND_OVER.set(releaseOnce);
+        try {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (!result.complete(value)) {
+                closeQuietly(value);
+            }
+        } finally {
+            boolean handedOver = HAND_OVER.get() != releaseOnce;
+            if (outer != null) {
+                HAND_OVER.set(outer);
+            } else {
+                HAND_OVER.remove();
+            }
+            if (!handedOver) {
+                releaseOnce.run();
+            }
+        }
+    }
+
+    private void release() {
+        active.decrementAndGet();
+        capacity.release();
+        admit();
+        drain();
+    }
+
+    /**
+     * Moves waiting tasks to the queue while it has room, in the order they were submitted. Called after every
+     * submission and release, so a task never waits while there is room.
+     */
+    private void admit() {
+        while (!admissions.isEmpty() && capacity.tryAcquire()) {
+            Runnable admission = admissions.poll();
+            if (admission == null) {
+                capacity.release();
+                continue;
+            }
+            admission.run();
+        }
+    }
+
+    /**
+     * Starts queued tasks while there are free slots. Called after every submission and completion, so a task
+     * is never left in the queue while a slot is free.
+     */
+    private void drain() {
+        while (true) {
+            int running = active.get();
+            if (running >= concurrency || queue.isEmpty()) {
+                return;
+            }
+            if (!active.compareAndSet(running, running + 1)) {
+                continue;
+            }
+            Runnable task = queue.poll();
+            if (task == null) {
+                active.decrementAndGet();
+                continue;
+            }
+            queued.decrementAndGet();
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // The executor is shutting down, the task runs here so its future still completes
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.company.invoice_scanner_service.service;
+
+/**
+ * Outcome of scanning one URL. {@link #PENDING} is only used by scan jobs for URLs that are still being scanned.
+ */
+public enum ScanUrlStatus {
+    PENDING,
+    SUCCEEDED,
+    BLACKLISTED,
+    NO_IBAN_FOUND,
+    FAILED
+}
@@ -1,90 +1,369 @@
 package com.company.invoice_scanner_service.service;
 
-import com.company.invoice_scanner_service.exception.InvalidIbansException;
-import com.company.invoice_scanner_service.exception.NoIbanFoundException;
+import com.company.invoice_scanner_service.config.ScanPipelineProperties;
 import com.company.invoice_scanner_service.exception.PdfProcessingException;
+import com.company.invoice_scanner_service.exception.ScanTimeoutException;
 import com.company.invoice_scanner_service.service.iban.BlacklistedIbanService;
 import com.company.invoice_scanner_service.service.iban.IbanExtractionService;
 import com.company.invoice_scanner_service.service.iban.IbanValidationService;
 import com.company.invoice_scanner_service.service.pdf.PdfDownloadService;
-import lombok.RequiredArgsConstructor;
+import com.company.invoice_scanner_service.service.pdf.PdfSource;
+import com.company.invoice_scanner_service.service.pdf.PdfUrls;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+/**
+ * Runs scans as a pipeline of three stages: download, parse, and validation with the blacklist lookup.
+ * Each stage is sized on its own, see {@link ScanPipelineProperties}, so network, CPU and database can be tuned
+ * independently.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class TaskOrchestratorService {
 
     private final PdfDownloadService pdfDownloadService;
     private final IbanExtractionService ibanExtractionService;
     private final IbanValidationService ibanValidationService;
     private final BlacklistedIbanService blacklistedIbanService;
+    private final ScanPipelineProperties scanPipelineProperties;
 
-    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
+    private final ScanStage downloadStage;
+    private final ScanStage parseStage;
+    private final ScanStage lookupStage;
+    private final InFlightScans inFlightScans;
+    private final Executor scanIoExecutor;
+    private final Counter duplicateUrls;
+
+    public TaskOrchestratorService(PdfDownloadService pdfDownloadService,
+                                   IbanExtractionService ibanExtractionService,
+                                   IbanValidationService ibanValidationService,
+                                   BlacklistedIbanService blacklistedIbanService,
+                                   ScanPipelineProperties scanPipelineProperties,
+                                   @Qualifier("pdfParseExecutor") Executor pdfParseExecutor,
+                                   @Qualifier("scanIoExecutor") Executor scanIoExecutor,
+                                   MeterRegistry meterRegistry) {
+        this.pdfDownloadService = pdfDownloadService;
+        this.ibanExtractionService = ibanExtractionService;
+        this.ibanValidationService = ibanValidationService;
+        this.blacklistedIbanService = blacklistedIbanService;
+        this.scanPipelineProperties = scanPipelineProperties;
+        // Starting a download does not block, so it runs on whichever thread frees a slot
+        this.downloadStage = new ScanStage("download", scanPipelineProperties.getDownload(), Runnable::run, meterRegistry);
+        this.parseStage = new ScanStage("parse", scanPipelineProperties.getParse(), pdfParseExecutor, meterRegistry);
+        this.lookupStage = new ScanStage("lookup", scanPipelineProperties.getLookup(), scanIoExecutor, meterRegistry);
+        this.inFlightScans = new InFlightScans(meterRegistry);
+        this.scanIoExecutor = scanIoExecutor;
+        this.duplicateUrls = Counter.builder("scan.coalesced").tag("scope", "request")
+                .description("URLs dropped as repeats of another URL of the same request").register(meterRegistry);
+    }
 
     /**
-     * Processes PDFs from a list of URLs and extracts IBANs.
+     * Scans every URL on its own, a failing or slow URL only fails its own result. URLs that are not done when
+     * {@code scan.pipeline.request-deadline} elapses are cancelled and reported as timed out, so the returned future
+     * always completes, with one result per distinct URL in request order. Repeats of a URL, also in another
+     * spelling, are scanned once. Returns right away, also while the download stage is full.
      */
-    public List<String> processPdfsForIbans(List<String> urls) {
-        List<CompletableFuture<List<String>>> futures = urls.stream()
-                .map(url -> CompletableFuture.supplyAsync(() -> furtherProcessPdfForIbans(url), executorService))
+    public CompletableFuture<List<UrlScanResult>> scanUrlsAsync(List<String> urls) {
+        Instant deadline = Instant.now().plus(scanPipelineProperties.getRequestDeadline());
+        Map<String, String> distinctUrls = new LinkedHashMap<>();
+        urls.forEach(url -> distinctUrls.putIfAbsent(PdfUrls.normalize(url), url));
+        duplicateUrls.increment(urls.size() - distinctUrls.size());
+
+        List<CompletableFuture<UrlScanResult>> futures = distinctUrls.values().stream()
+                .map(url -> scanUrl(url, deadline))
                 .toList();
 
-        CompletableFuture<Void> allFutures = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Scans URLs while they are read from {@code urls}, e.g. a request body that is parsed incrementally, and hands
+     * every result to {@code onResult} as soon as its URL is done, in completion order. At most
+     * {@code scan.pipeline.streamed-urls-in-flight} URLs are scanned at once, reading pauses until one of them was
+     * handed over, so neither the first download nor the memory used depend on the size of the batch.
+     * <p>
+     * Reading and submitting happen on the I/O executor. A paused batch does not hold a thread of it, reading is
+     * resumed by the URL that frees a slot. There is no batch deadline, every URL has
+     * {@code scan.pipeline.url-timeout}. Repeats of a URL are not dropped, they only share the scan while it runs.
+     * If reading fails, no further URLs are read and the returned future fails with that error once the URLs read
+     * before were handed over. Otherwise it completes once every result was handed over.
+     */
+    public CompletableFuture<Void> scanUrlsAsync(Iterator<String> urls, Consumer<UrlScanResult> onResult) {
+        StreamedBatch batch = new StreamedBatch(urls, onResult);
+        batch.resume();
+        return batch.done;
+    }
+
+    private CompletableFuture<UrlScanResult> scanUrl(String url, Instant deadline) {
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return scanUrl(url, remaining.compareTo(scanPipelineProperties.getUrlTimeout()) < 0
+                ? remaining : scanPipelineProperties.getUrlTimeout());
+    }
 
-        return allFutures.thenApply(v ->
-                        futures.stream()
-                                .flatMap(future -> future.join().stream())
-                                .collect(Collectors.toList()))
-                .join();
+    private CompletableFuture<UrlScanResult> scanUrl(String url, Duration timeout) {
+        CompletableFuture<ScanOutcome> scan;
+        try {
+            scan = timeout.isPositive()
+                    ? furtherProcessPdfForIbans(url, timeout)
+                    : CompletableFuture.completedFuture(ScanOutcome.failed(timedOut(url, timeout)));
+        } catch (RuntimeException e) {
+            scan = CompletableFuture.completedFuture(ScanOutcome.failed(e));
+        }
+        return scan.thenApply(outcome -> new UrlScanResult(url, outcome));
     }
 
     /**
      * Orchestrates the entire process of downloading PDFs, extracting IBANs, validating them, and checking for blacklists.
+     * Ends with a failed outcome for a {@link ScanTimeoutException} once {@code scan.pipeline.url-timeout} elapsed.
      */
-    List<String> furtherProcessPdfForIbans(String pdfUrl) {
-        log.info("Starting processing for URL: {}", pdfUrl);
+    public CompletableFuture<ScanOutcome> furtherProcessPdfForIbans(String pdfUrl) {
+        return furtherProcessPdfForIbans(pdfUrl, scanPipelineProperties.getUrlTimeout());
+    }
 
-        // Step 1: Download PDF files
-        List<File> pdfFiles = pdfDownloadService.downloadPdfs(pdfUrl);
-
-        // Step 2: Extract IBANs concurrently
-        List<String> extractedIbans = pdfFiles.parallelStream()
-                .flatMap(file -> {
-                    try {
-                        return ibanExtractionService.extractIbans(file).stream();
-                    } catch (Exception e) {
-                        log.error("Error extracting IBANs from file: {}", file.getName(), e);
-                        throw new PdfProcessingException("Failed to extract IBANs from the provided URL: " + file.getName(), e);
-                    }
+    /**
+     * Scans one URL, or joins a scan of the same URL that is already running. The download itself does not occupy a
+     * pool thread. Parsing runs on the bounded parse pool, the validation and the blacklist lookup, which may block
+     * on the database, on the I/O executor.
+     * The returned future never fails, errors end in a {@link ScanOutcome.Failed} outcome. Once the timeout elapses
+     * that is a {@link ScanTimeoutException}. A scan this call started is then cancelled: a running download is
+     * aborted, a running parse stops at the next page, and steps that did not start yet are skipped. A joined scan
+     * is only cancelled by the timeout of the call that started it.
+     * Returns right away, a URL waiting for a free download slot counts against its timeout.
+     */
+    public CompletableFuture<ScanOutcome> furtherProcessPdfForIbans(String pdfUrl, Duration timeout) {
+        return inFlightScans.join(pdfUrl, () -> scanPdf(pdfUrl, timeout))
+                .completeOnTimeout(ScanOutcome.failed(timedOut(pdfUrl, timeout)), timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Scans PDFs that were uploaded instead of downloaded, in parallel on the parse pool, with the same validation
+     * and blacklist lookup as URLs. Takes ownership of the sources, they are closed once parsed. Results are named
+     * after the sources, in the given order, and the returned future always completes.
+     */
+    public CompletableFuture<List<UrlScanResult>> scanSourcesAsync(List<PdfSource> pdfSources) {
+        Duration timeout = scanPipelineProperties.getUrlTimeout();
+        List<CompletableFuture<UrlScanResult>> futures = pdfSources.stream()
+                .map(pdfSource -> {
+                    log.info("Starting processing for upload: {}", pdfSource.getName());
+                    return scan(pdfSource.getName(), CompletableFuture.completedFuture(pdfSource), System.nanoTime(), timeout)
+                            .thenApply(outcome -> new UrlScanResult(pdfSource.getName(), outcome));
                 })
-                .distinct()
-                .collect(Collectors.toList());
+                .toList();
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    private CompletableFuture<ScanOutcome> scanPdf(String pdfUrl, Duration timeout) {
+        log.info("Starting processing for URL: {}", pdfUrl);
+
+        long submitted = System.nanoTime();
+        // Step 1: Download the PDF into memory (or a spill file for large documents)
+        CompletableFuture<PdfSource> download =
+                downloadStage.callAsync(() -> pdfDownloadService.downloadPdfSourceAsync(pdfUrl));
+        return scan(pdfUrl, download, submitted, timeout);
+    }
+
+    /**
+     * Parses the downloaded PDF and looks up its IBANs, the timeout counts from {@code submitted}.
+     */
+    private CompletableFuture<ScanOutcome> scan(String name, CompletableFuture<PdfSource> download, long submitted,
+                                                Duration timeout) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<ScanOutcome> scan = download
+                .thenCompose(pdfSource -> parseStage.call(() -> parsePdfSource(pdfSource, cancelled)))
+                .thenCompose(extractedIbans -> lookupStage.call(() -> {
+                    throwIfCancelled(cancelled);
+                    return checkExtractedIbans(extractedIbans);
+                }));
+
+        // Waiting for a free download slot counts against the timeout
+        long remaining = Math.max(0, timeout.toNanos() - (System.nanoTime() - submitted));
+        return scan.orTimeout(remaining, TimeUnit.NANOSECONDS).exceptionally(error -> {
+            if (!(error instanceof TimeoutException)) {
+                return ScanOutcome.failed(error);
+            }
+            log.warn("Processing {} did not complete within {}, cancelling it", name, timeout);
+            cancelled.set(true);
+            download.cancel(true);
+            return ScanOutcome.failed(timedOut(name, timeout));
+        });
+    }
 
+    private static ScanTimeoutException timedOut(String pdfUrl, Duration timeout) {
+        return new ScanTimeoutException("Processing did not complete within " + timeout + ": " + pdfUrl);
+    }
+
+    private static void throwIfCancelled(AtomicBoolean cancelled) {
+        if (cancelled.get()) {
+            throw new CancellationException("Processing was cancelled.");
+        }
+    }
+
+    private List<String> parsePdfSource(PdfSource pdfSource, AtomicBoolean cancelled) {
+        // Step 2: Extract IBANs, the source is released as soon as parsing is done
+        try (pdfSource) {
+            throwIfCancelled(cancelled);
+            return extractIbans(pdfSource, cancelled);
+        }
+    }
+
+    private ScanOutcome checkExtractedIbans(List<String> extractedIbans) {
         if (extractedIbans.isEmpty()) {
-            throw new NoIbanFoundException("No IBANs found in the provided documents.");
+            return new ScanOutcome.NoIbanFound();
         }
 
         // Step 3: Validate IBANs using cache
         List<String> validIbans = ibanValidationService.validateIbans(extractedIbans);
         if (validIbans.isEmpty()) {
-            throw new InvalidIbansException(
-                    "Extracted IBANs are not valid.: " + String.join(",", extractedIbans));
+            return new ScanOutcome.InvalidIbans(extractedIbans);
         }
 
         // Step 4: Check for blacklisted IBANs
-        blacklistedIbanService.checkForBlacklistedIbans(validIbans);
+        List<String> blacklistedIbans = blacklistedIbanService.findBlacklistedIbans(validIbans);
+        if (!blacklistedIbans.isEmpty()) {
+            log.warn("Blacklisted IBANs detected: {}", blacklistedIbans);
+            List<String> cleanIbans = new ArrayList<>(validIbans);
+            cleanIbans.removeAll(blacklistedIbans);
+            return new ScanOutcome.Blacklisted(cleanIbans, blacklistedIbans);
+        }
 
         log.info("Successfully processed IBANs: {}", validIbans);
         // Step 5: If no blacklisted IBANs are found, return the valid IBANs
-        return validIbans;
+        return new ScanOutcome.Clean(validIbans);
+    }
+
+    private List<String> extractIbans(PdfSource pdfSource, AtomicBoolean cancelled) {
+        try {
+            return ibanExtractionService.extractIbans(pdfSource, cancelled::get).stream()
+                    .distinct()
+                    .collect(Collectors.toList());
+        } catch (CancellationException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error extracting IBANs from file: {}", pdfSource.getName(), e);
+            throw new PdfProcessingException("Failed to extract IBANs from the provided URL: " + pdfSource.getName(), e);
+        }
+    }
+
+    /**
+     * Reads a streamed batch, while fewer than {@code scan.pipeline.streamed-urls-in-flight} of its URLs are
+     * scanned. Instead of waiting for a free slot, reading stops and is resumed on the I/O executor once a URL
+     * was handed over.
+     */
+    private final class StreamedBatch {
+
+        private final Iterator<String> urls;
+        private final Consumer<UrlScanResult> onResult;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        // One for the reader, so the batch is not done before the last URL was read
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile RuntimeException readFailure;
+        // Read, but not yet scanned for lack of a slot
+        private String nextUrl;
+        private int freeSlots;
+        private boolean paused;
+
+        StreamedBatch(Iterator<String> urls, Consumer<UrlScanResult> onResult) {
+            this.urls = urls;
+            this.onResult = onResult;
+            this.freeSlots = Math.max(1, scanPipelineProperties.getStreamedUrlsInFlight());
+        }
+
+        void resume() {
+            try {
+                scanIoExecutor.execute(this::read);
+            } catch (RejectedExecutionException e) {
+                log.warn("Cannot read further URLs to scan, the service is shutting down");
+                readFailure = e;
+                finishOne();
+            }
+        }
+
+        private void read() {
+            try {
+                while (true) {
+                    if (nextUrl == null) {
+                        if (!urls.hasNext()) {
+                            finishOne();
+                            return;
+                        }
+                        nextUrl = urls.next();
+                    }
+                    if (!takeSlot()) {
+                        return;
+                    }
+                    String url = nextUrl;
+                    nextUrl = null;
+                    pending.incrementAndGet();
+                    scanUrl(url, scanPipelineProperties.getUrlTimeout()).thenAccept(result -> {
+                        try {
+                            onResult.accept(result);
+                        } finally {
+                            releaseSlot();
+                            finishOne();
+                        }
+                    });
+                }
+            } catch (RuntimeException e) {
+                log.warn("Reading the URLs to scan failed, finishing the URLs read so far", e);
+                readFailure = e;
+                finishOne();
+            }
+        }
+
+        private synchronized boolean takeSlot() {
+            if (freeSlots == 0) {
+                paused = true;
+                return false;
+            }
+            freeSlots--;
+            return true;
+        }
+
+        private void releaseSlot() {
+            boolean resume;
+            synchronized (this) {
+                freeSlots++;
+                resume = paused;
+                paused = false;
+            }
+            if (resume) {
+                resume();
+            }
+        }
+
+        private void finishOne() {
+            if (pending.decrementAndGet() == 0) {
+                RuntimeException failure = readFailure;
+                if (failure == null) {
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(failure);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,54 @@
+package com.company.invoice_scanner_service.service;
+
+import java.util.List;
+
+/**
+ * Outcome of scanning one URL of a batch. The IBAN lists are empty and the error fields null unless they apply.
+ */
+public record UrlScanResult(String url, ScanOutcome outcome) {
+
+    public ScanUrlStatus status() {
+        return switch (outcome) {
+            case ScanOutcome.Clean clean -> ScanUrlStatus.SUCCEEDED;
+            case ScanOutcome.Blacklisted blacklisted -> ScanUrlStatus.BLACKLISTED;
+            case ScanOutcome.NoIbanFound noIbanFound -> ScanUrlStatus.NO_IBAN_FOUND;
+            case ScanOutcome.InvalidIbans invalidIbans -> ScanUrlStatus.FAILED;
+            case ScanOutcome.Failed failed -> ScanUrlStatus.FAILED;
+        };
+    }
+
+    public boolean succeeded() {
+        return outcome instanceof ScanOutcome.Clean;
+    }
+
+    public List<String> validIbans() {
+        return switch (outcome) {
+            case ScanOutcome.Clean clean -> clean.validIbans();
+            case ScanOutcome.Blacklisted blacklisted -> blacklisted.validIbans();
+            default -> List.of();
+        };
+    }
+
+    public List<String> blacklistedIbans() {
+        return outcome instanceof ScanOutcome.Blacklisted blacklisted ? blacklisted.blacklistedIbans() : List.of();
+    }
+
+    public String errorKey() {
+        return switch (outcome) {
+            case ScanOutcome.NoIbanFound noIbanFound -> "NO_IBAN_FOUND";
+            case ScanOutcome.InvalidIbans invalidIbans -> "INVALID_IBANS_PRESENT";
+            case ScanOutcome.Failed failed -> failed.errorKey();
+            default -> null;
+        };
+    }
+
+    public String errorMessage() {
+        return switch (outcome) {
+            case ScanOutcome.NoIbanFound noIbanFound -> "No IBANs found in the provided documents.";
+            case ScanOutcome.InvalidIbans invalidIbans ->
+                    "Extracted IBANs are not valid.: " + String.join(",", invalidIbans.extractedIbans());
+            case ScanOutcome.Failed failed -> failed.error().getMessage();
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,153 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import com.company.invoice_scanner_service.config.BlacklistProperties;
+import com.company.invoice_scanner_service.dto.BlacklistImportResponse;
+import com.company.invoice_scanner_service.entity.BlacklistedIban;
+import com.company.invoice_scanner_service.repository.BlacklistedIbanBatchRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Imports large blacklists, e.g. a regulator's list, line by line without holding the file in memory.
+ * Rows are written in batches that skip IBANs which are blacklisted already.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlacklistImportService {
+
+    private final BlacklistedIbanBatchRepository blacklistedIbanBatchRepository;
+    private final BlacklistIndex blacklistIndex;
+    private final IbanValidator ibanValidator;
+    private final BlacklistProperties blacklistProperties;
+    private final ObjectMapper objectMapper;
+
+    public enum Format {
+        /**
+         * One {@code iban[,reason]} per line, with an optional {@code iban,reason} header.
+         */
+        CSV,
+        /**
+         * One {@code {"iban": "...", "reason": "..."}} object per line.
+         */
+        NDJSON
+    }
+
+    /**
+     * Imports the IBANs of the given stream, rows without a reason get the default reason.
+     */
+    public BlacklistImportResponse importIbans(InputStream inputStream, Format format, String defaultReason) throws IOException {
+        ImportBatch batch = new ImportBatch();
+        long invalid = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            boolean firstLine = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!StringUtils.hasText(line)) {
+                    continue;
+                }
+                if (firstLine && format == Format.CSV && isCsvHeader(line)) {
+                    firstLine = false;
+                    continue;
+                }
+                firstLine = false;
+
+                BlacklistedIban blacklistedIban = format == Format.CSV ? parseCsvLine(line) : parseJsonLine(line);
+                if (blacklistedIban == null || !ibanValidator.validate(blacklistedIban.getIban()).isValid()) {
+                    invalid++;
+                    continue;
+                }
+                if (!StringUtils.hasText(blacklistedIban.getReason())) {
+                    blacklistedIban.setReason(defaultReason);
+                }
+                batch.add(blacklistedIban);
+            }
+        }
+        batch.flush();
+
+        log.info("Imported blacklist: {} inserted, {} duplicates, {} invalid", batch.inserted, batch.duplicates, invalid);
+        return BlacklistImportResponse.builder()
+                .inserted(batch.inserted)
+                .duplicates(batch.duplicates)
+                .invalid(invalid)
+                .build();
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.strip().toLowerCase(Locale.ROOT).startsWith("iban");
+    }
+
+    private static BlacklistedIban parseCsvLine(String line) {
+        int separator = line.indexOf(',');
+        String iban = separator < 0 ? line : line.substring(0, separator);
+        String reason = separator < 0 ? null : unquote(line.substring(separator + 1).strip());
+        return newBlacklistedIban(unquote(iban.strip()), reason);
+    }
+
+    private BlacklistedIban parseJsonLine(String line) {
+        try {
+            ImportLine importLine = objectMapper.readValue(line, ImportLine.class);
+            return importLine.iban() == null ? null : newBlacklistedIban(importLine.iban(), importLine.reason());
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private static BlacklistedIban newBlacklistedIban(String iban, String reason) {
+        BlacklistedIban blacklistedIban = new BlacklistedIban();
+        blacklistedIban.setIban(StringUtils.trimAllWhitespace(iban).toUpperCase(Locale.ROOT));
+        blacklistedIban.setReason(reason);
+        return blacklistedIban;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            return value.substring(1, value.length() - 1).replace("\"\"", "\"");
+        }
+        return value;
+    }
+
+    private record ImportLine(String iban, String reason) {
+    }
+
+    /**
+     * Collects rows until the batch size is reached, then writes them in one round trip.
+     */
+    private final class ImportBatch {
+
+        private final List<BlacklistedIban> rows = new ArrayList<>();
+        private long inserted;
+        private long duplicates;
+
+        void add(BlacklistedIban blacklistedIban) {
+            rows.add(blacklistedIban);
+            if (rows.size() >= blacklistProperties.getImportBatchSize()) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            List<String> insertedIbans = blacklistedIbanBatchRepository.insertIgnoringDuplicates(rows);
+            insertedIbans.forEach(blacklistIndex::add);
+            inserted += insertedIbans.size();
+            duplicates += rows.size() - insertedIbans.size();
+            rows.clear();
+        }
+    }
+}
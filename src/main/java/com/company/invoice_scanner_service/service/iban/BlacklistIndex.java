@@ -0,0 +1,264 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import com.company.invoice_scanner_service.config.BlacklistProperties;
+import com.company.invoice_scanner_service.repository.BlacklistEntry;
+import com.company.invoice_scanner_service.repository.BlacklistedIbanRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory view of the blacklist, so scans are checked without a database round trip.
+ * <p>
+ * In {@link BlacklistProperties.Mode#INDEX} mode the blacklist is loaded into an immutable {@link PackedIbanSet},
+ * in {@link BlacklistProperties.Mode#BLOOM_FILTER} mode only into an {@link IbanBloomFilter}. Both are refreshed
+ * with the rows created after the newest known {@code created_at}. IBANs blacklisted through this instance are
+ * visible right away, also while a full reload is running. Reads never lock. Until the first load succeeded, or in
+ * {@link BlacklistProperties.Mode#DATABASE} mode, the index is not ready and callers query the database.
+ * <p>
+ * Refreshes run on a thread of the index's own, so a slow load does not hold up the application's scheduled tasks.
+ */
+@Slf4j
+@Component
+public class BlacklistIndex {
+
+    private static final LocalDateTime NO_WATERMARK = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final int LOAD_BATCH_SIZE = 10_000;
+
+    /**
+     * The Bloom filter is sized for twice the loaded rows, so additions until the next full reload keep the rate.
+     */
+    private static final int BLOOM_FILTER_HEADROOM = 2;
+    private static final int BLOOM_FILTER_MIN_CAPACITY = 10_000;
+
+    private final BlacklistedIbanRepository blacklistedIbanRepository;
+    private final BlacklistProperties blacklistProperties;
+
+    private volatile PackedIbanSet snapshot;
+    private volatile IbanBloomFilter bloomFilter;
+    private final Set<String> recentlyAdded = ConcurrentHashMap.newKeySet();
+    // Added while a Bloom filter is being loaded, replayed into it before and after it replaces the previous one
+    private final Set<String> addedDuringLoad = ConcurrentHashMap.newKeySet();
+    private volatile boolean loadingBloomFilter;
+    private ScheduledExecutorService refresher;
+
+    // Only accessed by refresh()
+    private LocalDateTime watermark = NO_WATERMARK;
+    private Instant lastFullLoad = Instant.MIN;
+    private volatile long loadedRows;
+
+    public BlacklistIndex(BlacklistedIbanRepository blacklistedIbanRepository, BlacklistProperties blacklistProperties,
+                          MeterRegistry meterRegistry) {
+        this.blacklistedIbanRepository = blacklistedIbanRepository;
+        this.blacklistProperties = blacklistProperties;
+        if (blacklistProperties.getMode() == BlacklistProperties.Mode.BLOOM_FILTER) {
+            // Fails startup, the scheduled refresh would only log the failure
+            IbanBloomFilter.validateFalsePositiveRate(blacklistProperties.getBloomFilterFalsePositiveRate());
+        }
+        Gauge.builder("iban.blacklist.index.size", this, index -> index.loadedRows)
+                .description("Rows loaded into the blacklist index or Bloom filter")
+                .register(meterRegistry);
+    }
+
+    public boolean isReady() {
+        return snapshot != null || bloomFilter != null;
+    }
+
+    /**
+     * Whether lookups are exact. Otherwise a positive {@link #mightContain(String)} has to be confirmed.
+     */
+    public boolean isExact() {
+        return bloomFilter == null;
+    }
+
+    /**
+     * Whether the IBAN may be blacklisted, only meaningful if the index {@link #isReady() is ready}.
+     * The answer is exact unless the index is backed by a Bloom filter.
+     */
+    public boolean mightContain(String iban) {
+        IbanBloomFilter filter = bloomFilter;
+        if (filter != null) {
+            return filter.mightContain(iban);
+        }
+        PackedIbanSet current = snapshot;
+        return current != null && current.contains(iban) || recentlyAdded.contains(iban);
+    }
+
+    long loadedRows() {
+        return loadedRows;
+    }
+
+    PackedIbanSet snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Makes a newly blacklisted IBAN visible before the next refresh.
+     */
+    public void add(String iban) {
+        if (blacklistProperties.getMode() == BlacklistProperties.Mode.BLOOM_FILTER) {
+            // Recorded before the filter is read, so a load that misses this add replays it
+            if (loadingBloomFilter) {
+                addedDuringLoad.add(iban);
+            }
+            IbanBloomFilter filter = bloomFilter;
+            if (filter != null) {
+                filter.add(iban);
+            }
+        } else if (blacklistProperties.getMode() == BlacklistProperties.Mode.INDEX) {
+            recentlyAdded.add(iban);
+        }
+    }
+
+    /**
+     * Loads the blacklist right away and refreshes it every {@code iban.blacklist.refresh-interval} afterward.
+     */
+    @PostConstruct
+    void start() {
+        if (blacklistProperties.getMode() == BlacklistProperties.Mode.DATABASE) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("blacklist-index-refresh").daemon().factory());
+        refresher.scheduleWithFixedDelay(this::refresh, 0,
+                Math.max(1, blacklistProperties.getRefreshInterval().toMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads the blacklist, or reads the rows added since the last refresh. Failures keep the previous state.
+     */
+    public synchronized void refresh() {
+        BlacklistProperties.Mode mode = blacklistProperties.getMode();
+        if (mode == BlacklistProperties.Mode.DATABASE) {
+            return;
+        }
+        try {
+            Instant now = Instant.now();
+            if (!isReady() || now.isAfter(lastFullLoad.plus(blacklistProperties.getFullReloadInterval()))) {
+                watermark = NO_WATERMARK;
+                if (mode == BlacklistProperties.Mode.BLOOM_FILTER) {
+                    loadBloomFilter();
+                } else {
+                    loadSnapshot();
+                }
+                lastFullLoad = now;
+                log.info("Loaded {} blacklisted IBANs into the blacklist index ({})", loadedRows, mode);
+            } else {
+                refreshDelta();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Refreshing the blacklist index failed, keeping the previous state", e);
+        }
+    }
+
+    private void loadSnapshot() {
+        List<String> ibans = new ArrayList<>();
+        forEachBatch(batch -> ibans.addAll(toIbans(batch)));
+        publish(PackedIbanSet.of(ibans));
+        loadedRows = ibans.size();
+    }
+
+    private void loadBloomFilter() {
+        long expectedRows = Math.max(BLOOM_FILTER_MIN_CAPACITY, blacklistedIbanRepository.count() * BLOOM_FILTER_HEADROOM);
+        IbanBloomFilter filter = IbanBloomFilter.create(expectedRows, blacklistProperties.getBloomFilterFalsePositiveRate());
+        long[] rows = {0};
+        loadingBloomFilter = true;
+        try {
+            forEachBatch(batch -> {
+                batch.forEach(entry -> filter.add(entry.iban()));
+                rows[0] += batch.size();
+            });
+            addedDuringLoad.forEach(filter::add);
+            bloomFilter = filter;
+            // Adds that read the previous filter after the first replay
+            addedDuringLoad.forEach(filter::add);
+        } finally {
+            loadingBloomFilter = false;
+            addedDuringLoad.clear();
+        }
+        snapshot = null;
+        recentlyAdded.clear();
+        loadedRows = rows[0];
+    }
+
+    private void refreshDelta() {
+        List<BlacklistEntry> entries = blacklistedIbanRepository.findEntriesCreatedAfter(
+                watermark.minus(blacklistProperties.getRefreshOverlap()));
+        if (entries.isEmpty()) {
+            return;
+        }
+        advanceWatermark(entries);
+        IbanBloomFilter filter = bloomFilter;
+        if (filter != null) {
+            entries.forEach(entry -> filter.add(entry.iban()));
+            log.debug("Refreshed the blacklist Bloom filter with {} rows", entries.size());
+            return;
+        }
+        // The overlap reads the newest rows again on every refresh, the snapshot is only rebuilt for unknown IBANs
+        PackedIbanSet current = snapshot;
+        List<String> newIbans = toIbans(entries).stream().filter(iban -> !current.contains(iban)).toList();
+        if (newIbans.isEmpty()) {
+            return;
+        }
+        PackedIbanSet updated = current.with(newIbans);
+        publish(updated);
+        loadedRows = updated.size();
+        log.debug("Refreshed the blacklist index with {} rows", newIbans.size());
+    }
+
+    /**
+     * Pages through the whole table by id, so the rows are never all held at once.
+     */
+    private void forEachBatch(Consumer<List<BlacklistEntry>> batchConsumer) {
+        long afterId = 0;
+        List<BlacklistEntry> batch;
+        do {
+            batch = blacklistedIbanRepository.findEntriesAfterId(afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+            if (!batch.isEmpty()) {
+                batchConsumer.accept(batch);
+                advanceWatermark(batch);
+                afterId = batch.getLast().id();
+            }
+        } while (batch.size() == LOAD_BATCH_SIZE);
+    }
+
+    private void publish(PackedIbanSet newSnapshot) {
+        snapshot = newSnapshot;
+        bloomFilter = null;
+        recentlyAdded.removeIf(newSnapshot::contains);
+    }
+
+    private void advanceWatermark(List<BlacklistEntry> entries) {
+        for (BlacklistEntry entry : entries) {
+            if (entry.createdAt() != null && entry.createdAt().isAfter(watermark)) {
+                watermark = entry.createdAt();
+            }
+        }
+    }
+
+    private static List<String> toIbans(List<BlacklistEntry> entries) {
+        return entries.stream().map(BlacklistEntry::iban).toList();
+    }
+}
@@ -1,38 +1,45 @@
 package com.company.invoice_scanner_service.service.iban;
 
 import com.company.invoice_scanner_service.entity.BlacklistedIban;
-import com.company.invoice_scanner_service.exception.BlacklistedIbanFoundException;
 import com.company.invoice_scanner_service.repository.BlacklistedIbanRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class BlacklistedIbanService {
 
     private final BlacklistedIbanRepository blacklistedIbanRepository;
+    private final BlacklistIndex blacklistIndex;
 
-    /**
-     * Checks if any IBAN from the list is blacklisted.
-     */
-    public void checkForBlacklistedIbans(List<String> ibans) {
-        List<String> validIbans = new ArrayList<>(ibans);
-        List<BlacklistedIban> blacklisted = blacklistedIbanRepository.findByIbanIn(ibans);
-        if (!blacklisted.isEmpty()) {
-            List<String> blacklistedIbans = blacklisted.stream()
-                    .map(BlacklistedIban::getIban)
-                    .collect(Collectors.toList());
-            validIbans.removeAll(blacklistedIbans);
-            log.warn("Blacklisted IBANs detected: {}", blacklistedIbans);
-            throw new BlacklistedIbanFoundException(blacklistedIbans, validIbans);
-        }
+    private final Counter filterHits;
+    private final Counter filterMisses;
+    private final Counter filterFalsePositives;
+    private final Counter databaseQueries;
+    private final Counter databaseQueriesAvoided;
+
+    public BlacklistedIbanService(BlacklistedIbanRepository blacklistedIbanRepository, BlacklistIndex blacklistIndex,
+                                  MeterRegistry meterRegistry) {
+        this.blacklistedIbanRepository = blacklistedIbanRepository;
+        this.blacklistIndex = blacklistIndex;
+        this.filterHits = Counter.builder("iban.blacklist.filter.checks").tag("result", "hit")
+                .description("IBANs the Bloom filter could not rule out").register(meterRegistry);
+        this.filterMisses = Counter.builder("iban.blacklist.filter.checks").tag("result", "miss")
+                .description("IBANs the Bloom filter ruled out").register(meterRegistry);
+        this.filterFalsePositives = Counter.builder("iban.blacklist.filter.false.positives")
+                .description("Bloom filter hits the database showed to be clean").register(meterRegistry);
+        this.databaseQueries = Counter.builder("iban.blacklist.database.queries")
+                .description("Blacklist lookups sent to the database").register(meterRegistry);
+        this.databaseQueriesAvoided = Counter.builder("iban.blacklist.database.queries.avoided")
+                .description("Blacklist lookups answered without the database").register(meterRegistry);
     }
 
     @Transactional
@@ -46,7 +53,61 @@ public class BlacklistedIbanService {
         blacklistedIban.setReason(reason);
 
         BlacklistedIban savedIban = blacklistedIbanRepository.save(blacklistedIban);
+        afterCommit(() -> blacklistIndex.add(iban));
         log.info("Blacklisted IBAN: {}", iban);
         return savedIban;
     }
+
+    /**
+     * Returns the blacklisted IBANs of the list.
+     * Uses the in-memory blacklist index when it is loaded, the database otherwise. With a Bloom filter index only
+     * the IBANs the filter cannot rule out are looked up in the database.
+     */
+    public List<String> findBlacklistedIbans(List<String> ibans) {
+        if (!blacklistIndex.isReady()) {
+            return queryDatabase(ibans);
+        }
+
+        List<String> candidates = ibans.stream()
+                .filter(blacklistIndex::mightContain)
+                .collect(Collectors.toList());
+        if (blacklistIndex.isExact()) {
+            databaseQueriesAvoided.increment();
+            return candidates;
+        }
+
+        // Only IBANs the Bloom filter could not rule out have to be looked up
+        filterHits.increment(candidates.size());
+        filterMisses.increment(ibans.size() - candidates.size());
+        if (candidates.isEmpty()) {
+            databaseQueriesAvoided.increment();
+            return candidates;
+        }
+        List<String> blacklistedIbans = queryDatabase(candidates);
+        filterFalsePositives.increment(candidates.size() - blacklistedIbans.size());
+        return blacklistedIbans;
+    }
+
+    private List<String> queryDatabase(List<String> ibans) {
+        databaseQueries.increment();
+        return blacklistedIbanRepository.findByIbanIn(ibans).stream()
+                .map(BlacklistedIban::getIban)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Runs the action once the surrounding transaction committed, or right away without a transaction.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
@@ -0,0 +1,218 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import com.company.invoice_scanner_service.config.PdfExtractionProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IBANs extracted from a document, keyed by the SHA-256 of its bytes, so the same PDF behind signed links or CDN
+ * variants is parsed once. Only the extraction is cached, validation and the blacklist check run on every scan.
+ * <p>
+ * Bounded by {@code pdf.extraction.cache.maximum-size}, Caffeine evicts by frequency and recency (W-TinyLFU), and
+ * entries expire after {@code pdf.extraction.cache.ttl}. Publishes the Caffeine cache metrics, e.g.
+ * {@code cache.gets} by result and {@code cache.evictions}, tagged with {@code cache=extracted-ibans}.
+ * <p>
+ * With a {@link SharedIbanStore}, a local miss is looked up there, and new entries are written behind in batches,
+ * so a failing or slow store only costs parses. Lookups run on a small pool of their own and are given up after
+ * {@code pdf.extraction.cache.shared-timeout}, so a stalled store does not hold up the parser threads, and batches
+ * are written by a thread of their own instead of the shared scheduler. Publishes
+ * {@code pdf.extraction.cache.shared.gets} and {@code pdf.extraction.cache.shared.writes} by result.
+ */
+@Slf4j
+@Component
+public class ExtractedIbanCache {
+
+    private final PdfExtractionProperties.Cache properties;
+    private final boolean enabled;
+    private final Cache<String, List<String>> cache;
+    private final SharedIbanStore sharedStore;
+    private final ThreadPoolExecutor sharedStoreReader;
+    private final ScheduledExecutorService sharedStoreWriter;
+
+    private final Queue<Map.Entry<String, List<String>>> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWriteCount = new AtomicInteger();
+
+    private final Counter sharedHits;
+    private final Counter sharedMisses;
+    private final Counter sharedGetErrors;
+    private final Counter sharedGetTimeouts;
+    private final Counter sharedWrites;
+    private final Counter sharedWritesDropped;
+    private final Counter sharedWriteErrors;
+
+    @Autowired
+    public ExtractedIbanCache(PdfExtractionProperties pdfExtractionProperties, ObjectProvider<SharedIbanStore> sharedStore,
+                              MeterRegistry meterRegistry) {
+        this(pdfExtractionProperties, sharedStore.getIfAvailable(), meterRegistry);
+    }
+
+    ExtractedIbanCache(PdfExtractionProperties pdfExtractionProperties, SharedIbanStore sharedStore,
+                       MeterRegistry meterRegistry) {
+        this.properties = pdfExtractionProperties.getCache();
+        this.enabled = properties.getMaximumSize() > 0;
+        this.sharedStore = sharedStore;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, properties.getMaximumSize()))
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "extracted-ibans");
+
+        this.sharedHits = sharedCounter("pdf.extraction.cache.shared.gets", "hit", meterRegistry);
+        this.sharedMisses = sharedCounter("pdf.extraction.cache.shared.gets", "miss", meterRegistry);
+        this.sharedGetErrors = sharedCounter("pdf.extraction.cache.shared.gets", "error", meterRegistry);
+        this.sharedGetTimeouts = sharedCounter("pdf.extraction.cache.shared.gets", "timeout", meterRegistry);
+        this.sharedWrites = sharedCounter("pdf.extraction.cache.shared.writes", "written", meterRegistry);
+        this.sharedWritesDropped = sharedCounter("pdf.extraction.cache.shared.writes", "dropped", meterRegistry);
+        this.sharedWriteErrors = sharedCounter("pdf.extraction.cache.shared.writes", "error", meterRegistry);
+
+        if (sharedStore == null) {
+            this.sharedStoreReader = null;
+            this.sharedStoreWriter = null;
+            return;
+        }
+        // Without a queue, lookups beyond the pool are rejected right away instead of waiting behind stuck ones
+        int concurrency = Math.max(1, properties.getSharedConcurrency());
+        this.sharedStoreReader = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), Thread.ofPlatform().name("shared-iban-store-reader-", 0).daemon().factory());
+        sharedStoreReader.allowCoreThreadTimeOut(true);
+        this.sharedStoreWriter = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("shared-iban-store-writer").daemon().factory());
+        long interval = Math.max(1, properties.getWriteBehindInterval().toMillis());
+        sharedStoreWriter.scheduleWithFixedDelay(this::flushSharedWrites, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private static Counter sharedCounter(String name, String result, MeterRegistry meterRegistry) {
+        return Counter.builder(name).tag("result", result).register(meterRegistry);
+    }
+
+    /**
+     * IBANs of the document with the given hash, or null if it was not parsed recently.
+     */
+    public List<String> get(String contentHash) {
+        if (!enabled || contentHash == null) {
+            return null;
+        }
+        List<String> ibans = cache.getIfPresent(contentHash);
+        if (ibans != null || sharedStore == null) {
+            return ibans;
+        }
+
+        ibans = getShared(contentHash);
+        if (ibans != null) {
+            cache.put(contentHash, ibans);
+        }
+        return ibans;
+    }
+
+    public void put(String contentHash, List<String> ibans) {
+        if (!enabled || contentHash == null) {
+            return;
+        }
+        List<String> value = List.copyOf(ibans);
+        cache.put(contentHash, value);
+        if (sharedStore == null) {
+            return;
+        }
+        if (pendingWriteCount.incrementAndGet() > properties.getWriteBehindCapacity()) {
+            pendingWriteCount.decrementAndGet();
+            sharedWritesDropped.increment();
+            return;
+        }
+        pendingWrites.add(Map.entry(contentHash, value));
+    }
+
+    /**
+     * Writes the pending entries to the shared store in one batch. A failed batch is dropped, the documents are
+     * parsed again by the replicas that miss them.
+     */
+    public void flushSharedWrites() {
+        if (sharedStore == null || pendingWrites.isEmpty()) {
+            return;
+        }
+        Map<String, byte[]> batch = new LinkedHashMap<>();
+        Map.Entry<String, List<String>> entry;
+        while ((entry = pendingWrites.poll()) != null) {
+            pendingWriteCount.decrementAndGet();
+            batch.put(entry.getKey(), IbanListCodec.encode(entry.getValue()));
+        }
+        try {
+            sharedStore.putAll(batch, properties.getSharedTtl());
+            sharedWrites.increment(batch.size());
+        } catch (RuntimeException e) {
+            log.warn("Writing {} extracted IBAN lists to the shared store failed", batch.size(), e);
+            sharedWriteErrors.increment(batch.size());
+        }
+    }
+
+    /**
+     * Stops the writer after a last flush.
+     */
+    @PreDestroy
+    public void close() {
+        if (sharedStore == null) {
+            return;
+        }
+        sharedStoreWriter.shutdownNow();
+        sharedStoreReader.shutdownNow();
+        flushSharedWrites();
+    }
+
+    private List<String> getShared(String contentHash) {
+        Future<byte[]> lookup;
+        try {
+            lookup = sharedStoreReader.submit(() -> sharedStore.get(contentHash));
+        } catch (RejectedExecutionException e) {
+            sharedGetTimeouts.increment();
+            return null;
+        }
+        byte[] value;
+        try {
+            value = lookup.get(properties.getSharedTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            lookup.cancel(true);
+            sharedGetTimeouts.increment();
+            return null;
+        } catch (InterruptedException e) {
+            lookup.cancel(true);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Reading extracted IBANs from the shared store failed, parsing the document", e.getCause());
+            sharedGetErrors.increment();
+            return null;
+        }
+        List<String> ibans = value == null ? null : IbanListCodec.decode(value);
+        (ibans == null ? sharedMisses : sharedHits).increment();
+        return ibans;
+    }
+
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+}
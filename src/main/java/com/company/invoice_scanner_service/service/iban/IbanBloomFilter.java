@@ -0,0 +1,92 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over IBAN strings. IBANs may be added while other threads query the filter, neither side locks.
+ * A negative answer is always correct, a positive one is wrong with about the configured false-positive rate.
+ */
+final class IbanBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashFunctions;
+
+    private IbanBloomFilter(long bitCount, int hashFunctions) {
+        this.bits = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        this.bitCount = bitCount;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Creates a filter that keeps the false-positive rate for up to the given number of IBANs.
+     */
+    static IbanBloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        validateFalsePositiveRate(falsePositiveRate);
+        long n = Math.max(1, expectedInsertions);
+        long bitCount = Math.max(64, (long) Math.ceil(-n * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        int hashFunctions = Math.max(1, (int) Math.round((double) bitCount / n * LN2));
+        return new IbanBloomFilter(bitCount, hashFunctions);
+    }
+
+    /**
+     * Rejects rates outside (0, 1), for which the filter size is negative or undefined.
+     */
+    static void validateFalsePositiveRate(double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException(
+                    "The Bloom filter false-positive rate must be between 0 and 1 (exclusive): " + falsePositiveRate);
+        }
+    }
+
+    void add(CharSequence iban) {
+        long hash = hash(iban);
+        long hash1 = hash & 0xFFFFFFFFL;
+        long hash2 = hash >>> 32;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = (hash1 + i * hash2) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                // retry until the bit is set, by this or another thread
+            }
+        }
+    }
+
+    boolean mightContain(CharSequence iban) {
+        long hash = hash(iban);
+        long hash1 = hash & 0xFFFFFFFFL;
+        long hash2 = hash >>> 32;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = (hash1 + i * hash2) % bitCount;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long bitCount() {
+        return bitCount;
+    }
+
+    int hashFunctions() {
+        return hashFunctions;
+    }
+
+    /**
+     * 64-bit FNV-1a followed by a final mix, so both halves are usable as independent hashes.
+     */
+    private static long hash(CharSequence iban) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < iban.length(); i++) {
+            hash = (hash ^ iban.charAt(i)) * 0x100000001B3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
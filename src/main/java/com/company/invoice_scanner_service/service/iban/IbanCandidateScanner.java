@@ -0,0 +1,148 @@
+package com.company.invoice_scanner_service.service.iban;
+
+/**
+ * Single-pass scanner that finds IBAN candidates in extracted text without regular expressions.
+ * <p>
+ * A candidate starts at a word boundary with a two-letter country code and two check digits, followed by BBAN
+ * groups of upper-case letters and digits. Groups may be separated by a single space, tab, line break, non-breaking
+ * space, hyphen or dot. Candidates are written without separators into a buffer that is reused for every candidate,
+ * so scanning does not allocate. Instances are not thread-safe.
+ */
+public final class IbanCandidateScanner {
+
+    /**
+     * Longest IBAN allowed by ISO 13616.
+     */
+    public static final int MAX_IBAN_LENGTH = 34;
+
+    private static final int PREFIX_LENGTH = 4;
+
+    private final char[] candidate = new char[MAX_IBAN_LENGTH];
+
+    // Candidate length and text position at the end of every group that is followed by a separator
+    private final int[] groupEndLengths = new int[MAX_IBAN_LENGTH];
+    private final int[] groupEndPositions = new int[MAX_IBAN_LENGTH];
+
+    /**
+     * Receives the normalized candidate and reports whether it was accepted as an IBAN. The buffer is overwritten by
+     * the next candidate and must not be kept.
+     */
+    @FunctionalInterface
+    public interface CandidateHandler {
+        boolean accept(char[] candidate, int length);
+    }
+
+    /**
+     * Scans the text and passes every candidate to the handler, in the order they appear.
+     * <p>
+     * The longest run of groups is offered first. If the handler rejects it, for example because a BIC or another
+     * IBAN follows on the same line, shorter candidates ending at an earlier group are offered. A run is read no further
+     * than {@link #MAX_IBAN_LENGTH} characters, so every position is read a bounded number of times. If no candidate
+     * is accepted, scanning continues with the second group of the run, which may start an IBAN itself.
+     */
+    public void scan(CharSequence text, CandidateHandler handler) {
+        int length = text.length();
+        int position = 0;
+        while (position < length) {
+            if (isCandidateStart(text, position)) {
+                position = scanCandidate(text, position, handler);
+            } else {
+                position++;
+            }
+        }
+    }
+
+    /**
+     * Reads the candidate starting at the given position and returns the position to continue scanning from.
+     */
+    private int scanCandidate(CharSequence text, int start, CandidateHandler handler) {
+        int length = text.length();
+        for (int i = 0; i < PREFIX_LENGTH; i++) {
+            candidate[i] = text.charAt(start + i);
+        }
+        int size = PREFIX_LENGTH;
+        int groupEnds = 0;
+        int secondGroupStart = -1;
+        boolean tooLong = false;
+
+        int position = start + PREFIX_LENGTH;
+        while (position < length) {
+            char c = text.charAt(position);
+            if (isIbanChar(c)) {
+                if (size == MAX_IBAN_LENGTH) {
+                    // Longer than any IBAN, only the candidates ending at an earlier group are left. Reading the
+                    // rest of the run would be repeated for every group of it.
+                    tooLong = true;
+                    break;
+                }
+                candidate[size++] = c;
+                position++;
+                continue;
+            }
+
+            int separatorLength = separatorLength(text, position);
+            if (separatorLength == 0 || position + separatorLength >= length
+                    || !isIbanChar(text.charAt(position + separatorLength))) {
+                break;
+            }
+            if (size > PREFIX_LENGTH) {
+                groupEndLengths[groupEnds] = size;
+                groupEndPositions[groupEnds++] = position;
+            }
+            if (secondGroupStart < 0) {
+                secondGroupStart = position + separatorLength;
+            }
+            position += separatorLength;
+        }
+
+        boolean atWordBoundary = position == length || !isWordChar(text.charAt(position));
+        if (!tooLong && atWordBoundary && handler.accept(candidate, size)) {
+            return position;
+        }
+        for (int i = groupEnds - 1; i >= 0; i--) {
+            if (handler.accept(candidate, groupEndLengths[i])) {
+                return groupEndPositions[i];
+            }
+        }
+        return secondGroupStart >= 0 ? secondGroupStart : position;
+    }
+
+    private static boolean isCandidateStart(CharSequence text, int position) {
+        return position + PREFIX_LENGTH < text.length()
+                && isUpperCaseLetter(text.charAt(position))
+                && isUpperCaseLetter(text.charAt(position + 1))
+                && isDigit(text.charAt(position + 2))
+                && isDigit(text.charAt(position + 3))
+                && (position == 0 || !isWordChar(text.charAt(position - 1)));
+    }
+
+    /**
+     * Length of the group separator at the given position, or 0 if there is none.
+     */
+    private static int separatorLength(CharSequence text, int position) {
+        char c = text.charAt(position);
+        if (c == '\r' && position + 1 < text.length() && text.charAt(position + 1) == '\n') {
+            return 2;
+        }
+        return switch (c) {
+            case ' ', '\t', '\n', '\r', '\u00A0', '-', '.' -> 1;
+            default -> 0;
+        };
+    }
+
+    private static boolean isIbanChar(char c) {
+        return isUpperCaseLetter(c) || isDigit(c);
+    }
+
+    private static boolean isUpperCaseLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordChar(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+}
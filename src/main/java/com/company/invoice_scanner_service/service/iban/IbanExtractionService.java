@@ -1,137 +1,232 @@
 package com.company.invoice_scanner_service.service.iban;
 
+import com.company.invoice_scanner_service.config.PdfExtractionProperties;
 import com.company.invoice_scanner_service.exception.PdfProcessingException;
+import com.company.invoice_scanner_service.service.pdf.PdfSource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.pdfbox.text.PDFTextStripperByArea;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.awt.Rectangle;
 import java.io.File;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.nio.CharBuffer;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
 
 @Slf4j
 @Service
 public class IbanExtractionService {
 
-    /**
-     * Updated IBAN regex that ensures all country IBAN formats, including Belgium and multi-line IBANs, are captured
-     * - Handles spaces, hyphens, dots, and special separators
-     */
-    private static final String IBAN_REGEX =
-            "\\b([A-Z]{2}\\d{2}[ \\t\\n\\r]?[A-Z0-9]{1,4}(?:[ \\t\\n\\r]?[A-Z0-9]{1,4}){0,7})\\b";
+    private final PdfExtractionProperties pdfExtractionProperties;
+    private final Executor pdfParseExecutor;
+    private final IbanValidator ibanValidator;
+    private final ExtractedIbanCache extractedIbanCache;
+
+    public IbanExtractionService(PdfExtractionProperties pdfExtractionProperties,
+                                 @Qualifier("pdfParseExecutor") Executor pdfParseExecutor,
+                                 IbanValidator ibanValidator,
+                                 ExtractedIbanCache extractedIbanCache) {
+        this.pdfExtractionProperties = pdfExtractionProperties;
+        this.pdfParseExecutor = pdfParseExecutor;
+        this.ibanValidator = ibanValidator;
+        this.extractedIbanCache = extractedIbanCache;
+    }
 
     /**
      * Extracts IBANs from a given PDF file, including bold, italic, and formatted IBANs.
      */
     public List<String> extractIbans(File pdfFile) throws IOException {
-        Set<String> ibanSet = new HashSet<>();
         log.info("Extracting IBANs from file: {}", pdfFile.getName());
 
-        try (PDDocument document = Loader.loadPDF(pdfFile)) {
-            if (document.isEncrypted()) {
-                throw new PdfProcessingException("PDF is encrypted and cannot be processed.");
-            }
+        return extractIbans(() -> Loader.loadPDF(pdfFile), () -> false);
+    }
 
-            // Extract text from all pages using PDFTextStripper
-            PDFTextStripper pdfTextStripper = new PDFTextStripper();
-            String extractedText = pdfTextStripper.getText(document);
-            ibanSet.addAll(extractIbansFromText(extractedText));
+    /**
+     * Extracts IBANs from a PDF that was streamed into memory (or a spill file), without going through a temp file.
+     * The source stays open and is closed by the caller.
+     */
+    public List<String> extractIbans(PdfSource pdfSource) throws IOException {
+        return extractIbans(pdfSource, () -> false);
+    }
 
-            // Extract text from each page
-            for (int i = 1; i <= document.getNumberOfPages(); i++) {
-                pdfTextStripper.setStartPage(i);
-                pdfTextStripper.setEndPage(i);
-                String pageText = pdfTextStripper.getText(document);
-                ibanSet.addAll(extractIbansFromText(pageText));
+    /**
+     * Like {@link #extractIbans(PdfSource)}, but stops with a {@link CancellationException} at the next page once
+     * {@code cancelled} returns true. A document that was parsed before, under any URL, is not parsed again.
+     */
+    public List<String> extractIbans(PdfSource pdfSource, BooleanSupplier cancelled) throws IOException {
+        List<String> cachedIbans = extractedIbanCache.get(pdfSource.getContentHash());
+        if (cachedIbans != null) {
+            log.info("Reusing IBANs extracted from identical document for source: {}", pdfSource.getName());
+            return new ArrayList<>(cachedIbans);
+        }
+        log.info("Extracting IBANs from source: {}", pdfSource.getName());
+
+        List<String> ibans = extractIbans(() -> Loader.loadPDF(pdfSource.openReader()), cancelled);
+        extractedIbanCache.put(pdfSource.getContentHash(), ibans);
+        return ibans;
+    }
 
-                // Extract IBANs from **bold, italic, or rotated text**
-                ibanSet.addAll(extractIbansFromAnnotations(document.getPage(i - 1)));
+    private List<String> extractIbans(DocumentLoader documentLoader, BooleanSupplier cancelled) {
+        try (PDDocument document = documentLoader.load()) {
+            if (document.isEncrypted()) {
+                throw new PdfProcessingException("PDF is encrypted and cannot be processed.");
             }
 
+            int pageCount = document.getNumberOfPages();
+            if (pageCount < pdfExtractionProperties.getParallelMinPages()) {
+                return new ArrayList<>(extractChunk(document, 1, pageCount, cancelled).ibans());
+            }
+            return new ArrayList<>(extractInParallel(documentLoader, document, pageCount, cancelled));
         } catch (IOException e) {
             throw new PdfProcessingException("Error while reading PDF file.", e);
         }
-
-        return new ArrayList<>(ibanSet);
     }
 
     /**
-     * Extract IBANs from regular extracted text (handling multiple spaces, hyphens, dots, etc.).
+     * Splits the document into page chunks that are extracted concurrently. PDFBox objects are not thread-safe,
+     * so every chunk but the first loads its own copy of the document, the first one reuses the loaded document
+     * on the calling thread. Page breaks between chunks are joined once all chunks are done.
+     * <p>
+     * The chunks are offered to the parse pool, which also runs the calling thread. A chunk no pool thread has taken
+     * yet is run by the calling thread once it gets to it, so a document never waits for a pool that is busy with
+     * other documents, and parsing never takes more threads than the pool has.
+     * <p>
+     * Returns or throws only once every chunk has finished, since the caller closes the source afterwards and a
+     * chunk still reading it would see a recycled buffer or a deleted spill file.
      */
-    private Set<String> extractIbansFromText(String text) {
-        Set<String> ibans = new HashSet<>();
-        // Normalize the text by replacing newlines and tabs with spaces
-        String normalizedText = text.replaceAll("[\\t\\n\\r]", " ");
-        Pattern pattern = Pattern.compile(IBAN_REGEX);
-        Matcher matcher = pattern.matcher(normalizedText);
-
-        while (matcher.find()) {
-            String iban = matcher.group(1).replaceAll(" ", ""); // Remove spaces for validation
-            if (isValidIban(iban)) {
-                log.debug("IBAN Found (normalized): {}", iban);
-                ibans.add(iban);
+    private Set<String> extractInParallel(DocumentLoader documentLoader, PDDocument document, int pageCount,
+                                           BooleanSupplier cancelled) throws IOException {
+        int pagesPerChunk = Math.max(1, pdfExtractionProperties.getPagesPerChunk());
+        log.debug("Extracting {} pages in chunks of {} pages", pageCount, pagesPerChunk);
+
+        List<FutureTask<ChunkResult>> chunks = new ArrayList<>();
+        AtomicBoolean abandoned = new AtomicBoolean();
+        BooleanSupplier chunkCancelled = () -> abandoned.get() || cancelled.getAsBoolean();
+        try {
+            for (int startPage = 1 + pagesPerChunk; startPage <= pageCount; startPage += pagesPerChunk) {
+                int chunkStart = startPage;
+                int chunkEnd = Math.min(startPage + pagesPerChunk - 1, pageCount);
+                FutureTask<ChunkResult> chunk = new FutureTask<>(() -> {
+                    if (abandoned.get()) {
+                        throw new CancellationException("Text extraction was cancelled.");
+                    }
+                    try (PDDocument chunkDocument = documentLoader.load()) {
+                        return extractChunk(chunkDocument, chunkStart, chunkEnd, chunkCancelled);
+                    }
+                });
+                chunks.add(chunk);
+                try {
+                    pdfParseExecutor.execute(chunk);
+                } catch (RejectedExecutionException e) {
+                    // The pool is shutting down, the chunk is run below
+                }
             }
+
+            ChunkResult firstChunk = extractChunk(document, 1, Math.min(pagesPerChunk, pageCount), cancelled);
+            Set<String> ibanSet = new HashSet<>(firstChunk.ibans());
+            String previousTrailingText = firstChunk.trailingText();
+            for (FutureTask<ChunkResult> chunk : chunks) {
+                // No-op if a pool thread has taken the chunk already
+                chunk.run();
+                ChunkResult result = await(chunk);
+                ibanSet.addAll(result.ibans());
+                extractIbansFromText(new IbanCandidateScanner(), previousTrailingText + result.leadingText(), ibanSet);
+                previousTrailingText = result.trailingText();
+            }
+            return ibanSet;
+        } finally {
+            // No-op for finished chunks, stops the remaining ones at their next page once a chunk failed. They are not
+            // cancelled through their futures, which would not wait for a chunk that is still loading the document.
+            // Chunks no pool thread has taken yet are run here, where they stop right away.
+            abandoned.set(true);
+            chunks.forEach(chunk -> {
+                chunk.run();
+                awaitQuietly(chunk);
+            });
         }
-        return ibans;
     }
 
     /**
-     * Extract IBANs from **bold, italic, or rotated text** using PDFTextStripperByArea.
+     * Lays out the given page range once, IBANs are searched per page and across the page breaks in between.
      */
-    private Set<String> extractIbansFromAnnotations(PDPage page) throws IOException {
-        Set<String> ibans = new HashSet<>();
-        PDFTextStripperByArea stripperByArea = new PDFTextStripperByArea();
-
-        // Define a large region to capture formatted text (across the entire page)
-        Rectangle allTextRegion = new Rectangle(0, 0, (int) page.getMediaBox().getWidth(), (int) page.getMediaBox().getHeight());
-        stripperByArea.addRegion("all", allTextRegion);
-        stripperByArea.extractRegions(page);
-
-        String areaText = stripperByArea.getTextForRegion("all");
-        if (areaText != null && !areaText.isEmpty()) {
-            // Extract IBANs from this region as well, ensuring no formatting is missed
-            log.debug("Extracting IBANs from region (bold, italic, rotated): {}", areaText);
-            ibans.addAll(extractIbansFromText(areaText));
-        }
+    private ChunkResult extractChunk(PDDocument document, int startPage, int endPage, BooleanSupplier cancelled)
+            throws IOException {
+        Set<String> ibanSet = new HashSet<>();
+        IbanCandidateScanner scanner = new IbanCandidateScanner();
+        PageTextCollector pageTextCollector =
+                new PageTextCollector(text -> extractIbansFromText(scanner, text, ibanSet), cancelled);
+        pageTextCollector.setStartPage(startPage);
+        pageTextCollector.setEndPage(endPage);
+        pageTextCollector.collect(document);
+        return new ChunkResult(ibanSet, pageTextCollector.getLeadingText(), pageTextCollector.getTrailingText());
+    }
 
-        return ibans;
+    private ChunkResult await(Future<ChunkResult> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PdfProcessingException("Interrupted while extracting IBANs.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new PdfProcessingException("Error while reading PDF file.", e.getCause());
+        }
     }
 
     /**
-     * Validates the IBAN using the MOD-97 algorithm.
+     * Waits until the chunk has finished, whatever its outcome. An interrupt is kept for the caller.
      */
-    private boolean isValidIban(String iban) {
-        if (iban == null || iban.length() < 4) {
-            return false;
+    private static void awaitQuietly(Future<ChunkResult> chunk) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                chunk.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException | CancellationException e) {
+                break;
+            }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        // Move the first four characters to the end
-        String rearranged = iban.substring(4) + iban.substring(0, 4);
-
-        // Convert letters to numbers (A=10, B=11, ..., Z=35)
-        StringBuilder numericIban = new StringBuilder();
-        for (char c : rearranged.toCharArray()) {
-            if (Character.isLetter(c)) {
-                numericIban.append(Character.getNumericValue(c));
-            } else {
-                numericIban.append(c);
+    /**
+     * Extract IBANs from regular extracted text (handling line breaks, multiple spaces, hyphens, dots, etc.).
+     */
+    private void extractIbansFromText(IbanCandidateScanner scanner, CharSequence text, Set<String> ibans) {
+        scanner.scan(text, (candidate, length) -> {
+            if (!ibanValidator.validate(CharBuffer.wrap(candidate, 0, length)).isValid()) {
+                return false;
             }
-        }
+            String iban = new String(candidate, 0, length);
+            log.debug("IBAN Found (normalized): {}", iban);
+            ibans.add(iban);
+            return true;
+        });
+    }
 
-        // Perform MOD-97 operation
-        try {
-            BigInteger bigInt = new BigInteger(numericIban.toString());
-            return bigInt.mod(BigInteger.valueOf(97)).intValue() == 1;
-        } catch (NumberFormatException e) {
-            return false;
-        }
+    @FunctionalInterface
+    private interface DocumentLoader {
+        PDDocument load() throws IOException;
+    }
+
+    private record ChunkResult(Set<String> ibans, String leadingText, String trailingText) {
     }
 }
\ No newline at end of file
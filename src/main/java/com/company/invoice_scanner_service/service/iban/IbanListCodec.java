@@ -0,0 +1,70 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary form of an IBAN list for the {@link SharedIbanStore}: a version byte, the number of IBANs as a
+ * varint, then every IBAN as a length byte followed by its ASCII characters, so a German IBAN takes 25 bytes.
+ */
+final class IbanListCodec {
+
+    private static final byte VERSION = 1;
+
+    private IbanListCodec() {
+    }
+
+    static byte[] encode(List<String> ibans) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + ibans.size() * 35);
+        out.write(VERSION);
+        int count = ibans.size();
+        while ((count & ~0x7F) != 0) {
+            out.write((count & 0x7F) | 0x80);
+            count >>>= 7;
+        }
+        out.write(count);
+        for (String iban : ibans) {
+            byte[] characters = iban.getBytes(StandardCharsets.US_ASCII);
+            if (characters.length > 0xFF) {
+                throw new IllegalArgumentException("IBAN is too long to encode: " + iban);
+            }
+            out.write(characters.length);
+            out.writeBytes(characters);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a value written by {@link #encode(List)}, or returns null for values of an unknown version or that are
+     * cut short, so those are treated as missing.
+     */
+    static List<String> decode(byte[] value) {
+        ByteBuffer in = ByteBuffer.wrap(value);
+        try {
+            if (in.get() != VERSION) {
+                return null;
+            }
+            int count = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = in.get();
+                count |= (next & 0x7F) << shift;
+                shift += 7;
+            } while ((next & 0x80) != 0 && shift < 32);
+
+            List<String> ibans = new ArrayList<>(Math.min(count, in.remaining()));
+            for (int i = 0; i < count; i++) {
+                byte[] characters = new byte[in.get() & 0xFF];
+                in.get(characters);
+                ibans.add(new String(characters, StandardCharsets.US_ASCII));
+            }
+            return in.hasRemaining() ? null : ibans;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.company.invoice_scanner_service.service.iban;
+
+/**
+ * Outcome of {@link IbanValidator#validate(CharSequence)}.
+ */
+public enum IbanValidationResult {
+    VALID,
+    /**
+     * The country code or check digits are not upper-case letters and digits.
+     */
+    INVALID_CHARACTERS,
+    UNSUPPORTED_COUNTRY,
+    /**
+     * The length does not match the country.
+     */
+    INVALID_LENGTH,
+    /**
+     * The BBAN does not match the country's structure of digits, letters and alphanumerics.
+     */
+    INVALID_BBAN_STRUCTURE,
+    INVALID_CHECKSUM;
+
+    public boolean isValid() {
+        return this == VALID;
+    }
+}
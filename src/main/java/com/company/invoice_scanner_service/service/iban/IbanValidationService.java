@@ -3,14 +3,12 @@ package com.company.invoice_scanner_service.service.iban;
 import com.company.invoice_scanner_service.config.IbanValidationProperties;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.iban4j.IbanFormatException;
-import org.iban4j.IbanUtil;
-import org.iban4j.UnsupportedCountryException;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
-import java.math.BigInteger;
 import java.util.List;
 import java.util.Collections;
+import java.util.Locale;
 import java.util.stream.Collectors;
 import java.util.regex.Pattern;
 
@@ -20,6 +18,12 @@ import java.util.regex.Pattern;
 public class IbanValidationService {
 
     private final IbanValidationProperties ibanValidationProperties;
+    private final IbanValidator ibanValidator;
+
+    /**
+     * Compiled {@link IbanValidationProperties#getIbanPattern()}, recompiled only when the property changes.
+     */
+    private volatile Pattern ibanPattern;
 
     /**
      *  **Validates a list of IBANs**
@@ -38,11 +42,11 @@ public class IbanValidationService {
 
     /**
      * **Checks if an IBAN is valid**
-     * - Uses `Iban4j` where possible.
-     * - Falls back to manual validation if the country is unsupported.
+     * - Applies the configured format and lengths first.
+     * - Then checks the country's BBAN structure and the checksum with {@link IbanValidator}.
      */
     private boolean isValidIban(String iban) {
-        String sanitizedIban = iban.replaceAll("\\s+", "").toUpperCase();
+        String sanitizedIban = StringUtils.trimAllWhitespace(iban).toUpperCase(Locale.ROOT);
         log.info("Validating IBAN: {}", sanitizedIban);
 
         if (!isValidBasicFormat(sanitizedIban)) {
@@ -50,68 +54,29 @@ public class IbanValidationService {
             return false;
         }
 
-        try {
-            // Try validating with Iban4j first
-            IbanUtil.validate(sanitizedIban);
-            return true;
-        } catch (UnsupportedCountryException e) {
-            /*
-                Several countries are not supported by Iban4j,
-                In those cases, UnsupportedCountryException is thrown.
-                Hence, we have to manually validate such IBANs.
-             */
-            log.warn("Country not supported by Iban4j, using manual validation: {}", sanitizedIban);
-            return isValidIbanChecksum(sanitizedIban);
-        } catch (IbanFormatException e) {
-            log.warn("Invalid IBAN format: {}", sanitizedIban);
+        IbanValidationResult result = ibanValidator.validate(sanitizedIban);
+        if (!result.isValid()) {
+            log.warn("Invalid IBAN ({}): {}", result, sanitizedIban);
             return false;
         }
+        return true;
     }
 
     /**
      *  **Basic format check for IBAN**
      */
     private boolean isValidBasicFormat(String iban) {
-        return Pattern.compile(ibanValidationProperties.getIbanPattern()).matcher(iban).matches() &&
+        return getIbanPattern().matcher(iban).matches() &&
                 ibanValidationProperties.getValidLengths().contains(iban.length());
     }
 
-    /**
-     *  **Manual IBAN Checksum Validation**
-     * - Converts IBAN to numeric representation and checks modulo 97.
-     */
-    private boolean isValidIbanChecksum(String iban) {
-        String rearrangedIban = iban.substring(4) + iban.substring(0, 4);
-        String numericIban = convertIbanToDigits(rearrangedIban);
-        return mod97Check(numericIban);
-    }
-
-    /**
-     *  **Converts IBAN letters to digits**
-     * - 'A' → 10, 'B' → 11, ..., 'Z' → 35.
-     *  Prepares the iban string for modulo 97 validation.
-     */
-    private String convertIbanToDigits(String iban) {
-        StringBuilder digits = new StringBuilder();
-        for (char c : iban.toCharArray()) {
-            if (Character.isDigit(c)) {
-                digits.append(c);
-            } else {
-                digits.append(c - 'A' + 10);
-            }
-        }
-        return digits.toString();
-    }
-
-    /**
-     *  **Performs modulo 97 check**
-     */
-    private boolean mod97Check(String numericIban) {
-        try {
-            return new BigInteger(numericIban).mod(BigInteger.valueOf(97)).intValue() == 1;
-        } catch (NumberFormatException e) {
-            log.error("Error in checksum calculation: {}", e.getMessage());
-            return false;
+    private Pattern getIbanPattern() {
+        String regex = ibanValidationProperties.getIbanPattern();
+        Pattern pattern = ibanPattern;
+        if (pattern == null || !pattern.pattern().equals(regex)) {
+            pattern = Pattern.compile(regex);
+            ibanPattern = pattern;
         }
+        return pattern;
     }
 }
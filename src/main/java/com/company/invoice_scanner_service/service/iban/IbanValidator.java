@@ -0,0 +1,155 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import org.iban4j.CountryCode;
+import org.iban4j.bban.BbanStructure;
+import org.iban4j.bban.BbanStructureEntry;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Checks the structure and MOD-97 checksum of normalized IBANs (no separators, upper case).
+ * <p>
+ * Every country maps to the character class of each BBAN position, taken from iban4j and completed with the
+ * registry countries iban4j does not know. The checksum is computed incrementally over the characters with
+ * primitive ints, and the outcome is returned as a result code, so validation neither allocates nor throws.
+ */
+@Component
+public class IbanValidator {
+
+    private static final byte DIGIT = 'n';
+    private static final byte LETTER = 'a';
+    private static final byte ALPHANUMERIC = 'c';
+
+    /**
+     * Countries of the IBAN registry missing in iban4j, as BBAN entries of length and character class.
+     */
+    private static final Map<String, String> ADDITIONAL_BBAN_STRUCTURES = Map.of(
+            "DJ", "5n5n11n2n",
+            "FK", "2a12n",
+            "HN", "4a20n",
+            "LY", "3n3n15n",
+            "MN", "4n12n",
+            "NI", "4a20n",
+            "SD", "2n12n",
+            "SO", "4n3n12n",
+            "YE", "4a4n18c");
+
+    /**
+     * Character class per BBAN position, indexed by country code, null for unsupported countries.
+     */
+    private static final byte[][] BBAN_STRUCTURES = createBbanStructures();
+
+    public IbanValidationResult validate(CharSequence iban) {
+        int length = iban.length();
+        if (length < 5 || length > IbanCandidateScanner.MAX_IBAN_LENGTH) {
+            return IbanValidationResult.INVALID_LENGTH;
+        }
+        char first = iban.charAt(0);
+        char second = iban.charAt(1);
+        if (!isLetter(first) || !isLetter(second) || !isDigit(iban.charAt(2)) || !isDigit(iban.charAt(3))) {
+            return IbanValidationResult.INVALID_CHARACTERS;
+        }
+
+        byte[] bbanStructure = BBAN_STRUCTURES[countryIndex(first, second)];
+        if (bbanStructure == null) {
+            return IbanValidationResult.UNSUPPORTED_COUNTRY;
+        }
+        if (length != bbanStructure.length + 4) {
+            return IbanValidationResult.INVALID_LENGTH;
+        }
+
+        // MOD-97 of the BBAN followed by the country code and check digits
+        int remainder = 0;
+        for (int i = 4; i < length; i++) {
+            char c = iban.charAt(i);
+            if (!matches(bbanStructure[i - 4], c)) {
+                return IbanValidationResult.INVALID_BBAN_STRUCTURE;
+            }
+            remainder = mod97(remainder, c);
+        }
+        for (int i = 0; i < 4; i++) {
+            remainder = mod97(remainder, iban.charAt(i));
+        }
+
+        // Check digits are 02 to 98, 00, 01 and 99 could only match by accident
+        int checkDigits = (iban.charAt(2) - '0') * 10 + (iban.charAt(3) - '0');
+        if (checkDigits < 2 || checkDigits > 98 || remainder != 1) {
+            return IbanValidationResult.INVALID_CHECKSUM;
+        }
+        return IbanValidationResult.VALID;
+    }
+
+    private static int mod97(int remainder, char c) {
+        if (isDigit(c)) {
+            return (remainder * 10 + (c - '0')) % 97;
+        }
+        // Letters count as two digits, A = 10 ... Z = 35
+        return (remainder * 100 + (c - 'A' + 10)) % 97;
+    }
+
+    private static boolean matches(byte characterClass, char c) {
+        return switch (characterClass) {
+            case DIGIT -> isDigit(c);
+            case LETTER -> isLetter(c);
+            default -> isDigit(c) || isLetter(c);
+        };
+    }
+
+    private static boolean isLetter(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int countryIndex(char first, char second) {
+        return (first - 'A') * 26 + (second - 'A');
+    }
+
+    private static byte[][] createBbanStructures() {
+        byte[][] structures = new byte[26 * 26][];
+        for (CountryCode countryCode : BbanStructure.supportedCountries()) {
+            BbanStructure bbanStructure = BbanStructure.forCountry(countryCode);
+            byte[] structure = new byte[bbanStructure.getBbanLength()];
+            int position = 0;
+            for (BbanStructureEntry entry : bbanStructure.getEntries()) {
+                byte characterClass = switch (entry.getCharacterType()) {
+                    case n -> DIGIT;
+                    case a -> LETTER;
+                    case c -> ALPHANUMERIC;
+                };
+                for (int i = 0; i < entry.getLength(); i++) {
+                    structure[position++] = characterClass;
+                }
+            }
+            String code = countryCode.name();
+            structures[countryIndex(code.charAt(0), code.charAt(1))] = structure;
+        }
+        ADDITIONAL_BBAN_STRUCTURES.forEach((code, entries) ->
+                structures[countryIndex(code.charAt(0), code.charAt(1))] = parseBbanStructure(entries));
+        return structures;
+    }
+
+    /**
+     * Parses entries in registry notation, e.g. {@code 4a20n} for four letters followed by twenty digits.
+     */
+    private static byte[] parseBbanStructure(String entries) {
+        byte[] structure = new byte[IbanCandidateScanner.MAX_IBAN_LENGTH];
+        int position = 0;
+        int entryLength = 0;
+        for (char c : entries.toCharArray()) {
+            if (isDigit(c)) {
+                entryLength = entryLength * 10 + (c - '0');
+            } else {
+                for (int i = 0; i < entryLength; i++) {
+                    structure[position++] = (byte) c;
+                }
+                entryLength = 0;
+            }
+        }
+        return Arrays.copyOf(structure, position);
+    }
+}
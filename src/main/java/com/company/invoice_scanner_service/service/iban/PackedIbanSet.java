@@ -0,0 +1,146 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import java.util.Collection;
+
+/**
+ * Immutable hash set of IBANs, each packed into four longs with six bits per character, stored in one flat
+ * open-addressing table. Needs no object per entry and about half the memory of a {@code HashSet<String>}, and is
+ * safe to read from any number of threads. Strings that are not normalized IBANs are never contained.
+ */
+final class PackedIbanSet {
+
+    private static final int WORDS = 4;
+    private static final int CHARS_PER_WORD = 10;
+    private static final int BITS_PER_CHAR = 6;
+    private static final long INVALID = -1;
+    private static final float MAX_LOAD_FACTOR = 0.75f;
+
+    static final PackedIbanSet EMPTY = new PackedIbanSet(new long[WORDS * 2], 0);
+
+    /**
+     * {@link #WORDS} longs per slot, an empty slot is all zero. The first word of a key is never zero.
+     */
+    private final long[] slots;
+    private final int mask;
+    private final int size;
+
+    private PackedIbanSet(long[] slots, int size) {
+        this.slots = slots;
+        this.mask = slots.length / WORDS - 1;
+        this.size = size;
+    }
+
+    /**
+     * Creates a set of the given IBANs.
+     */
+    static PackedIbanSet of(Collection<String> ibans) {
+        return EMPTY.with(ibans);
+    }
+
+    /**
+     * Returns a new set with the IBANs of this set and the given ones.
+     */
+    PackedIbanSet with(Collection<String> ibans) {
+        int minCapacity = (int) ((size + ibans.size()) / MAX_LOAD_FACTOR) + 1;
+        int capacity = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        long[] newSlots = new long[capacity * WORDS];
+        int newSize = 0;
+        for (int slot = 0; slot < slots.length; slot += WORDS) {
+            if (slots[slot] != 0
+                    && insert(newSlots, slots[slot], slots[slot + 1], slots[slot + 2], slots[slot + 3])) {
+                newSize++;
+            }
+        }
+        for (String iban : ibans) {
+            long word0 = pack(iban, 0);
+            long word1 = pack(iban, 1);
+            long word2 = pack(iban, 2);
+            long word3 = pack(iban, 3);
+            if (isValid(word0, word1, word2, word3) && insert(newSlots, word0, word1, word2, word3)) {
+                newSize++;
+            }
+        }
+        return new PackedIbanSet(newSlots, newSize);
+    }
+
+    boolean contains(CharSequence iban) {
+        long word0 = pack(iban, 0);
+        long word1 = pack(iban, 1);
+        long word2 = pack(iban, 2);
+        long word3 = pack(iban, 3);
+        if (!isValid(word0, word1, word2, word3)) {
+            return false;
+        }
+        for (int index = hash(word0, word1, word2, word3) & mask; ; index = (index + 1) & mask) {
+            int slot = index * WORDS;
+            if (slots[slot] == 0) {
+                return false;
+            }
+            if (slots[slot] == word0 && slots[slot + 1] == word1 && slots[slot + 2] == word2 && slots[slot + 3] == word3) {
+                return true;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds the key unless it is present already, returns whether it was added.
+     */
+    private static boolean insert(long[] slots, long word0, long word1, long word2, long word3) {
+        int mask = slots.length / WORDS - 1;
+        for (int index = hash(word0, word1, word2, word3) & mask; ; index = (index + 1) & mask) {
+            int slot = index * WORDS;
+            if (slots[slot] == 0) {
+                slots[slot] = word0;
+                slots[slot + 1] = word1;
+                slots[slot + 2] = word2;
+                slots[slot + 3] = word3;
+                return true;
+            }
+            if (slots[slot] == word0 && slots[slot + 1] == word1 && slots[slot + 2] == word2 && slots[slot + 3] == word3) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean isValid(long word0, long word1, long word2, long word3) {
+        return word0 != INVALID && word1 != INVALID && word2 != INVALID && word3 != INVALID;
+    }
+
+    /**
+     * Packs the given word of the IBAN, characters map to 1-36 so that shorter IBANs never equal longer ones.
+     * Returns {@link #INVALID} if the string is not a normalized IBAN.
+     */
+    private static long pack(CharSequence iban, int word) {
+        int length = iban.length();
+        if (length < 5 || length > IbanCandidateScanner.MAX_IBAN_LENGTH) {
+            return INVALID;
+        }
+        long packed = 0;
+        int end = Math.min(length, (word + 1) * CHARS_PER_WORD);
+        for (int i = word * CHARS_PER_WORD; i < end; i++) {
+            char c = iban.charAt(i);
+            int value;
+            if (c >= '0' && c <= '9') {
+                value = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                value = c - 'A' + 11;
+            } else {
+                return INVALID;
+            }
+            packed = (packed << BITS_PER_CHAR) | value;
+        }
+        return packed;
+    }
+
+    private static int hash(long word0, long word1, long word2, long word3) {
+        long hash = word0 * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ word1) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ word2) * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ word3) * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
@@ -0,0 +1,109 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Lays out every page exactly once and hands the text to a consumer as soon as a page is done.
+ * Besides the page text itself the consumer also receives the text around every page break, so IBANs that
+ * continue on the next page are found without extracting the whole document as one string.
+ * The text passed to the consumer is reused afterward and must not be kept.
+ * Collecting stops with a {@link CancellationException} before the next page once the cancellation check is true.
+ */
+class PageTextCollector extends PDFTextStripper {
+
+    /**
+     * Characters taken from either side of a page break, enough to hold the longest formatted IBAN.
+     */
+    static final int PAGE_BREAK_WINDOW = 64;
+
+    private final StringBuilder pageText = new StringBuilder(8 * 1024);
+    private final StringBuilder pageBreakText = new StringBuilder(2 * PAGE_BREAK_WINDOW);
+    private final Consumer<CharSequence> textConsumer;
+    private final BooleanSupplier cancelled;
+    private boolean afterFirstPage;
+    private String leadingText = "";
+
+    PageTextCollector(Consumer<CharSequence> textConsumer, BooleanSupplier cancelled) {
+        this.textConsumer = textConsumer;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Collects the text of the configured page range of the document.
+     */
+    void collect(PDDocument document) throws IOException {
+        afterFirstPage = false;
+        leadingText = "";
+        pageBreakText.setLength(0);
+        writeText(document, new PageTextWriter());
+    }
+
+    /**
+     * Head of the first collected page, used to join the page break in front of the collected range.
+     */
+    String getLeadingText() {
+        return leadingText;
+    }
+
+    /**
+     * Tail of the last collected page, used to join the page break after the collected range.
+     */
+    String getTrailingText() {
+        return pageBreakText.toString();
+    }
+
+    @Override
+    protected void startPage(PDPage page) throws IOException {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Text extraction was cancelled.");
+        }
+        pageText.setLength(0);
+        super.startPage(page);
+    }
+
+    @Override
+    protected void endPage(PDPage page) throws IOException {
+        super.endPage(page);
+        if (afterFirstPage) {
+            // pageBreakText holds the tail of the previous page, complete it with the head of this one
+            pageBreakText.append(pageText, 0, Math.min(PAGE_BREAK_WINDOW, pageText.length()));
+            textConsumer.accept(pageBreakText);
+        } else {
+            leadingText = pageText.substring(0, Math.min(PAGE_BREAK_WINDOW, pageText.length()));
+        }
+        textConsumer.accept(pageText);
+
+        pageBreakText.setLength(0);
+        pageBreakText.append(pageText, Math.max(0, pageText.length() - PAGE_BREAK_WINDOW), pageText.length());
+        afterFirstPage = true;
+    }
+
+    private final class PageTextWriter extends Writer {
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            pageText.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String text, int offset, int length) {
+            pageText.append(text, offset, offset + length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
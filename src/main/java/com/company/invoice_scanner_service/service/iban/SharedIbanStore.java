@@ -0,0 +1,21 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Second level of the {@link ExtractedIbanCache}, shared by all replicas, see
+ * {@code pdf.extraction.cache.shared-store}. Values are the encoded IBAN lists, keyed by document hash.
+ */
+public interface SharedIbanStore {
+
+    /**
+     * The value stored for the document hash, or null if there is none.
+     */
+    byte[] get(String contentHash);
+
+    /**
+     * Stores the values of several documents in one round trip.
+     */
+    void putAll(Map<String, byte[]> values, Duration ttl);
+}
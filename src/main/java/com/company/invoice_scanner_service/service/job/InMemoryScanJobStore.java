@@ -0,0 +1,73 @@
+package com.company.invoice_scanner_service.service.job;
+
+import com.company.invoice_scanner_service.service.ScanUrlStatus;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps jobs on the heap, for tests and single-instance setups without the job tables. Jobs are lost on restart.
+ */
+public class InMemoryScanJobStore implements ScanJobStore {
+
+    private final Map<UUID, ScanJob> jobs = new ConcurrentHashMap<>();
+
+    @Override
+    public void create(ScanJob job) {
+        jobs.put(job.id(), new ScanJob(job.id(), job.createdAt(), job.expiresAt(), List.copyOf(job.urls())));
+    }
+
+    @Override
+    public void updateUrls(List<ScanJobUrlUpdate> updates) {
+        for (ScanJobUrlUpdate update : updates) {
+            jobs.computeIfPresent(update.jobId(), (id, job) -> {
+                List<ScanJobUrl> urls = job.urls().stream()
+                        .map(url -> url.position() == update.url().position() ? update.url() : url)
+                        .toList();
+                return new ScanJob(job.id(), job.createdAt(), job.expiresAt(), urls);
+            });
+        }
+    }
+
+    @Override
+    public Optional<ScanJob> find(UUID jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    @Override
+    public int failPendingUrls(Instant createdBefore, String errorKey, String errorMessage) {
+        AtomicInteger failedUrls = new AtomicInteger();
+        jobs.replaceAll((id, job) -> {
+            if (!job.createdAt().isBefore(createdBefore)) {
+                return job;
+            }
+            List<ScanJobUrl> urls = job.urls().stream()
+                    .map(url -> {
+                        if (url.status() != ScanUrlStatus.PENDING) {
+                            return url;
+                        }
+                        failedUrls.incrementAndGet();
+                        return url.failed(errorKey, errorMessage);
+                    })
+                    .toList();
+            return new ScanJob(job.id(), job.createdAt(), job.expiresAt(), urls);
+        });
+        return failedUrls.get();
+    }
+
+    @Override
+    public int deleteExpired(Instant now) {
+        int deleted = 0;
+        for (ScanJob job : jobs.values()) {
+            if (job.expiresAt().isBefore(now) && jobs.remove(job.id(), job)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
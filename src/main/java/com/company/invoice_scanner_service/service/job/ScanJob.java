@@ -0,0 +1,22 @@
+package com.company.invoice_scanner_service.service.job;
+
+import com.company.invoice_scanner_service.service.ScanUrlStatus;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A batch of URLs scanned in the background, the URLs are ordered by position.
+ */
+public record ScanJob(UUID id, Instant createdAt, Instant expiresAt, List<ScanJobUrl> urls) {
+
+    /**
+     * The job is running until every URL has a result.
+     */
+    public ScanJobStatus status() {
+        return urls.stream().anyMatch(url -> url.status() == ScanUrlStatus.PENDING)
+                ? ScanJobStatus.RUNNING
+                : ScanJobStatus.COMPLETED;
+    }
+}
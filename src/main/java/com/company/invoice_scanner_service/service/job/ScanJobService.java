@@ -0,0 +1,145 @@
+package com.company.invoice_scanner_service.service.job;
+
+import com.company.invoice_scanner_service.config.ScanJobProperties;
+import com.company.invoice_scanner_service.exception.InvalidUrlException;
+import com.company.invoice_scanner_service.exception.ScanJobNotFoundException;
+import com.company.invoice_scanner_service.service.ScanOutcome;
+import com.company.invoice_scanner_service.service.TaskOrchestratorService;
+import com.company.invoice_scanner_service.service.UrlScanResult;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
+
+/**
+ * Scans batches of URLs in the background. The results of finished URLs are buffered and written to the
+ * {@link ScanJobStore} in batches, so a poll may lag behind the pipeline by up to {@code scan.jobs.flush-interval}.
+ */
+@Slf4j
+@Service
+public class ScanJobService {
+
+    static final String ABANDONED_ERROR_KEY = "SCAN_INTERRUPTED";
+
+    private final TaskOrchestratorService taskOrchestratorService;
+    private final ScanJobStore scanJobStore;
+    private final ScanJobProperties scanJobProperties;
+    private final Executor scanIoExecutor;
+
+    private final Queue<ScanJobUrlUpdate> pendingUpdates = new ConcurrentLinkedQueue<>();
+
+    public ScanJobService(TaskOrchestratorService taskOrchestratorService, ScanJobStore scanJobStore,
+                          ScanJobProperties scanJobProperties, @Qualifier("scanIoExecutor") Executor scanIoExecutor) {
+        this.taskOrchestratorService = taskOrchestratorService;
+        this.scanJobStore = scanJobStore;
+        this.scanJobProperties = scanJobProperties;
+        this.scanIoExecutor = scanIoExecutor;
+    }
+
+    /**
+     * Stores a new job and starts scanning its URLs in the background. A job without URLs or with a missing or blank
+     * URL is rejected with an {@link InvalidUrlException} before anything is stored.
+     */
+    public ScanJob submit(List<String> urls) {
+        if (CollectionUtils.isEmpty(urls)) {
+            throw new InvalidUrlException("At least one URL is required.");
+        }
+        for (int position = 0; position < urls.size(); position++) {
+            if (!StringUtils.hasText(urls.get(position))) {
+                throw new InvalidUrlException("Missing URL at position " + position + ".");
+            }
+        }
+        Instant now = Instant.now();
+        List<ScanJobUrl> jobUrls = IntStream.range(0, urls.size())
+                .mapToObj(position -> ScanJobUrl.pending(position, urls.get(position)))
+                .toList();
+        ScanJob job = new ScanJob(UUID.randomUUID(), now, now.plus(scanJobProperties.getRetention()), jobUrls);
+        scanJobStore.create(job);
+        log.info("Created scan job {} with {} URLs", job.id(), urls.size());
+
+        // Handing a large job to the pipeline takes a while, which must not delay the response
+        scanIoExecutor.execute(() -> job.urls().forEach(url -> start(job.id(), url)));
+        return job;
+    }
+
+    public ScanJob getJob(UUID jobId) {
+        return scanJobStore.find(jobId)
+                .orElseThrow(() -> new ScanJobNotFoundException("Scan job not found: " + jobId));
+    }
+
+    private void start(UUID jobId, ScanJobUrl url) {
+        CompletableFuture<ScanOutcome> scan;
+        try {
+            scan = taskOrchestratorService.furtherProcessPdfForIbans(url.url());
+        } catch (RuntimeException e) {
+            scan = CompletableFuture.completedFuture(ScanOutcome.failed(e));
+        }
+        scan.exceptionally(ScanOutcome::failed).thenAccept(outcome -> pendingUpdates.add(
+                new ScanJobUrlUpdate(jobId, url.completed(new UrlScanResult(url.url(), outcome)))));
+    }
+
+    /**
+     * Writes the buffered URL results. A failed batch is put back and retried with the next flush.
+     */
+    @Scheduled(initialDelayString = "${scan.jobs.flush-interval:500ms}", fixedDelayString = "${scan.jobs.flush-interval:500ms}")
+    @PreDestroy
+    public synchronized void flushUpdates() {
+        List<ScanJobUrlUpdate> batch = new ArrayList<>();
+        ScanJobUrlUpdate update;
+        while ((update = pendingUpdates.poll()) != null) {
+            batch.add(update);
+            if (batch.size() == scanJobProperties.getFlushBatchSize()) {
+                if (!write(batch)) {
+                    return;
+                }
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private boolean write(List<ScanJobUrlUpdate> batch) {
+        try {
+            scanJobStore.updateUrls(batch);
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Writing {} scan job results failed, retrying with the next flush", batch.size(), e);
+            pendingUpdates.addAll(batch);
+            return false;
+        }
+    }
+
+    /**
+     * Deletes expired jobs, and fails the URLs that are still pending after {@code scan.jobs.abandoned-after}. Their
+     * scan was lost with the instance that ran it, e.g. on a restart, so they would stay pending otherwise.
+     */
+    @Scheduled(initialDelayString = "${scan.jobs.purge-interval:10m}", fixedDelayString = "${scan.jobs.purge-interval:10m}")
+    public void purgeExpiredJobs() {
+        Instant now = Instant.now();
+        int abandoned = scanJobStore.failPendingUrls(now.minus(scanJobProperties.getAbandonedAfter()),
+                ABANDONED_ERROR_KEY, "The scan was interrupted, e.g. by a restart of the service.");
+        if (abandoned > 0) {
+            log.warn("Failed {} scan job URLs that were still pending after {}", abandoned,
+                    scanJobProperties.getAbandonedAfter());
+        }
+        int deleted = scanJobStore.deleteExpired(now);
+        if (deleted > 0) {
+            log.info("Purged {} expired scan jobs", deleted);
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.company.invoice_scanner_service.service.job;
+
+public enum ScanJobStatus {
+    RUNNING,
+    COMPLETED
+}
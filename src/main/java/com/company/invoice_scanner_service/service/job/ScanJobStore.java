@@ -0,0 +1,31 @@
+package com.company.invoice_scanner_service.service.job;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Persists scan jobs, see {@code scan.jobs.store}.
+ */
+public interface ScanJobStore {
+
+    void create(ScanJob job);
+
+    /**
+     * Writes the results of URLs, possibly of several jobs, in one batch.
+     */
+    void updateUrls(List<ScanJobUrlUpdate> updates);
+
+    Optional<ScanJob> find(UUID jobId);
+
+    /**
+     * Fails the URLs that are still pending in jobs created before the given time and returns how many were failed.
+     */
+    int failPendingUrls(Instant createdBefore, String errorKey, String errorMessage);
+
+    /**
+     * Deletes the jobs that expired before the given time and returns how many were deleted.
+     */
+    int deleteExpired(Instant now);
+}
@@ -0,0 +1,44 @@
+package com.company.invoice_scanner_service.service.job;
+
+import com.company.invoice_scanner_service.service.ScanUrlStatus;
+import com.company.invoice_scanner_service.service.UrlScanResult;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * State of one URL of a scan job. The IBAN lists are empty and the error fields null unless they apply.
+ */
+public record ScanJobUrl(
+        int position,
+        String url,
+        ScanUrlStatus status,
+        List<String> validIbans,
+        List<String> blacklistedIbans,
+        String errorKey,
+        String errorMessage,
+        Instant completedAt
+) {
+    public static ScanJobUrl pending(int position, String url) {
+        return new ScanJobUrl(position, url, ScanUrlStatus.PENDING, List.of(), List.of(), null, null, null);
+    }
+
+    public ScanJobUrl succeeded(List<String> validIbans) {
+        return new ScanJobUrl(position, url, ScanUrlStatus.SUCCEEDED, validIbans, List.of(), null, null, Instant.now());
+    }
+
+    public ScanJobUrl blacklisted(List<String> validIbans, List<String> blacklistedIbans) {
+        return new ScanJobUrl(position, url, ScanUrlStatus.BLACKLISTED, validIbans, blacklistedIbans, null, null,
+                Instant.now());
+    }
+
+    public ScanJobUrl completed(UrlScanResult result) {
+        return new ScanJobUrl(position, url, result.status(), result.validIbans(), result.blacklistedIbans(),
+                result.errorKey(), result.errorMessage(), Instant.now());
+    }
+
+    public ScanJobUrl failed(String errorKey, String errorMessage) {
+        return new ScanJobUrl(position, url, ScanUrlStatus.FAILED, List.of(), List.of(), errorKey, errorMessage,
+                Instant.now());
+    }
+}
@@ -0,0 +1,6 @@
+package com.company.invoice_scanner_service.service.job;
+
+import java.util.UUID;
+
+public record ScanJobUrlUpdate(UUID jobId, ScanJobUrl url) {
+}
@@ -0,0 +1,295 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Retries and hedges the exchanges of downloads, which are idempotent GETs.
+ * <p>
+ * An exchange that fails with an {@link IOException} or answers 429, 502, 503 or 504 is retried up to
+ * {@code pdf.download.retry.max-attempts} times, after a random delay below an exponentially growing bound.
+ * With hedging enabled, an exchange still running after the 95th percentile of recent download times is raced by a
+ * second one, the first usable response is taken and the other exchange cancelled.
+ * <p>
+ * Every retry and hedge takes a token from a budget that every download refills by
+ * {@code pdf.download.extra-requests.ratio}, so a failing or slow host gets at most that share of extra requests.
+ * Publishes {@code pdf.download.duration} with its 95th percentile, {@code pdf.download.retries} and
+ * {@code pdf.download.hedges} by result, and {@code pdf.download.extra-requests.budget}.
+ */
+@Component
+public class DownloadRetryPolicy {
+
+    private static final ScheduledThreadPoolExecutor SCHEDULER = newScheduler();
+
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(HttpStatus.TOO_MANY_REQUESTS.value(),
+            HttpStatus.BAD_GATEWAY.value(), HttpStatus.SERVICE_UNAVAILABLE.value(), HttpStatus.GATEWAY_TIMEOUT.value());
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final PdfDownloadProperties.Hedging hedging;
+    private final double budgetRatio;
+    private final double budgetBurst;
+
+    private final Timer downloadDuration;
+    private final Counter retries;
+    private final Counter retriesOverBudget;
+    private final Counter hedges;
+    private final Counter hedgesWon;
+    private final Counter hedgesOverBudget;
+
+    // Guarded by this
+    private double budget;
+
+    public DownloadRetryPolicy(PdfDownloadProperties pdfDownloadProperties, MeterRegistry meterRegistry) {
+        PdfDownloadProperties.Retry retry = pdfDownloadProperties.getRetry();
+        this.maxAttempts = Math.max(1, retry.getMaxAttempts());
+        this.initialBackoffMillis = Math.max(1, retry.getInitialBackoff().toMillis());
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, retry.getMaxBackoff().toMillis());
+        this.hedging = pdfDownloadProperties.getHedging();
+        this.budgetRatio = Math.max(0, pdfDownloadProperties.getExtraRequests().getRatio());
+        this.budgetBurst = Math.max(0, pdfDownloadProperties.getExtraRequests().getBurst());
+        this.budget = budgetBurst;
+
+        this.downloadDuration = Timer.builder("pdf.download.duration").publishPercentiles(0.95)
+                .description("Time of exchanges answered with 200, including the body").register(meterRegistry);
+        this.retries = counter("pdf.download.retries", "sent", meterRegistry);
+        this.retriesOverBudget = counter("pdf.download.retries", "over-budget", meterRegistry);
+        this.hedges = counter("pdf.download.hedges", "sent", meterRegistry);
+        this.hedgesWon = counter("pdf.download.hedges", "won", meterRegistry);
+        this.hedgesOverBudget = counter("pdf.download.hedges", "over-budget", meterRegistry);
+        Gauge.builder("pdf.download.extra-requests.budget", this, DownloadRetryPolicy::budget)
+                .description("Retries and hedges that may currently be sent").register(meterRegistry);
+    }
+
+    private static Counter counter(String name, String result, MeterRegistry meterRegistry) {
+        return Counter.builder(name).tag("result", result).register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code exchange} until it succeeds, answers with a status that is not retried, or the attempts or the
+     * budget are used up, and completes with the last outcome. Responses that are not returned have their body
+     * closed. Cancelling the returned future cancels the running exchanges and pending retries.
+     */
+    public CompletableFuture<HttpResponse<PdfSource>> execute(Supplier<CompletableFuture<HttpResponse<PdfSource>>> exchange) {
+        deposit();
+        CompletableFuture<HttpResponse<PdfSource>> result = new CompletableFuture<>();
+        attempt(exchange, 1, result);
+        return result;
+    }
+
+    private void attempt(Supplier<CompletableFuture<HttpResponse<PdfSource>>> exchange, int attempt,
+                         CompletableFuture<HttpResponse<PdfSource>> result) {
+        if (result.isDone()) {
+            return;
+        }
+        CompletableFuture<HttpResponse<PdfSource>> current = new HedgedExchange(exchange).start(hedgeDelayNanos());
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) {
+                current.cancel(true);
+            }
+        });
+        current.whenComplete((response, error) -> {
+            if (result.isDone()) {
+                discard(response);
+                return;
+            }
+            if (attempt < maxAttempts && isRetryable(response, error)) {
+                if (tryWithdraw()) {
+                    retries.increment();
+                    discard(response);
+                    ScheduledFuture<?> retry = SCHEDULER.schedule(() -> attempt(exchange, attempt + 1, result),
+                            backoffMillis(attempt), TimeUnit.MILLISECONDS);
+                    result.whenComplete((value, failure) -> retry.cancel(false));
+                    return;
+                }
+                retriesOverBudget.increment();
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (!result.complete(response)) {
+                discard(response);
+            }
+        });
+    }
+
+    /**
+     * Random delay below {@code initial-backoff * 2^(attempt - 1)}, capped at {@code max-backoff}.
+     */
+    long backoffMillis(int attempt) {
+        long bound = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * The 95th percentile of recent download times, not below {@code min-delay}, or -1 to not hedge.
+     */
+    private long hedgeDelayNanos() {
+        if (!hedging.isEnabled() || downloadDuration.count() < hedging.getMinSamples()) {
+            return -1;
+        }
+        double p95 = 0;
+        for (ValueAtPercentile percentile : downloadDuration.takeSnapshot().percentileValues()) {
+            p95 = percentile.value(TimeUnit.NANOSECONDS);
+        }
+        return Math.max(hedging.getMinDelay().toNanos(), Double.isNaN(p95) ? 0 : (long) p95);
+    }
+
+    private static boolean isRetryable(HttpResponse<PdfSource> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return cause instanceof IOException;
+        }
+        return RETRYABLE_STATUSES.contains(response.statusCode());
+    }
+
+    private static void discard(HttpResponse<PdfSource> response) {
+        if (response != null && response.body() != null) {
+            response.body().close();
+        }
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(budgetBurst, budget + budgetRatio);
+    }
+
+    private synchronized boolean tryWithdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    synchronized double budget() {
+        return budget;
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("pdf-download-retry").daemon().factory());
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * One attempt of a download, raced by a second exchange if it takes longer than the hedging delay. Completes
+     * with the first usable response, or with the outcome of the last exchange if none is usable.
+     */
+    private final class HedgedExchange {
+
+        private final Supplier<CompletableFuture<HttpResponse<PdfSource>>> exchange;
+        private final CompletableFuture<HttpResponse<PdfSource>> result = new CompletableFuture<>();
+
+        // Guarded by this
+        private final List<CompletableFuture<HttpResponse<PdfSource>>> running = new ArrayList<>(2);
+        private int unfinished = 1;
+        private boolean hedgePending;
+
+        private HedgedExchange(Supplier<CompletableFuture<HttpResponse<PdfSource>>> exchange) {
+            this.exchange = exchange;
+        }
+
+        private CompletableFuture<HttpResponse<PdfSource>> start(long hedgeDelayNanos) {
+            if (hedgeDelayNanos >= 0) {
+                hedgePending = true;
+                ScheduledFuture<?> hedge = SCHEDULER.schedule(this::hedge, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                result.whenComplete((response, error) -> hedge.cancel(false));
+            }
+            result.whenComplete((response, error) -> cancelRunning());
+            send(false);
+            return result;
+        }
+
+        private void hedge() {
+            synchronized (this) {
+                if (!hedgePending) {
+                    return;
+                }
+                hedgePending = false;
+                if (!tryWithdraw()) {
+                    hedgesOverBudget.increment();
+                    return;
+                }
+                unfinished++;
+            }
+            hedges.increment();
+            send(true);
+        }
+
+        private void send(boolean isHedge) {
+            long started = System.nanoTime();
+            CompletableFuture<HttpResponse<PdfSource>> attempt;
+            try {
+                attempt = exchange.get();
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            synchronized (this) {
+                running.add(attempt);
+            }
+            if (result.isDone()) {
+                attempt.cancel(true);
+            }
+            attempt.whenComplete((response, error) -> finished(response, error, isHedge, started));
+        }
+
+        private void finished(HttpResponse<PdfSource> response, Throwable error, boolean isHedge, long started) {
+            boolean usable = error == null && !isRetryable(response, null);
+            boolean settled;
+            synchronized (this) {
+                unfinished--;
+                // Without a usable response, the outcome is only settled once no other exchange can deliver one
+                settled = usable || unfinished == 0;
+                if (settled) {
+                    hedgePending = false;
+                }
+            }
+            if (!settled || result.isDone()) {
+                discard(response);
+                return;
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            // Recorded before completing, the caller may start the next download from the completion
+            if (response.statusCode() == HttpStatus.OK.value()) {
+                downloadDuration.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+            if (usable && isHedge) {
+                hedgesWon.increment();
+            }
+            if (!result.complete(response)) {
+                discard(response);
+            }
+        }
+
+        private void cancelRunning() {
+            List<CompletableFuture<HttpResponse<PdfSource>>> exchanges;
+            synchronized (this) {
+                exchanges = List.copyOf(running);
+            }
+            exchanges.forEach(exchange -> exchange.cancel(true));
+        }
+    }
+}
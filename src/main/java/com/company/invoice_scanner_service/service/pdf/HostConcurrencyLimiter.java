@@ -0,0 +1,307 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
+import com.company.invoice_scanner_service.exception.PdfDownloadException;
+import com.company.invoice_scanner_service.exception.PdfNotFoundException;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Caps the number of concurrent downloads per host without blocking threads.
+ * Work beyond the limit is queued and started as soon as a running download of the same host finishes, work beyond
+ * {@code pdf.download.host-limit.max-queued} fails right away with a {@link PdfDownloadException}.
+ * <p>
+ * With an adaptive limit, every download that fails or whose host takes longer than
+ * {@code pdf.download.host-limit.latency-threshold} to respond multiplies the host's limit with the backoff ratio,
+ * and every other download raises it by {@code 1 / limit}, i.e. by one per limit's worth of downloads, up to
+ * {@code pdf.download.max-concurrent-per-host}. Downloads that started before the last decrease do not decrease it
+ * again, so a burst of failures halves the limit once. A body the caller rejected, because it is too large or not a
+ * PDF, was served by the host and leaves the limit as it is. A slow host thereby keeps few slots, and the download stage
+ * stays available to the other hosts.
+ * <p>
+ * Publishes {@code pdf.download.host.limit}, {@code pdf.download.host.in-flight} and
+ * {@code pdf.download.host.queue.size}, tagged with the host, and {@code pdf.download.host.rejected}.
+ * <p>
+ * A host is forgotten, and its meters removed, as soon as it has nothing running or queued and its limit is back at
+ * the maximum, so the hosts of one-off URLs do not pile up.
+ */
+@Component
+public class HostConcurrencyLimiter {
+
+    private final ConcurrentMap<String, HostPermits> permitsByHost = new ConcurrentHashMap<>();
+    private final int maxConcurrentPerHost;
+    private final int minConcurrency;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final int maxQueued;
+    private final MeterRegistry meterRegistry;
+
+    public HostConcurrencyLimiter(PdfDownloadProperties properties, MeterRegistry meterRegistry) {
+        PdfDownloadProperties.HostLimit hostLimit = properties.getHostLimit();
+        this.maxConcurrentPerHost = Math.max(1, properties.getMaxConcurrentPerHost());
+        this.minConcurrency = hostLimit.isAdaptive()
+                ? Math.clamp(hostLimit.getMinConcurrency(), 1, maxConcurrentPerHost)
+                : maxConcurrentPerHost;
+        this.latencyThresholdNanos = hostLimit.getLatencyThreshold().toNanos();
+        this.backoffRatio = Math.clamp(hostLimit.getBackoffRatio(), 0.0, 1.0);
+        this.maxQueued = Math.max(0, hostLimit.getMaxQueued());
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Starts the task once the host has a free slot. The slot is released when the task's future completes.
+     * Cancelling the returned future gives up a queued slot, or cancels the task once it was started.
+     */
+    public <T> CompletableFuture<T> execute(String host, Supplier<CompletableFuture<T>> task) {
+        return execute(host, task, value -> false);
+    }
+
+    /**
+     * Like {@link #execute(String, Supplier)}, with {@code overloaded} telling which results lower the host's limit
+     * like an error, e.g. a 503 response.
+     */
+    public <T> CompletableFuture<T> execute(String host, Supplier<CompletableFuture<T>> task,
+                                            Predicate<? super T> overloaded) {
+        return execute(host, responded -> task.get(), overloaded);
+    }
+
+    /**
+     * Like {@link #execute(String, Supplier, Predicate)}, for an exchange that reports when the host responded. Only
+     * the time until then counts against the latency threshold, so a large body that takes long to transfer does not
+     * make its host look slow. An exchange that never reports counts until it completes.
+     */
+    public <T> CompletableFuture<T> execute(String host, Exchange<T> task, Predicate<? super T> overloaded) {
+        while (true) {
+            HostPermits permits = permitsByHost.computeIfAbsent(host, HostPermits::new);
+            CompletableFuture<Void> permit = permits.acquire();
+            if (permit != null) {
+                return execute(permits, permit, task, overloaded);
+            }
+            // The host was just forgotten, its successor is created on the next lookup
+        }
+    }
+
+    private <T> CompletableFuture<T> execute(HostPermits permits, CompletableFuture<Void> permit,
+                                             Exchange<T> task, Predicate<? super T> overloaded) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        permit.whenComplete((granted, rejected) -> {
+            if (rejected != null) {
+                result.completeExceptionally(rejected);
+                return;
+            }
+            if (result.isDone()) {
+                permits.release(Signal.IGNORED, 0);
+                return;
+            }
+            long started = System.nanoTime();
+            AtomicLong latency = new AtomicLong(-1);
+            CompletableFuture<T> future;
+            try {
+                future = task.start(() -> latency.compareAndSet(-1, System.nanoTime() - started));
+            } catch (RuntimeException e) {
+                permits.release(Signal.IGNORED, started);
+                result.completeExceptionally(e);
+                return;
+            }
+            future.whenComplete((value, error) -> {
+                latency.compareAndSet(-1, System.nanoTime() - started);
+                permits.release(signal(result, value, error, overloaded, latency.get()), started);
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    future.cancel(true);
+                }
+            });
+        });
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                permit.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    int inFlight(String host) {
+        HostPermits permits = permitsByHost.get(host);
+        return permits == null ? 0 : permits.inFlight();
+    }
+
+    int limit(String host) {
+        HostPermits permits = permitsByHost.get(host);
+        return permits == null ? maxConcurrentPerHost : permits.limit();
+    }
+
+    private <T> Signal signal(CompletableFuture<T> result, T value, Throwable error,
+                              Predicate<? super T> overloaded, long latencyNanos) {
+        if (result.isCancelled() || isRejectedByCaller(error)) {
+            // Given up by the caller, says nothing about the host
+            return Signal.IGNORED;
+        }
+        if (error != null || overloaded.test(value) || latencyNanos > latencyThresholdNanos) {
+            return Signal.DROPPED;
+        }
+        return Signal.SUCCEEDED;
+    }
+
+    private static boolean isRejectedByCaller(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof PdfTooLargeException || cause instanceof PdfNotFoundException;
+    }
+
+    /**
+     * Work started with a free slot, which calls {@code responded} once the host responded, e.g. when the response
+     * headers arrived.
+     */
+    @FunctionalInterface
+    public interface Exchange<T> {
+
+        CompletableFuture<T> start(Runnable responded);
+    }
+
+    private enum Signal {
+        SUCCEEDED, DROPPED, IGNORED
+    }
+
+    private final class HostPermits {
+
+        private final String host;
+        private final Counter rejected;
+        private final List<Meter> meters;
+        private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+        private double limit = maxConcurrentPerHost;
+        private long lastDecrease = System.nanoTime();
+        private int inFlight;
+        private boolean retired;
+
+        private HostPermits(String host) {
+            this.host = host;
+            this.rejected = Counter.builder("pdf.download.host.rejected").tag("host", host)
+                    .description("Downloads that failed because the queue of the host was full").register(meterRegistry);
+            this.meters = List.of(rejected,
+                    Gauge.builder("pdf.download.host.limit", this, HostPermits::limit).tag("host", host)
+                            .description("Current limit of concurrent downloads from the host").register(meterRegistry),
+                    Gauge.builder("pdf.download.host.in-flight", this, HostPermits::inFlight).tag("host", host)
+                            .description("Downloads from the host holding a slot").register(meterRegistry),
+                    Gauge.builder("pdf.download.host.queue.size", this, HostPermits::queued).tag("host", host)
+                            .description("Downloads waiting for a slot of the host").register(meterRegistry));
+        }
+
+        /**
+         * A slot, a queued slot or a rejection, {@code null} if the host was forgotten in the meantime.
+         */
+        private synchronized CompletableFuture<Void> acquire() {
+            if (retired) {
+                return null;
+            }
+            if (inFlight < limit() && waiters.isEmpty()) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (waiters.size() >= maxQueued) {
+                waiters.removeIf(CompletableFuture::isDone);
+                if (waiters.size() >= maxQueued) {
+                    rejected.increment();
+                    return CompletableFuture.failedFuture(
+                            new PdfDownloadException("Too many downloads waiting for host " + host));
+                }
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+
+        private void release(Signal signal, long started) {
+            synchronized (this) {
+                inFlight--;
+                adjust(signal, started);
+            }
+            startWaiters();
+            retireIfIdle();
+        }
+
+        /**
+         * Forgets the host once it is back to its initial state. The meters are removed before the map entry, so a
+         * successor registers fresh meters instead of getting this host's.
+         */
+        private void retireIfIdle() {
+            synchronized (this) {
+                waiters.removeIf(CompletableFuture::isDone);
+                if (inFlight > 0 || !waiters.isEmpty() || limit < maxConcurrentPerHost) {
+                    return;
+                }
+                retired = true;
+            }
+            meters.forEach(meterRegistry::remove);
+            permitsByHost.remove(host, this);
+        }
+
+        private void adjust(Signal signal, long started) {
+            if (signal == Signal.SUCCEEDED) {
+                limit = Math.min(maxConcurrentPerHost, limit + 1 / limit);
+            } else if (signal == Signal.DROPPED && started - lastDecrease >= 0) {
+                limit = Math.max(minConcurrency, limit * backoffRatio);
+                lastDecrease = System.nanoTime();
+            }
+        }
+
+        /**
+         * Hands free slots to the next live waiters, cancelled waiters are skipped. Starts several waiters if the
+         * limit grew, and none while more downloads are running than a lowered limit allows.
+         */
+        private void startWaiters() {
+            while (true) {
+                CompletableFuture<Void> next;
+                synchronized (this) {
+                    if (inFlight >= limit()) {
+                        return;
+                    }
+                    do {
+                        next = waiters.poll();
+                    } while (next != null && next.isDone());
+                    if (next == null) {
+                        return;
+                    }
+                    inFlight++;
+                }
+                if (!next.complete(null)) {
+                    // The waiter was cancelled after it was polled, try the next one
+                    synchronized (this) {
+                        inFlight--;
+                    }
+                }
+            }
+        }
+
+        private synchronized int limit() {
+            return (int) limit;
+        }
+
+        private synchronized int inFlight() {
+            return inFlight;
+        }
+
+        private synchronized int queued() {
+            return waiters.size();
+        }
+    }
+}
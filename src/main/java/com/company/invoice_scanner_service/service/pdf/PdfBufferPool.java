@@ -0,0 +1,94 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfIngestionProperties;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of fixed size buffers used to hold downloaded PDFs in memory.
+ * Buffers are sized to the in-memory threshold, so anything that fits a buffer never touches the disk. Documents
+ * of a known, smaller size get a heap buffer of just that size instead.
+ * <p>
+ * At most {@code pdf.ingestion.direct-memory-limit} of direct buffers are allocated, pooled or in use. Beyond that
+ * buffers are allocated on the heap, which the garbage collector bounds.
+ */
+@Component
+public class PdfBufferPool {
+
+    private final BlockingQueue<ByteBuffer> idleBuffers;
+    private final int bufferSize;
+    private final boolean directBuffers;
+    private final int maxDirectBuffers;
+    private final AtomicInteger directBufferCount = new AtomicInteger();
+
+    public PdfBufferPool(PdfIngestionProperties properties) {
+        this.idleBuffers = new ArrayBlockingQueue<>(Math.max(1, properties.getBufferPoolSize()));
+        this.bufferSize = Math.toIntExact(properties.getInMemoryThreshold().toBytes());
+        this.directBuffers = properties.isDirectBuffers();
+        this.maxDirectBuffers = bufferSize == 0 ? 0
+                : Math.toIntExact(Math.min(Integer.MAX_VALUE, properties.getDirectMemoryLimit().toBytes() / bufferSize));
+    }
+
+    /**
+     * Takes an idle buffer from the pool or allocates a new one if none is available.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = idleBuffers.poll();
+        if (buffer == null) {
+            buffer = allocate();
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer for a document of the given size, or {@code -1} if the size is not known up front. A known
+     * size below the buffer size gets a heap buffer of that size, which is not pooled.
+     */
+    public ByteBuffer acquire(long expectedLength) {
+        if (expectedLength >= 0 && expectedLength < bufferSize) {
+            return ByteBuffer.allocate((int) expectedLength);
+        }
+        return acquire();
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers beyond the pool size are left to the garbage collector.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize) {
+            return;
+        }
+        buffer.clear();
+        if (!idleBuffers.offer(buffer) && buffer.isDirect()) {
+            // Freed once collected, until then it may exceed the limit by the buffers dropped here
+            directBufferCount.decrementAndGet();
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    int idleCount() {
+        return idleBuffers.size();
+    }
+
+    int directBufferCount() {
+        return directBufferCount.get();
+    }
+
+    private ByteBuffer allocate() {
+        if (directBuffers && directBufferCount.incrementAndGet() <= maxDirectBuffers) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        if (directBuffers) {
+            directBufferCount.decrementAndGet();
+        }
+        return ByteBuffer.allocate(bufferSize);
+    }
+}
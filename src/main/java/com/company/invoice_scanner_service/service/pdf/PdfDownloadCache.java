@@ -0,0 +1,237 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpHeaders;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloaded PDFs kept on disk together with their {@code ETag}, {@code Last-Modified} and content hash, so
+ * downloading the same URL again is a conditional GET and a 304 is answered from the local copy, whose IBANs the
+ * {@code ExtractedIbanCache} still knows by the hash. Only responses with one of these headers are kept, keyed by the
+ * {@linkplain PdfUrls#normalize(String) normalised} URL.
+ * <p>
+ * Copies are written by a thread of the cache, after the download was handed on, and are skipped while
+ * {@value #MAX_PENDING_WRITES} copies wait to be written. Every instance keeps its copies in a directory of its own
+ * below {@code pdf.download.cache.directory}, which lives as long as the instance, the index lives in memory.
+ * <p>
+ * The least recently used documents are deleted once {@code pdf.download.cache.max-size} is exceeded.
+ * Publishes {@code pdf.download.cache.size} in bytes and {@code pdf.download.cache.revalidations}, tagged with
+ * {@code result=not-modified} or {@code result=modified}.
+ */
+@Slf4j
+@Component
+public class PdfDownloadCache {
+
+    // Every pending copy holds on to the downloaded bytes until it is written
+    static final int MAX_PENDING_WRITES = 16;
+
+    private final Path directory;
+    private final long maxSize;
+    private final Counter notModified;
+    private final Counter modified;
+    private final ThreadPoolExecutor writer;
+
+    // Guarded by this, iterates from the least recently used entry
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /**
+     * A cached document and the validators to revalidate it with, either may be null.
+     */
+    public record Entry(Path file, long length, String contentHash, String etag, String lastModified) {
+    }
+
+    public PdfDownloadCache(PdfDownloadProperties pdfDownloadProperties, MeterRegistry meterRegistry) {
+        PdfDownloadProperties.Cache properties = pdfDownloadProperties.getCache();
+        this.maxSize = properties.getMaxSize().toBytes();
+        this.directory = maxSize > 0 ? createDirectory(Path.of(properties.getDirectory())) : null;
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_WRITES),
+                Thread.ofPlatform().name("pdf-download-cache-writer").daemon().factory());
+        Gauge.builder("pdf.download.cache.size", this, PdfDownloadCache::size).baseUnit("bytes")
+                .description("Disk space used by cached downloads").register(meterRegistry);
+        this.notModified = Counter.builder("pdf.download.cache.revalidations").tag("result", "not-modified")
+                .description("Cached downloads the server confirmed as unchanged").register(meterRegistry);
+        this.modified = Counter.builder("pdf.download.cache.revalidations").tag("result", "modified")
+                .description("Cached downloads the server sent again").register(meterRegistry);
+    }
+
+    /**
+     * The cached document of the URL, or null if there is none.
+     */
+    public synchronized Entry get(String url) {
+        return maxSize > 0 ? entries.get(PdfUrls.normalize(url)) : null;
+    }
+
+    /**
+     * Keeps a copy of a downloaded document if the response carries a validator, and drops the previous copy
+     * otherwise. The copy is written in the background on a handle of its own, the caller may close the source right
+     * away. Failing to write the copy only costs a full download next time.
+     */
+    public void put(String url, HttpHeaders headers, PdfSource pdfSource) {
+        if (maxSize <= 0) {
+            return;
+        }
+        String key = PdfUrls.normalize(url);
+        String etag = headers.firstValue("ETag").orElse(null);
+        String lastModified = headers.firstValue("Last-Modified").orElse(null);
+        if ((etag == null && lastModified == null) || pdfSource.getLength() > maxSize) {
+            remove(key);
+            return;
+        }
+
+        PdfSource copy = pdfSource.retain();
+        try {
+            writer.execute(() -> write(key, copy, etag, lastModified));
+        } catch (RejectedExecutionException e) {
+            // Writing falls behind, the URL is downloaded in full next time
+            copy.close();
+            remove(key);
+        }
+    }
+
+    /**
+     * A file of its own with the bytes of the cached document, for a source that deletes it once closed. The bytes
+     * are not read, the file is linked to the cached copy where the file system allows it.
+     *
+     * @throws NoSuchFileException if the copy was evicted in the meantime
+     */
+    Path link(Entry entry) throws IOException {
+        Path file = directory.resolve("pdf_source_" + UUID.randomUUID() + ".pdf");
+        try {
+            Files.createLink(file, entry.file());
+        } catch (NoSuchFileException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(entry.file(), file);
+        }
+        return file;
+    }
+
+    public synchronized void remove(String url) {
+        Entry entry = entries.remove(PdfUrls.normalize(url));
+        if (entry != null) {
+            size -= entry.length();
+            delete(entry.file());
+        }
+    }
+
+    /**
+     * Counts the answer to a conditional GET.
+     */
+    void recordRevalidation(boolean wasModified) {
+        (wasModified ? modified : notModified).increment();
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    /**
+     * Waits until the copies handed over so far are written.
+     */
+    void awaitWrites() throws InterruptedException, ExecutionException {
+        writer.submit(() -> {
+        }).get();
+    }
+
+    /**
+     * Stops writing and deletes the copies of this instance.
+     */
+    @PreDestroy
+    public void close() {
+        writer.shutdownNow();
+        synchronized (this) {
+            entries.clear();
+            size = 0;
+        }
+        if (directory != null) {
+            try {
+                FileSystemUtils.deleteRecursively(directory);
+            } catch (IOException e) {
+                log.warn("Could not delete the PDF download cache in {}", directory, e);
+            }
+        }
+    }
+
+    private void write(String key, PdfSource copy, String etag, String lastModified) {
+        Path file = null;
+        try (copy) {
+            file = Files.createTempFile(directory, "pdf_cache_", ".pdf");
+            copy.copyTo(file);
+        } catch (IOException e) {
+            log.warn("Could not cache download of {}", key, e);
+            delete(file);
+            remove(key);
+            return;
+        }
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(file, copy.getLength(), copy.getContentHash(), etag, lastModified));
+            size += copy.getLength();
+            if (previous != null) {
+                size -= previous.length();
+                delete(previous.file());
+            }
+            evictIfFull();
+        }
+    }
+
+    private void evictIfFull() {
+        var iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.length();
+            delete(eldest.file());
+        }
+    }
+
+    /**
+     * A new directory for this instance, so instances sharing the parent never delete each other's copies.
+     */
+    private static Path createDirectory(Path parent) {
+        try {
+            Files.createDirectories(parent);
+            return Files.createTempDirectory(parent, "instance-");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not prepare the PDF download cache in " + parent, e);
+        }
+    }
+
+    private static void delete(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            // A reader that opened the file before keeps reading it
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete cached download {}", file, e);
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.company.invoice_scanner_service.service.pdf;
 
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
 import com.company.invoice_scanner_service.exception.InvalidUrlException;
+import com.company.invoice_scanner_service.exception.PdfDownloadException;
 import com.company.invoice_scanner_service.exception.PdfNotFoundException;
 import com.company.invoice_scanner_service.exception.PdfProcessingException;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -10,59 +13,273 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.List;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.NoSuchFileException;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
 @AllArgsConstructor
 public class PdfDownloadService {
-    
+
+    private static final ScheduledThreadPoolExecutor TIMEOUT_SCHEDULER = newTimeoutScheduler();
+
+    private final HttpClient pdfHttpClient;
+    private final PdfDownloadProperties pdfDownloadProperties;
+    private final HostConcurrencyLimiter hostConcurrencyLimiter;
+    private final PdfSourceFactory pdfSourceFactory;
+    private final PdfDownloadCache pdfDownloadCache;
+    private final DownloadRetryPolicy downloadRetryPolicy;
+
+    /**
+     * Downloads the PDF from the given URL straight into a {@link PdfSource}, without an intermediate temp file
+     * unless the document is larger than the in-memory threshold. The caller owns the returned source.
+     */
+    public PdfSource downloadPdfSource(String pdfUrl) {
+        try {
+            return downloadPdfSourceAsync(pdfUrl).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     /**
-     * Downloads PDFs from the given URL.
+     * Non-blocking variant of {@link #downloadPdfSource(String)}. The body is written into the source while it is
+     * received, no thread is parked for the duration of the download. Downloads are capped per host by the
+     * {@link HostConcurrencyLimiter}, which fails them with a {@link PdfDownloadException} if too many wait, and the
+     * exchange is cancelled once the download timeout elapses or the returned future is cancelled.
+     * Failed exchanges are retried and slow ones hedged by the {@link DownloadRetryPolicy}.
+     * Bodies larger than {@code pdf.download.max-size} or that are not PDFs are aborted after their headers or first
+     * bytes, with a {@link PdfTooLargeException} or {@link PdfNotFoundException}, and not retried.
+     * A URL downloaded before is revalidated, if the server answers 304 the source is the copy in the
+     * {@link PdfDownloadCache}.
      */
-    public List<File> downloadPdfs(String pdfUrl) {
-        validateUrl(pdfUrl);
+    public CompletableFuture<PdfSource> downloadPdfSourceAsync(String pdfUrl) {
+        return downloadPdfSourceAsync(pdfUrl, true);
+    }
 
+    private CompletableFuture<PdfSource> downloadPdfSourceAsync(String pdfUrl, boolean revalidate) {
+        HttpRequest request;
+        PdfDownloadCache.Entry cached;
         try {
-            HttpURLConnection connection = (HttpURLConnection) new URL(pdfUrl).openConnection();
-            connection.setRequestMethod("GET");
+            validateUrl(pdfUrl);
+            cached = revalidate ? pdfDownloadCache.get(pdfUrl) : null;
+            request = newRequest(pdfUrl, cached);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-            if (connection.getResponseCode() != HttpStatus.OK.value()) {
-                throw new PdfNotFoundException("No PDFs found at the given URL.");
+        CompletableFuture<HttpResponse<PdfSource>> exchange = downloadRetryPolicy.execute(() -> hostConcurrencyLimiter
+                .execute(request.uri().getHost(), responded -> send(request, responded), PdfDownloadService::isOverloaded));
+        CompletableFuture<PdfSource> download = new CompletableFuture<>();
+        exchange.whenComplete((response, error) -> {
+            if (error != null) {
+                if (!download.isCancelled()) {
+                    download.completeExceptionally(translateFailure(pdfUrl, error));
+                }
+            } else if (cached != null && response.statusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                pdfDownloadCache.recordRevalidation(false);
+                completeFromCache(pdfUrl, cached, download);
+            } else if (response.statusCode() != HttpStatus.OK.value()) {
+                download.completeExceptionally(new PdfNotFoundException("No PDFs found at the given URL."));
+            } else {
+                if (cached != null) {
+                    pdfDownloadCache.recordRevalidation(true);
+                }
+                pdfDownloadCache.put(pdfUrl, response.headers(), response.body());
+                if (!download.complete(response.body())) {
+                    // Cancelled while the body was still arriving, nobody else will release the source
+                    response.body().close();
+                }
             }
+        });
+        download.whenComplete((source, error) -> {
+            if (download.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return download;
+    }
 
-            File pdfFile = savePdfFromStream(connection.getInputStream());
-            return List.of(pdfFile);
-
+    /**
+     * Hands out the cached copy under the content hash it was stored with, without reading it, so a document that was
+     * extracted before is answered by the extraction cache. If the copy was evicted since the request was sent, the
+     * URL is downloaded again without revalidation.
+     */
+    private void completeFromCache(String pdfUrl, PdfDownloadCache.Entry cached, CompletableFuture<PdfSource> download) {
+        PdfSource pdfSource;
+        try {
+            pdfSource = pdfSourceFactory.ofFile(pdfUrl, pdfDownloadCache.link(cached), cached.length(),
+                    cached.contentHash());
+        } catch (NoSuchFileException e) {
+            CompletableFuture<PdfSource> retry = downloadPdfSourceAsync(pdfUrl, false);
+            retry.whenComplete((source, error) -> {
+                if (error != null) {
+                    download.completeExceptionally(error);
+                } else if (!download.complete(source)) {
+                    source.close();
+                }
+            });
+            download.whenComplete((source, error) -> {
+                if (download.isCancelled()) {
+                    retry.cancel(true);
+                }
+            });
+            return;
         } catch (IOException e) {
-            log.error("Error downloading PDF from URL: {}", pdfUrl, e);
-            throw new PdfProcessingException("Failed to process downloaded PDFs from the provided URL.");
+            download.completeExceptionally(translateFailure(pdfUrl, e));
+            return;
+        }
+        if (!download.complete(pdfSource)) {
+            pdfSource.close();
         }
     }
 
     /**
-     * Validates URL format.
+     * Sends the request and streams the body into a source, {@code responded} is called once the headers arrived.
      */
-    private void validateUrl(String url) {
-        if (!StringUtils.hasText(url) || !url.startsWith("http")) {
-            throw new InvalidUrlException("Invalid URL format: " + url);
+    private CompletableFuture<HttpResponse<PdfSource>> send(HttpRequest request, Runnable responded) {
+        AtomicReference<HttpResponse.BodySubscriber<PdfSource>> subscriber = new AtomicReference<>();
+        CompletableFuture<HttpResponse<PdfSource>> exchange = pdfHttpClient.sendAsync(request, responseInfo -> {
+            responded.run();
+            subscriber.set(bodySubscriber(request, responseInfo));
+            return subscriber.get();
+        });
+        CompletableFuture<HttpResponse<PdfSource>> response = new CompletableFuture<>();
+        exchange.whenComplete((result, error) -> {
+            if (error != null) {
+                response.completeExceptionally(bodyFailure(subscriber.get(), error));
+            } else {
+                response.complete(result);
+            }
+        });
+        // Cancelling the exchange also aborts a body that is still streaming in
+        response.whenComplete((result, error) -> {
+            if (response.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        ScheduledFuture<?> timeout = TIMEOUT_SCHEDULER.schedule(() -> exchange.cancel(true),
+                pdfDownloadProperties.getDownloadTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        exchange.whenComplete((result, error) -> timeout.cancel(false));
+        return response;
+    }
+
+    /**
+     * A body that is aborted on purpose cancels the stream, which the HTTP client reports as an {@link IOException}.
+     * The subscriber's own failure tells why, and keeps the rejection from being retried like a connection error.
+     */
+    private static Throwable bodyFailure(HttpResponse.BodySubscriber<PdfSource> subscriber, Throwable error) {
+        if (subscriber == null) {
+            return error;
+        }
+        CompletableFuture<PdfSource> body = subscriber.getBody().toCompletableFuture();
+        if (body.state() == Future.State.FAILED
+                && (body.exceptionNow() instanceof PdfTooLargeException || body.exceptionNow() instanceof PdfNotFoundException)) {
+            return body.exceptionNow();
+        }
+        return error;
+    }
+
+    /**
+     * Streams a 200 body into a source, unless its headers already announce a document that is too large or not a
+     * PDF, in which case the body is not read at all.
+     */
+    private HttpResponse.BodySubscriber<PdfSource> bodySubscriber(HttpRequest request, HttpResponse.ResponseInfo responseInfo) {
+        if (responseInfo.statusCode() != HttpStatus.OK.value()) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        long maxSize = pdfDownloadProperties.getMaxSize().toBytes();
+        long contentLength = responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (maxSize > 0 && contentLength > maxSize) {
+            return PdfSourceBodySubscriber.rejecting(new PdfTooLargeException(
+                    "The document exceeds the maximum size of " + maxSize + " bytes."));
+        }
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse(null);
+        if (pdfDownloadProperties.isVerifyPdf() && !isPdfContentType(contentType)) {
+            return PdfSourceBodySubscriber.rejecting(new PdfNotFoundException(
+                    "The document at the given URL is not a PDF but " + contentType + "."));
+        }
+        return new PdfSourceBodySubscriber(pdfSourceFactory.newWriter(request.uri().toString(), contentLength),
+                maxSize, pdfDownloadProperties.isVerifyPdf());
+    }
+
+    /**
+     * Servers often label PDFs as generic binary or as downloads, only types that are clearly something else, e.g.
+     * an HTML login page, are rejected. The signature check has the final say.
+     */
+    private static boolean isPdfContentType(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.contains("pdf") || type.contains("octet-stream") || type.contains("download");
+    }
+
+    private RuntimeException translateFailure(String pdfUrl, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof InvalidUrlException || cause instanceof PdfNotFoundException
+                || cause instanceof PdfDownloadException || cause instanceof PdfTooLargeException) {
+            return (RuntimeException) cause;
         }
+        log.error("Error downloading PDF from URL: {}", pdfUrl, cause);
+        return new PdfProcessingException("Failed to process downloaded PDFs from the provided URL.", cause);
     }
 
     /**
-     * Saves PDF input stream to a local file.
+     * Responses that show the host cannot keep up, they lower its concurrency limit.
      */
-    private File savePdfFromStream(InputStream inputStream) throws IOException {
-        File tempFile = File.createTempFile("pdf_download_", ".pdf");
-        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = inputStream.read(buffer)) != -1) {
-                outputStream.write(buffer, 0, bytesRead);
+    private static boolean isOverloaded(HttpResponse<?> response) {
+        return response.statusCode() == HttpStatus.TOO_MANY_REQUESTS.value()
+                || response.statusCode() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+
+    /**
+     * Builds the GET, conditional on the validators of the cached copy if there is one.
+     */
+    private HttpRequest newRequest(String pdfUrl, PdfDownloadCache.Entry cached) {
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(pdfUrl))
+                    .timeout(pdfDownloadProperties.getResponseTimeout())
+                    .GET();
+            if (cached != null && cached.etag() != null) {
+                request.header("If-None-Match", cached.etag());
+            }
+            if (cached != null && cached.lastModified() != null) {
+                request.header("If-Modified-Since", cached.lastModified());
             }
+            return request.build();
+        } catch (IllegalArgumentException e) {
+            throw new InvalidUrlException("Invalid URL format: " + pdfUrl);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newTimeoutScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                Thread.ofPlatform().name("pdf-download-timeout").daemon().factory());
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Validates URL format.
+     */
+    private void validateUrl(String url) {
+        if (!StringUtils.hasText(url) || !url.startsWith("http")) {
+            throw new InvalidUrlException("Invalid URL format: " + url);
         }
-        return tempFile;
     }
 }
@@ -0,0 +1,179 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.io.RandomAccessReadMemoryMappedFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A downloaded PDF, either held in a (pooled) buffer or in a spill file on disk.
+ * Every call to {@link #openReader()} returns an independent reader, so the same bytes can be parsed by
+ * several {@code PDDocument}s. Closing the source returns the buffer to its pool and deletes the spill file, once
+ * every handle {@linkplain #retain() retained} on it is closed as well.
+ * The SHA-256 of the bytes identifies the document independent of the URL it was downloaded from.
+ */
+@Slf4j
+public class PdfSource implements AutoCloseable {
+
+    private final String name;
+    private final long length;
+    private final String contentHash;
+    private final ByteBuffer buffer;
+    private final Consumer<ByteBuffer> bufferReleaser;
+    private final Path file;
+    private final boolean memoryMapped;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // Open handles on the buffer or file, shared by the source and the handles retained on it
+    private final AtomicInteger handles;
+
+    private PdfSource(String name, long length, String contentHash, ByteBuffer buffer,
+                      Consumer<ByteBuffer> bufferReleaser, Path file, boolean memoryMapped) {
+        this(name, length, contentHash, buffer, bufferReleaser, file, memoryMapped, new AtomicInteger(1));
+    }
+
+    private PdfSource(String name, long length, String contentHash, ByteBuffer buffer,
+                      Consumer<ByteBuffer> bufferReleaser, Path file, boolean memoryMapped, AtomicInteger handles) {
+        this.handles = handles;
+        this.name = name;
+        this.length = length;
+        this.contentHash = contentHash;
+        this.buffer = buffer;
+        this.bufferReleaser = bufferReleaser;
+        this.file = file;
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Wraps a flipped buffer. The releaser is called once the source is closed.
+     */
+    static PdfSource ofBuffer(String name, ByteBuffer buffer, String contentHash, Consumer<ByteBuffer> bufferReleaser) {
+        return new PdfSource(name, buffer.remaining(), contentHash, buffer, bufferReleaser, null, false);
+    }
+
+    /**
+     * Wraps a file that is owned by this source and deleted once the source is closed.
+     */
+    static PdfSource ofFile(String name, Path file, long length, String contentHash, boolean memoryMapped) {
+        return new PdfSource(name, length, contentHash, null, null, file, memoryMapped);
+    }
+
+    /**
+     * Wraps bytes that are already on the heap.
+     */
+    public static PdfSource ofBytes(String name, byte[] bytes) {
+        MessageDigest digest = newContentDigest();
+        digest.update(bytes);
+        return ofBuffer(name, ByteBuffer.wrap(bytes), HexFormat.of().formatHex(digest.digest()), null);
+    }
+
+    /**
+     * Digest the content hash is computed with, fed while the bytes arrive.
+     */
+    static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Opens a new reader over the PDF bytes. The reader is closed by the {@code PDDocument} loaded from it.
+     */
+    public RandomAccessRead openReader() throws IOException {
+        if (closed.get()) {
+            throw new IOException("PDF source is already closed: " + name);
+        }
+        if (buffer != null) {
+            return new RandomAccessReadBuffer(buffer.duplicate());
+        }
+        return memoryMapped ? new RandomAccessReadMemoryMappedFile(file) : new RandomAccessReadBufferedFile(file.toFile());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Hex encoded SHA-256 of the PDF bytes.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public boolean isInMemory() {
+        return buffer != null;
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the PDF bytes to the given file, replacing it if it exists.
+     */
+    void copyTo(Path target) throws IOException {
+        if (closed.get()) {
+            throw new IOException("PDF source is already closed: " + name);
+        }
+        if (buffer == null) {
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer bytes = buffer.duplicate();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Another handle on the same bytes, closed on its own, e.g. for a copy that is written after the scan closed
+     * the source. Must be called while this handle is open.
+     */
+    PdfSource retain() {
+        if (closed.get()) {
+            throw new IllegalStateException("PDF source is already closed: " + name);
+        }
+        handles.incrementAndGet();
+        return new PdfSource(name, length, contentHash, buffer, bufferReleaser, file, memoryMapped, handles);
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true) || handles.decrementAndGet() > 0) {
+            return;
+        }
+        if (buffer != null && bufferReleaser != null) {
+            bufferReleaser.accept(buffer);
+        }
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete spill file {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.exception.PdfNotFoundException;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Writes the response body into a {@link PdfSourceWriter} as the chunks arrive, so no thread blocks on the download.
+ * <p>
+ * The transfer is cancelled as soon as the body exceeds the maximum length, or, when verifying, if the first
+ * {@value #SIGNATURE_WINDOW} bytes hold no {@code %PDF-} signature, so a bad response costs kilobytes and not a full
+ * download.
+ */
+class PdfSourceBodySubscriber implements HttpResponse.BodySubscriber<PdfSource> {
+
+    /**
+     * Readers accept the signature anywhere in the first kilobyte, after leading garbage.
+     */
+    static final int SIGNATURE_WINDOW = 1024;
+
+    private static final byte[] SIGNATURE = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+
+    private final PdfSourceWriter writer;
+    private final long maxLength;
+    private final byte[] head;
+    private final CompletableFuture<PdfSource> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+
+    private long received;
+    private boolean signatureFound;
+    private int headLength;
+
+    /**
+     * @param maxLength       bytes after which the transfer is aborted with a {@link PdfTooLargeException},
+     *                        0 or less for no limit
+     * @param verifySignature whether to fail with a {@link PdfNotFoundException} if the body is not a PDF
+     */
+    PdfSourceBodySubscriber(PdfSourceWriter writer, long maxLength, boolean verifySignature) {
+        this.writer = writer;
+        this.maxLength = maxLength;
+        this.signatureFound = !verifySignature;
+        this.head = verifySignature ? new byte[SIGNATURE_WINDOW] : null;
+    }
+
+    /**
+     * A subscriber that refuses the body right away, e.g. after the headers announced an unacceptable document.
+     */
+    static HttpResponse.BodySubscriber<PdfSource> rejecting(RuntimeException reason) {
+        return new HttpResponse.BodySubscriber<>() {
+
+            private final CompletableFuture<PdfSource> result = CompletableFuture.failedFuture(reason);
+
+            @Override
+            public CompletionStage<PdfSource> getBody() {
+                return result;
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> chunks) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+    }
+
+    @Override
+    public CompletionStage<PdfSource> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> chunks) {
+        try {
+            for (ByteBuffer chunk : chunks) {
+                received += chunk.remaining();
+                if (maxLength > 0 && received > maxLength) {
+                    throw new PdfTooLargeException("The document exceeds the maximum size of " + maxLength + " bytes.");
+                }
+                if (!signatureFound) {
+                    sniff(chunk);
+                }
+                writer.write(chunk);
+            }
+            subscription.request(1);
+        } catch (IOException | RuntimeException e) {
+            // Failed first, cancelling completes the exchange right away
+            onError(e);
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        writer.close();
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (!signatureFound) {
+            onError(notAPdf());
+            return;
+        }
+        try {
+            result.complete(writer.complete());
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    /**
+     * Collects the head of the body until it contains the signature, and fails once the window is full without it.
+     */
+    private void sniff(ByteBuffer chunk) {
+        int count = Math.min(chunk.remaining(), head.length - headLength);
+        chunk.get(chunk.position(), head, headLength, count);
+        headLength += count;
+        signatureFound = indexOfSignature() >= 0;
+        if (!signatureFound && headLength == head.length) {
+            throw notAPdf();
+        }
+    }
+
+    private int indexOfSignature() {
+        outer:
+        for (int i = 0; i <= headLength - SIGNATURE.length; i++) {
+            for (int j = 0; j < SIGNATURE.length; j++) {
+                if (head[i + j] != SIGNATURE[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static PdfNotFoundException notAPdf() {
+        return new PdfNotFoundException("The document at the given URL is not a PDF.");
+    }
+}
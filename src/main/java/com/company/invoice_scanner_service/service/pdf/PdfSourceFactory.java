@@ -0,0 +1,75 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfIngestionProperties;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+/**
+ * Creates {@link PdfSource}s according to the configured ingestion mode.
+ */
+@Component
+@RequiredArgsConstructor
+public class PdfSourceFactory {
+
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+
+    private final PdfIngestionProperties properties;
+    private final PdfBufferPool bufferPool;
+
+    /**
+     * Opens a writer for a document of the given size, or {@code -1} if the size is not known up front.
+     */
+    public PdfSourceWriter newWriter(String name, long expectedLength) {
+        boolean streaming = properties.getMode() == PdfIngestionProperties.Mode.STREAMING;
+        boolean tooLargeForMemory = expectedLength > bufferPool.getBufferSize();
+        return new PdfSourceWriter(name, bufferPool, Path.of(properties.getSpillDirectory()), streaming,
+                !streaming || tooLargeForMemory, expectedLength);
+    }
+
+    /**
+     * Wraps a file of known content that the new source takes over, it is deleted once the source is closed.
+     */
+    public PdfSource ofFile(String name, Path file, long length, String contentHash) {
+        return PdfSource.ofFile(name, file, length, contentHash,
+                properties.getMode() == PdfIngestionProperties.Mode.STREAMING);
+    }
+
+    /**
+     * Reads the stream to the end into a new source. The stream is not closed.
+     */
+    public PdfSource read(String name, InputStream inputStream, long expectedLength) throws IOException {
+        return read(name, inputStream, expectedLength, 0);
+    }
+
+    /**
+     * Reads the stream to the end into a new source, and stops with a {@link PdfTooLargeException} as soon as the
+     * announced length or the bytes read exceed {@code maxLength}, 0 or less for no limit. The stream is not closed.
+     */
+    public PdfSource read(String name, InputStream inputStream, long expectedLength, long maxLength) throws IOException {
+        if (maxLength > 0 && expectedLength > maxLength) {
+            throw tooLarge(maxLength);
+        }
+        try (PdfSourceWriter writer = newWriter(name, expectedLength)) {
+            byte[] chunk = new byte[COPY_BUFFER_SIZE];
+            long received = 0;
+            int bytesRead;
+            while ((bytesRead = inputStream.read(chunk)) != -1) {
+                received += bytesRead;
+                if (maxLength > 0 && received > maxLength) {
+                    throw tooLarge(maxLength);
+                }
+                writer.write(chunk, 0, bytesRead);
+            }
+            return writer.complete();
+        }
+    }
+
+    private static PdfTooLargeException tooLarge(long maxLength) {
+        return new PdfTooLargeException("The document exceeds the maximum size of " + maxLength + " bytes.");
+    }
+}
@@ -0,0 +1,121 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * Accumulates the bytes of a PDF as they arrive and turns them into a {@link PdfSource}.
+ * Bytes go into a pooled buffer until it is full, after which everything is moved to a spill file. The content
+ * hash is computed on the way, so the bytes are not read a second time. Not thread-safe, a writer is fed by a single download.
+ */
+@Slf4j
+public class PdfSourceWriter implements AutoCloseable {
+
+    private final String name;
+    private final PdfBufferPool bufferPool;
+    private final Path spillDirectory;
+    private final boolean memoryMapSpill;
+    private final MessageDigest digest = PdfSource.newContentDigest();
+
+    private ByteBuffer buffer;
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private long length;
+    private boolean completed;
+
+    PdfSourceWriter(String name, PdfBufferPool bufferPool, Path spillDirectory, boolean memoryMapSpill,
+                    boolean spillImmediately, long expectedLength) {
+        this.name = name;
+        this.bufferPool = bufferPool;
+        this.spillDirectory = spillDirectory;
+        this.memoryMapSpill = memoryMapSpill;
+        if (!spillImmediately) {
+            this.buffer = bufferPool.acquire(expectedLength);
+        }
+    }
+
+    public void write(byte[] bytes, int offset, int count) throws IOException {
+        write(ByteBuffer.wrap(bytes, offset, count));
+    }
+
+    public void write(ByteBuffer bytes) throws IOException {
+        length += bytes.remaining();
+        digest.update(bytes.duplicate());
+        if (buffer != null && bytes.remaining() <= buffer.remaining()) {
+            buffer.put(bytes);
+            return;
+        }
+        if (spillChannel == null) {
+            spill();
+        }
+        while (bytes.hasRemaining()) {
+            spillChannel.write(bytes);
+        }
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Finishes the writer and hands ownership of the buffered bytes to the returned source.
+     */
+    public PdfSource complete() throws IOException {
+        completed = true;
+        String contentHash = HexFormat.of().formatHex(digest.digest());
+        if (spillChannel != null) {
+            spillChannel.close();
+            return PdfSource.ofFile(name, spillFile, length, contentHash, memoryMapSpill);
+        }
+        buffer.flip();
+        return PdfSource.ofBuffer(name, buffer, contentHash, bufferPool::release);
+    }
+
+    /**
+     * Moves whatever is buffered so far into a new spill file and keeps writing there.
+     */
+    private void spill() throws IOException {
+        spillFile = Files.createTempFile(spillDirectory, "pdf_spill_", ".pdf");
+        spillChannel = FileChannel.open(spillFile, StandardOpenOption.WRITE);
+        if (buffer != null) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                spillChannel.write(buffer);
+            }
+            bufferPool.release(buffer);
+            buffer = null;
+        }
+        log.debug("Spilled PDF {} to {}", name, spillFile);
+    }
+
+    /**
+     * Discards a writer that was not completed, e.g. because the download failed.
+     */
+    @Override
+    public void close() {
+        if (completed) {
+            return;
+        }
+        completed = true;
+        if (buffer != null) {
+            bufferPool.release(buffer);
+            buffer = null;
+        }
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("Could not delete spill file {}", spillFile, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+/**
+ * Canonical form of document URLs, the key under which scans and downloads of the same document are shared.
+ */
+public final class PdfUrls {
+
+    private PdfUrls() {
+    }
+
+    /**
+     * Lower-cases scheme and host, drops default ports and fragments, and resolves dot segments, so different
+     * spellings of the same document share a scan and a cached download. Values that are not absolute URLs are only trimmed.
+     */
+    public static String normalize(String url) {
+        String trimmed = url.strip();
+        URI uri;
+        try {
+            uri = new URI(trimmed).normalize();
+        } catch (URISyntaxException e) {
+            return trimmed;
+        }
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            return trimmed;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder normalized = new StringBuilder(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            normalized.append(uri.getRawUserInfo()).append('@');
+        }
+        normalized.append(uri.getHost().toLowerCase(Locale.ROOT));
+        if (uri.getPort() != -1 && uri.getPort() != defaultPort(scheme)) {
+            normalized.append(':').append(uri.getPort());
+        }
+        String path = uri.getRawPath();
+        normalized.append(path == null || path.isEmpty() ? "/" : path);
+        if (uri.getRawQuery() != null) {
+            normalized.append('?').append(uri.getRawQuery());
+        }
+        return normalized.toString();
+    }
+
+    private static int defaultPort(String scheme) {
+        return switch (scheme) {
+            case "http" -> 80;
+            case "https" -> 443;
+            default -> -1;
+        };
+    }
+}
@@ -0,0 +1,25 @@
+SET search_path TO "iban_compliance";
+
+CREATE TABLE IF NOT EXISTS "iban_compliance"."scan_jobs" (
+    id UUID PRIMARY KEY,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS scan_jobs_expires_at_idx ON "iban_compliance"."scan_jobs" (expires_at);
+
+CREATE TABLE IF NOT EXISTS "iban_compliance"."scan_job_urls" (
+    job_id UUID NOT NULL REFERENCES "iban_compliance"."scan_jobs" (id) ON DELETE CASCADE,
+    position INT NOT NULL,
+    url TEXT NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    valid_ibans TEXT,
+    blacklisted_ibans TEXT,
+    error_key VARCHAR(64),
+    error_message TEXT,
+    completed_at TIMESTAMP,
+    PRIMARY KEY (job_id, position)
+);
+
+GRANT ALL PRIVILEGES ON TABLE "iban_compliance"."scan_jobs" TO postgres;
+GRANT ALL PRIVILEGES ON TABLE "iban_compliance"."scan_job_urls" TO postgres;
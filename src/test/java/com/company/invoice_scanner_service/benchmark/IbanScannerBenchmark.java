@@ -0,0 +1,69 @@
+package com.company.invoice_scanner_service.benchmark;
+
+import com.company.invoice_scanner_service.service.iban.IbanCandidateScanner;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the former regex based IBAN candidate search with {@link IbanCandidateScanner} on the text of one
+ * invoice page. Scores are pages/sec.
+ * <p>
+ * Run with {@code mvn test-compile} followed by
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.company.invoice_scanner_service.benchmark.IbanScannerBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IbanScannerBenchmark {
+
+    private static final String LEGACY_IBAN_REGEX =
+            "\\b([A-Z]{2}\\d{2}[ \\t\\n\\r]?[A-Z0-9]{1,4}(?:[ \\t\\n\\r]?[A-Z0-9]{1,4}){0,7})\\b";
+
+    private String pageText;
+    private IbanCandidateScanner scanner;
+
+    @Setup
+    public void setUp() {
+        StringBuilder text = new StringBuilder();
+        for (int line = 1; line <= 45; line++) {
+            text.append("Item ").append(line).append(" ORDER REF AB12 CD34 EF56 quantity 3 unit price 19.99 EUR\n");
+        }
+        text.append("Please transfer the amount to IBAN DE44 5001 0517 5407 3249 31\n");
+        pageText = text.toString();
+        scanner = new IbanCandidateScanner();
+    }
+
+    @Benchmark
+    public void legacyRegex(Blackhole blackhole) {
+        String normalizedText = pageText.replaceAll("[\\t\\n\\r]", " ");
+        Matcher matcher = Pattern.compile(LEGACY_IBAN_REGEX).matcher(normalizedText);
+        while (matcher.find()) {
+            blackhole.consume(matcher.group(1).replaceAll(" ", ""));
+        }
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        // Rejecting every candidate also measures the retries with shorter candidates
+        scanner.scan(pageText, (candidate, length) -> {
+            blackhole.consume(length);
+            return false;
+        });
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IbanScannerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
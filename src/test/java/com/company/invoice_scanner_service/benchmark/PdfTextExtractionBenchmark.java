@@ -0,0 +1,181 @@
+package com.company.invoice_scanner_service.benchmark;
+
+import com.company.invoice_scanner_service.config.PdfExtractionProperties;
+import com.company.invoice_scanner_service.service.iban.ExtractedIbanCache;
+import com.company.invoice_scanner_service.service.iban.IbanExtractionService;
+import com.company.invoice_scanner_service.service.iban.IbanValidator;
+import com.company.invoice_scanner_service.service.iban.SharedIbanStore;
+import com.company.invoice_scanner_service.service.pdf.PdfSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.PDFTextStripperByArea;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.awt.Rectangle;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the former three-pass text extraction with the single layout pass of {@link IbanExtractionService},
+ * sequentially and split into page chunks that are extracted in parallel.
+ * Scores are reported per page, so the throughput mode shows pages/sec.
+ * <p>
+ * Run with {@code mvn test-compile} followed by
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.company.invoice_scanner_service.benchmark.PdfTextExtractionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(PdfTextExtractionBenchmark.PAGES)
+public class PdfTextExtractionBenchmark {
+
+    static final int PAGES = 20;
+
+    private static final String LEGACY_IBAN_REGEX =
+            "\\b([A-Z]{2}\\d{2}[ \\t\\n\\r]?[A-Z0-9]{1,4}(?:[ \\t\\n\\r]?[A-Z0-9]{1,4}){0,7})\\b";
+
+    private byte[] invoice;
+    private ExecutorService extractionExecutor;
+    private IbanExtractionService ibanExtractionService;
+    private IbanExtractionService parallelIbanExtractionService;
+
+    @Setup
+    public void setUp() throws IOException {
+        invoice = createInvoice();
+        extractionExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        // The same invoice is parsed in every invocation, so the cache of extracted IBANs is disabled
+        PdfExtractionProperties sequential = new PdfExtractionProperties();
+        sequential.setParallelMinPages(Integer.MAX_VALUE);
+        sequential.getCache().setMaximumSize(0);
+        ibanExtractionService = new IbanExtractionService(sequential, extractionExecutor, new IbanValidator(),
+                new ExtractedIbanCache(sequential, noSharedStore(), new SimpleMeterRegistry()));
+
+        PdfExtractionProperties parallel = new PdfExtractionProperties();
+        parallel.setParallelMinPages(1);
+        parallel.setPagesPerChunk(5);
+        parallel.getCache().setMaximumSize(0);
+        parallelIbanExtractionService = new IbanExtractionService(parallel, extractionExecutor, new IbanValidator(),
+                new ExtractedIbanCache(parallel, noSharedStore(), new SimpleMeterRegistry()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        extractionExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<String> singlePass() throws IOException {
+        try (PdfSource pdfSource = PdfSource.ofBytes("benchmark.pdf", invoice)) {
+            return ibanExtractionService.extractIbans(pdfSource);
+        }
+    }
+
+    @Benchmark
+    public List<String> parallelChunks() throws IOException {
+        try (PdfSource pdfSource = PdfSource.ofBytes("benchmark.pdf", invoice)) {
+            return parallelIbanExtractionService.extractIbans(pdfSource);
+        }
+    }
+
+    @Benchmark
+    public Set<String> legacyThreePasses() throws IOException {
+        Set<String> ibans = new HashSet<>();
+        try (PDDocument document = Loader.loadPDF(invoice)) {
+            PDFTextStripper stripper = new PDFTextStripper();
+            ibans.addAll(legacyExtractIbansFromText(stripper.getText(document)));
+            for (int i = 1; i <= document.getNumberOfPages(); i++) {
+                stripper.setStartPage(i);
+                stripper.setEndPage(i);
+                ibans.addAll(legacyExtractIbansFromText(stripper.getText(document)));
+
+                PDPage page = document.getPage(i - 1);
+                PDFTextStripperByArea stripperByArea = new PDFTextStripperByArea();
+                stripperByArea.addRegion("all", new Rectangle(0, 0,
+                        (int) page.getMediaBox().getWidth(), (int) page.getMediaBox().getHeight()));
+                stripperByArea.extractRegions(page);
+                ibans.addAll(legacyExtractIbansFromText(stripperByArea.getTextForRegion("all")));
+            }
+        }
+        return ibans;
+    }
+
+    private static Set<String> legacyExtractIbansFromText(String text) {
+        Set<String> ibans = new HashSet<>();
+        Matcher matcher = Pattern.compile(LEGACY_IBAN_REGEX).matcher(text.replaceAll("[\\t\\n\\r]", " "));
+        while (matcher.find()) {
+            String iban = matcher.group(1).replaceAll(" ", "");
+            String rearranged = iban.substring(4) + iban.substring(0, 4);
+            StringBuilder digits = new StringBuilder();
+            for (char c : rearranged.toCharArray()) {
+                digits.append(Character.isLetter(c) ? String.valueOf(Character.getNumericValue(c)) : c);
+            }
+            if (new BigInteger(digits.toString()).mod(BigInteger.valueOf(97)).intValue() == 1) {
+                ibans.add(iban);
+            }
+        }
+        return ibans;
+    }
+
+    private static ObjectProvider<SharedIbanStore> noSharedStore() {
+        return new StaticListableBeanFactory().getBeanProvider(SharedIbanStore.class);
+    }
+
+    /**
+     * Builds an invoice with line items on every page and the payment details on the last one.
+     */
+    static byte[] createInvoice() throws IOException {
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int pageNumber = 1; pageNumber <= PAGES; pageNumber++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.setFont(font, 10);
+                    contentStream.beginText();
+                    contentStream.setLeading(14);
+                    contentStream.newLineAtOffset(50, 750);
+                    for (int line = 1; line <= 45; line++) {
+                        contentStream.showText("Item " + pageNumber + "-" + line + " ORDER REF AB12 CD34 EF56 quantity 3 unit price 19.99 EUR");
+                        contentStream.newLine();
+                    }
+                    if (pageNumber == PAGES) {
+                        contentStream.showText("Please transfer the amount to IBAN DE44 5001 0517 5407 3249 31");
+                    }
+                    contentStream.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PdfTextExtractionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,162 @@
+package com.company.invoice_scanner_service.benchmark;
+
+import com.company.invoice_scanner_service.config.PdfExtractionProperties;
+import com.company.invoice_scanner_service.config.ScanPipelineProperties;
+import com.company.invoice_scanner_service.service.TaskOrchestratorService;
+import com.company.invoice_scanner_service.service.UrlScanResult;
+import com.company.invoice_scanner_service.service.iban.BlacklistedIbanService;
+import com.company.invoice_scanner_service.service.iban.IbanExtractionService;
+import com.company.invoice_scanner_service.service.iban.IbanValidationService;
+import com.company.invoice_scanner_service.service.iban.IbanValidator;
+import com.company.invoice_scanner_service.service.pdf.PdfDownloadService;
+import com.company.invoice_scanner_service.service.pdf.PdfSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Load test of {@link TaskOrchestratorService} with many concurrent URLs, comparing the former fixed pool of ten
+ * threads for every step with virtual threads for the blocking steps and a bounded pool for parsing.
+ * Downloads and the blacklist lookup are simulated with their typical latency, parsing with a short CPU burst.
+ * With lookups that always need the database, the lookup stage sized like the connection pool is the bottleneck,
+ * as the former pool of ten threads was. Raising {@code lookupConcurrency} shows the gain for lookups answered by
+ * the in-memory blacklist index.
+ * Scores are reported per URL, so the throughput mode shows URLs/sec.
+ * <p>
+ * Run with {@code mvn test-compile} followed by
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.company.invoice_scanner_service.benchmark.ScanThroughputBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@OperationsPerInvocation(ScanThroughputBenchmark.URLS)
+public class ScanThroughputBenchmark {
+
+    static final int URLS = 200;
+
+    private static final long DOWNLOAD_MILLIS = 50;
+    private static final long BLACKLIST_LOOKUP_MILLIS = 20;
+    private static final long PARSE_CPU_TOKENS = 20_000;
+
+    @Param({"FIXED_POOL", "VIRTUAL_THREADS"})
+    public String executors;
+
+    @Param({"10", "50"})
+    public int lookupConcurrency;
+
+    private ExecutorService parseExecutor;
+    private ExecutorService ioExecutor;
+    private TaskOrchestratorService taskOrchestratorService;
+    private List<String> urls;
+
+    @Setup
+    public void setUp() {
+        if (executors.equals("FIXED_POOL")) {
+            // The former setup, one pool for all steps
+            parseExecutor = Executors.newFixedThreadPool(10);
+            ioExecutor = parseExecutor;
+        } else {
+            parseExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        }
+        ScanPipelineProperties pipelineProperties = new ScanPipelineProperties();
+        pipelineProperties.getDownload().setConcurrency(URLS);
+        pipelineProperties.getLookup().setConcurrency(lookupConcurrency);
+        taskOrchestratorService = new TaskOrchestratorService(new SimulatedDownloadService(),
+                new SimulatedExtractionService(), new PassThroughValidationService(), new SimulatedBlacklistService(),
+                pipelineProperties, parseExecutor, ioExecutor, new SimpleMeterRegistry());
+        urls = IntStream.range(0, URLS).mapToObj(i -> "http://storage.example.com/invoice-" + i + ".pdf").toList();
+    }
+
+    @TearDown
+    public void tearDown() {
+        parseExecutor.shutdownNow();
+        ioExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public List<UrlScanResult> concurrentUrls() {
+        return taskOrchestratorService.scanUrlsAsync(urls).join();
+    }
+
+    /**
+     * Completes after the download latency without occupying a thread, like the asynchronous HTTP client.
+     */
+    private static final class SimulatedDownloadService extends PdfDownloadService {
+
+        SimulatedDownloadService() {
+            super(null, null, null, null, null, null);
+        }
+
+        @Override
+        public CompletableFuture<PdfSource> downloadPdfSourceAsync(String pdfUrl) {
+            return CompletableFuture.supplyAsync(() -> PdfSource.ofBytes(pdfUrl, new byte[0]),
+                    CompletableFuture.delayedExecutor(DOWNLOAD_MILLIS, TimeUnit.MILLISECONDS, Runnable::run));
+        }
+    }
+
+    private static final class SimulatedExtractionService extends IbanExtractionService {
+
+        SimulatedExtractionService() {
+            super(new PdfExtractionProperties(), null, new IbanValidator(), null);
+        }
+
+        @Override
+        public List<String> extractIbans(PdfSource pdfSource, BooleanSupplier cancelled) {
+            Blackhole.consumeCPU(PARSE_CPU_TOKENS);
+            return List.of("DE44500105175407324931");
+        }
+    }
+
+    private static final class PassThroughValidationService extends IbanValidationService {
+
+        PassThroughValidationService() {
+            super(null, null);
+        }
+
+        @Override
+        public List<String> validateIbans(List<String> ibans) {
+            return ibans;
+        }
+    }
+
+    /**
+     * Blocks for a database round trip, as the lookup does when the blacklist index is not ready.
+     */
+    private static final class SimulatedBlacklistService extends BlacklistedIbanService {
+
+        SimulatedBlacklistService() {
+            super(null, null, new SimpleMeterRegistry());
+        }
+
+        @Override
+        public List<String> findBlacklistedIbans(List<String> ibans) {
+            try {
+                Thread.sleep(BLACKLIST_LOOKUP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return List.of();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ScanThroughputBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -1,6 +1,8 @@
 package com.company.invoice_scanner_service.controller;
 
+import com.company.invoice_scanner_service.dto.BlacklistImportResponse;
 import com.company.invoice_scanner_service.entity.BlacklistedIban;
+import com.company.invoice_scanner_service.service.iban.BlacklistImportService;
 import com.company.invoice_scanner_service.service.iban.BlacklistedIbanService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,7 +16,9 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -29,10 +33,13 @@ class BlacklistedIbanControllerTest {
     @Autowired
     private BlacklistedIbanService blacklistedIbanService;
 
+    @Autowired
+    private BlacklistImportService blacklistImportService;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        Mockito.reset(blacklistedIbanService);
+        Mockito.reset(blacklistedIbanService, blacklistImportService);
     }
 
     @Test
@@ -77,6 +84,40 @@ class BlacklistedIbanControllerTest {
                 .andExpect(jsonPath("$.errorMessage").value("Unexpected database error"));
     }
 
+    @Test
+    void shouldImportCsvBody() throws Exception {
+        when(blacklistImportService.importIbans(any(), eq(BlacklistImportService.Format.CSV), eq("Bulk import")))
+                .thenReturn(new BlacklistImportResponse(2, 1, 0));
+
+        mockMvc.perform(post("/api/blacklisted-ibans/import")
+                        .contentType("text/csv")
+                        .content("iban,reason\nDE89370400440532013000,Fraud\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(2))
+                .andExpect(jsonPath("$.duplicates").value(1))
+                .andExpect(jsonPath("$.invalid").value(0));
+    }
+
+    @Test
+    void shouldImportNdjsonBodyWithGivenReason() throws Exception {
+        when(blacklistImportService.importIbans(any(), eq(BlacklistImportService.Format.NDJSON), eq("Regulator list")))
+                .thenReturn(new BlacklistImportResponse(1, 0, 0));
+
+        mockMvc.perform(post("/api/blacklisted-ibans/import")
+                        .param("reason", "Regulator list")
+                        .contentType("application/x-ndjson")
+                        .content("{\"iban\": \"DE89370400440532013000\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inserted").value(1));
+    }
+
+    @Test
+    void shouldRejectUnsupportedImportFormat() throws Exception {
+        mockMvc.perform(post("/api/blacklisted-ibans/import")
+                        .contentType(MediaType.APPLICATION_XML)
+                        .content("<ibans/>"))
+                .andExpect(status().isUnsupportedMediaType());
+    }
 
     // Custom configuration for creating mock beans
     static class MockConfig {
@@ -84,5 +125,10 @@ class BlacklistedIbanControllerTest {
         public BlacklistedIbanService blacklistedIbanService() {
             return Mockito.mock(BlacklistedIbanService.class);
         }
+
+        @Bean
+        public BlacklistImportService blacklistImportService() {
+            return Mockito.mock(BlacklistImportService.class);
+        }
     }
 }
\ No newline at end of file
@@ -1,29 +1,52 @@
 package com.company.invoice_scanner_service.controller;
 
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
 import com.company.invoice_scanner_service.dto.InvoiceScanResponse;
-import com.company.invoice_scanner_service.exception.BlacklistedIbanFoundException;
 import com.company.invoice_scanner_service.exception.ErrorResponse;
 import com.company.invoice_scanner_service.exception.InvalidUrlException;
-import com.company.invoice_scanner_service.exception.NoIbanFoundException;
+import com.company.invoice_scanner_service.exception.PdfDownloadException;
+import com.company.invoice_scanner_service.exception.PdfNotFoundException;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
+import com.company.invoice_scanner_service.exception.ScanTimeoutException;
+import com.company.invoice_scanner_service.service.ScanOutcome;
 import com.company.invoice_scanner_service.service.TaskOrchestratorService;
+import com.company.invoice_scanner_service.service.UrlScanResult;
+import com.company.invoice_scanner_service.service.pdf.PdfSource;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -37,6 +60,9 @@ class InvoiceScannerControllerTest {
     @Autowired
     private TaskOrchestratorService taskOrchestratorService;
 
+    @Autowired
+    private PdfDownloadProperties pdfDownloadProperties;
+
     @Test
     void testScanInvoices_ValidUrl_ReturnsValidResponse() throws Exception {
         String validUrl = "https://drive.usercontent.google.com/u/0/uc?id=18YCO-lsaZVxPyBLuJRWwvMUvFRWDSvLL&export=download";
@@ -47,32 +73,44 @@ class InvoiceScannerControllerTest {
                 .timestamp(Instant.now())
                 .build();
 
-        when(taskOrchestratorService.processPdfsForIbans(anyList())).thenReturn(List.of("DE44500105175407324931"));
+        when(taskOrchestratorService.scanUrlsAsync(anyList()))
+                .thenReturn(scanned(clean(validUrl, "DE44500105175407324931")));
 
-        this.mockMvc.perform(post("/api/invoice-scanner/process")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(new ObjectMapper().writeValueAsString(List.of(validUrl)))) // Send URLs in the request body
+        performScan(List.of(validUrl))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.message").value(expectedResponse.getMessage()))
                 .andExpect(jsonPath("$.validIbans[0]").value(expectedResponse.getValidIbans().getFirst()))
-                .andExpect(jsonPath("$.blackListedIbans").doesNotExist());
+                .andExpect(jsonPath("$.blackListedIbans").doesNotExist())
+                .andExpect(jsonPath("$.results[0].url").value(validUrl))
+                .andExpect(jsonPath("$.results[0].status").value("SUCCEEDED"));
 
-        verify(taskOrchestratorService, times(1)).processPdfsForIbans(List.of(validUrl));
+        verify(taskOrchestratorService, times(1)).scanUrlsAsync(List.of(validUrl));
     }
 
     @Test
     void testScanInvoices_InvalidUrl_ReturnsBadRequest() throws Exception {
         String invalidUrl = "invalid-url";
 
-        when(taskOrchestratorService.processPdfsForIbans(List.of(invalidUrl))).thenThrow(new InvalidUrlException("Invalid URL format: " + invalidUrl));
+        when(taskOrchestratorService.scanUrlsAsync(List.of(invalidUrl)))
+                .thenReturn(scanned(failed(invalidUrl, new InvalidUrlException("Invalid URL format: " + invalidUrl))));
+
+        performScan(List.of(invalidUrl))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorKey").value("INVALID_URL"))
+                .andExpect(jsonPath("$.errorMessage").value("Invalid URL format: invalid-url"));
+    }
 
+    @Test
+    void testScanInvoices_NoUrls_ReturnsBadRequest() throws Exception {
         mockMvc.perform(post("/api/invoice-scanner/process")
                         .contentType(MediaType.APPLICATION_JSON)
-                        .content(new ObjectMapper().writeValueAsString(List.of(invalidUrl)))) // Send URLs in the request body
+                        .content("[]"))
                 .andExpect(status().isBadRequest())
                 .andExpect(jsonPath("$.errorKey").value("INVALID_URL"))
-                .andExpect(jsonPath("$.errorMessage").value("Invalid URL format: invalid-url"));
+                .andExpect(jsonPath("$.errorMessage").value("At least one URL is required."));
+
+        verify(taskOrchestratorService, never()).scanUrlsAsync(List.of());
     }
 
     @Test
@@ -80,12 +118,10 @@ class InvoiceScannerControllerTest {
         String validUrl = "https://example.com/invoice.pdf";
         ErrorResponse expectedResponse = ErrorResponse.of("NO_IBAN_FOUND", "No IBANs found in the provided documents.", Map.of());
 
-        doThrow(new NoIbanFoundException("No IBANs found in the provided documents."))
-                .when(taskOrchestratorService).processPdfsForIbans(List.of(validUrl));
+        when(taskOrchestratorService.scanUrlsAsync(List.of(validUrl)))
+                .thenReturn(scanned(new UrlScanResult(validUrl, new ScanOutcome.NoIbanFound())));
 
-        mockMvc.perform(post("/api/invoice-scanner/process")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(new ObjectMapper().writeValueAsString(List.of(validUrl)))) // Send URLs in the request body
+        performScan(List.of(validUrl))
                 .andDo(print())
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.errorKey").value(expectedResponse.errorKey()))
@@ -102,12 +138,10 @@ class InvoiceScannerControllerTest {
                 .timestamp(Instant.now())
                 .build();
 
-        doThrow(new BlacklistedIbanFoundException(List.of("DE89370400440532013000"), List.of("DE44500105175407324931")))
-                .when(taskOrchestratorService).processPdfsForIbans(List.of(validUrl));
+        when(taskOrchestratorService.scanUrlsAsync(List.of(validUrl))).thenReturn(scanned(new UrlScanResult(validUrl,
+                new ScanOutcome.Blacklisted(List.of("DE44500105175407324931"), List.of("DE89370400440532013000")))));
 
-        mockMvc.perform(post("/api/invoice-scanner/process")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(new ObjectMapper().writeValueAsString(List.of(validUrl)))) // Send URLs in the request body
+        performScan(List.of(validUrl))
                 .andDo(print())
                 .andExpect(status().isForbidden())
                 .andExpect(jsonPath("$.message", Matchers.equalTo(expectedResponse.getMessage())))
@@ -121,16 +155,260 @@ class InvoiceScannerControllerTest {
         String validUrl = "https://example.com/invoice.pdf";
         List<String> urls = List.of(validUrl);
 
-        when(taskOrchestratorService.processPdfsForIbans(urls)).thenThrow(new RuntimeException("Unexpected error"));
+        when(taskOrchestratorService.scanUrlsAsync(urls))
+                .thenReturn(scanned(failed(validUrl, new RuntimeException("Unexpected error"))));
 
         // Act & Assert
-        mockMvc.perform(post("/api/invoice-scanner/process")
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(new ObjectMapper().writeValueAsString(urls))) // Send URLs in the request body
+        performScan(urls)
                 .andExpect(status().isInternalServerError())
                 .andExpect(jsonPath("$.errorKey").value("INTERNAL_ERROR")) // Adjust based on actual response structure
                 .andExpect(jsonPath("$.errorMessage").value("Unexpected error")); // Adjust based on actual response structure
 
-        verify(taskOrchestratorService, times(1)).processPdfsForIbans(urls);
+        verify(taskOrchestratorService, times(1)).scanUrlsAsync(urls);
+    }
+
+    @Test
+    void testScanInvoices_DownloadFailed_ReturnsServiceUnavailable() throws Exception {
+        String validUrl = "https://example.com/unreachable.pdf";
+        when(taskOrchestratorService.scanUrlsAsync(List.of(validUrl)))
+                .thenReturn(scanned(failed(validUrl, new PdfDownloadException("Failed to download PDF from " + validUrl))));
+
+        performScan(List.of(validUrl))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.errorKey").value("PDF_DOWNLOAD"))
+                .andExpect(jsonPath("$.errorMessage").value("Failed to download PDF from " + validUrl));
+    }
+
+    @Test
+    void testScanInvoices_DocumentTooLarge_ReturnsPayloadTooLarge() throws Exception {
+        String validUrl = "https://example.com/huge.pdf";
+        when(taskOrchestratorService.scanUrlsAsync(List.of(validUrl))).thenReturn(scanned(failed(validUrl,
+                new PdfTooLargeException("The document exceeds the maximum size of 52428800 bytes."))));
+
+        performScan(List.of(validUrl))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(jsonPath("$.errorKey").value("PDF_TOO_LARGE"))
+                .andExpect(jsonPath("$.errorMessage").value("The document exceeds the maximum size of 52428800 bytes."));
+    }
+
+    @Test
+    void testScanInvoices_ReleasesRequestThreadUntilScanCompletes() throws Exception {
+        String validUrl = "https://example.com/invoice.pdf";
+        CompletableFuture<List<UrlScanResult>> scan = new CompletableFuture<>();
+        when(taskOrchestratorService.scanUrlsAsync(List.of(validUrl))).thenReturn(scan);
+
+        MvcResult mvcResult = startScan(List.of(validUrl));
+        scan.complete(List.of(clean(validUrl, "DE44500105175407324931")));
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.validIbans[0]").value("DE44500105175407324931"));
+    }
+
+    @Test
+    void testScanInvoices_Timeout_ReturnsServiceUnavailable() throws Exception {
+        String validUrl = "https://example.com/slow.pdf";
+        when(taskOrchestratorService.scanUrlsAsync(List.of(validUrl))).thenReturn(new CompletableFuture<>());
+
+        MvcResult mvcResult = startScan(List.of(validUrl));
+        MockAsyncContext asyncContext = (MockAsyncContext) mvcResult.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.errorKey").value("SCAN_TIMEOUT"));
+    }
+
+    @Test
+    void testScanInvoices_FailingUrls_ReturnResultsOfTheOthers() throws Exception {
+        List<String> urls = List.of("https://example.com/a.pdf", "https://example.com/missing.pdf",
+                "https://example.com/slow.pdf", "https://example.com/empty.pdf");
+        when(taskOrchestratorService.scanUrlsAsync(urls)).thenReturn(scanned(
+                clean(urls.get(0), "DE44500105175407324931"),
+                failed(urls.get(1), new PdfNotFoundException("No PDFs found at the given URL.")),
+                failed(urls.get(2), new ScanTimeoutException("Processing did not complete within PT2M")),
+                new UrlScanResult(urls.get(3), new ScanOutcome.NoIbanFound())));
+
+        performScan(urls)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.validIbans", Matchers.equalTo(List.of("DE44500105175407324931"))))
+                .andExpect(jsonPath("$.results[0].status").value("SUCCEEDED"))
+                .andExpect(jsonPath("$.results[1].status").value("FAILED"))
+                .andExpect(jsonPath("$.results[1].errorKey").value("PDF_NOT_FOUND"))
+                .andExpect(jsonPath("$.results[2].status").value("FAILED"))
+                .andExpect(jsonPath("$.results[2].errorKey").value("SCAN_TIMEOUT"))
+                .andExpect(jsonPath("$.results[3].status").value("NO_IBAN_FOUND"));
+    }
+
+    @Test
+    void testScanInvoices_BlacklistedIbanInOneUrl_ReturnsForbiddenWithAllResults() throws Exception {
+        List<String> urls = List.of("https://example.com/a.pdf", "https://example.com/b.pdf");
+        when(taskOrchestratorService.scanUrlsAsync(urls)).thenReturn(scanned(
+                clean(urls.get(0), "DE44500105175407324931"),
+                new UrlScanResult(urls.get(1), new ScanOutcome.Blacklisted(List.of(), List.of("DE89370400440532013000")))));
+
+        performScan(urls)
+                .andExpect(status().isForbidden())
+                .andExpect(jsonPath("$.blackListedIbans", Matchers.equalTo(List.of("DE89370400440532013000"))))
+                .andExpect(jsonPath("$.results[0].status").value("SUCCEEDED"))
+                .andExpect(jsonPath("$.results[1].status").value("BLACKLISTED"));
+    }
+
+    @Test
+    void testScanUploads_MultipleFiles_AreScannedTogether() throws Exception {
+        ArgumentCaptor<List<PdfSource>> sources = ArgumentCaptor.captor();
+        when(taskOrchestratorService.scanSourcesAsync(sources.capture())).thenReturn(scanned(
+                clean("a.pdf", "DE44500105175407324931"),
+                clean("b.pdf", "DE89370400440532013000")));
+
+        MvcResult started = mockMvc.perform(multipart("/api/invoice-scanner/process/upload")
+                        .file(new MockMultipartFile("files", "a.pdf", MediaType.APPLICATION_PDF_VALUE, new byte[]{1, 2, 3}))
+                        .file(new MockMultipartFile("files", "b.pdf", MediaType.APPLICATION_PDF_VALUE, new byte[]{4, 5})))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.validIbans.length()").value(2))
+                .andExpect(jsonPath("$.results[1].url").value("b.pdf"));
+        List<PdfSource> uploaded = sources.getValue();
+        assertEquals(List.of("a.pdf", "b.pdf"), uploaded.stream().map(PdfSource::getName).toList());
+        assertEquals(List.of(3L, 2L), uploaded.stream().map(PdfSource::getLength).toList());
+        assertTrue(uploaded.stream().allMatch(PdfSource::isInMemory));
+        uploaded.forEach(PdfSource::close);
+    }
+
+    @Test
+    void testScanUploads_RawPdfBody_IsStreamedIntoOneSource() throws Exception {
+        ArgumentCaptor<List<PdfSource>> sources = ArgumentCaptor.captor();
+        when(taskOrchestratorService.scanSourcesAsync(sources.capture()))
+                .thenReturn(scanned(new UrlScanResult("invoice-42.pdf", new ScanOutcome.NoIbanFound())));
+
+        MvcResult started = mockMvc.perform(post("/api/invoice-scanner/process/upload")
+                        .param("name", "invoice-42.pdf")
+                        .contentType(MediaType.APPLICATION_PDF)
+                        .content(new byte[]{1, 2, 3, 4}))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.errorKey").value("NO_IBAN_FOUND"));
+        PdfSource uploaded = sources.getValue().getFirst();
+        assertEquals("invoice-42.pdf", uploaded.getName());
+        assertEquals(4, uploaded.getLength());
+        uploaded.close();
+    }
+
+    @Test
+    void testScanUploads_RawPdfBodyBeyondTheMaximumSize_ReturnsPayloadTooLarge() throws Exception {
+        clearInvocations(taskOrchestratorService);
+        DataSize maxSize = pdfDownloadProperties.getMaxSize();
+        pdfDownloadProperties.setMaxSize(DataSize.ofBytes(3));
+        try {
+            mockMvc.perform(post("/api/invoice-scanner/process/upload")
+                            .param("name", "invoice-42.pdf")
+                            .contentType(MediaType.APPLICATION_PDF)
+                            .content(new byte[]{1, 2, 3, 4}))
+                    .andExpect(status().isPayloadTooLarge())
+                    .andExpect(jsonPath("$.errorKey").value("PDF_TOO_LARGE"));
+        } finally {
+            pdfDownloadProperties.setMaxSize(maxSize);
+        }
+        verify(taskOrchestratorService, never()).scanSourcesAsync(anyList());
+    }
+
+    @Test
+    void testStreamInvoices_Ndjson_WritesOneLinePerUrl() throws Exception {
+        List<String> urls = List.of("https://example.com/a.pdf", "https://example.com/missing.pdf");
+        streamed(clean(urls.get(0), "DE44500105175407324931"),
+                failed(urls.get(1), new PdfNotFoundException("No PDFs found at the given URL.")));
+
+        MvcResult started = startStream(urls, MediaType.APPLICATION_NDJSON);
+
+        String[] lines = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+        assertEquals(2, lines.length);
+        ObjectMapper objectMapper = new ObjectMapper();
+        assertEquals("SUCCEEDED", objectMapper.readTree(lines[0]).get("status").asText());
+        assertEquals(urls.get(1), objectMapper.readTree(lines[1]).get("url").asText());
+        assertEquals("PDF_NOT_FOUND", objectMapper.readTree(lines[1]).get("errorKey").asText());
+    }
+
+    @Test
+    void testStreamInvoices_Sse_SendsOneResultEventPerUrl() throws Exception {
+        List<String> urls = List.of("https://example.com/a.pdf", "https://example.com/b.pdf");
+        streamed(clean(urls.get(0), "DE44500105175407324931"),
+                new UrlScanResult(urls.get(1), new ScanOutcome.Blacklisted(List.of(), List.of("DE89370400440532013000"))));
+
+        MvcResult started = startStream(urls, MediaType.TEXT_EVENT_STREAM);
+
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(2, body.split("event:result\n").length - 1);
+        assertTrue(body.contains("\"status\":\"BLACKLISTED\""));
+    }
+
+    @Test
+    void testStreamInvoices_BodyIsNotAnArray_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/invoice-scanner/process")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        // Errors before the stream started are answered as JSON
+                        .accept(MediaType.APPLICATION_NDJSON, MediaType.APPLICATION_JSON)
+                        .content("{\"urls\": []}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorKey").value("ILLEGAL_ARGUMENT"));
+    }
+
+    private static UrlScanResult clean(String url, String... validIbans) {
+        return new UrlScanResult(url, new ScanOutcome.Clean(List.of(validIbans)));
+    }
+
+    private static UrlScanResult failed(String url, Throwable error) {
+        return new UrlScanResult(url, new ScanOutcome.Failed(error));
+    }
+
+    private static CompletableFuture<List<UrlScanResult>> scanned(UrlScanResult... results) {
+        return CompletableFuture.completedFuture(List.of(results));
+    }
+
+    /**
+     * Makes the streaming scan hand over the result of every URL it reads right away.
+     */
+    private void streamed(UrlScanResult... results) {
+        doAnswer(invocation -> {
+            Iterator<String> urls = invocation.getArgument(0);
+            Consumer<UrlScanResult> onResult = invocation.getArgument(1);
+            urls.forEachRemaining(url -> Stream.of(results).filter(result -> result.url().equals(url)).forEach(onResult));
+            return CompletableFuture.completedFuture(null);
+        }).when(taskOrchestratorService).scanUrlsAsync(any(Iterator.class), any());
+    }
+
+    private MvcResult startStream(List<String> urls, MediaType accept) throws Exception {
+        return mockMvc.perform(post("/api/invoice-scanner/process")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(accept)
+                        .content(new ObjectMapper().writeValueAsString(urls)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    /**
+     * Posts the URLs and dispatches the asynchronous result once the scan completed.
+     */
+    private ResultActions performScan(List<String> urls) throws Exception {
+        return mockMvc.perform(asyncDispatch(startScan(urls)));
+    }
+
+    private MvcResult startScan(List<String> urls) throws Exception {
+        return mockMvc.perform(post("/api/invoice-scanner/process")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(urls)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
     }
-}
\ No newline at end of file
+}
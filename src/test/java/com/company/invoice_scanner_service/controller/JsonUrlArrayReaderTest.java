@@ -0,0 +1,62 @@
+package com.company.invoice_scanner_service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonUrlArrayReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void testReadsUrlsOneAtATime() throws IOException {
+        try (JsonUrlArrayReader reader = reader("[\"https://example.com/a.pdf\", \"https://example.com/b.pdf\"]")) {
+            assertTrue(reader.hasNext());
+            assertEquals("https://example.com/a.pdf", reader.next());
+            assertEquals(1, reader.count());
+
+            List<String> rest = new ArrayList<>();
+            reader.forEachRemaining(rest::add);
+            assertEquals(List.of("https://example.com/b.pdf"), rest);
+            assertEquals(2, reader.count());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testRejectsBodyThatIsNotAnArray() {
+        assertThrows(IllegalArgumentException.class, () -> reader("{\"urls\": []}"));
+        assertThrows(IllegalArgumentException.class, () -> reader("not json"));
+    }
+
+    @Test
+    void testFailsAtMalformedElement() throws IOException {
+        try (JsonUrlArrayReader reader = reader("[\"https://example.com/a.pdf\", 42]")) {
+            assertEquals("https://example.com/a.pdf", reader.next());
+            assertThrows(IllegalArgumentException.class, reader::hasNext);
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    void testFailsAtTruncatedBody() throws IOException {
+        try (JsonUrlArrayReader reader = reader("[\"https://example.com/a.pdf\", \"https://exa")) {
+            assertEquals("https://example.com/a.pdf", reader.next());
+            assertThrows(UncheckedIOException.class, reader::hasNext);
+        }
+        try (JsonUrlArrayReader reader = reader("[\"https://example.com/a.pdf\"")) {
+            assertEquals("https://example.com/a.pdf", reader.next());
+            assertThrows(RuntimeException.class, reader::hasNext);
+        }
+    }
+
+    private JsonUrlArrayReader reader(String json) throws IOException {
+        return new JsonUrlArrayReader(objectMapper.createParser(json));
+    }
+}
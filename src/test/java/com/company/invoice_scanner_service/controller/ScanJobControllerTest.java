@@ -0,0 +1,118 @@
+package com.company.invoice_scanner_service.controller;
+
+import com.company.invoice_scanner_service.exception.InvalidUrlException;
+import com.company.invoice_scanner_service.exception.ScanJobNotFoundException;
+import com.company.invoice_scanner_service.service.job.ScanJob;
+import com.company.invoice_scanner_service.service.job.ScanJobService;
+import com.company.invoice_scanner_service.service.job.ScanJobUrl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.endsWith;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// The scheduled flush and purge would otherwise call the mock while a test stubs it
+@SpringBootTest(properties = {"scan.jobs.flush-interval=1h", "scan.jobs.purge-interval=1h"})
+@AutoConfigureMockMvc
+@Import(ScanJobControllerTest.MockConfig.class)
+class ScanJobControllerTest {
+
+    private static final UUID JOB_ID = UUID.fromString("6f1c2a3e-8d4b-4c5a-9e7f-0a1b2c3d4e5f");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ScanJobService scanJobService;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.reset(scanJobService);
+    }
+
+    @Test
+    void shouldCreateJobAndReturnAccepted() throws Exception {
+        List<String> urls = List.of("https://example.com/a.pdf", "https://example.com/b.pdf");
+        when(scanJobService.submit(urls)).thenReturn(newJob(
+                ScanJobUrl.pending(0, urls.get(0)),
+                ScanJobUrl.pending(1, urls.get(1))));
+
+        mockMvc.perform(post("/api/invoice-scanner/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(urls)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", endsWith("/api/invoice-scanner/jobs/" + JOB_ID)))
+                .andExpect(jsonPath("$.jobId").value(JOB_ID.toString()))
+                .andExpect(jsonPath("$.status").value("RUNNING"))
+                .andExpect(jsonPath("$.urls[1].url").value("https://example.com/b.pdf"))
+                .andExpect(jsonPath("$.urls[1].status").value("PENDING"));
+    }
+
+    @Test
+    void shouldRejectJobWithBlankUrl() throws Exception {
+        when(scanJobService.submit(anyList())).thenThrow(new InvalidUrlException("Missing URL at position 1."));
+
+        mockMvc.perform(post("/api/invoice-scanner/jobs")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"https://example.com/a.pdf\", \"\"]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errorKey").value("INVALID_URL"));
+    }
+
+    @Test
+    void shouldReturnPerUrlResults() throws Exception {
+        when(scanJobService.getJob(JOB_ID)).thenReturn(newJob(
+                ScanJobUrl.pending(0, "https://example.com/a.pdf").succeeded(List.of("DE44500105175407324931")),
+                ScanJobUrl.pending(1, "https://example.com/b.pdf")
+                        .blacklisted(List.of(), List.of("DE89370400440532013000")),
+                ScanJobUrl.pending(2, "https://example.com/c.pdf").failed("PDF_NOT_FOUND", "No PDFs found at the given URL.")));
+
+        mockMvc.perform(get("/api/invoice-scanner/jobs/" + JOB_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.urls[0].status").value("SUCCEEDED"))
+                .andExpect(jsonPath("$.urls[0].validIbans[0]").value("DE44500105175407324931"))
+                .andExpect(jsonPath("$.urls[1].status").value("BLACKLISTED"))
+                .andExpect(jsonPath("$.urls[1].blackListedIbans[0]").value("DE89370400440532013000"))
+                .andExpect(jsonPath("$.urls[2].status").value("FAILED"))
+                .andExpect(jsonPath("$.urls[2].errorKey").value("PDF_NOT_FOUND"));
+    }
+
+    @Test
+    void shouldReturnNotFoundForUnknownJob() throws Exception {
+        when(scanJobService.getJob(JOB_ID)).thenThrow(new ScanJobNotFoundException("Scan job not found: " + JOB_ID));
+
+        mockMvc.perform(get("/api/invoice-scanner/jobs/" + JOB_ID))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.errorKey").value("JOB_NOT_FOUND"));
+    }
+
+    private static ScanJob newJob(ScanJobUrl... urls) {
+        Instant createdAt = Instant.now();
+        return new ScanJob(JOB_ID, createdAt, createdAt.plus(1, ChronoUnit.DAYS), List.of(urls));
+    }
+
+    static class MockConfig {
+        @Bean
+        public ScanJobService scanJobService() {
+            return Mockito.mock(ScanJobService.class);
+        }
+    }
+}
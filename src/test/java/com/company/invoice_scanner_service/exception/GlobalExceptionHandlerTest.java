@@ -1,13 +1,11 @@
 package com.company.invoice_scanner_service.exception;
 
-import com.company.invoice_scanner_service.dto.InvoiceScanResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -44,46 +42,23 @@ class GlobalExceptionHandlerTest {
     }
 
     @Test
-    void testHandleNoIbanFoundException_ReturnsOk() {
-        NoIbanFoundException ex = new NoIbanFoundException("No IBANs found");
+    void testHandlePdfDownloadException_ReturnsServiceUnavailable() {
+        PdfDownloadException ex = new PdfDownloadException("Too many downloads waiting for host example.com");
 
-        ResponseEntity<ErrorResponse> response = globalExceptionHandler.handleNoIbanFoundException(ex);
+        ResponseEntity<ErrorResponse> response = globalExceptionHandler.handlePdfDownloadException(ex);
 
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("NO_IBAN_FOUND", Objects.requireNonNull(response.getBody()).errorKey());
-        assertEquals("No IBANs found", response.getBody().errorMessage());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("PDF_DOWNLOAD", Objects.requireNonNull(response.getBody()).errorKey());
     }
 
     @Test
-    void testHandleInvalidIbansException_ReturnsOk() {
-        InvalidIbansException ex = new InvalidIbansException("Invalid IBANs detected");
+    void testHandlePdfTooLargeException_ReturnsPayloadTooLarge() {
+        PdfTooLargeException ex = new PdfTooLargeException("The document exceeds the maximum size of 52428800 bytes");
 
-        ResponseEntity<ErrorResponse> response = globalExceptionHandler.handleInvalidIbansException(ex);
+        ResponseEntity<ErrorResponse> response = globalExceptionHandler.handlePdfTooLargeException(ex);
 
-        assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals("INVALID_IBANS_PRESENT", Objects.requireNonNull(response.getBody()).errorKey());
-        assertEquals("Invalid IBANs detected", response.getBody().errorMessage());
-    }
-
-    @Test
-    void testHandleBlacklistedIbanFoundException_ReturnsValidResponse() {
-        // Arrange
-        List<String> blacklistedIbans = List.of("FR7630006000011234567890189");
-        List<String> validIbans = List.of("DE44500105175407324931");
-        BlacklistedIbanFoundException ex = new BlacklistedIbanFoundException(blacklistedIbans, validIbans);
-
-        // Act
-        ResponseEntity<InvoiceScanResponse> response = globalExceptionHandler.handleBlacklistedIbanFoundException(ex);
-
-        // Assert
-        assertEquals(HttpStatus.FORBIDDEN, response.getStatusCode());
-
-        InvoiceScanResponse responseBody = response.getBody();
-        assertNotNull(responseBody);
-        assertEquals("Blacklisted IBANs found", responseBody.getMessage());
-        assertEquals(blacklistedIbans, responseBody.getBlackListedIbans());
-        assertNull(responseBody.getValidIbans());
-        assertNotNull(responseBody.getTimestamp());
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, response.getStatusCode());
+        assertEquals("PDF_TOO_LARGE", Objects.requireNonNull(response.getBody()).errorKey());
     }
 
     @Test
@@ -0,0 +1,110 @@
+package com.company.invoice_scanner_service.repository;
+
+import com.company.invoice_scanner_service.service.ScanUrlStatus;
+import com.company.invoice_scanner_service.service.job.ScanJob;
+import com.company.invoice_scanner_service.service.job.ScanJobUrl;
+import com.company.invoice_scanner_service.service.job.ScanJobUrlUpdate;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against PostgreSQL migrated by Flyway with the locations and schema of application.yml, so a migration that
+ * Flyway does not pick up fails here and not at the first job submission.
+ */
+class JdbcScanJobStoreTest {
+
+    private static EmbeddedPostgres postgres;
+    private static JdbcScanJobStore jdbcScanJobStore;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        Properties properties = yaml.getObject();
+        Flyway.configure()
+                .dataSource(postgres.getPostgresDatabase())
+                .locations(properties.getProperty("spring.flyway.locations[0]"))
+                .schemas(properties.getProperty("spring.flyway.schemas"))
+                .defaultSchema(properties.getProperty("spring.flyway.default-schema"))
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+        jdbcScanJobStore = new JdbcScanJobStore(new JdbcTemplate(postgres.getPostgresDatabase()));
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    void testCreateAndUpdate_AreReadBackFromTheMigratedTables() {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        ScanJobUrl first = ScanJobUrl.pending(0, "https://example.com/a.pdf");
+        ScanJobUrl second = ScanJobUrl.pending(1, "https://example.com/b.pdf");
+        ScanJob job = new ScanJob(UUID.randomUUID(), now, now.plus(Duration.ofHours(1)), List.of(first, second));
+
+        jdbcScanJobStore.create(job);
+        jdbcScanJobStore.updateUrls(List.of(
+                new ScanJobUrlUpdate(job.id(), first.succeeded(List.of("DE89370400440532013000"))),
+                new ScanJobUrlUpdate(job.id(), second.failed("PDF_NOT_FOUND", "No PDFs found at the given URL."))));
+
+        ScanJob found = jdbcScanJobStore.find(job.id()).orElseThrow();
+        assertEquals(job.expiresAt(), found.expiresAt());
+        assertEquals(ScanUrlStatus.SUCCEEDED, found.urls().get(0).status());
+        assertEquals(List.of("DE89370400440532013000"), found.urls().get(0).validIbans());
+        assertEquals(ScanUrlStatus.FAILED, found.urls().get(1).status());
+        assertEquals("PDF_NOT_FOUND", found.urls().get(1).errorKey());
+    }
+
+    @Test
+    void testFailPendingUrls_FailsOnlyPendingUrlsOfOldJobs() {
+        Instant now = Instant.now();
+        ScanJob old = new ScanJob(UUID.randomUUID(), now.minus(Duration.ofHours(1)), now.plus(Duration.ofHours(1)),
+                List.of(ScanJobUrl.pending(0, "https://example.com/a.pdf"), ScanJobUrl.pending(1, "https://example.com/b.pdf")));
+        ScanJob recent = new ScanJob(UUID.randomUUID(), now, now.plus(Duration.ofHours(1)),
+                List.of(ScanJobUrl.pending(0, "https://example.com/c.pdf")));
+        jdbcScanJobStore.create(old);
+        jdbcScanJobStore.create(recent);
+        jdbcScanJobStore.updateUrls(List.of(new ScanJobUrlUpdate(old.id(),
+                old.urls().get(1).succeeded(List.of("DE44500105175407324931")))));
+
+        assertEquals(1, jdbcScanJobStore.failPendingUrls(now.minus(Duration.ofMinutes(10)), "SCAN_INTERRUPTED",
+                "The scan was interrupted."));
+
+        List<ScanJobUrl> oldUrls = jdbcScanJobStore.find(old.id()).orElseThrow().urls();
+        assertEquals(ScanUrlStatus.FAILED, oldUrls.get(0).status());
+        assertEquals("SCAN_INTERRUPTED", oldUrls.get(0).errorKey());
+        assertNotNull(oldUrls.get(0).completedAt());
+        assertEquals(ScanUrlStatus.SUCCEEDED, oldUrls.get(1).status());
+        assertEquals(ScanUrlStatus.PENDING, jdbcScanJobStore.find(recent.id()).orElseThrow().urls().getFirst().status());
+    }
+
+    @Test
+    void testDeleteExpired_RemovesTheJobAndItsUrls() {
+        Instant now = Instant.now();
+        ScanJob job = new ScanJob(UUID.randomUUID(), now.minus(Duration.ofHours(2)), now.minus(Duration.ofHours(1)),
+                List.of(ScanJobUrl.pending(0, "https://example.com/expired.pdf")));
+        jdbcScanJobStore.create(job);
+
+        assertTrue(jdbcScanJobStore.deleteExpired(now) >= 1);
+        assertTrue(jdbcScanJobStore.find(job.id()).isEmpty());
+    }
+}
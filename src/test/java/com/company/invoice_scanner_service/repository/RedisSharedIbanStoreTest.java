@@ -0,0 +1,166 @@
+package com.company.invoice_scanner_service.repository;
+
+import com.company.invoice_scanner_service.config.PdfExtractionProperties;
+import com.company.invoice_scanner_service.service.iban.ExtractedIbanCache;
+import com.company.invoice_scanner_service.service.iban.SharedIbanStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the {@link ExtractedIbanCache} of two replicas against a real Redis, each with a connection of its own, so
+ * the pipelined writes, the expiry and the encoding of the values go over the wire.
+ */
+class RedisSharedIbanStoreTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final List<String> IBANS = List.of("DE44500105175407324931", "DE89370400440532013000");
+
+    private static RedisServer redisServer;
+    private static int port;
+
+    private final PdfExtractionProperties properties = new PdfExtractionProperties();
+    private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+    private final List<ExtractedIbanCache> caches = new ArrayList<>();
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        port = freePort();
+        redisServer = new RedisServer(port);
+        redisServer.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        // Flushed by the tests
+        properties.getCache().setWriteBehindInterval(Duration.ofHours(1));
+        properties.getCache().setSharedTimeout(Duration.ofMillis(500));
+    }
+
+    @AfterEach
+    void tearDown() {
+        caches.forEach(ExtractedIbanCache::close);
+        connectionFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    @Test
+    void testPut_IsWrittenBehindAndReadByAnotherReplica() {
+        LettuceConnectionFactory connectionFactory = connectionFactory(port);
+        ExtractedIbanCache replicaA = cache(connectionFactory, new SimpleMeterRegistry());
+        ExtractedIbanCache replicaB = cache(connectionFactory(port), new SimpleMeterRegistry());
+
+        replicaA.put(HASH, IBANS);
+        assertNull(replicaB.get("not-yet-" + HASH), "Nothing is written before the flush");
+        replicaA.flushSharedWrites();
+
+        assertEquals(IBANS, replicaB.get(HASH));
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            Long ttl = connection.keyCommands().ttl(key(HASH));
+            assertNotNull(ttl);
+            assertTrue(ttl > 0 && ttl <= properties.getCache().getSharedTtl().toSeconds(), "TTL was " + ttl);
+        }
+    }
+
+    @Test
+    void testPut_EmptyListIsSharedAsAValue() {
+        ExtractedIbanCache replicaA = cache(connectionFactory(port), new SimpleMeterRegistry());
+        ExtractedIbanCache replicaB = cache(connectionFactory(port), new SimpleMeterRegistry());
+
+        replicaA.put("empty-" + HASH, List.of());
+        replicaA.flushSharedWrites();
+
+        assertEquals(List.of(), replicaB.get("empty-" + HASH));
+    }
+
+    @Test
+    void testGet_UnknownDocument_IsAMiss() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExtractedIbanCache cache = cache(connectionFactory(port), meterRegistry);
+
+        assertNull(cache.get("missing-" + HASH));
+        assertEquals(1.0, meterRegistry.get("pdf.extraction.cache.shared.gets").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void testRedisOutage_FallsBackToTheLocalCache() throws IOException {
+        int outagePort = freePort();
+        RedisServer outage = new RedisServer(outagePort);
+        outage.start();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExtractedIbanCache cache = cache(connectionFactory(outagePort), meterRegistry);
+        cache.put(HASH, IBANS);
+        cache.flushSharedWrites();
+        outage.stop();
+
+        long started = System.nanoTime();
+        assertEquals(IBANS, cache.get(HASH), "Served by the local cache");
+        assertNull(cache.get("other-" + HASH));
+        cache.put("other-" + HASH, List.of());
+        assertDoesNotThrow(cache::flushSharedWrites);
+
+        assertEquals(List.of(), cache.get("other-" + HASH));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(1.0, meterRegistry.get("pdf.extraction.cache.shared.gets").tag("result", "timeout").counter().count()
+                + meterRegistry.get("pdf.extraction.cache.shared.gets").tag("result", "error").counter().count());
+        assertEquals(1.0, meterRegistry.get("pdf.extraction.cache.shared.writes").tag("result", "error").counter().count());
+    }
+
+    private ExtractedIbanCache cache(LettuceConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
+        SharedIbanStore store = new RedisSharedIbanStore(connectionFactory, properties.getCache().getSharedKeyPrefix());
+        ExtractedIbanCache cache = new ExtractedIbanCache(properties,
+                new StaticListableBeanFactory(Map.of("sharedIbanStore", store)).getBeanProvider(SharedIbanStore.class),
+                meterRegistry);
+        caches.add(cache);
+        return cache;
+    }
+
+    private LettuceConnectionFactory connectionFactory(int port) {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("localhost", port),
+                LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(1)).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        connectionFactories.add(connectionFactory);
+        // Connects up front, so the first lookup is not given up while the connection is set up
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.ping();
+        }
+        return connectionFactory;
+    }
+
+    private byte[] key(String contentHash) {
+        return (properties.getCache().getSharedKeyPrefix() + contentHash).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
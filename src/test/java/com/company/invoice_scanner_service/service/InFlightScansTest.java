@@ -0,0 +1,43 @@
+package com.company.invoice_scanner_service.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightScansTest {
+
+    private final InFlightScans inFlightScans = new InFlightScans(new SimpleMeterRegistry());
+
+    @Test
+    void testJoin_CallersCannotCompleteTheSharedScan() {
+        CompletableFuture<ScanOutcome> scan = new CompletableFuture<>();
+        CompletableFuture<ScanOutcome> first = inFlightScans.join("http://example.com/a.pdf", () -> scan);
+        CompletableFuture<ScanOutcome> second = inFlightScans.join("http://example.com/a.pdf", () -> fail("Scan started twice"));
+
+        first.cancel(true);
+        scan.complete(new ScanOutcome.Clean(List.of("DE44500105175407324931")));
+
+        assertFalse(scan.isCancelled());
+        assertInstanceOf(ScanOutcome.Clean.class, second.join());
+        assertEquals(0, inFlightScans.size());
+    }
+
+    @Test
+    void testJoin_FailureToStartEndsInFailedOutcome() {
+        AtomicInteger started = new AtomicInteger();
+
+        ScanOutcome outcome = inFlightScans.join("http://example.com/a.pdf", () -> {
+            started.incrementAndGet();
+            throw new IllegalStateException("Download stage is shut down");
+        }).join();
+
+        assertInstanceOf(IllegalStateException.class, assertInstanceOf(ScanOutcome.Failed.class, outcome).error());
+        assertEquals(1, started.get());
+        assertEquals(0, inFlightScans.size());
+    }
+}
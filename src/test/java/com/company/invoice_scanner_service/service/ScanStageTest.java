@@ -0,0 +1,190 @@
+package com.company.invoice_scanner_service.service;
+
+import com.company.invoice_scanner_service.config.ScanPipelineProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScanStageTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCall_QueuesTasksBeyondConcurrency() throws Exception {
+        ScanStage stage = newStage(2, 10);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int value = i;
+            futures.add(stage.call(() -> {
+                await(release);
+                return value;
+            }));
+        }
+
+        assertEquals(2, stage.active());
+        assertEquals(3, stage.queued());
+        assertEquals(3.0, meterRegistry.get("scan.pipeline.queue.size").tag("stage", "test").gauge().value());
+
+        release.countDown();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        // The slot is released right after the result was handed over, on the task's thread
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (stage.active() > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, stage.active());
+        assertEquals(5, meterRegistry.get("scan.pipeline.stage.duration").tag("stage", "test").timer().count());
+    }
+
+    @Test
+    void testCall_FullStage_ReturnsWithoutBlocking() throws Exception {
+        ScanStage stage = newStage(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        stage.call(() -> await(release));
+        stage.call(() -> await(release));
+
+        CompletableFuture<String> third = stage.call(() -> "third");
+
+        assertFalse(third.isDone());
+        assertEquals(1.0, meterRegistry.get("scan.pipeline.waiting").tag("stage", "test").gauge().value());
+        release.countDown();
+        assertEquals("third", third.get(5, TimeUnit.SECONDS));
+        assertEquals(0.0, meterRegistry.get("scan.pipeline.waiting").tag("stage", "test").gauge().value());
+    }
+
+    @Test
+    void testCallAsync_FullNextStage_PreviousStageKeepsItsSlotWithoutBlocking() throws Exception {
+        ScanStage previous = new ScanStage("previous", new ScanPipelineProperties.Stage(1, 0), Runnable::run,
+                meterRegistry);
+        ScanStage stage = newStage(1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        stage.call(() -> await(release));
+        CompletableFuture<String> download = new CompletableFuture<>();
+        CompletableFuture<String> parsed = previous.callAsync(() -> download)
+                .thenCompose(value -> stage.call(() -> value + " parsed"));
+
+        // Completes the download on this thread, which must not wait for the full stage
+        download.complete("first");
+        CompletableFuture<String> second = previous.callAsync(() -> CompletableFuture.completedFuture("second"));
+
+        assertEquals(1, previous.active(), "The download keeps its slot until the parse stage admitted it");
+        assertFalse(second.isDone());
+        release.countDown();
+        assertEquals("first parsed", parsed.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertEquals(0, previous.active());
+    }
+
+    @Test
+    void testCall_FailureReleasesSlot() throws Exception {
+        ScanStage stage = newStage(1, 0);
+
+        CompletableFuture<Object> failed = stage.call(() -> {
+            throw new IllegalStateException("broken");
+        });
+
+        CompletionException exception = assertThrows(CompletionException.class, failed::join);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals("next", stage.call(() -> "next").get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCallAsync_HoldsSlotUntilFutureCompletes() throws Exception {
+        ScanStage stage = newStage(1, 5);
+        CompletableFuture<String> download = new CompletableFuture<>();
+
+        CompletableFuture<String> first = stage.callAsync(() -> download);
+        CompletableFuture<String> second = stage.callAsync(() -> CompletableFuture.completedFuture("second"));
+
+        assertEquals(1, stage.active());
+        assertFalse(second.isDone());
+        download.complete("first");
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testCallAsync_CancellingPropagatesToWorkAndSkipsQueuedTasks() throws Exception {
+        ScanStage stage = newStage(1, 5);
+        CompletableFuture<String> download = new CompletableFuture<>();
+        AtomicBoolean queuedStarted = new AtomicBoolean();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+
+        CompletableFuture<String> first = stage.callAsync(() -> {
+            firstStarted.countDown();
+            return download;
+        });
+        CompletableFuture<String> queued = stage.callAsync(() -> {
+            queuedStarted.set(true);
+            return CompletableFuture.completedFuture("queued");
+        });
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        queued.cancel(true);
+        first.cancel(true);
+
+        assertTrue(download.isCancelled(), "Cancelling the result should cancel the running work");
+        assertEquals("next", stage.callAsync(() -> CompletableFuture.completedFuture("next")).get(5, TimeUnit.SECONDS));
+        assertFalse(queuedStarted.get(), "Cancelled task must not start");
+        assertEquals(0, stage.active());
+    }
+
+    @Test
+    void testCallAsync_ClosesValueArrivingAfterCancellation() throws Exception {
+        ScanStage stage = newStage(1, 0);
+        // Work that is too far along to be cancelled
+        CompletableFuture<AutoCloseable> download = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return false;
+            }
+        };
+        AtomicBoolean closed = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+
+        CompletableFuture<AutoCloseable> result = stage.callAsync(() -> {
+            started.countDown();
+            return download;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        result.cancel(true);
+        download.complete(() -> closed.set(true));
+
+        assertTrue(closed.get(), "Late value should be closed");
+    }
+
+    private ScanStage newStage(int concurrency, int queueCapacity) {
+        return new ScanStage("test", new ScanPipelineProperties.Stage(concurrency, queueCapacity), executor, meterRegistry);
+    }
+
+    private static String await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "done";
+    }
+}
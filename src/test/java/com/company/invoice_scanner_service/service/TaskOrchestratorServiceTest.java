@@ -1,23 +1,39 @@
 package com.company.invoice_scanner_service.service;
 
-import com.company.invoice_scanner_service.exception.InvalidIbansException;
-import com.company.invoice_scanner_service.exception.NoIbanFoundException;
+import com.company.invoice_scanner_service.config.ScanPipelineProperties;
+import com.company.invoice_scanner_service.exception.PdfNotFoundException;
 import com.company.invoice_scanner_service.exception.PdfProcessingException;
+import com.company.invoice_scanner_service.exception.ScanTimeoutException;
 import com.company.invoice_scanner_service.service.iban.BlacklistedIbanService;
 import com.company.invoice_scanner_service.service.iban.IbanExtractionService;
 import com.company.invoice_scanner_service.service.iban.IbanValidationService;
 import com.company.invoice_scanner_service.service.pdf.PdfDownloadService;
+import com.company.invoice_scanner_service.service.pdf.PdfSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.io.File;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -37,94 +53,534 @@ public class TaskOrchestratorServiceTest {
     @Mock
     private BlacklistedIbanService blacklistedIbanService;
 
-    @Mock
-    private ExecutorService executorService;
+    private final ScanPipelineProperties pipelineProperties = new ScanPipelineProperties();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
-    @InjectMocks
     private TaskOrchestratorService taskOrchestratorService;
 
     @BeforeEach
     void setUp() {
-        // Reset mocks before each test
-        reset(pdfDownloadService, ibanExtractionService, ibanValidationService, blacklistedIbanService, executorService);
+        // Run every step on the calling thread
+        taskOrchestratorService = newTaskOrchestratorService(Runnable::run, Runnable::run);
     }
 
     @Test
-    void testProcessPdfsForIbans_Success() {
+    void testScanUrlsAsync_Success() {
         // Arrange
         String url = "http://example.com/pdf1.pdf";
         List<String> urls = List.of(url);
 
         // Mock the behavior of furtherProcessPdfForIbans
         TaskOrchestratorService spyService = spy(taskOrchestratorService);
-        doReturn(List.of("DE44500105175407324931")).when(spyService).furtherProcessPdfForIbans(url);
+        doReturn(CompletableFuture.completedFuture(new ScanOutcome.Clean(List.of("DE44500105175407324931"))))
+                .when(spyService).furtherProcessPdfForIbans(eq(url), any(Duration.class));
 
         // Act
-        List<String> result = spyService.processPdfsForIbans(urls);
+        List<UrlScanResult> result = spyService.scanUrlsAsync(urls).join();
 
         // Assert
         assertEquals(1, result.size());
-        assertEquals("DE44500105175407324931", result.getFirst());
-        verify(spyService, times(1)).furtherProcessPdfForIbans(url);
+        assertEquals(List.of("DE44500105175407324931"), result.getFirst().validIbans());
+        verify(spyService, times(1)).furtherProcessPdfForIbans(eq(url), any(Duration.class));
     }
 
     @Test
     void testFurtherProcessPdfForIbans_NoIbansFound() throws IOException {
         // Arrange
         String url = "http://example.com/pdf1.pdf";
-        File mockFile = mock(File.class);
-        when(pdfDownloadService.downloadPdfs(url)).thenReturn(List.of(mockFile));
-        when(ibanExtractionService.extractIbans(mockFile)).thenReturn(List.of());
+        PdfSource pdfSource = mock(PdfSource.class);
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+        when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenReturn(List.of());
 
         // Act & Assert
-        assertThrows(NoIbanFoundException.class, () -> taskOrchestratorService.furtherProcessPdfForIbans(url));
+        assertInstanceOf(ScanOutcome.NoIbanFound.class, taskOrchestratorService.furtherProcessPdfForIbans(url).join());
     }
 
     @Test
     void testFurtherProcessPdfForIbans_InvalidIbans() throws IOException {
         // Arrange
         String url = "http://example.com/pdf1.pdf";
-        File mockFile = mock(File.class);
-        when(pdfDownloadService.downloadPdfs(url)).thenReturn(List.of(mockFile));
-        when(ibanExtractionService.extractIbans(mockFile)).thenReturn(List.of("INVALID_IBAN"));
+        PdfSource pdfSource = mock(PdfSource.class);
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+        when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenReturn(List.of("INVALID_IBAN"));
         when(ibanValidationService.validateIbans(List.of("INVALID_IBAN"))).thenReturn(List.of());
 
         // Act & Assert
-        assertThrows(InvalidIbansException.class, () -> taskOrchestratorService.furtherProcessPdfForIbans(url));
+        ScanOutcome outcome = taskOrchestratorService.furtherProcessPdfForIbans(url).join();
+        assertEquals(new ScanOutcome.InvalidIbans(List.of("INVALID_IBAN")), outcome);
     }
 
     @Test
     void testFurtherProcessPdfForIbans_PdfProcessingException() throws IOException {
         // Arrange
         String url = "http://example.com/pdf1.pdf";
-        File mockFile = mock(File.class);
-        when(pdfDownloadService.downloadPdfs(url)).thenReturn(List.of(mockFile));
-        when(ibanExtractionService.extractIbans(mockFile)).thenThrow(new PdfProcessingException("Failed to extract IBANs"));
+        PdfSource pdfSource = mock(PdfSource.class);
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+        when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenThrow(new PdfProcessingException("Failed to extract IBANs"));
 
         // Act & Assert
-        assertThrows(PdfProcessingException.class, () -> taskOrchestratorService.furtherProcessPdfForIbans(url));
+        assertFailedWith(PdfProcessingException.class, taskOrchestratorService.furtherProcessPdfForIbans(url));
     }
 
     @Test
     void testFurtherProcessPdfForIbans_Success() throws IOException {
         // Arrange
         String url = "http://example.com/pdf1.pdf";
-        File mockFile = mock(File.class);
-        when(pdfDownloadService.downloadPdfs(url)).thenReturn(List.of(mockFile));
-        when(ibanExtractionService.extractIbans(mockFile)).thenReturn(List.of("DE44500105175407324931"));
+        PdfSource pdfSource = mock(PdfSource.class);
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+        when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenReturn(List.of("DE44500105175407324931"));
         when(ibanValidationService.validateIbans(List.of("DE44500105175407324931")))
                 .thenReturn(List.of("DE44500105175407324931"));
-        doNothing().when(blacklistedIbanService).checkForBlacklistedIbans(anyList());
 
         // Act
-        List<String> result = taskOrchestratorService.furtherProcessPdfForIbans(url);
+        ScanOutcome result = taskOrchestratorService.furtherProcessPdfForIbans(url).join();
 
         // Assert
-        assertEquals(1, result.size());
-        assertEquals("DE44500105175407324931", result.getFirst());
-        verify(pdfDownloadService, times(1)).downloadPdfs(url);
-        verify(ibanExtractionService, times(1)).extractIbans(mockFile);
+        assertEquals(new ScanOutcome.Clean(List.of("DE44500105175407324931")), result);
+        verify(pdfDownloadService, times(1)).downloadPdfSourceAsync(url);
+        verify(ibanExtractionService, times(1)).extractIbans(eq(pdfSource), any());
         verify(ibanValidationService, times(1)).validateIbans(List.of("DE44500105175407324931"));
-        verify(blacklistedIbanService, times(1)).checkForBlacklistedIbans(anyList());
+        verify(blacklistedIbanService, times(1)).findBlacklistedIbans(anyList());
+        verify(pdfSource, times(1)).close();
+    }
+
+    @Test
+    void testFurtherProcessPdfForIbans_BlacklistedIban() throws IOException {
+        // Arrange
+        String url = "http://example.com/pdf1.pdf";
+        PdfSource pdfSource = mock(PdfSource.class);
+        List<String> ibans = List.of("DE44500105175407324931", "DE89370400440532013000");
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+        when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenReturn(ibans);
+        when(ibanValidationService.validateIbans(ibans)).thenReturn(ibans);
+        when(blacklistedIbanService.findBlacklistedIbans(ibans)).thenReturn(List.of("DE89370400440532013000"));
+
+        // Act
+        ScanOutcome result = taskOrchestratorService.furtherProcessPdfForIbans(url).join();
+
+        // Assert
+        assertEquals(new ScanOutcome.Blacklisted(List.of("DE44500105175407324931"), List.of("DE89370400440532013000")),
+                result);
+    }
+
+    @Test
+    void testFurtherProcessPdfForIbans_ReleasesSourceOnFailure() throws IOException {
+        // Arrange
+        String url = "http://example.com/pdf1.pdf";
+        PdfSource pdfSource = mock(PdfSource.class);
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+        when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenThrow(new PdfProcessingException("Failed to extract IBANs"));
+
+        // Act & Assert
+        assertFailedWith(PdfProcessingException.class, taskOrchestratorService.furtherProcessPdfForIbans(url));
+        verify(pdfSource, times(1)).close();
+    }
+
+    @Test
+    void testFurtherProcessPdfForIbans_DownloadFails() {
+        // Arrange
+        String url = "http://example.com/missing.pdf";
+        when(pdfDownloadService.downloadPdfSourceAsync(url))
+                .thenReturn(CompletableFuture.failedFuture(new PdfNotFoundException("No PDFs found at the given URL.")));
+
+        // Act & Assert
+        assertFailedWith(PdfNotFoundException.class, taskOrchestratorService.furtherProcessPdfForIbans(url));
+        verifyNoInteractions(ibanExtractionService);
+    }
+
+    @Test
+    void testFurtherProcessPdfForIbans_RunsParsingAndLookupsOnTheirExecutors() throws Exception {
+        // Arrange
+        String url = "http://example.com/pdf1.pdf";
+        ExecutorService parseExecutor = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("parse").factory());
+        ExecutorService ioExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("io").factory());
+        try {
+            TaskOrchestratorService service = newTaskOrchestratorService(parseExecutor, ioExecutor);
+            PdfSource pdfSource = mock(PdfSource.class);
+            List<String> threads = new CopyOnWriteArrayList<>();
+            when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+            when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenAnswer(invocation -> {
+                threads.add(Thread.currentThread().getName());
+                return List.of("DE44500105175407324931");
+            });
+            when(ibanValidationService.validateIbans(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            when(blacklistedIbanService.findBlacklistedIbans(anyList())).thenAnswer(invocation -> {
+                threads.add(Thread.currentThread().getName());
+                return List.of();
+            });
+
+            // Act
+            service.furtherProcessPdfForIbans(url).get(5, TimeUnit.SECONDS);
+
+            // Assert
+            assertEquals(List.of("parse", "io"), threads);
+        } finally {
+            parseExecutor.shutdownNow();
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testProcessPdfsForIbans_BlockingLookupsDoNotLimitConcurrentUrls() throws Exception {
+        // Arrange: every lookup blocks until all of them are running, which a pool of ten threads could never reach
+        int urlCount = 50;
+        pipelineProperties.getLookup().setConcurrency(urlCount);
+        CountDownLatch allLookupsRunning = new CountDownLatch(urlCount);
+        ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            TaskOrchestratorService service = newTaskOrchestratorService(Runnable::run, ioExecutor);
+            when(pdfDownloadService.downloadPdfSourceAsync(anyString()))
+                    .thenAnswer(invocation -> CompletableFuture.completedFuture(mock(PdfSource.class)));
+            when(ibanExtractionService.extractIbans(any(PdfSource.class), any())).thenReturn(List.of("DE44500105175407324931"));
+            when(ibanValidationService.validateIbans(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            doAnswer(invocation -> {
+                allLookupsRunning.countDown();
+                assertTrue(allLookupsRunning.await(10, TimeUnit.SECONDS), "Lookups did not run concurrently");
+                return List.of();
+            }).when(blacklistedIbanService).findBlacklistedIbans(anyList());
+            List<String> urls = IntStream.range(0, urlCount).mapToObj(i -> "http://example.com/pdf" + i + ".pdf").toList();
+
+            // Act
+            List<UrlScanResult> result = service.scanUrlsAsync(urls).join();
+
+            // Assert
+            assertEquals(urlCount, result.size());
+            assertTrue(result.stream().allMatch(UrlScanResult::succeeded));
+        } finally {
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testProcessPdfsForIbans_LimitsConcurrentLookups() throws IOException {
+        // Arrange
+        int urlCount = 30;
+        pipelineProperties.getLookup().setConcurrency(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            TaskOrchestratorService service = newTaskOrchestratorService(Runnable::run, ioExecutor);
+            when(pdfDownloadService.downloadPdfSourceAsync(anyString()))
+                    .thenAnswer(invocation -> CompletableFuture.completedFuture(mock(PdfSource.class)));
+            when(ibanExtractionService.extractIbans(any(PdfSource.class), any())).thenReturn(List.of("DE44500105175407324931"));
+            when(ibanValidationService.validateIbans(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            doAnswer(invocation -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                running.decrementAndGet();
+                return List.of();
+            }).when(blacklistedIbanService).findBlacklistedIbans(anyList());
+            List<String> urls = IntStream.range(0, urlCount).mapToObj(i -> "http://example.com/pdf" + i + ".pdf").toList();
+
+            // Act
+            List<UrlScanResult> result = service.scanUrlsAsync(urls).join();
+
+            // Assert
+            assertEquals(urlCount, result.size());
+            assertTrue(result.stream().allMatch(UrlScanResult::succeeded));
+            assertEquals(3, maxRunning.get());
+            assertEquals(urlCount, meterRegistry.get("scan.pipeline.stage.duration").tag("stage", "lookup").timer().count());
+        } finally {
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testScanUrlsAsync_FailingUrlOnlyFailsItsOwnResult() throws IOException {
+        // Arrange
+        String url = "http://example.com/pdf1.pdf";
+        String missingUrl = "http://example.com/missing.pdf";
+        PdfSource pdfSource = mock(PdfSource.class);
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+        when(pdfDownloadService.downloadPdfSourceAsync(missingUrl))
+                .thenReturn(CompletableFuture.failedFuture(new PdfNotFoundException("No PDFs found at the given URL.")));
+        when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenReturn(List.of("DE44500105175407324931"));
+        when(ibanValidationService.validateIbans(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        List<UrlScanResult> results = taskOrchestratorService.scanUrlsAsync(List.of(missingUrl, url)).join();
+
+        // Assert
+        assertEquals(List.of(missingUrl, url), results.stream().map(UrlScanResult::url).toList());
+        assertEquals(ScanUrlStatus.FAILED, results.get(0).status());
+        assertEquals("PDF_NOT_FOUND", results.get(0).errorKey());
+        assertEquals(ScanUrlStatus.SUCCEEDED, results.get(1).status());
+        assertEquals(List.of("DE44500105175407324931"), results.get(1).validIbans());
+    }
+
+    @Test
+    void testFurtherProcessPdfForIbans_Timeout_CancelsDownload() {
+        // Arrange
+        String url = "http://example.com/hanging.pdf";
+        CompletableFuture<PdfSource> download = new CompletableFuture<>();
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(download);
+
+        // Act & Assert
+        assertFailedWith(ScanTimeoutException.class,
+                taskOrchestratorService.furtherProcessPdfForIbans(url, Duration.ofMillis(50)));
+        assertTrue(download.isCancelled(), "Hanging download should be cancelled");
+        verifyNoInteractions(ibanExtractionService);
+    }
+
+    @Test
+    void testFurtherProcessPdfForIbans_Timeout_StopsParsing() throws Exception {
+        // Arrange: the extraction runs until it is told to stop, like a parse checking for cancellation per page
+        String url = "http://example.com/huge.pdf";
+        ExecutorService parseExecutor = Executors.newSingleThreadExecutor();
+        try {
+            TaskOrchestratorService service = newTaskOrchestratorService(parseExecutor, Runnable::run);
+            PdfSource pdfSource = mock(PdfSource.class);
+            CountDownLatch parseStopped = new CountDownLatch(1);
+            when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(CompletableFuture.completedFuture(pdfSource));
+            when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenAnswer(invocation -> {
+                BooleanSupplier cancelled = invocation.getArgument(1);
+                while (!cancelled.getAsBoolean()) {
+                    Thread.onSpinWait();
+                }
+                parseStopped.countDown();
+                throw new CancellationException("Text extraction was cancelled.");
+            });
+
+            // Act & Assert
+            assertFailedWith(ScanTimeoutException.class, service.furtherProcessPdfForIbans(url, Duration.ofMillis(100)));
+            assertTrue(parseStopped.await(5, TimeUnit.SECONDS), "Parse should stop once the URL timed out");
+            verify(pdfSource, timeout(5000)).close();
+            verifyNoInteractions(ibanValidationService, blacklistedIbanService);
+        } finally {
+            parseExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testScanUrlsAsync_RequestDeadline_ReportsUnfinishedUrlsAsTimedOut() {
+        // Arrange
+        pipelineProperties.setRequestDeadline(Duration.ofMillis(100));
+        String url = "http://example.com/hanging.pdf";
+        when(pdfDownloadService.downloadPdfSourceAsync(url)).thenReturn(new CompletableFuture<>());
+
+        // Act
+        List<UrlScanResult> results = taskOrchestratorService.scanUrlsAsync(List.of(url)).join();
+
+        // Assert
+        assertEquals(ScanUrlStatus.FAILED, results.getFirst().status());
+        assertEquals("SCAN_TIMEOUT", results.getFirst().errorKey());
+    }
+
+    @Test
+    void testFurtherProcessPdfForIbans_ConcurrentScansOfSameUrlShareOneDownload() throws IOException {
+        // Arrange
+        CompletableFuture<PdfSource> download = new CompletableFuture<>();
+        PdfSource pdfSource = mock(PdfSource.class);
+        when(pdfDownloadService.downloadPdfSourceAsync(anyString())).thenReturn(download);
+        when(ibanExtractionService.extractIbans(eq(pdfSource), any())).thenReturn(List.of("DE44500105175407324931"));
+        when(ibanValidationService.validateIbans(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(blacklistedIbanService.findBlacklistedIbans(anyList())).thenReturn(List.of());
+
+        // Act
+        CompletableFuture<ScanOutcome> first = taskOrchestratorService.furtherProcessPdfForIbans("http://example.com/pdf1.pdf");
+        CompletableFuture<ScanOutcome> second = taskOrchestratorService.furtherProcessPdfForIbans("HTTP://Example.com:80/pdf1.pdf");
+        download.complete(pdfSource);
+
+        // Assert
+        assertInstanceOf(ScanOutcome.Clean.class, first.join());
+        assertInstanceOf(ScanOutcome.Clean.class, second.join());
+        verify(pdfDownloadService, times(1)).downloadPdfSourceAsync(anyString());
+        verify(ibanExtractionService, times(1)).extractIbans(eq(pdfSource), any());
+        assertEquals(1.0, meterRegistry.get("scan.coalesced").tag("scope", "in-flight").counter().count());
+    }
+
+    @Test
+    void testFurtherProcessPdfForIbans_CompletedScanIsNotShared() {
+        // Arrange
+        String url = "http://example.com/missing.pdf";
+        when(pdfDownloadService.downloadPdfSourceAsync(url))
+                .thenAnswer(invocation -> CompletableFuture.failedFuture(new PdfNotFoundException("No PDFs found at the given URL.")));
+
+        // Act
+        taskOrchestratorService.furtherProcessPdfForIbans(url).join();
+        taskOrchestratorService.furtherProcessPdfForIbans(url).join();
+
+        // Assert
+        verify(pdfDownloadService, times(2)).downloadPdfSourceAsync(url);
+        assertEquals(0.0, meterRegistry.get("scan.coalesced").tag("scope", "in-flight").counter().count());
+    }
+
+    @Test
+    void testScanUrlsAsync_RepeatedUrlsAreScannedOnce() throws IOException {
+        // Arrange
+        String url = "http://example.com/pdf1.pdf";
+        String otherUrl = "http://example.com/pdf2.pdf";
+        when(pdfDownloadService.downloadPdfSourceAsync(anyString()))
+                .thenAnswer(invocation -> CompletableFuture.completedFuture(mock(PdfSource.class)));
+        when(ibanExtractionService.extractIbans(any(PdfSource.class), any())).thenReturn(List.of("DE44500105175407324931"));
+        when(ibanValidationService.validateIbans(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(blacklistedIbanService.findBlacklistedIbans(anyList())).thenReturn(List.of());
+
+        // Act
+        List<UrlScanResult> results = taskOrchestratorService
+                .scanUrlsAsync(List.of(url, otherUrl, url, "http://example.com/pdf1.pdf#page=2"))
+                .join();
+
+        // Assert
+        assertEquals(List.of(url, otherUrl), results.stream().map(UrlScanResult::url).toList());
+        verify(pdfDownloadService, times(2)).downloadPdfSourceAsync(anyString());
+        assertEquals(2.0, meterRegistry.get("scan.coalesced").tag("scope", "request").counter().count());
+    }
+
+    @Test
+    void testScanSourcesAsync_ScansUploadsAndClosesThem() throws IOException {
+        // Arrange
+        PdfSource clean = mock(PdfSource.class);
+        PdfSource blacklisted = mock(PdfSource.class);
+        when(clean.getName()).thenReturn("clean.pdf");
+        when(blacklisted.getName()).thenReturn("blacklisted.pdf");
+        when(ibanExtractionService.extractIbans(eq(clean), any())).thenReturn(List.of("DE44500105175407324931"));
+        when(ibanExtractionService.extractIbans(eq(blacklisted), any())).thenReturn(List.of("DE89370400440532013000"));
+        when(ibanValidationService.validateIbans(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(blacklistedIbanService.findBlacklistedIbans(anyList())).thenAnswer(invocation ->
+                invocation.getArgument(0).equals(List.of("DE89370400440532013000")) ? invocation.getArgument(0) : List.of());
+
+        // Act
+        List<UrlScanResult> results = taskOrchestratorService.scanSourcesAsync(List.of(clean, blacklisted)).join();
+
+        // Assert
+        assertEquals(List.of("clean.pdf", "blacklisted.pdf"), results.stream().map(UrlScanResult::url).toList());
+        assertEquals(ScanUrlStatus.SUCCEEDED, results.get(0).status());
+        assertEquals(ScanUrlStatus.BLACKLISTED, results.get(1).status());
+        verify(clean).close();
+        verify(blacklisted).close();
+        verifyNoInteractions(pdfDownloadService);
+    }
+
+    @Test
+    void testScanUrlsAsync_Streaming_HandsOverResultsInCompletionOrder() {
+        // Arrange
+        String slowUrl = "http://example.com/slow.pdf";
+        String missingUrl = "http://example.com/missing.pdf";
+        CompletableFuture<PdfSource> slowDownload = new CompletableFuture<>();
+        when(pdfDownloadService.downloadPdfSourceAsync(slowUrl)).thenReturn(slowDownload);
+        when(pdfDownloadService.downloadPdfSourceAsync(missingUrl))
+                .thenReturn(CompletableFuture.failedFuture(new PdfNotFoundException("No PDFs found at the given URL.")));
+        List<UrlScanResult> handedOver = new CopyOnWriteArrayList<>();
+
+        // Act
+        CompletableFuture<Void> done = taskOrchestratorService
+                .scanUrlsAsync(List.of(slowUrl, missingUrl, slowUrl).iterator(), handedOver::add);
+
+        // Assert
+        assertEquals(List.of(missingUrl), handedOver.stream().map(UrlScanResult::url).toList());
+        assertFalse(done.isDone());
+        slowDownload.completeExceptionally(new PdfProcessingException("Broken PDF"));
+        done.join();
+        assertEquals(List.of(missingUrl, slowUrl, slowUrl), handedOver.stream().map(UrlScanResult::url).toList());
+        verify(pdfDownloadService, times(1)).downloadPdfSourceAsync(slowUrl);
+    }
+
+    @Test
+    void testScanUrlsAsync_Streaming_ReadsAheadAtMostTheInFlightLimit() throws Exception {
+        // Arrange
+        pipelineProperties.setStreamedUrlsInFlight(2);
+        ExecutorService ioExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            TaskOrchestratorService service = newTaskOrchestratorService(Runnable::run, ioExecutor);
+            List<CompletableFuture<PdfSource>> downloads = new CopyOnWriteArrayList<>();
+            when(pdfDownloadService.downloadPdfSourceAsync(anyString())).thenAnswer(invocation -> {
+                CompletableFuture<PdfSource> download = new CompletableFuture<>();
+                downloads.add(download);
+                return download;
+            });
+            AtomicInteger read = new AtomicInteger();
+            Iterator<String> urls = IntStream.range(0, 5)
+                    .peek(i -> read.incrementAndGet())
+                    .mapToObj(i -> "http://example.com/pdf" + i + ".pdf")
+                    .iterator();
+            List<UrlScanResult> handedOver = new CopyOnWriteArrayList<>();
+
+            // Act
+            CompletableFuture<Void> done = service.scanUrlsAsync(urls, handedOver::add);
+
+            // Assert: two URLs scanning, the third one read and waiting for a slot
+            awaitTrue(() -> downloads.size() == 2 && read.get() == 3);
+            Thread.sleep(100);
+            assertEquals(2, downloads.size());
+            assertEquals(3, read.get());
+            for (int i = 0; i < 5; i++) {
+                int index = i;
+                awaitTrue(() -> downloads.size() > index);
+                downloads.get(i).completeExceptionally(new PdfNotFoundException("No PDFs found at the given URL."));
+            }
+            done.get(10, TimeUnit.SECONDS);
+            assertEquals(5, handedOver.size());
+        } finally {
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testScanUrlsAsync_Streaming_PausedReaderDoesNotHoldAnIoThread() throws Exception {
+        // Arrange: a fixed pool of one thread, which the lookups need while the reader waits for a free slot
+        pipelineProperties.setStreamedUrlsInFlight(1);
+        ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+        try {
+            TaskOrchestratorService service = newTaskOrchestratorService(Runnable::run, ioExecutor);
+            when(pdfDownloadService.downloadPdfSourceAsync(anyString()))
+                    .thenAnswer(invocation -> CompletableFuture.completedFuture(mock(PdfSource.class)));
+            when(ibanExtractionService.extractIbans(any(PdfSource.class), any())).thenReturn(List.of("DE44500105175407324931"));
+            when(ibanValidationService.validateIbans(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+            when(blacklistedIbanService.findBlacklistedIbans(anyList())).thenReturn(List.of());
+            Iterator<String> urls = IntStream.range(0, 10)
+                    .mapToObj(i -> "http://example.com/pdf" + i + ".pdf")
+                    .iterator();
+            List<UrlScanResult> handedOver = new CopyOnWriteArrayList<>();
+
+            // Act
+            CompletableFuture<Void> done = service.scanUrlsAsync(urls, handedOver::add);
+
+            // Assert
+            done.get(10, TimeUnit.SECONDS);
+            assertEquals(10, handedOver.size());
+            assertTrue(handedOver.stream().allMatch(UrlScanResult::succeeded));
+        } finally {
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testScanUrlsAsync_Streaming_ReadFailureEndsBatchAfterUrlsReadBefore() {
+        // Arrange
+        String url = "http://example.com/missing.pdf";
+        when(pdfDownloadService.downloadPdfSourceAsync(url))
+                .thenReturn(CompletableFuture.failedFuture(new PdfNotFoundException("No PDFs found at the given URL.")));
+        Iterator<String> urls = Stream.concat(Stream.of(url), Stream.<String>generate(() -> {
+            throw new IllegalArgumentException("Expected a URL but found VALUE_NUMBER_INT");
+        })).iterator();
+        List<UrlScanResult> handedOver = new CopyOnWriteArrayList<>();
+
+        // Act
+        CompletableFuture<Void> done = taskOrchestratorService.scanUrlsAsync(urls, handedOver::add);
+
+        // Assert
+        CompletionException failure = assertThrows(CompletionException.class, done::join);
+        assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+        assertEquals(List.of(url), handedOver.stream().map(UrlScanResult::url).toList());
+    }
+
+    private TaskOrchestratorService newTaskOrchestratorService(Executor parseExecutor, Executor ioExecutor) {
+        return new TaskOrchestratorService(pdfDownloadService, ibanExtractionService, ibanValidationService,
+                blacklistedIbanService, pipelineProperties, parseExecutor, ioExecutor, meterRegistry);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void assertFailedWith(Class<? extends Throwable> expected, CompletableFuture<ScanOutcome> future) {
+        ScanOutcome.Failed failed = assertInstanceOf(ScanOutcome.Failed.class, future.join());
+        assertInstanceOf(expected, failed.error());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import com.company.invoice_scanner_service.config.BlacklistProperties;
+import com.company.invoice_scanner_service.dto.BlacklistImportResponse;
+import com.company.invoice_scanner_service.entity.BlacklistedIban;
+import com.company.invoice_scanner_service.repository.BlacklistedIbanBatchRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BlacklistImportServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private BlacklistedIbanBatchRepository blacklistedIbanBatchRepository;
+
+    @Mock
+    private BlacklistIndex blacklistIndex;
+
+    private BlacklistImportService blacklistImportService;
+
+    // Stands in for the table, so ON CONFLICT DO NOTHING can be simulated
+    private final Map<String, String> table = new HashMap<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        BlacklistProperties blacklistProperties = new BlacklistProperties();
+        blacklistProperties.setImportBatchSize(500);
+        blacklistImportService = new BlacklistImportService(blacklistedIbanBatchRepository, blacklistIndex,
+                new IbanValidator(), blacklistProperties, new ObjectMapper());
+
+        lenient().when(blacklistedIbanBatchRepository.insertIgnoringDuplicates(anyList())).thenAnswer(invocation -> {
+            List<BlacklistedIban> rows = invocation.getArgument(0);
+            batchSizes.add(rows.size());
+            List<String> inserted = new ArrayList<>();
+            for (BlacklistedIban row : rows) {
+                if (table.putIfAbsent(row.getIban(), row.getReason()) == null) {
+                    inserted.add(row.getIban());
+                }
+            }
+            return inserted;
+        });
+    }
+
+    @Test
+    void testImportIbans_Csv() throws IOException {
+        String csv = """
+                iban,reason
+                DE89370400440532013000,Fraud
+                NL91 ABNA 0417 1643 00,"Sanctioned, by regulator"
+                be68539007547034
+
+                INVALID,Typo
+                DE89370400440532013000,Listed twice
+                """;
+
+        BlacklistImportResponse response = importIbans(csv, BlacklistImportService.Format.CSV);
+
+        assertEquals(3, response.getInserted());
+        assertEquals(1, response.getDuplicates());
+        assertEquals(1, response.getInvalid());
+        assertEquals("Fraud", table.get("DE89370400440532013000"));
+        assertEquals("Sanctioned, by regulator", table.get("NL91ABNA0417164300"));
+        assertEquals("Bulk import", table.get("BE68539007547034"));
+        verify(blacklistIndex).add("DE89370400440532013000");
+        verify(blacklistIndex).add("NL91ABNA0417164300");
+        verify(blacklistIndex).add("BE68539007547034");
+    }
+
+    @Test
+    void testImportIbans_Ndjson() throws IOException {
+        String ndjson = """
+                {"iban": "DE89370400440532013000", "reason": "Fraud"}
+                {"iban": "BE68539007547034"}
+                {"iban": "BE68539007547035", "reason": "Bad checksum"}
+                {"reason": "No IBAN"}
+                not json
+                """;
+
+        BlacklistImportResponse response = importIbans(ndjson, BlacklistImportService.Format.NDJSON);
+
+        assertEquals(2, response.getInserted());
+        assertEquals(0, response.getDuplicates());
+        assertEquals(3, response.getInvalid());
+        assertEquals("Fraud", table.get("DE89370400440532013000"));
+    }
+
+    @Test
+    void testImportIbans_LargeFile_IsWrittenInBoundedBatches() throws IOException {
+        int rows = 200_000;
+        Path file = tempDir.resolve("blacklist.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("iban,reason\n");
+            for (int i = 0; i < rows; i++) {
+                // Every 100th row is invalid, another one in every 100 repeats the previous IBAN
+                String iban = i % 100 == 99 ? "DE00" + i : germanIban(i % 100 == 49 ? i - 1 : i);
+                writer.write(iban + ",Regulator list 2024\n");
+            }
+        }
+
+        BlacklistImportResponse response;
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            response = blacklistImportService.importIbans(inputStream, BlacklistImportService.Format.CSV, "Bulk import");
+        }
+
+        assertEquals(2_000, response.getInvalid());
+        assertEquals(2_000, response.getDuplicates());
+        assertEquals(rows - 4_000, response.getInserted());
+        assertEquals(response.getInserted(), table.size());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 500), "Batches must not exceed the batch size");
+        verify(blacklistIndex, times((int) response.getInserted())).add(anyString());
+    }
+
+    @Test
+    void testImportIbans_EmptyBody() throws IOException {
+        BlacklistImportResponse response = importIbans("", BlacklistImportService.Format.CSV);
+
+        assertEquals(0, response.getInserted() + response.getDuplicates() + response.getInvalid());
+        verifyNoInteractions(blacklistedIbanBatchRepository);
+    }
+
+    private BlacklistImportResponse importIbans(String body, BlacklistImportService.Format format) throws IOException {
+        return blacklistImportService.importIbans(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), format, "Bulk import");
+    }
+
+    private static String germanIban(int accountNumber) {
+        String bban = String.format("%08d%010d", 37040044, accountNumber);
+        // Check digits for DE: 98 - (BBAN + "DE00" as digits) mod 97
+        int checkDigits = 98 - new BigInteger(bban + "131400").mod(BigInteger.valueOf(97)).intValue();
+        return String.format("DE%02d%s", checkDigits, bban);
+    }
+}
@@ -0,0 +1,258 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import com.company.invoice_scanner_service.config.BlacklistProperties;
+import com.company.invoice_scanner_service.repository.BlacklistEntry;
+import com.company.invoice_scanner_service.repository.BlacklistedIbanRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BlacklistIndexTest {
+
+    private static final String BLACKLISTED_IBAN = "FR7630006000011234567890189";
+    private static final String NEW_IBAN = "DE89370400440532013000";
+    private static final String CLEAN_IBAN = "DE44500105175407324931";
+    private static final long ID = 1L;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Mock
+    private BlacklistedIbanRepository blacklistedIbanRepository;
+
+    private BlacklistProperties blacklistProperties;
+    private BlacklistIndex blacklistIndex;
+
+    @BeforeEach
+    void setUp() {
+        blacklistProperties = new BlacklistProperties();
+        blacklistIndex = new BlacklistIndex(blacklistedIbanRepository, blacklistProperties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testRefresh_FirstRefresh_LoadsTheWholeBlacklist() {
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenReturn(List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT)));
+
+        assertFalse(blacklistIndex.isReady());
+        blacklistIndex.refresh();
+
+        assertTrue(blacklistIndex.isReady());
+        assertTrue(blacklistIndex.mightContain(BLACKLISTED_IBAN));
+        assertFalse(blacklistIndex.mightContain(CLEAN_IBAN));
+    }
+
+    @Test
+    void testRefresh_LaterRefresh_OnlyReadsRowsAfterTheWatermark() {
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenReturn(List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT)));
+        LocalDateTime since = CREATED_AT.minus(blacklistProperties.getRefreshOverlap());
+        when(blacklistedIbanRepository.findEntriesCreatedAfter(since))
+                .thenReturn(List.of(new BlacklistEntry(ID, NEW_IBAN, CREATED_AT.plusMinutes(5))));
+
+        blacklistIndex.refresh();
+        blacklistIndex.refresh();
+
+        assertTrue(blacklistIndex.mightContain(BLACKLISTED_IBAN));
+        assertTrue(blacklistIndex.mightContain(NEW_IBAN));
+        verify(blacklistedIbanRepository, times(1)).findEntriesAfterId(eq(0L), any());
+    }
+
+    @Test
+    void testRefresh_NoNewRows_KeepsTheSnapshot() {
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenReturn(List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT)));
+        // The overlap returns the newest row again on every refresh
+        when(blacklistedIbanRepository.findEntriesCreatedAfter(any())).thenReturn(List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT)));
+
+        blacklistIndex.refresh();
+        PackedIbanSet loaded = blacklistIndex.snapshot();
+        blacklistIndex.refresh();
+        blacklistIndex.refresh();
+
+        assertSame(loaded, blacklistIndex.snapshot());
+        assertEquals(1, blacklistIndex.loadedRows());
+    }
+
+    @Test
+    void testRefresh_FullReloadDue_ReloadsTheWholeBlacklist() {
+        blacklistProperties.setFullReloadInterval(Duration.ZERO);
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any()))
+                .thenReturn(List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT)))
+                .thenReturn(List.of());
+
+        blacklistIndex.refresh();
+        assertTrue(blacklistIndex.mightContain(BLACKLISTED_IBAN));
+
+        blacklistIndex.refresh();
+        assertFalse(blacklistIndex.mightContain(BLACKLISTED_IBAN), "Rows deleted in the database should be dropped");
+    }
+
+    @Test
+    void testRefresh_Failure_KeepsThePreviousSnapshot() {
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenReturn(List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT)));
+        when(blacklistedIbanRepository.findEntriesCreatedAfter(any())).thenThrow(new IllegalStateException("Database down"));
+
+        blacklistIndex.refresh();
+        blacklistIndex.refresh();
+
+        assertTrue(blacklistIndex.mightContain(BLACKLISTED_IBAN));
+    }
+
+    @Test
+    void testAdd_IsVisibleBeforeTheNextRefresh() {
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenReturn(List.of());
+        when(blacklistedIbanRepository.findEntriesCreatedAfter(any())).thenReturn(List.of(new BlacklistEntry(ID, NEW_IBAN, CREATED_AT)));
+        blacklistIndex.refresh();
+
+        blacklistIndex.add(NEW_IBAN);
+        assertTrue(blacklistIndex.mightContain(NEW_IBAN));
+
+        blacklistIndex.refresh();
+        assertTrue(blacklistIndex.mightContain(NEW_IBAN));
+        assertEquals(1, blacklistIndex.loadedRows());
+    }
+
+    @Test
+    void testRefresh_LargeTable_IsLoadedInPages() {
+        List<BlacklistEntry> firstPage = new ArrayList<>();
+        for (long id = 1; id <= 10_000; id++) {
+            firstPage.add(new BlacklistEntry(id, String.format("DE%02d%018d", id % 100, id), CREATED_AT));
+        }
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenReturn(firstPage);
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(10_000L), any()))
+                .thenReturn(List.of(new BlacklistEntry(10_001L, BLACKLISTED_IBAN, CREATED_AT)));
+
+        blacklistIndex.refresh();
+
+        assertEquals(10_001, blacklistIndex.loadedRows());
+        assertTrue(blacklistIndex.mightContain(BLACKLISTED_IBAN));
+        assertTrue(blacklistIndex.mightContain(firstPage.get(0).iban()));
+    }
+
+    @Test
+    void testBloomFilterMode_NeverMissesABlacklistedIban() {
+        blacklistProperties.setMode(BlacklistProperties.Mode.BLOOM_FILTER);
+        when(blacklistedIbanRepository.count()).thenReturn(1L);
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenReturn(List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT)));
+        when(blacklistedIbanRepository.findEntriesCreatedAfter(any())).thenReturn(List.of(new BlacklistEntry(2L, NEW_IBAN, CREATED_AT)));
+
+        blacklistIndex.refresh();
+        assertTrue(blacklistIndex.isReady());
+        assertFalse(blacklistIndex.isExact());
+        assertTrue(blacklistIndex.mightContain(BLACKLISTED_IBAN));
+
+        blacklistIndex.add("NL91ABNA0417164300");
+        assertTrue(blacklistIndex.mightContain("NL91ABNA0417164300"));
+
+        blacklistIndex.refresh();
+        assertTrue(blacklistIndex.mightContain(NEW_IBAN));
+    }
+
+    @Test
+    void testBloomFilterMode_AddDuringAFullReload_IsKept() {
+        blacklistProperties.setMode(BlacklistProperties.Mode.BLOOM_FILTER);
+        blacklistProperties.setFullReloadInterval(Duration.ZERO);
+        when(blacklistedIbanRepository.count()).thenReturn(1L);
+        int[] loads = {0};
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenAnswer(invocation -> {
+            if (++loads[0] == 2) {
+                // Committed after the reload read its rows
+                blacklistIndex.add("NL91ABNA0417164300");
+            }
+            return List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT));
+        });
+
+        blacklistIndex.refresh();
+        blacklistIndex.refresh();
+
+        assertEquals(2, loads[0]);
+        assertTrue(blacklistIndex.mightContain(BLACKLISTED_IBAN));
+        assertTrue(blacklistIndex.mightContain("NL91ABNA0417164300"));
+    }
+
+    @Test
+    void testStart_RefreshesOnAThreadOfItsOwn() {
+        String[] refreshThread = new String[1];
+        when(blacklistedIbanRepository.findEntriesAfterId(eq(0L), any())).thenAnswer(invocation -> {
+            refreshThread[0] = Thread.currentThread().getName();
+            return List.of(new BlacklistEntry(ID, BLACKLISTED_IBAN, CREATED_AT));
+        });
+
+        try {
+            blacklistIndex.start();
+            verify(blacklistedIbanRepository, timeout(5_000)).findEntriesAfterId(eq(0L), any());
+        } finally {
+            blacklistIndex.stop();
+        }
+
+        assertEquals("blacklist-index-refresh", refreshThread[0]);
+    }
+
+    @Test
+    void testBloomFilter_FalsePositiveRateOutsideZeroToOne_IsRejected() {
+        for (double rate : new double[]{0, 1, 1.5, -0.01, Double.NaN}) {
+            assertThrows(IllegalArgumentException.class, () -> IbanBloomFilter.create(1_000, rate));
+        }
+
+        blacklistProperties.setMode(BlacklistProperties.Mode.BLOOM_FILTER);
+        blacklistProperties.setBloomFilterFalsePositiveRate(0);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        assertThrows(IllegalArgumentException.class,
+                () -> new BlacklistIndex(blacklistedIbanRepository, blacklistProperties, meterRegistry));
+    }
+
+    @Test
+    void testBloomFilter_FalsePositiveRateStaysNearTheTarget() {
+        IbanBloomFilter filter = IbanBloomFilter.create(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add(String.format("DE%02d%018d", i % 100, i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain(String.format("DE%02d%018d", i % 100, i)));
+            if (filter.mightContain(String.format("FR%02d%018d", i % 100, i))) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void testDatabaseMode_NeverLoads() {
+        blacklistProperties.setMode(BlacklistProperties.Mode.DATABASE);
+
+        blacklistIndex.refresh();
+        blacklistIndex.add(NEW_IBAN);
+
+        assertFalse(blacklistIndex.isReady());
+        assertFalse(blacklistIndex.mightContain(NEW_IBAN));
+        verifyNoInteractions(blacklistedIbanRepository);
+    }
+
+    @Test
+    void testPackedIbanSet_ManyIbans() {
+        List<String> ibans = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            ibans.add(String.format("DE%02d%018d", i % 100, i * 7L));
+        }
+        PackedIbanSet set = PackedIbanSet.of(ibans.subList(0, 40_000)).with(ibans.subList(30_000, 50_000));
+
+        assertEquals(50_000, set.size());
+        for (String iban : ibans) {
+            assertTrue(set.contains(iban), iban);
+        }
+        assertFalse(set.contains("DE00000000000000000001"));
+        assertFalse(set.contains("DE0"));
+        assertFalse(set.contains("de00000000000000000000"));
+        assertFalse(set.contains("DE00 0000 0000 0000 0000 00"));
+    }
+}
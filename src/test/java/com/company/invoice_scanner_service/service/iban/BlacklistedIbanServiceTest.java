@@ -1,13 +1,15 @@
 package com.company.invoice_scanner_service.service.iban;
 
 import com.company.invoice_scanner_service.entity.BlacklistedIban;
-import com.company.invoice_scanner_service.exception.BlacklistedIbanFoundException;
 import com.company.invoice_scanner_service.repository.BlacklistedIbanRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.List;
@@ -21,6 +23,12 @@ class BlacklistedIbanServiceTest {
     @Mock
     private BlacklistedIbanRepository blacklistedIbanRepository;
 
+    @Mock
+    private BlacklistIndex blacklistIndex;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private BlacklistedIbanService blacklistedIbanService;
 
@@ -29,80 +37,96 @@ class BlacklistedIbanServiceTest {
 
     @BeforeEach
     void setup() {
-        when(blacklistedIbanRepository.findByIbanIn(anyList())).thenReturn(List.of()); // Default to no blacklisted IBANs
+        lenient().when(blacklistedIbanRepository.findByIbanIn(anyList())).thenReturn(List.of()); // Default to no blacklisted IBANs
     }
 
     @Test
-    void testCheckForBlacklistedIbans_NoBlacklistedIbans_NoExceptionThrown() {
-        // Arrange
+    void testFindBlacklistedIbans_NoBlacklistedIbans_ReturnsEmptyList() {
         List<String> ibans = List.of(VALID_IBAN);
 
-        // Act & Assert (should not throw)
-        assertDoesNotThrow(() -> blacklistedIbanService.checkForBlacklistedIbans(ibans));
+        assertTrue(blacklistedIbanService.findBlacklistedIbans(ibans).isEmpty());
 
-        // Verify repository call
         verify(blacklistedIbanRepository, times(1)).findByIbanIn(ibans);
     }
 
     @Test
-    void testCheckForBlacklistedIbans_BlacklistedIban_ThrowsException() {
-        // Arrange
+    void testFindBlacklistedIbans_BlacklistedIban_ReturnsOnlyTheBlacklistedIban() {
         List<String> ibans = List.of(VALID_IBAN, BLACKLISTED_IBAN);
         BlacklistedIban iban = new BlacklistedIban();
         iban.setId(1L);
         iban.setIban(BLACKLISTED_IBAN);
-        List<BlacklistedIban> blacklistedIbans = List.of(iban);
+        when(blacklistedIbanRepository.findByIbanIn(ibans)).thenReturn(List.of(iban));
 
-        when(blacklistedIbanRepository.findByIbanIn(ibans)).thenReturn(blacklistedIbans);
+        assertEquals(List.of(BLACKLISTED_IBAN), blacklistedIbanService.findBlacklistedIbans(ibans));
 
-        // Act & Assert
-        BlacklistedIbanFoundException thrown = assertThrows(
-                BlacklistedIbanFoundException.class,
-                () -> blacklistedIbanService.checkForBlacklistedIbans(ibans)
-        );
+        verify(blacklistedIbanRepository, times(1)).findByIbanIn(ibans);
+    }
 
-        // Assert Exception Contents
-        assertTrue(thrown.getBlacklistedIbans().contains(BLACKLISTED_IBAN));
-        assertTrue(thrown.getValidIbans().contains(VALID_IBAN));
+    @Test
+    void testFindBlacklistedIbans_IndexReady_DoesNotQueryTheDatabase() {
+        List<String> ibans = List.of(VALID_IBAN, BLACKLISTED_IBAN);
+        when(blacklistIndex.isReady()).thenReturn(true);
+        when(blacklistIndex.isExact()).thenReturn(true);
+        when(blacklistIndex.mightContain(VALID_IBAN)).thenReturn(false);
+        when(blacklistIndex.mightContain(BLACKLISTED_IBAN)).thenReturn(true);
 
-        // Verify repository call
-        verify(blacklistedIbanRepository, times(1)).findByIbanIn(ibans);
+        assertEquals(List.of(BLACKLISTED_IBAN), blacklistedIbanService.findBlacklistedIbans(ibans));
+
+        verify(blacklistedIbanRepository, never()).findByIbanIn(anyList());
+        assertEquals(1, meterRegistry.counter("iban.blacklist.database.queries.avoided").count());
     }
 
     @Test
-    void testCheckForBlacklistedIbans_AllIbansBlacklisted_ThrowsException() {
-        // Arrange
-        List<String> ibans = List.of(BLACKLISTED_IBAN);
+    void testFindBlacklistedIbans_BloomFilterRulesOutAll_DoesNotQueryTheDatabase() {
+        List<String> ibans = List.of(VALID_IBAN);
+        when(blacklistIndex.isReady()).thenReturn(true);
+        when(blacklistIndex.isExact()).thenReturn(false);
+        when(blacklistIndex.mightContain(VALID_IBAN)).thenReturn(false);
+
+        assertTrue(blacklistedIbanService.findBlacklistedIbans(ibans).isEmpty());
+
+        verify(blacklistedIbanRepository, never()).findByIbanIn(anyList());
+        assertEquals(1, meterRegistry.counter("iban.blacklist.filter.checks", "result", "miss").count());
+        assertEquals(1, meterRegistry.counter("iban.blacklist.database.queries.avoided").count());
+    }
+
+    @Test
+    void testFindBlacklistedIbans_BloomFilterHit_QueriesOnlyTheCandidates() {
+        String falsePositive = "DE89370400440532013000";
+        List<String> ibans = List.of(VALID_IBAN, BLACKLISTED_IBAN, falsePositive);
         BlacklistedIban iban = new BlacklistedIban();
-        iban.setId(1L);
         iban.setIban(BLACKLISTED_IBAN);
-        List<BlacklistedIban> blacklistedIbans = List.of(iban);
-
-        when(blacklistedIbanRepository.findByIbanIn(ibans)).thenReturn(blacklistedIbans);
+        when(blacklistIndex.isReady()).thenReturn(true);
+        when(blacklistIndex.isExact()).thenReturn(false);
+        when(blacklistIndex.mightContain(VALID_IBAN)).thenReturn(false);
+        when(blacklistIndex.mightContain(BLACKLISTED_IBAN)).thenReturn(true);
+        when(blacklistIndex.mightContain(falsePositive)).thenReturn(true);
+        when(blacklistedIbanRepository.findByIbanIn(List.of(BLACKLISTED_IBAN, falsePositive))).thenReturn(List.of(iban));
+
+        assertEquals(List.of(BLACKLISTED_IBAN), blacklistedIbanService.findBlacklistedIbans(ibans));
+
+        assertEquals(2, meterRegistry.counter("iban.blacklist.filter.checks", "result", "hit").count());
+        assertEquals(1, meterRegistry.counter("iban.blacklist.filter.false.positives").count());
+        assertEquals(1, meterRegistry.counter("iban.blacklist.database.queries").count());
+    }
 
-        // Act & Assert
-        BlacklistedIbanFoundException thrown = assertThrows(
-                BlacklistedIbanFoundException.class,
-                () -> blacklistedIbanService.checkForBlacklistedIbans(ibans)
-        );
+    @Test
+    void testBlacklistIban_AddsTheIbanToTheIndex() {
+        when(blacklistedIbanRepository.existsByIban(BLACKLISTED_IBAN)).thenReturn(false);
+        when(blacklistedIbanRepository.save(any(BlacklistedIban.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        // Assert Exception Contents
-        assertTrue(thrown.getBlacklistedIbans().contains(BLACKLISTED_IBAN));
-        assertTrue(thrown.getValidIbans().isEmpty());
+        BlacklistedIban saved = blacklistedIbanService.blacklistIban(BLACKLISTED_IBAN, "Fraud");
 
-        // Verify repository call
-        verify(blacklistedIbanRepository, times(1)).findByIbanIn(ibans);
+        assertEquals(BLACKLISTED_IBAN, saved.getIban());
+        verify(blacklistIndex).add(BLACKLISTED_IBAN);
     }
 
     @Test
-    void testCheckForBlacklistedIbans_EmptyIbanList_NoExceptionThrown() {
-        // Arrange
-        List<String> ibans = List.of();
+    void testBlacklistIban_AlreadyBlacklisted_DoesNotTouchTheIndex() {
+        when(blacklistedIbanRepository.existsByIban(BLACKLISTED_IBAN)).thenReturn(true);
 
-        // Act & Assert
-        assertDoesNotThrow(() -> blacklistedIbanService.checkForBlacklistedIbans(ibans));
+        assertThrows(IllegalArgumentException.class, () -> blacklistedIbanService.blacklistIban(BLACKLISTED_IBAN, "Fraud"));
 
-        // Verify repository call (should be called but with an empty list)
-        verify(blacklistedIbanRepository, times(1)).findByIbanIn(ibans);
+        verifyNoInteractions(blacklistIndex);
     }
 }
@@ -0,0 +1,176 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import com.company.invoice_scanner_service.config.PdfExtractionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtractedIbanCacheTest {
+
+    private static final String HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+    private static final List<String> IBANS = List.of("DE44500105175407324931", "DE89370400440532013000");
+
+    private final PdfExtractionProperties properties = new PdfExtractionProperties();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final InMemorySharedIbanStore sharedStore = new InMemorySharedIbanStore();
+
+    @BeforeEach
+    void setUp() {
+        // Flushed by the tests, unless a test is about the writer thread
+        properties.getCache().setWriteBehindInterval(Duration.ofHours(1));
+    }
+
+    @Test
+    void testGet_LocalMiss_IsLoadedFromSharedStoreOnce() {
+        sharedStore.values.put(HASH, IbanListCodec.encode(IBANS));
+        ExtractedIbanCache cache = new ExtractedIbanCache(properties, sharedStore, meterRegistry);
+
+        assertEquals(IBANS, cache.get(HASH));
+        assertEquals(IBANS, cache.get(HASH));
+
+        assertEquals(1, sharedStore.gets.get());
+        assertEquals(1.0, meterRegistry.get("pdf.extraction.cache.shared.gets").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void testPut_IsWrittenBehindAndSharedWithOtherReplicas() {
+        ExtractedIbanCache replicaA = new ExtractedIbanCache(properties, sharedStore, meterRegistry);
+        ExtractedIbanCache replicaB = new ExtractedIbanCache(properties, sharedStore, new SimpleMeterRegistry());
+
+        replicaA.put(HASH, IBANS);
+        assertNull(replicaB.get(HASH), "Shared store is only written by the next flush");
+
+        replicaA.flushSharedWrites();
+
+        assertEquals(Duration.ofHours(24), sharedStore.lastTtl);
+        assertEquals(IBANS, replicaB.get(HASH));
+        assertEquals(1.0, meterRegistry.get("pdf.extraction.cache.shared.writes").tag("result", "written").counter().count());
+    }
+
+    @Test
+    void testPut_BeyondWriteBehindCapacity_IsOnlyCachedLocally() {
+        properties.getCache().setWriteBehindCapacity(1);
+        ExtractedIbanCache cache = new ExtractedIbanCache(properties, sharedStore, meterRegistry);
+
+        cache.put(HASH, IBANS);
+        cache.put("other", List.of());
+        cache.flushSharedWrites();
+
+        assertEquals(List.of(), cache.get("other"));
+        assertEquals(1, sharedStore.values.size());
+        assertEquals(IBANS, IbanListCodec.decode(sharedStore.values.get(HASH)));
+        assertEquals(1.0, meterRegistry.get("pdf.extraction.cache.shared.writes").tag("result", "dropped").counter().count());
+    }
+
+    @Test
+    void testSharedStoreFailures_AreTreatedAsMisses() {
+        sharedStore.failing = true;
+        ExtractedIbanCache cache = new ExtractedIbanCache(properties, sharedStore, meterRegistry);
+
+        assertNull(cache.get(HASH));
+        cache.put(HASH, IBANS);
+        assertDoesNotThrow(cache::flushSharedWrites);
+
+        assertEquals(IBANS, cache.get(HASH));
+        assertEquals(1.0, meterRegistry.get("pdf.extraction.cache.shared.gets").tag("result", "error").counter().count());
+        assertEquals(1.0, meterRegistry.get("pdf.extraction.cache.shared.writes").tag("result", "error").counter().count());
+    }
+
+    @Test
+    void testGet_StalledSharedStore_IsGivenUpAfterTheTimeout() {
+        sharedStore.values.put(HASH, IbanListCodec.encode(IBANS));
+        sharedStore.getDelay = Duration.ofSeconds(5);
+        properties.getCache().setSharedTimeout(Duration.ofMillis(50));
+        properties.getCache().setSharedConcurrency(1);
+        ExtractedIbanCache cache = new ExtractedIbanCache(properties, sharedStore, meterRegistry);
+
+        long started = System.nanoTime();
+        assertNull(cache.get(HASH));
+        // The only reader may still be stuck, the next miss skips the store instead of queueing behind it
+        assertNull(cache.get("other"));
+        assertEquals(1, sharedStore.gets.get());
+
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(2.0, meterRegistry.get("pdf.extraction.cache.shared.gets").tag("result", "timeout").counter().count());
+        cache.close();
+    }
+
+    @Test
+    void testPut_IsFlushedByTheCachesOwnWriterThread() {
+        properties.getCache().setWriteBehindInterval(Duration.ofMillis(10));
+        ExtractedIbanCache cache = new ExtractedIbanCache(properties, sharedStore, meterRegistry);
+
+        cache.put(HASH, IBANS);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sharedStore.values.isEmpty() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(IBANS, IbanListCodec.decode(sharedStore.values.get(HASH)));
+        assertEquals("shared-iban-store-writer", sharedStore.lastWriter);
+        cache.close();
+    }
+
+    @Test
+    void testCodec_RoundTripsLongListsAndRejectsDamagedValues() {
+        List<String> manyIbans = IntStream.range(0, 300).mapToObj(i -> "DE" + String.format("%020d", i)).toList();
+        byte[] encoded = IbanListCodec.encode(manyIbans);
+
+        assertEquals(manyIbans, IbanListCodec.decode(encoded));
+        assertEquals(List.of(), IbanListCodec.decode(IbanListCodec.encode(List.of())));
+        assertEquals(25, IbanListCodec.encode(List.of("DE44500105175407324931")).length);
+        assertNull(IbanListCodec.decode(new byte[]{9, 1}));
+        assertNull(IbanListCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+    }
+
+    /**
+     * Stands in for Redis, values are kept as the encoded bytes.
+     */
+    private static final class InMemorySharedIbanStore implements SharedIbanStore {
+
+        private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+        private final AtomicInteger gets = new AtomicInteger();
+        private volatile boolean failing;
+        private volatile Duration lastTtl;
+        private volatile Duration getDelay = Duration.ZERO;
+        private volatile String lastWriter;
+
+        @Override
+        public byte[] get(String contentHash) {
+            gets.incrementAndGet();
+            if (failing) {
+                throw new IllegalStateException("Redis is unavailable");
+            }
+            // Ignores interrupts, like a read blocked on an unresponsive socket
+            long until = System.nanoTime() + getDelay.toNanos();
+            while (System.nanoTime() < until) {
+                Thread.interrupted();
+                LockSupport.parkNanos(until - System.nanoTime());
+            }
+            return values.get(contentHash);
+        }
+
+        @Override
+        public void putAll(Map<String, byte[]> batch, Duration ttl) {
+            if (failing) {
+                throw new IllegalStateException("Redis is unavailable");
+            }
+            values.putAll(batch);
+            lastTtl = ttl;
+            lastWriter = Thread.currentThread().getName();
+        }
+    }
+}
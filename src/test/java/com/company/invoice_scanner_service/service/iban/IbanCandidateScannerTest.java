@@ -0,0 +1,142 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IbanCandidateScannerTest {
+
+    private static final Set<String> VALID_IBANS =
+            Set.of("DE44500105175407324931", "BE68539007547034", "NL91ABNA0417164300");
+
+    private final IbanCandidateScanner scanner = new IbanCandidateScanner();
+
+    @Test
+    void testScan_GroupedIban() {
+        assertEquals(List.of("DE44500105175407324931"), scan("Valid IBAN: DE44 5001 0517 5407 3249 31"));
+    }
+
+    @Test
+    void testScan_UnformattedIban() {
+        assertEquals(List.of("DE44500105175407324931"), scan("IBAN:DE44500105175407324931."));
+    }
+
+    @Test
+    void testScan_SeparatorsAcrossLines() {
+        assertEquals(List.of("DE44500105175407324931", "BE68539007547034", "NL91ABNA0417164300"),
+                scanForValidIbans("DE44\t5001\r\n0517\n5407 3249 31\nBE68-5390-0754-7034\nNL91.ABNA.0417.1643.00"));
+    }
+
+    @Test
+    void testScan_MultipleSeparators_EndTheCandidate() {
+        assertEquals(List.of("DE44500105"), scan("DE44 5001 05  17 5407 3249 31"));
+    }
+
+    @Test
+    void testScan_NotAtWordBoundary_IsIgnored() {
+        assertTrue(scan("XDE44500105175407324931 and 1DE44500105175407324931").isEmpty());
+    }
+
+    @Test
+    void testScan_RunningIntoAWord_StopsAtTheLastCompleteGroup() {
+        assertEquals(List.of("DE4450010517"), scan("DE44 5001 0517 5407abc"));
+        assertTrue(scan("DE44500105175407abc").isEmpty());
+    }
+
+    @Test
+    void testScan_RejectedCandidate_OffersShorterCandidatesEndingAtEarlierGroups() {
+        List<Integer> offeredLengths = new ArrayList<>();
+        scanner.scan("DE44 5001 0517 5407 3249 31 BIC", (candidate, length) -> {
+            offeredLengths.add(length);
+            return false;
+        });
+
+        assertEquals(List.of(25, 22, 20, 16, 12, 8), offeredLengths);
+    }
+
+    @Test
+    void testScan_IbanFollowedByBic() {
+        assertEquals(List.of("DE44500105175407324931"),
+                scanForValidIbans("IBAN DE44 5001 0517 5407 3249 31 BIC COBADEFFXXX"));
+    }
+
+    @Test
+    void testScan_IbanAfterAnotherCode() {
+        assertEquals(List.of("DE44500105175407324931"), scanForValidIbans("REF AB12 DE44 5001 0517 5407 3249 31"));
+    }
+
+    @Test
+    void testScan_LowerCaseAndShortInput_AreIgnored() {
+        assertTrue(scan("de44 5001 0517 5407 3249 31").isEmpty());
+        assertTrue(scan("DE44").isEmpty());
+        assertTrue(scan("").isEmpty());
+    }
+
+    @Test
+    void testScan_ReusesTheCandidateBuffer() {
+        List<char[]> buffers = new ArrayList<>();
+        scanner.scan("DE44500105175407324931 BE68539007547034", (candidate, length) -> buffers.add(candidate));
+
+        assertEquals(2, buffers.size());
+        assertSame(buffers.get(0), buffers.get(1));
+    }
+
+    @Test
+    void testScan_LongRunOfGroups_IsReadALinearNumberOfTimes() {
+        String text = "AB12 ".repeat(16_000);
+        AtomicInteger reads = new AtomicInteger();
+        CharSequence countingText = new CharSequence() {
+            @Override
+            public int length() {
+                return text.length();
+            }
+
+            @Override
+            public char charAt(int index) {
+                reads.incrementAndGet();
+                return text.charAt(index);
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return text.subSequence(start, end);
+            }
+        };
+
+        scanner.scan(countingText, (candidate, length) -> false);
+
+        // Every group starts a candidate that reads at most the next IBAN's worth of groups
+        assertTrue(reads.get() < 20L * text.length(), "Read " + reads.get() + " characters");
+    }
+
+    @Test
+    void testScan_RunLongerThanAnIban_OffersTheCandidatesEndingAtItsGroups() {
+        List<Integer> offeredLengths = new ArrayList<>();
+        scanner.scan("DE44 5001 0517 5407 3249 3100 0000 0000 0000", (candidate, length) -> {
+            offeredLengths.add(length);
+            return true;
+        });
+
+        assertEquals(List.of(32), offeredLengths);
+    }
+
+    private List<String> scan(CharSequence text) {
+        List<String> candidates = new ArrayList<>();
+        scanner.scan(text, (candidate, length) -> candidates.add(new String(candidate, 0, length)));
+        return candidates;
+    }
+
+    private List<String> scanForValidIbans(CharSequence text) {
+        List<String> ibans = new ArrayList<>();
+        scanner.scan(text, (candidate, length) -> {
+            String iban = new String(candidate, 0, length);
+            return VALID_IBANS.contains(iban) && ibans.add(iban);
+        });
+        return ibans;
+    }
+}
@@ -1,5 +1,10 @@
 package com.company.invoice_scanner_service.service.iban;
 
+import com.company.invoice_scanner_service.config.PdfExtractionProperties;
+import com.company.invoice_scanner_service.exception.PdfProcessingException;
+import com.company.invoice_scanner_service.service.pdf.PdfSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -10,19 +15,33 @@ import org.junit.jupiter.api.*;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class IbanExtractionServiceTest {
     private IbanExtractionService ibanExtractionService;
+    private PdfExtractionProperties pdfExtractionProperties;
+    private MeterRegistry meterRegistry;
+    private ExecutorService pdfParseExecutor;
 
     private File validPdf;
     private File invalidPdf;
 
     @BeforeEach
     void setUp() throws IOException {
-        ibanExtractionService = new IbanExtractionService();
+        pdfExtractionProperties = new PdfExtractionProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        pdfParseExecutor = Executors.newFixedThreadPool(2);
+        ibanExtractionService = newIbanExtractionService();
 
         // Create a valid PDF with IBANs
         validPdf = createTestPdf("Valid IBAN: DE44 5001 0517 5407 3249 31");
@@ -36,6 +55,7 @@ class IbanExtractionServiceTest {
 
     @AfterEach
     void tearDown() {
+        pdfParseExecutor.shutdownNow();
         if (validPdf != null) validPdf.delete();
         if (invalidPdf != null) invalidPdf.delete();
     }
@@ -47,6 +67,21 @@ class IbanExtractionServiceTest {
         assertEquals("DE44500105175407324931", ibans.get(0)); // Ensure IBAN is correctly extracted
     }
 
+    @Test
+    void testExtractIbans_PdfSource() throws IOException {
+        try (PdfSource pdfSource = PdfSource.ofBytes("in-memory.pdf", Files.readAllBytes(validPdf.toPath()))) {
+            List<String> ibans = ibanExtractionService.extractIbans(pdfSource);
+            assertEquals(List.of("DE44500105175407324931"), ibans);
+        }
+    }
+
+    @Test
+    void testExtractIbans_PdfSourceCorrupt_ThrowsPdfProcessingException() throws IOException {
+        try (PdfSource pdfSource = PdfSource.ofBytes("corrupt.pdf", Files.readAllBytes(invalidPdf.toPath()))) {
+            assertThrows(PdfProcessingException.class, () -> ibanExtractionService.extractIbans(pdfSource));
+        }
+    }
+
     @Test
     void testExtractIbans_NoIbansPdf() throws IOException {
         File noIbanPdf = createTestPdf("This document contains no IBANs.");
@@ -55,18 +90,161 @@ class IbanExtractionServiceTest {
         noIbanPdf.delete();
     }
 
-    private File createTestPdf(String text) throws IOException {
+    @Test
+    void testExtractIbans_MultiPagePdf_FindsIbansOnEveryPage() throws IOException {
+        File multiPagePdf = createTestPdf(
+                "Page one without account details.",
+                "Valid IBAN: DE44 5001 0517 5407 3249 31",
+                "Second account: DE89 3704 0044 0532 0130 00");
+        try {
+            List<String> ibans = ibanExtractionService.extractIbans(multiPagePdf);
+            assertEquals(2, ibans.size());
+            assertTrue(ibans.containsAll(List.of("DE44500105175407324931", "DE89370400440532013000")));
+        } finally {
+            multiPagePdf.delete();
+        }
+    }
+
+    @Test
+    void testExtractIbans_IbanContinuedOnNextPage_IsJoinedAcrossThePageBreak() throws IOException {
+        File splitPdf = createTestPdf("Valid IBAN: DE44 5001 0517", "5407 3249 31 is the account.");
+        try {
+            assertEquals(List.of("DE44500105175407324931"), ibanExtractionService.extractIbans(splitPdf));
+        } finally {
+            splitPdf.delete();
+        }
+    }
+
+    @Test
+    void testExtractIbans_ParallelChunks_FindsIbansInEveryChunkAndAcrossChunkBoundaries() throws IOException {
+        pdfExtractionProperties.setParallelMinPages(2);
+        pdfExtractionProperties.setPagesPerChunk(2);
+        File largePdf = createTestPdf(
+                "Page one without account details.",
+                "Valid IBAN: DE44 5001 0517",
+                "5407 3249 31 is the account.",
+                "No account on this page.",
+                "Second account: DE89 3704 0044 0532 0130 00");
+        try (PdfSource pdfSource = PdfSource.ofBytes("large.pdf", Files.readAllBytes(largePdf.toPath()))) {
+            List<String> ibans = ibanExtractionService.extractIbans(pdfSource);
+            assertEquals(2, ibans.size());
+            assertTrue(ibans.containsAll(List.of("DE44500105175407324931", "DE89370400440532013000")));
+            assertEquals(ibans.size(), ibanExtractionService.extractIbans(largePdf).size());
+        } finally {
+            largePdf.delete();
+        }
+    }
+
+    @Test
+    void testExtractIbans_ParallelChunks_BusyPool_ChunksRunOnTheCallingThread() throws IOException {
+        pdfExtractionProperties.setParallelMinPages(1);
+        pdfExtractionProperties.setPagesPerChunk(1);
+        // A pool whose threads are all taken by other parses never gets to the chunks
+        pdfParseExecutor.shutdownNow();
+        pdfParseExecutor = Executors.newSingleThreadExecutor();
+        CountDownLatch poolBusy = new CountDownLatch(1);
+        pdfParseExecutor.execute(() -> assertDoesNotThrow(() -> poolBusy.await(10, TimeUnit.SECONDS)));
+        ibanExtractionService = newIbanExtractionService();
+        File largePdf = createTestPdf(
+                "Valid IBAN: DE44 5001 0517",
+                "5407 3249 31 is the account.",
+                "Second account: DE89 3704 0044 0532 0130 00");
+        try (PdfSource pdfSource = PdfSource.ofBytes("large.pdf", Files.readAllBytes(largePdf.toPath()))) {
+            List<String> ibans = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> ibanExtractionService.extractIbans(pdfSource));
+            assertEquals(2, ibans.size());
+            assertTrue(ibans.containsAll(List.of("DE44500105175407324931", "DE89370400440532013000")));
+        } finally {
+            poolBusy.countDown();
+            largePdf.delete();
+        }
+    }
+
+    @Test
+    void testExtractIbans_ParallelChunks_ClosedSource_ThrowsPdfProcessingException() throws IOException {
+        pdfExtractionProperties.setParallelMinPages(1);
+        pdfExtractionProperties.setPagesPerChunk(1);
+        PdfSource pdfSource = PdfSource.ofBytes("closed.pdf", Files.readAllBytes(validPdf.toPath()));
+        pdfSource.close();
+
+        assertThrows(PdfProcessingException.class, () -> ibanExtractionService.extractIbans(pdfSource));
+    }
+
+    @Test
+    void testExtractIbans_ParallelChunks_FailingChunk_WaitsForRunningChunks() throws IOException {
+        pdfExtractionProperties.setParallelMinPages(1);
+        pdfExtractionProperties.setPagesPerChunk(1);
+        File largePdf = createTestPdf("Page one.", "Page two.", "Page three.");
+        Thread caller = Thread.currentThread();
+        CountDownLatch chunksRunning = new CountDownLatch(2);
+        AtomicInteger chunksDone = new AtomicInteger();
+        // The first chunk fails on the calling thread while the other two are still busy with their page
+        BooleanSupplier cancelled = () -> {
+            if (Thread.currentThread() == caller) {
+                assertDoesNotThrow(() -> chunksRunning.await(5, TimeUnit.SECONDS));
+                throw new IllegalStateException("First chunk failed");
+            }
+            chunksRunning.countDown();
+            assertDoesNotThrow(() -> Thread.sleep(200));
+            chunksDone.incrementAndGet();
+            return false;
+        };
+        try (PdfSource pdfSource = PdfSource.ofBytes("large.pdf", Files.readAllBytes(largePdf.toPath()))) {
+            assertThrows(IllegalStateException.class, () -> ibanExtractionService.extractIbans(pdfSource, cancelled));
+            assertEquals(2, chunksDone.get());
+        } finally {
+            largePdf.delete();
+        }
+    }
+
+    @Test
+    void testExtractIbans_IdenticalDocumentUnderAnotherUrl_IsNotParsedAgain() throws IOException {
+        byte[] bytes = Files.readAllBytes(validPdf.toPath());
+        try (PdfSource pdfSource = PdfSource.ofBytes("https://cdn-a.example.com/invoice.pdf", bytes)) {
+            assertEquals(List.of("DE44500105175407324931"), ibanExtractionService.extractIbans(pdfSource));
+        }
+        // A closed source cannot be parsed, only the cache can answer
+        PdfSource sameDocument = PdfSource.ofBytes("https://cdn-b.example.com/invoice.pdf?sig=abc", bytes);
+        sameDocument.close();
+
+        assertEquals(List.of("DE44500105175407324931"), ibanExtractionService.extractIbans(sameDocument));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "extracted-ibans").tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void testExtractIbans_CacheDisabled_ParsesEveryDocument() throws IOException {
+        pdfExtractionProperties.getCache().setMaximumSize(0);
+        ibanExtractionService = newIbanExtractionService();
+        byte[] bytes = Files.readAllBytes(validPdf.toPath());
+        try (PdfSource pdfSource = PdfSource.ofBytes("invoice.pdf", bytes)) {
+            ibanExtractionService.extractIbans(pdfSource);
+        }
+        PdfSource sameDocument = PdfSource.ofBytes("invoice.pdf", bytes);
+        sameDocument.close();
+
+        assertThrows(PdfProcessingException.class, () -> ibanExtractionService.extractIbans(sameDocument));
+    }
+
+    private IbanExtractionService newIbanExtractionService() {
+        return new IbanExtractionService(pdfExtractionProperties, pdfParseExecutor, new IbanValidator(),
+                new ExtractedIbanCache(pdfExtractionProperties, (SharedIbanStore) null, meterRegistry));
+    }
+
+    private File createTestPdf(String... pageTexts) throws IOException {
         File pdfFile = File.createTempFile("test_pdf", ".pdf");
         try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage();
-            document.addPage(page);
-
-            try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
-                contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12); // ✅ Set font before writing text
-                contentStream.beginText();
-                contentStream.newLineAtOffset(100, 700);
-                contentStream.showText(text);
-                contentStream.endText();
+            for (String text : pageTexts) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+
+                try (PDPageContentStream contentStream = new PDPageContentStream(document, page)) {
+                    contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA), 12); // ✅ Set font before writing text
+                    contentStream.beginText();
+                    contentStream.newLineAtOffset(100, 700);
+                    contentStream.showText(text);
+                    contentStream.endText();
+                }
             }
 
             document.save(pdfFile);
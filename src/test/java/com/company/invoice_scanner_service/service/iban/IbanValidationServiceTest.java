@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 
@@ -26,6 +27,9 @@ class IbanValidationServiceTest {
     @Mock
     private IbanValidationProperties ibanValidationProperties;
 
+    @Spy
+    private IbanValidator ibanValidator = new IbanValidator();
+
     @Mock
     private Logger log; // Only mock if the service logs messages
 
@@ -0,0 +1,65 @@
+package com.company.invoice_scanner_service.service.iban;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IbanValidatorTest {
+
+    private final IbanValidator ibanValidator = new IbanValidator();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "DE89370400440532013000", "BE68539007547034", "GB82WEST12345698765432", "NL91ABNA0417164300",
+            "NO9386011117947", "LC55HEMM000100010012001200023015",
+            // Countries iban4j does not know
+            "FK88SC123456789012", "HN88CABF00000000000250005469", "LY83002048000020100120361",
+            "MN121234123456789123", "NI45BAPR00000013000003558124", "SD2129010501234001",
+            "SO211000001001000100141", "YE15CBYE0001018861234567891234", "DJ2100010000000154000100186"})
+    void testValidate_ValidIbans(String iban) {
+        assertEquals(IbanValidationResult.VALID, ibanValidator.validate(iban));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "DE89370400440532013001, INVALID_CHECKSUM",
+            "BE0000000000000000, INVALID_LENGTH",
+            "BE6853900754703, INVALID_LENGTH",
+            "DE8937040044053201300, INVALID_LENGTH",
+            "NL91ABNA04171643A0, INVALID_BBAN_STRUCTURE",
+            "GB82W3ST12345698765432, INVALID_BBAN_STRUCTURE",
+            "XX12345678901234567890, UNSUPPORTED_COUNTRY",
+            "D189370400440532013000, INVALID_CHARACTERS",
+            "de89370400440532013000, INVALID_CHARACTERS",
+            "DE8X370400440532013000, INVALID_CHARACTERS",
+            "DE89, INVALID_LENGTH"})
+    void testValidate_InvalidIbans(String iban, IbanValidationResult expected) {
+        assertEquals(expected, ibanValidator.validate(iban));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"00", "01", "99"})
+    void testValidate_ImpossibleCheckDigits_AreRejected(String checkDigits) {
+        // Find the BBAN for which the reserved check digits satisfy MOD-97
+        for (int account = 0; account < 1_000; account++) {
+            String iban = "DE" + checkDigits + "37040044" + String.format("%010d", account);
+            if (mod97(iban) == 1) {
+                assertEquals(IbanValidationResult.INVALID_CHECKSUM, ibanValidator.validate(iban));
+                return;
+            }
+        }
+        fail("No IBAN with check digits " + checkDigits + " satisfies MOD-97");
+    }
+
+    private static int mod97(String iban) {
+        String rearranged = iban.substring(4) + iban.substring(0, 4);
+        int remainder = 0;
+        for (char c : rearranged.toCharArray()) {
+            int value = Character.getNumericValue(c);
+            remainder = (remainder * (value > 9 ? 100 : 10) + value) % 97;
+        }
+        return remainder;
+    }
+}
@@ -0,0 +1,173 @@
+package com.company.invoice_scanner_service.service.job;
+
+import com.company.invoice_scanner_service.config.ScanJobProperties;
+import com.company.invoice_scanner_service.exception.InvalidUrlException;
+import com.company.invoice_scanner_service.exception.PdfNotFoundException;
+import com.company.invoice_scanner_service.exception.ScanJobNotFoundException;
+import com.company.invoice_scanner_service.service.ScanOutcome;
+import com.company.invoice_scanner_service.service.ScanUrlStatus;
+import com.company.invoice_scanner_service.service.TaskOrchestratorService;
+import com.company.invoice_scanner_service.service.UrlScanResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScanJobServiceTest {
+
+    @Mock
+    private TaskOrchestratorService taskOrchestratorService;
+
+    @Spy
+    private InMemoryScanJobStore scanJobStore = new InMemoryScanJobStore();
+
+    private final ScanJobProperties scanJobProperties = new ScanJobProperties();
+
+    private ScanJobService scanJobService;
+
+    @BeforeEach
+    void setUp() {
+        scanJobProperties.setFlushBatchSize(2);
+        // Start the URLs on the calling thread
+        scanJobService = new ScanJobService(taskOrchestratorService, scanJobStore, scanJobProperties, Runnable::run);
+    }
+
+    @Test
+    void testSubmit_StoresPendingJobAndWritesResultsOnFlush() {
+        CompletableFuture<ScanOutcome> first = new CompletableFuture<>();
+        when(taskOrchestratorService.furtherProcessPdfForIbans("https://example.com/a.pdf")).thenReturn(first);
+        when(taskOrchestratorService.furtherProcessPdfForIbans("https://example.com/b.pdf"))
+                .thenReturn(CompletableFuture.completedFuture(
+                        new ScanOutcome.Failed(new PdfNotFoundException("No PDFs found at the given URL."))));
+
+        ScanJob job = scanJobService.submit(List.of("https://example.com/a.pdf", "https://example.com/b.pdf"));
+
+        assertEquals(ScanJobStatus.RUNNING, scanJobService.getJob(job.id()).status());
+        assertTrue(scanJobService.getJob(job.id()).urls().stream().allMatch(url -> url.status() == ScanUrlStatus.PENDING),
+                "Results are only visible after a flush");
+
+        scanJobService.flushUpdates();
+        ScanJob polled = scanJobService.getJob(job.id());
+        assertEquals(ScanJobStatus.RUNNING, polled.status());
+        assertEquals(ScanUrlStatus.PENDING, polled.urls().get(0).status());
+        assertEquals(ScanUrlStatus.FAILED, polled.urls().get(1).status());
+        assertEquals("PDF_NOT_FOUND", polled.urls().get(1).errorKey());
+
+        first.complete(new ScanOutcome.Clean(List.of("DE44500105175407324931")));
+        scanJobService.flushUpdates();
+        polled = scanJobService.getJob(job.id());
+        assertEquals(ScanJobStatus.COMPLETED, polled.status());
+        assertEquals(List.of("DE44500105175407324931"), polled.urls().get(0).validIbans());
+        assertNotNull(polled.urls().get(0).completedAt());
+    }
+
+    @Test
+    void testSubmit_BlankUrl_IsRejectedBeforeTheJobIsStored() {
+        List<String> urls = new ArrayList<>(List.of("https://example.com/a.pdf", " "));
+
+        assertThrows(InvalidUrlException.class, () -> scanJobService.submit(urls));
+        urls.set(1, null);
+        assertThrows(InvalidUrlException.class, () -> scanJobService.submit(urls));
+        assertThrows(InvalidUrlException.class, () -> scanJobService.submit(List.of()));
+
+        verify(scanJobStore, never()).create(any());
+        verifyNoInteractions(taskOrchestratorService);
+    }
+
+    @Test
+    void testFlushUpdates_WritesInBatches() {
+        when(taskOrchestratorService.furtherProcessPdfForIbans(anyString()))
+                .thenReturn(CompletableFuture.completedFuture(new ScanOutcome.Clean(List.of("DE44500105175407324931"))));
+
+        ScanJob job = scanJobService.submit(List.of("https://example.com/1.pdf", "https://example.com/2.pdf",
+                "https://example.com/3.pdf", "https://example.com/4.pdf", "https://example.com/5.pdf"));
+        scanJobService.flushUpdates();
+
+        verify(scanJobStore, times(3)).updateUrls(anyList());
+        assertEquals(ScanJobStatus.COMPLETED, scanJobService.getJob(job.id()).status());
+    }
+
+    @Test
+    void testFlushUpdates_RetriesFailedBatch() {
+        when(taskOrchestratorService.furtherProcessPdfForIbans(anyString()))
+                .thenReturn(CompletableFuture.completedFuture(new ScanOutcome.Clean(List.of("DE44500105175407324931"))));
+        ScanJob job = scanJobService.submit(List.of("https://example.com/a.pdf"));
+        doThrow(new IllegalStateException("Database unavailable")).doCallRealMethod().when(scanJobStore).updateUrls(anyList());
+
+        scanJobService.flushUpdates();
+        assertEquals(ScanJobStatus.RUNNING, scanJobService.getJob(job.id()).status());
+
+        scanJobService.flushUpdates();
+        assertEquals(ScanJobStatus.COMPLETED, scanJobService.getJob(job.id()).status());
+    }
+
+    @Test
+    void testCompleted_MapsBlacklistedIbans() {
+        ScanJobUrl result = ScanJobUrl.pending(0, "https://example.com/a.pdf").completed(new UrlScanResult(
+                "https://example.com/a.pdf",
+                new ScanOutcome.Blacklisted(List.of("DE44500105175407324931"), List.of("DE89370400440532013000"))));
+
+        assertEquals(ScanUrlStatus.BLACKLISTED, result.status());
+        assertEquals(List.of("DE89370400440532013000"), result.blacklistedIbans());
+        assertEquals(List.of("DE44500105175407324931"), result.validIbans());
+    }
+
+    @Test
+    void testPurgeExpiredJobs() {
+        scanJobProperties.setRetention(Duration.ofSeconds(-1));
+        when(taskOrchestratorService.furtherProcessPdfForIbans(anyString())).thenReturn(new CompletableFuture<>());
+        ScanJob expired = scanJobService.submit(List.of("https://example.com/a.pdf"));
+        scanJobProperties.setRetention(Duration.ofHours(1));
+        ScanJob current = scanJobService.submit(List.of("https://example.com/b.pdf"));
+
+        scanJobService.purgeExpiredJobs();
+
+        assertThrows(ScanJobNotFoundException.class, () -> scanJobService.getJob(expired.id()));
+        assertEquals(current.id(), scanJobService.getJob(current.id()).id());
+        verify(scanJobStore).deleteExpired(any(Instant.class));
+    }
+
+    @Test
+    void testPurgeExpiredJobs_FailsUrlsStillPendingAfterTheirScanWasLost() {
+        scanJobProperties.setAbandonedAfter(Duration.ofSeconds(-1));
+        // Never completes, like a scan of an instance that was restarted
+        when(taskOrchestratorService.furtherProcessPdfForIbans(anyString())).thenReturn(new CompletableFuture<>());
+        ScanJob job = scanJobService.submit(List.of("https://example.com/a.pdf"));
+
+        scanJobService.purgeExpiredJobs();
+
+        ScanJob polled = scanJobService.getJob(job.id());
+        assertEquals(ScanJobStatus.COMPLETED, polled.status());
+        assertEquals(ScanUrlStatus.FAILED, polled.urls().getFirst().status());
+        assertEquals(ScanJobService.ABANDONED_ERROR_KEY, polled.urls().getFirst().errorKey());
+    }
+
+    @Test
+    void testPurgeExpiredJobs_KeepsUrlsOfRecentJobsPending() {
+        when(taskOrchestratorService.furtherProcessPdfForIbans(anyString())).thenReturn(new CompletableFuture<>());
+        ScanJob job = scanJobService.submit(List.of("https://example.com/a.pdf"));
+
+        scanJobService.purgeExpiredJobs();
+
+        assertEquals(ScanUrlStatus.PENDING, scanJobService.getJob(job.id()).urls().getFirst().status());
+    }
+
+    @Test
+    void testGetJob_UnknownJob() {
+        assertThrows(ScanJobNotFoundException.class, () -> scanJobService.getJob(UUID.randomUUID()));
+    }
+}
@@ -0,0 +1,68 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadRetryPolicyTest {
+
+    private final PdfDownloadProperties properties = new PdfDownloadProperties();
+
+    @Test
+    void testBackoff_IsJitteredBelowAnExponentialBound() {
+        properties.getRetry().setInitialBackoff(Duration.ofMillis(100));
+        properties.getRetry().setMaxBackoff(Duration.ofMillis(300));
+        DownloadRetryPolicy policy = new DownloadRetryPolicy(properties, new SimpleMeterRegistry());
+
+        assertTrue(IntStream.range(0, 100).mapToLong(i -> policy.backoffMillis(1)).allMatch(delay -> delay <= 100));
+        assertTrue(IntStream.range(0, 100).mapToLong(i -> policy.backoffMillis(2)).allMatch(delay -> delay <= 200));
+        assertTrue(IntStream.range(0, 100).mapToLong(i -> policy.backoffMillis(10)).allMatch(delay -> delay <= 300));
+        assertTrue(IntStream.range(0, 100).mapToLong(i -> policy.backoffMillis(10)).distinct().count() > 1);
+    }
+
+    @Test
+    void testExecute_RetriesStopOnceTheBudgetIsSpent() {
+        properties.getRetry().setInitialBackoff(Duration.ofMillis(1));
+        properties.getExtraRequests().setBurst(2);
+        properties.getExtraRequests().setRatio(0);
+        DownloadRetryPolicy policy = new DownloadRetryPolicy(properties, new SimpleMeterRegistry());
+        AtomicInteger exchanges = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            CompletableFuture<HttpResponse<PdfSource>> download = policy.execute(() -> {
+                exchanges.incrementAndGet();
+                return CompletableFuture.failedFuture(new IOException("Connection reset"));
+            });
+            CompletionException failure = assertThrows(CompletionException.class, download::join);
+            assertInstanceOf(IOException.class, failure.getCause());
+        }
+
+        // Two retries for the first download, none left for the second one
+        assertEquals(4, exchanges.get());
+        assertEquals(0.0, policy.budget());
+    }
+
+    @Test
+    void testExecute_OtherFailuresAreNotRetried() {
+        DownloadRetryPolicy policy = new DownloadRetryPolicy(properties, new SimpleMeterRegistry());
+        AtomicInteger exchanges = new AtomicInteger();
+
+        CompletableFuture<HttpResponse<PdfSource>> download = policy.execute(() -> {
+            exchanges.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException("Not retryable"));
+        });
+
+        assertThrows(CompletionException.class, download::join);
+        assertEquals(1, exchanges.get());
+    }
+}
@@ -0,0 +1,256 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
+import com.company.invoice_scanner_service.exception.PdfDownloadException;
+import com.company.invoice_scanner_service.exception.PdfNotFoundException;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostConcurrencyLimiterTest {
+
+    private final PdfDownloadProperties properties = new PdfDownloadProperties();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HostConcurrencyLimiter hostConcurrencyLimiter;
+
+    @BeforeEach
+    void setUp() {
+        properties.setMaxConcurrentPerHost(2);
+        hostConcurrencyLimiter = new HostConcurrencyLimiter(properties, meterRegistry);
+    }
+
+    @Test
+    void testExecute_QueuesWorkBeyondTheLimitUntilASlotIsReleased() {
+        List<CompletableFuture<String>> downloads = new ArrayList<>();
+        AtomicInteger started = new AtomicInteger();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            CompletableFuture<String> download = new CompletableFuture<>();
+            downloads.add(download);
+            results.add(hostConcurrencyLimiter.execute("storage.example.com", () -> {
+                started.incrementAndGet();
+                return download;
+            }));
+        }
+
+        assertEquals(2, started.get(), "Third download should wait for a free slot");
+        assertEquals(2, hostConcurrencyLimiter.inFlight("storage.example.com"));
+
+        downloads.getFirst().complete("first");
+
+        assertEquals("first", results.getFirst().join());
+        assertEquals(3, started.get(), "Released slot should start the queued download");
+        assertEquals(2, hostConcurrencyLimiter.inFlight("storage.example.com"));
+
+        downloads.get(1).complete("second");
+        downloads.get(2).complete("third");
+        assertEquals("third", results.get(2).join());
+        assertEquals(0, hostConcurrencyLimiter.inFlight("storage.example.com"));
+    }
+
+    @Test
+    void testExecute_HostsAreLimitedIndependently() {
+        AtomicInteger started = new AtomicInteger();
+        for (String host : List.of("a.example.com", "a.example.com", "b.example.com", "b.example.com")) {
+            hostConcurrencyLimiter.execute(host, () -> {
+                started.incrementAndGet();
+                return new CompletableFuture<>();
+            });
+        }
+
+        assertEquals(4, started.get());
+    }
+
+    @Test
+    void testExecute_FailedTaskReleasesItsSlot() {
+        CompletableFuture<Object> failed = hostConcurrencyLimiter.execute("storage.example.com", () -> {
+            throw new IllegalStateException("boom");
+        });
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(0, hostConcurrencyLimiter.inFlight("storage.example.com"));
+    }
+
+    @Test
+    void testExecute_CancellingGivesUpQueuedSlotAndCancelsRunningTask() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        AtomicInteger queuedStarted = new AtomicInteger();
+        CompletableFuture<String> firstResult = hostConcurrencyLimiter.execute("storage.example.com", () -> first);
+        hostConcurrencyLimiter.execute("storage.example.com", () -> second);
+        CompletableFuture<String> queued = hostConcurrencyLimiter.execute("storage.example.com", () -> {
+            queuedStarted.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        queued.cancel(true);
+        firstResult.cancel(true);
+
+        assertTrue(first.isCancelled(), "Cancelling a running download should cancel its exchange");
+        assertEquals(0, queuedStarted.get(), "Cancelled download must not start");
+        assertEquals(1, hostConcurrencyLimiter.inFlight("storage.example.com"));
+    }
+
+    @Test
+    void testExecute_FailuresHalveTheLimitOnceAndSuccessesRaiseItAgain() {
+        properties.setMaxConcurrentPerHost(8);
+        hostConcurrencyLimiter = new HostConcurrencyLimiter(properties, meterRegistry);
+        String host = "slow.example.com";
+
+        // A burst of failures of downloads that ran concurrently counts as one decrease
+        List<CompletableFuture<String>> downloads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<String> download = new CompletableFuture<>();
+            downloads.add(download);
+            hostConcurrencyLimiter.execute(host, () -> download);
+        }
+        downloads.forEach(download -> download.completeExceptionally(new IllegalStateException("Connection reset")));
+        assertEquals(4, hostConcurrencyLimiter.limit(host));
+
+        hostConcurrencyLimiter.execute(host, () -> CompletableFuture.completedFuture("503"), "503"::equals);
+        assertEquals(2, hostConcurrencyLimiter.limit(host));
+        assertEquals(2.0, meterRegistry.get("pdf.download.host.limit").tag("host", host).gauge().value());
+
+        // Additive increase, by one per limit's worth of successful downloads
+        for (int i = 0; i < 6; i++) {
+            hostConcurrencyLimiter.execute(host, () -> CompletableFuture.completedFuture("200"));
+        }
+        assertEquals(4, hostConcurrencyLimiter.limit(host));
+    }
+
+    @Test
+    void testExecute_SlowBodyOfAHostThatRespondedInTimeDoesNotLowerTheLimit() throws Exception {
+        properties.getHostLimit().setLatencyThreshold(Duration.ofMillis(50));
+        hostConcurrencyLimiter = new HostConcurrencyLimiter(properties, meterRegistry);
+        String host = "storage.example.com";
+        CompletableFuture<String> body = new CompletableFuture<>();
+
+        hostConcurrencyLimiter.execute(host, responded -> {
+            responded.run();
+            return body;
+        }, value -> false);
+        Thread.sleep(100);
+        body.complete("200");
+
+        assertEquals(2, hostConcurrencyLimiter.limit(host));
+    }
+
+    @Test
+    void testExecute_HostRespondingLateLowersTheLimit() throws Exception {
+        properties.getHostLimit().setLatencyThreshold(Duration.ofMillis(50));
+        hostConcurrencyLimiter = new HostConcurrencyLimiter(properties, meterRegistry);
+        String host = "slow.example.com";
+        CompletableFuture<String> body = new CompletableFuture<>();
+        AtomicReference<Runnable> responded = new AtomicReference<>();
+
+        hostConcurrencyLimiter.execute(host, onResponse -> {
+            responded.set(onResponse);
+            return body;
+        }, value -> false);
+        Thread.sleep(100);
+        responded.get().run();
+        body.complete("200");
+
+        assertEquals(1, hostConcurrencyLimiter.limit(host));
+    }
+
+    @Test
+    void testExecute_BodiesRejectedByTheCallerDoNotLowerTheLimit() {
+        String host = "storage.example.com";
+
+        hostConcurrencyLimiter.execute(host, () -> CompletableFuture.failedFuture(
+                new PdfTooLargeException("The document exceeds the maximum size of 1024 bytes.")));
+        hostConcurrencyLimiter.execute(host, () -> CompletableFuture.failedFuture(
+                new PdfNotFoundException("The document at the given URL is not a PDF.")));
+
+        assertEquals(2, hostConcurrencyLimiter.limit(host));
+    }
+
+    @Test
+    void testExecute_LoweredLimitHoldsBackQueuedWork() {
+        String host = "storage.example.com";
+        CompletableFuture<String> failing = new CompletableFuture<>();
+        AtomicInteger queuedStarted = new AtomicInteger();
+        hostConcurrencyLimiter.execute(host, () -> failing);
+        hostConcurrencyLimiter.execute(host, CompletableFuture::new);
+        hostConcurrencyLimiter.execute(host, () -> {
+            queuedStarted.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        failing.completeExceptionally(new IllegalStateException("Connection reset"));
+
+        assertEquals(1, hostConcurrencyLimiter.limit(host));
+        assertEquals(0, queuedStarted.get(), "The one remaining download already uses the lowered limit");
+        assertEquals(1.0, meterRegistry.get("pdf.download.host.queue.size").tag("host", host).gauge().value());
+    }
+
+    @Test
+    void testExecute_FixedLimitIsNotAdapted() {
+        properties.getHostLimit().setAdaptive(false);
+        hostConcurrencyLimiter = new HostConcurrencyLimiter(properties, meterRegistry);
+
+        hostConcurrencyLimiter.execute("storage.example.com",
+                () -> CompletableFuture.failedFuture(new IllegalStateException("Connection reset")));
+
+        assertEquals(2, hostConcurrencyLimiter.limit("storage.example.com"));
+    }
+
+    @Test
+    void testExecute_IdleHostIsForgottenWithItsMeters() {
+        String host = "once.example.com";
+        CompletableFuture<String> download = new CompletableFuture<>();
+        hostConcurrencyLimiter.execute(host, () -> download);
+        assertEquals(1.0, meterRegistry.get("pdf.download.host.in-flight").tag("host", host).gauge().value());
+
+        download.complete("200");
+
+        assertNull(meterRegistry.find("pdf.download.host.in-flight").tag("host", host).gauge());
+        assertNull(meterRegistry.find("pdf.download.host.rejected").tag("host", host).counter());
+
+        // Coming back registers the host again
+        hostConcurrencyLimiter.execute(host, CompletableFuture::new);
+        assertEquals(1, hostConcurrencyLimiter.inFlight(host));
+        assertEquals(1.0, meterRegistry.get("pdf.download.host.in-flight").tag("host", host).gauge().value());
+    }
+
+    @Test
+    void testExecute_HostWithALoweredLimitIsKeptWhileIdle() {
+        String host = "slow.example.com";
+
+        hostConcurrencyLimiter.execute(host,
+                () -> CompletableFuture.failedFuture(new IllegalStateException("Connection reset")));
+
+        assertEquals(1, hostConcurrencyLimiter.limit(host));
+        assertEquals(1.0, meterRegistry.get("pdf.download.host.limit").tag("host", host).gauge().value());
+    }
+
+    @Test
+    void testExecute_RejectsWorkBeyondTheQueueCapacity() {
+        properties.getHostLimit().setMaxQueued(1);
+        hostConcurrencyLimiter = new HostConcurrencyLimiter(properties, meterRegistry);
+        String host = "storage.example.com";
+        for (int i = 0; i < 3; i++) {
+            hostConcurrencyLimiter.execute(host, CompletableFuture::new);
+        }
+
+        CompletableFuture<Object> rejected = hostConcurrencyLimiter.execute(host, CompletableFuture::new);
+
+        CompletionException failure = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(PdfDownloadException.class, failure.getCause());
+        assertEquals(1.0, meterRegistry.get("pdf.download.host.rejected").tag("host", host).counter().count());
+    }
+}
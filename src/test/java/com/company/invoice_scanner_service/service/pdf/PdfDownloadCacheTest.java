@@ -0,0 +1,144 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.net.http.HttpHeaders;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfDownloadCacheTest {
+
+    private static final HttpHeaders WITH_ETAG = HttpHeaders.of(Map.of("ETag", List.of("\"v1\"")), (name, value) -> true);
+
+    @TempDir
+    Path directory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<PdfDownloadCache> caches = new ArrayList<>();
+    private PdfDownloadProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PdfDownloadProperties();
+        properties.getCache().setDirectory(directory.toString());
+        properties.getCache().setMaxSize(DataSize.ofBytes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        caches.forEach(PdfDownloadCache::close);
+    }
+
+    @Test
+    void testPut_EvictsLeastRecentlyUsedDocumentsBeyondMaxSize() throws Exception {
+        PdfDownloadCache cache = newCache();
+        cache.put("a", WITH_ETAG, PdfSource.ofBytes("a", new byte[4]));
+        cache.put("b", WITH_ETAG, PdfSource.ofBytes("b", new byte[4]));
+        cache.awaitWrites();
+        cache.get("a");
+
+        cache.put("c", WITH_ETAG, PdfSource.ofBytes("c", new byte[4]));
+        cache.awaitWrites();
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(8, cache.size());
+        assertEquals(8.0, meterRegistry.get("pdf.download.cache.size").gauge().value());
+        try (var files = Files.list(cache.directory())) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void testPut_CopyIsWrittenAfterTheSourceWasClosed() throws Exception {
+        PdfDownloadCache cache = newCache();
+        PdfSource pdfSource = PdfSource.ofBytes("a", new byte[]{1, 2, 3});
+
+        cache.put("https://example.com/a.pdf", WITH_ETAG, pdfSource);
+        pdfSource.close();
+        cache.awaitWrites();
+
+        PdfDownloadCache.Entry entry = cache.get("https://example.com/a.pdf");
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(entry.file()));
+        assertEquals(pdfSource.getContentHash(), entry.contentHash());
+    }
+
+    @Test
+    void testGet_DifferentSpellingOfTheUrl_FindsTheCopy() throws Exception {
+        PdfDownloadCache cache = newCache();
+        cache.put("HTTPS://Example.com:443/a.pdf#page=2", WITH_ETAG, PdfSource.ofBytes("a", new byte[4]));
+        cache.awaitWrites();
+
+        assertNotNull(cache.get("https://example.com/a.pdf"));
+    }
+
+    @Test
+    void testPut_WithoutValidator_DropsPreviousCopy() throws Exception {
+        PdfDownloadCache cache = newCache();
+        cache.put("a", WITH_ETAG, PdfSource.ofBytes("a", new byte[4]));
+        cache.awaitWrites();
+
+        cache.put("a", HttpHeaders.of(Map.of(), (name, value) -> true), PdfSource.ofBytes("a", new byte[4]));
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testPut_LargerThanMaxSize_IsNotCached() throws Exception {
+        PdfDownloadCache cache = newCache();
+
+        cache.put("a", WITH_ETAG, PdfSource.ofBytes("a", new byte[11]));
+        cache.awaitWrites();
+
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    void testLink_IsAFileOfItsOwnThatOutlivesTheCopy() throws Exception {
+        PdfDownloadCache cache = newCache();
+        cache.put("a", WITH_ETAG, PdfSource.ofBytes("a", new byte[]{1, 2, 3}));
+        cache.awaitWrites();
+        PdfDownloadCache.Entry entry = cache.get("a");
+
+        Path linked = cache.link(entry);
+        cache.remove("a");
+
+        assertFalse(Files.exists(entry.file()));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(linked));
+    }
+
+    @Test
+    void testInstances_KeepTheirCopiesApartAndDeleteOnlyTheirOwn() throws Exception {
+        Path leftOver = Files.write(directory.resolve("pdf_cache_of_another_instance.pdf"), new byte[]{1});
+        PdfDownloadCache first = newCache();
+        PdfDownloadCache second = newCache();
+        second.put("a", WITH_ETAG, PdfSource.ofBytes("a", new byte[4]));
+        second.awaitWrites();
+
+        first.close();
+
+        assertTrue(Files.exists(leftOver));
+        assertFalse(Files.exists(first.directory()));
+        assertTrue(Files.exists(second.get("a").file()));
+    }
+
+    private PdfDownloadCache newCache() {
+        PdfDownloadCache cache = new PdfDownloadCache(properties, meterRegistry);
+        caches.add(cache);
+        return cache;
+    }
+}
@@ -1,16 +1,39 @@
 package com.company.invoice_scanner_service.service.pdf;
 
+import com.company.invoice_scanner_service.config.HttpClientConfig;
+import com.company.invoice_scanner_service.config.PdfDownloadProperties;
+import com.company.invoice_scanner_service.config.PdfIngestionProperties;
+import com.company.invoice_scanner_service.config.ScanExecutorConfig;
+import com.company.invoice_scanner_service.config.ScanExecutorProperties;
 import com.company.invoice_scanner_service.exception.InvalidUrlException;
+import com.company.invoice_scanner_service.exception.PdfDownloadException;
 import com.company.invoice_scanner_service.exception.PdfNotFoundException;
+import com.company.invoice_scanner_service.exception.PdfProcessingException;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
 import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.Fault;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.io.RandomAccessRead;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.*;
@@ -20,87 +43,408 @@ class PdfDownloadServiceTest {
 
     private static PdfDownloadService pdfDownloadService;
     private static WireMockServer wireMockServer;
+    private static PdfDownloadCache pdfDownloadCache;
+    private static Path cacheDirectory;
 
     @BeforeAll
-    static void setup() {
+    static void setup() throws IOException {
         // Start WireMock server for mocking HTTP responses
         wireMockServer = new WireMockServer(8081);
         wireMockServer.start();
 
-        pdfDownloadService = new PdfDownloadService();
+        PdfDownloadProperties downloadProperties = new PdfDownloadProperties();
+        downloadProperties.setDownloadTimeout(Duration.ofSeconds(2));
+        cacheDirectory = Files.createTempDirectory("pdf-download-cache");
+        downloadProperties.getCache().setDirectory(cacheDirectory.toString());
+        pdfDownloadCache = new PdfDownloadCache(downloadProperties, new SimpleMeterRegistry());
+        pdfDownloadService = newPdfDownloadService(downloadProperties, new SimpleMeterRegistry());
+    }
+
+    private static PdfDownloadService newPdfDownloadService(PdfDownloadProperties downloadProperties,
+                                                            SimpleMeterRegistry meterRegistry) {
+        return newPdfDownloadService(downloadProperties, new HostConcurrencyLimiter(downloadProperties, meterRegistry),
+                meterRegistry);
+    }
+
+    private static PdfDownloadService newPdfDownloadService(PdfDownloadProperties downloadProperties,
+                                                            HostConcurrencyLimiter hostConcurrencyLimiter,
+                                                            SimpleMeterRegistry meterRegistry) {
+        PdfIngestionProperties ingestionProperties = new PdfIngestionProperties();
+        ScanExecutorProperties scanExecutorProperties = new ScanExecutorProperties();
+        return new PdfDownloadService(
+                new HttpClientConfig().pdfHttpClient(downloadProperties, scanExecutorProperties,
+                        new ScanExecutorConfig().scanIoExecutor(scanExecutorProperties)),
+                downloadProperties,
+                hostConcurrencyLimiter,
+                new PdfSourceFactory(ingestionProperties, new PdfBufferPool(ingestionProperties)),
+                pdfDownloadCache,
+                new DownloadRetryPolicy(downloadProperties, meterRegistry));
     }
 
     @AfterAll
-    static void tearDown() {
+    static void tearDown() throws IOException {
         wireMockServer.stop();
+        pdfDownloadCache.close();
+        FileSystemUtils.deleteRecursively(cacheDirectory);
+    }
+
+    private static byte[] pdf(String rest) {
+        return ("%PDF-" + rest).getBytes(StandardCharsets.US_ASCII);
     }
 
     @Test
-    void testDownloadPdf_ValidUrl_ShouldReturnPdfFile() {
-        // Mock a successful PDF response
-        wireMockServer.stubFor(get(urlEqualTo("/valid.pdf"))
+    void testDownloadPdfSource_ValidUrl_ShouldKeepPdfInMemory() throws IOException {
+        byte[] body = pdf("");
+        wireMockServer.stubFor(get(urlEqualTo("/streamed.pdf"))
                 .willReturn(aResponse()
                         .withStatus(HttpStatus.OK.value())
                         .withHeader("Content-Type", "application/pdf")
-                        .withBody(new byte[]{1, 2, 3, 4, 5}))); // Mocked PDF content
+                        .withBody(body)));
 
-        String validUrl = "http://localhost:8081/valid.pdf";
-        List<File> downloadedFiles = pdfDownloadService.downloadPdfs(validUrl);
+        try (PdfSource pdfSource = pdfDownloadService.downloadPdfSource("http://localhost:8081/streamed.pdf");
+             RandomAccessRead reader = pdfSource.openReader()) {
+            assertTrue(pdfSource.isInMemory());
+            assertEquals(body.length, pdfSource.getLength());
 
-        assertNotNull(downloadedFiles);
-        assertFalse(downloadedFiles.isEmpty());
-        assertTrue(downloadedFiles.getFirst().exists());
+            byte[] read = new byte[body.length];
+            assertEquals(body.length, reader.read(read, 0, read.length));
+            assertArrayEquals(body, read);
+        }
+    }
 
-        // Clean up temporary file
-        downloadedFiles.getFirst().delete();
+    @Test
+    void testDownloadPdfSource_UrlReturns404_ShouldThrowPdfNotFoundException() {
+        wireMockServer.stubFor(get(urlEqualTo("/missing-streamed.pdf"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.NOT_FOUND.value())));
+
+        Exception exception = assertThrows(PdfNotFoundException.class,
+                () -> pdfDownloadService.downloadPdfSource("http://localhost:8081/missing-streamed.pdf"));
+        assertEquals("No PDFs found at the given URL.", exception.getMessage());
     }
 
     @Test
-    void testDownloadPdf_InvalidUrl_ShouldThrowInvalidUrlException() {
-        String invalidUrl = "invalid-url";
+    void testDownloadPdfSourceAsync_ValidUrl_CompletesWithSource() {
+        wireMockServer.stubFor(get(urlEqualTo("/async.pdf"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader("Content-Type", "application/pdf")
+                        .withBody(pdf("1.7"))));
 
-        Exception exception = assertThrows(InvalidUrlException.class, () -> pdfDownloadService.downloadPdfs(invalidUrl));
-        assertEquals("Invalid URL format: invalid-url", exception.getMessage());
+        try (PdfSource pdfSource = pdfDownloadService.downloadPdfSourceAsync("http://localhost:8081/async.pdf").join()) {
+            assertEquals(8, pdfSource.getLength());
+        }
     }
 
     @Test
-    void testDownloadPdf_UrlNotReturningPdf_ShouldThrowPdfNotFoundException() {
-        // Mock a response with non-PDF content type
-        wireMockServer.stubFor(get(urlEqualTo("/not-a-pdf"))
+    void testDownloadPdfSourceAsync_UnchangedDocument_IsServedFromCacheAfter304() throws Exception {
+        byte[] body = pdf("1.4");
+        wireMockServer.stubFor(get(urlEqualTo("/etag.pdf"))
                 .willReturn(aResponse()
-                        .withStatus(HttpStatus.BAD_REQUEST.value())
-                        .withHeader("Content-Type", "text/html")
-                        .withBody("<html>Not a PDF</html>")));
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody(body)));
+        wireMockServer.stubFor(get(urlEqualTo("/etag.pdf"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(HttpStatus.NOT_MODIFIED.value())));
+        String url = "http://localhost:8081/etag.pdf";
 
-        String nonPdfUrl = "http://localhost:8081/not-a-pdf";
+        String firstHash;
+        try (PdfSource pdfSource = pdfDownloadService.downloadPdfSourceAsync(url).join()) {
+            firstHash = pdfSource.getContentHash();
+        }
+        pdfDownloadCache.awaitWrites();
+        try (PdfSource pdfSource = pdfDownloadService.downloadPdfSourceAsync(url).join();
+             RandomAccessRead reader = pdfSource.openReader()) {
+            assertEquals(body.length, pdfSource.getLength());
+            assertEquals(firstHash, pdfSource.getContentHash());
+            assertNotEquals(pdfDownloadCache.get(url).file(), pdfSource.getFile(), "The source owns a file of its own");
+            assertEquals('%', reader.read());
+        }
+        assertTrue(Files.exists(pdfDownloadCache.get(url).file()), "Closing the source keeps the cached copy");
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/etag.pdf")).withHeader("If-None-Match", equalTo("\"v1\"")));
+    }
 
-        Exception exception = assertThrows(PdfNotFoundException.class, () -> pdfDownloadService.downloadPdfs(nonPdfUrl));
-        assertEquals("No PDFs found at the given URL.", exception.getMessage());
+    @Test
+    void testDownloadPdfSourceAsync_ChangedDocument_ReplacesCachedCopy() throws Exception {
+        String lastModified = "Wed, 21 Oct 2026 07:28:00 GMT";
+        wireMockServer.stubFor(get(urlEqualTo("/modified.pdf"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader("Last-Modified", lastModified)
+                        .withBody(pdf("1.7"))));
+        String url = "http://localhost:8081/modified.pdf";
+        pdfDownloadService.downloadPdfSourceAsync(url).join().close();
+        pdfDownloadCache.awaitWrites();
+
+        wireMockServer.stubFor(get(urlEqualTo("/modified.pdf"))
+                .withHeader("If-Modified-Since", equalTo(lastModified))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader("Last-Modified", "Thu, 22 Oct 2026 07:28:00 GMT")
+                        .withBody(pdf(""))));
+
+        try (PdfSource pdfSource = pdfDownloadService.downloadPdfSourceAsync(url).join()) {
+            assertEquals(5, pdfSource.getLength());
+        }
+        pdfDownloadCache.awaitWrites();
+        assertEquals("Thu, 22 Oct 2026 07:28:00 GMT", pdfDownloadCache.get(url).lastModified());
+        assertEquals(5, pdfDownloadCache.get(url).length());
     }
 
     @Test
-    void testDownloadPdf_UrlReturns404_ShouldThrowPdfNotFoundException() {
-        // Mock a 404 response
-        wireMockServer.stubFor(get(urlEqualTo("/missing.pdf"))
+    void testDownloadPdfSourceAsync_EvictedCopy_IsDownloadedAgain() throws Exception {
+        wireMockServer.stubFor(get(urlEqualTo("/evicted.pdf"))
                 .willReturn(aResponse()
-                        .withStatus(HttpStatus.NOT_FOUND.value())));
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader("ETag", "\"v1\"")
+                        .withBody(pdf("1.7"))));
+        wireMockServer.stubFor(get(urlEqualTo("/evicted.pdf"))
+                .withHeader("If-None-Match", equalTo("\"v1\""))
+                .willReturn(aResponse().withStatus(HttpStatus.NOT_MODIFIED.value())));
+        String url = "http://localhost:8081/evicted.pdf";
+        pdfDownloadService.downloadPdfSourceAsync(url).join().close();
+        pdfDownloadCache.awaitWrites();
 
-        String missingPdfUrl = "http://localhost:8081/missing.pdf";
+        // Deleted behind the cache's back, like an eviction between sending the request and the 304
+        assertDoesNotThrow(() -> Files.delete(pdfDownloadCache.get(url).file()));
 
-        Exception exception = assertThrows(PdfNotFoundException.class, () -> pdfDownloadService.downloadPdfs(missingPdfUrl));
-        assertEquals("No PDFs found at the given URL.", exception.getMessage());
+        try (PdfSource pdfSource = pdfDownloadService.downloadPdfSourceAsync(url).join()) {
+            assertEquals(8, pdfSource.getLength());
+        }
+    }
+
+    @Test
+    void testDownloadPdfSourceAsync_InvalidUrl_CompletesExceptionally() {
+        CompletableFuture<PdfSource> future = pdfDownloadService.downloadPdfSourceAsync("invalid-url");
+
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(InvalidUrlException.class, exception.getCause());
     }
 
     @Test
-    void testDownloadPdf_ServerError_ShouldThrowPdfNotFoundException() {
-        // Mock a 500 Internal Server Error
-        wireMockServer.stubFor(get(urlEqualTo("/server-error.pdf"))
+    void testDownloadPdfSourceAsync_SlowBody_IsCancelledAfterDownloadTimeout() {
+        wireMockServer.stubFor(get(urlEqualTo("/slow.pdf"))
                 .willReturn(aResponse()
-                        .withStatus(HttpStatus.BAD_REQUEST.value())));
+                        .withStatus(HttpStatus.OK.value())
+                        .withBody(pdf("1.7"))
+                        .withFixedDelay(5_000)));
+
+        CompletableFuture<PdfSource> future = pdfDownloadService.downloadPdfSourceAsync("http://localhost:8081/slow.pdf");
+
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(PdfProcessingException.class, exception.getCause());
+    }
+
+    @Test
+    void testDownloadPdfSourceAsync_FailingAndSlowHosts_LoseSlotsHealthyHostKeepsThem() {
+        // localhost and 127.0.0.1 are both served by the stub server, but limited as two hosts
+        wireMockServer.stubFor(get(urlEqualTo("/unavailable.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.SERVICE_UNAVAILABLE.value())));
+        wireMockServer.stubFor(get(urlEqualTo("/sluggish.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(pdf("1.7")).withFixedDelay(300)));
+        wireMockServer.stubFor(get(urlEqualTo("/healthy.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(pdf("1.7"))));
+        PdfDownloadProperties downloadProperties = new PdfDownloadProperties();
+        downloadProperties.setMaxConcurrentPerHost(8);
+        downloadProperties.getHostLimit().setLatencyThreshold(Duration.ofMillis(200));
+        downloadProperties.getRetry().setMaxAttempts(1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(downloadProperties, meterRegistry);
+        PdfDownloadService service = newPdfDownloadService(downloadProperties, limiter, meterRegistry);
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> service.downloadPdfSourceAsync("http://127.0.0.1:8081/unavailable.pdf").join());
+        assertInstanceOf(PdfNotFoundException.class, failure.getCause());
+        service.downloadPdfSourceAsync("http://127.0.0.1:8081/sluggish.pdf").join().close();
+        for (int i = 0; i < 3; i++) {
+            service.downloadPdfSourceAsync("http://localhost:8081/healthy.pdf").join().close();
+        }
+
+        assertEquals(2, limiter.limit("127.0.0.1"));
+        assertEquals(2.0, meterRegistry.get("pdf.download.host.limit").tag("host", "127.0.0.1").gauge().value());
+        assertEquals(8, limiter.limit("localhost"));
+    }
+
+    @Test
+    void testDownloadPdfSourceAsync_SaturatedHost_RejectsExcessWithoutDelayingOtherHosts() {
+        wireMockServer.stubFor(get(urlEqualTo("/stalled.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(pdf("1.7")).withFixedDelay(1_000)));
+        wireMockServer.stubFor(get(urlEqualTo("/healthy.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(pdf("1.7"))));
+        PdfDownloadProperties downloadProperties = new PdfDownloadProperties();
+        downloadProperties.setMaxConcurrentPerHost(2);
+        downloadProperties.getHostLimit().setMaxQueued(2);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HostConcurrencyLimiter limiter = new HostConcurrencyLimiter(downloadProperties, meterRegistry);
+        PdfDownloadService service = newPdfDownloadService(downloadProperties, limiter, meterRegistry);
+
+        List<CompletableFuture<PdfSource>> stalled = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            stalled.add(service.downloadPdfSourceAsync("http://127.0.0.1:8081/stalled.pdf"));
+        }
+        CompletableFuture<PdfSource> rejected = service.downloadPdfSourceAsync("http://127.0.0.1:8081/stalled.pdf");
 
-        String serverErrorUrl = "http://localhost:8081/server-error.pdf";
+        CompletionException failure = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(PdfDownloadException.class, failure.getCause());
+        assertEquals(2.0, meterRegistry.get("pdf.download.host.queue.size").tag("host", "127.0.0.1").gauge().value());
+        try (PdfSource healthy = service.downloadPdfSourceAsync("http://localhost:8081/healthy.pdf")
+                .orTimeout(500, TimeUnit.MILLISECONDS).join()) {
+            assertEquals(8, healthy.getLength());
+        }
+        stalled.forEach(download -> download.join().close());
+    }
+
+    @Test
+    void testDownloadPdfSourceAsync_TransientFailures_AreRetried() {
+        wireMockServer.stubFor(get(urlEqualTo("/flaky.pdf")).inScenario("flaky")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER))
+                .willSetStateTo("reset"));
+        wireMockServer.stubFor(get(urlEqualTo("/flaky.pdf")).inScenario("flaky")
+                .whenScenarioStateIs("reset")
+                .willReturn(aResponse().withStatus(HttpStatus.SERVICE_UNAVAILABLE.value()))
+                .willSetStateTo("unavailable"));
+        wireMockServer.stubFor(get(urlEqualTo("/flaky.pdf")).inScenario("flaky")
+                .whenScenarioStateIs("unavailable")
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(pdf("1.7"))));
+        PdfDownloadProperties downloadProperties = new PdfDownloadProperties();
+        downloadProperties.getRetry().setInitialBackoff(Duration.ofMillis(10));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PdfDownloadService service = newPdfDownloadService(downloadProperties, meterRegistry);
+
+        try (PdfSource pdfSource = service.downloadPdfSourceAsync("http://localhost:8081/flaky.pdf").join()) {
+            assertEquals(8, pdfSource.getLength());
+        }
+        wireMockServer.verify(3, getRequestedFor(urlEqualTo("/flaky.pdf")));
+        assertEquals(2.0, meterRegistry.get("pdf.download.retries").tag("result", "sent").counter().count());
+    }
+
+    @Test
+    void testDownloadPdfSourceAsync_ExhaustedBudget_IsNotRetried() {
+        wireMockServer.stubFor(get(urlEqualTo("/overloaded.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.SERVICE_UNAVAILABLE.value())));
+        PdfDownloadProperties downloadProperties = new PdfDownloadProperties();
+        downloadProperties.getExtraRequests().setBurst(0);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PdfDownloadService service = newPdfDownloadService(downloadProperties, meterRegistry);
+
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> service.downloadPdfSourceAsync("http://localhost:8081/overloaded.pdf").join());
+
+        assertInstanceOf(PdfNotFoundException.class, failure.getCause());
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/overloaded.pdf")));
+        assertEquals(1.0, meterRegistry.get("pdf.download.retries").tag("result", "over-budget").counter().count());
+    }
+
+    @Test
+    void testDownloadPdfSourceAsync_StuckExchange_IsOvertakenByHedge() {
+        wireMockServer.stubFor(get(urlEqualTo("/warm-up.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(pdf(""))));
+        wireMockServer.stubFor(get(urlEqualTo("/stuck.pdf")).inScenario("stuck")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(pdf("1.7")).withFixedDelay(5_000))
+                .willSetStateTo("hedged"));
+        wireMockServer.stubFor(get(urlEqualTo("/stuck.pdf")).inScenario("stuck")
+                .whenScenarioStateIs("hedged")
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(pdf("1.7"))));
+        PdfDownloadProperties downloadProperties = new PdfDownloadProperties();
+        downloadProperties.getHedging().setEnabled(true);
+        downloadProperties.getHedging().setMinSamples(1);
+        downloadProperties.getHedging().setMinDelay(Duration.ofMillis(100));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PdfDownloadService service = newPdfDownloadService(downloadProperties, meterRegistry);
+        service.downloadPdfSourceAsync("http://localhost:8081/warm-up.pdf").join().close();
+
+        try (PdfSource pdfSource = service.downloadPdfSourceAsync("http://localhost:8081/stuck.pdf")
+                .orTimeout(2, TimeUnit.SECONDS).join()) {
+            assertEquals(8, pdfSource.getLength());
+        }
+        assertEquals(1.0, meterRegistry.get("pdf.download.hedges").tag("result", "won").counter().count());
+    }
+
+    @Test
+    void testDownloadPdfSource_HtmlPage_IsRejectedWithoutRetry() {
+        wireMockServer.stubFor(get(urlEqualTo("/login.pdf"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader("Content-Type", "text/html; charset=utf-8")
+                        .withBody("<html>Please log in</html>")));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PdfDownloadService service = newPdfDownloadService(new PdfDownloadProperties(), meterRegistry);
+
+        Exception exception = assertThrows(PdfNotFoundException.class,
+                () -> service.downloadPdfSource("http://localhost:8081/login.pdf"));
+        assertTrue(exception.getMessage().contains("text/html"));
+        assertEquals(0, meterRegistry.counter("pdf.download.retries", "result", "sent").count());
+    }
+
+    @Test
+    void testDownloadPdfSource_BinaryWithoutSignature_IsRejected() {
+        wireMockServer.stubFor(get(urlEqualTo("/binary.pdf"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.OK.value())
+                        .withHeader("Content-Type", "application/octet-stream")
+                        .withBody(new byte[]{1, 2, 3, 4, 5})));
+
+        assertThrows(PdfNotFoundException.class,
+                () -> pdfDownloadService.downloadPdfSource("http://localhost:8081/binary.pdf"));
+    }
+
+    @Test
+    void testDownloadPdfSource_SignatureAfterLeadingBytes_IsAccepted() {
+        byte[] body = new byte[PdfSourceBodySubscriber.SIGNATURE_WINDOW];
+        System.arraycopy(pdf("1.7"), 0, body, 100, 8);
+        wireMockServer.stubFor(get(urlEqualTo("/leading-bytes.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(body)));
+
+        try (PdfSource pdfSource = pdfDownloadService.downloadPdfSource("http://localhost:8081/leading-bytes.pdf")) {
+            assertEquals(body.length, pdfSource.getLength());
+        }
+    }
+
+    @Test
+    void testDownloadPdfSource_ContentLengthAboveMaxSize_IsRejectedWithoutRetry() {
+        PdfDownloadProperties downloadProperties = new PdfDownloadProperties();
+        downloadProperties.setMaxSize(DataSize.ofKilobytes(1));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PdfDownloadService service = newPdfDownloadService(downloadProperties, meterRegistry);
+        byte[] body = Arrays.copyOf(pdf("1.7"), 4096);
+        wireMockServer.stubFor(get(urlEqualTo("/large.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(body)));
+
+        assertThrows(PdfTooLargeException.class, () -> service.downloadPdfSource("http://localhost:8081/large.pdf"));
+        assertEquals(0, meterRegistry.counter("pdf.download.retries", "result", "sent").count());
+    }
+
+    @Test
+    void testDownloadPdfSource_StreamedBodyAboveMaxSize_IsAbortedWhileArriving() {
+        PdfDownloadProperties downloadProperties = new PdfDownloadProperties();
+        downloadProperties.setMaxSize(DataSize.ofKilobytes(1));
+        PdfDownloadService service = newPdfDownloadService(downloadProperties, new SimpleMeterRegistry());
+        byte[] body = Arrays.copyOf(pdf("1.7"), 64 * 1024);
+        // Chunked without a Content-Length, the last chunk only arrives after 5 seconds
+        wireMockServer.stubFor(get(urlEqualTo("/chunked.pdf"))
+                .willReturn(aResponse().withStatus(HttpStatus.OK.value()).withBody(body).withChunkedDribbleDelay(64, 5_000)));
+
+        long started = System.nanoTime();
+        assertThrows(PdfTooLargeException.class, () -> service.downloadPdfSource("http://localhost:8081/chunked.pdf"));
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(4));
+    }
+
+    @Test
+    void testDownloadPdfSource_UrlNotReturningPdf_ShouldThrowPdfNotFoundException() {
+        // Mock a response with non-PDF content type
+        wireMockServer.stubFor(get(urlEqualTo("/not-a-pdf"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.BAD_REQUEST.value())
+                        .withHeader("Content-Type", "text/html")
+                        .withBody("<html>Not a PDF</html>")));
+
+        String nonPdfUrl = "http://localhost:8081/not-a-pdf";
 
-        Exception exception = assertThrows(PdfNotFoundException.class, () -> pdfDownloadService.downloadPdfs(serverErrorUrl));
+        Exception exception = assertThrows(PdfNotFoundException.class, () -> pdfDownloadService.downloadPdfSource(nonPdfUrl));
         assertEquals("No PDFs found at the given URL.", exception.getMessage());
     }
 }
\ No newline at end of file
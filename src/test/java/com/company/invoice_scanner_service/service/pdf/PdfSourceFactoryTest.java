@@ -0,0 +1,216 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import com.company.invoice_scanner_service.config.PdfIngestionProperties;
+import com.company.invoice_scanner_service.exception.PdfTooLargeException;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfSourceFactoryTest {
+
+    @TempDir
+    Path spillDirectory;
+
+    private PdfIngestionProperties properties;
+    private PdfBufferPool bufferPool;
+    private PdfSourceFactory pdfSourceFactory;
+
+    @BeforeEach
+    void setUp() {
+        properties = new PdfIngestionProperties();
+        properties.setInMemoryThreshold(DataSize.ofKilobytes(64));
+        properties.setSpillDirectory(spillDirectory.toString());
+        bufferPool = new PdfBufferPool(properties);
+        pdfSourceFactory = new PdfSourceFactory(properties, bufferPool);
+    }
+
+    @Test
+    void testRead_SmallDocument_StaysInMemoryAndReturnsBufferToPool() throws IOException {
+        byte[] bytes = randomBytes(10_000);
+
+        PdfSource pdfSource = pdfSourceFactory.read("small.pdf", new ByteArrayInputStream(bytes), -1);
+
+        assertTrue(pdfSource.isInMemory());
+        assertArrayEquals(bytes, readAll(pdfSource));
+        assertEquals(0, bufferPool.idleCount());
+
+        pdfSource.close();
+        assertEquals(1, bufferPool.idleCount());
+        assertEmpty(spillDirectory);
+    }
+
+    @Test
+    void testRead_LargeDocument_SpillsToMappedFileAndDeletesItOnClose() throws IOException {
+        byte[] bytes = randomBytes(200_000);
+
+        PdfSource pdfSource = pdfSourceFactory.read("large.pdf", new ByteArrayInputStream(bytes), -1);
+
+        assertFalse(pdfSource.isInMemory());
+        assertTrue(Files.exists(pdfSource.getFile()));
+        assertArrayEquals(bytes, readAll(pdfSource));
+        assertEquals(1, bufferPool.idleCount(), "Buffer should be returned to the pool once spilled");
+
+        pdfSource.close();
+        assertEmpty(spillDirectory);
+    }
+
+    @Test
+    void testRead_KnownLargeLength_SkipsTheBuffer() throws IOException {
+        byte[] bytes = randomBytes(100_000);
+
+        try (PdfSource pdfSource = pdfSourceFactory.read("known.pdf", new ByteArrayInputStream(bytes), bytes.length)) {
+            assertFalse(pdfSource.isInMemory());
+            assertEquals(0, bufferPool.idleCount());
+            assertArrayEquals(bytes, readAll(pdfSource));
+        }
+        assertEmpty(spillDirectory);
+    }
+
+    @Test
+    void testRead_KnownSmallLength_GetsABufferOfThatSize() throws IOException {
+        byte[] bytes = randomBytes(1_000);
+
+        try (PdfSource pdfSource = pdfSourceFactory.read("known.pdf", new ByteArrayInputStream(bytes), bytes.length)) {
+            assertTrue(pdfSource.isInMemory());
+            assertArrayEquals(bytes, readAll(pdfSource));
+        }
+        assertEquals(0, bufferPool.idleCount(), "A buffer of the document's size is not pooled");
+        assertEquals(0, bufferPool.directBufferCount());
+    }
+
+    @Test
+    void testRead_KnownLengthTooSmall_SpillsTheRest() throws IOException {
+        byte[] bytes = randomBytes(10_000);
+
+        try (PdfSource pdfSource = pdfSourceFactory.read("lying.pdf", new ByteArrayInputStream(bytes), 1_000)) {
+            assertFalse(pdfSource.isInMemory());
+            assertArrayEquals(bytes, readAll(pdfSource));
+        }
+        assertEmpty(spillDirectory);
+    }
+
+    @Test
+    void testAcquire_BeyondTheDirectMemoryLimit_FallsBackToHeap() {
+        properties.setDirectMemoryLimit(DataSize.ofKilobytes(128));
+        bufferPool = new PdfBufferPool(properties);
+
+        ByteBuffer first = bufferPool.acquire(-1);
+        ByteBuffer second = bufferPool.acquire(-1);
+        ByteBuffer third = bufferPool.acquire(-1);
+
+        assertTrue(first.isDirect());
+        assertTrue(second.isDirect());
+        assertFalse(third.isDirect());
+        assertEquals(2, bufferPool.directBufferCount());
+        bufferPool.release(third);
+        bufferPool.release(second);
+        bufferPool.release(first);
+        assertEquals(2, bufferPool.directBufferCount(), "Pooled buffers still count against the limit");
+    }
+
+    @Test
+    void testRelease_DirectBufferBeyondThePoolSize_NoLongerCountsAgainstTheLimit() {
+        properties.setBufferPoolSize(1);
+        bufferPool = new PdfBufferPool(properties);
+        ByteBuffer first = bufferPool.acquire(-1);
+        ByteBuffer second = bufferPool.acquire(-1);
+
+        bufferPool.release(first);
+        bufferPool.release(second);
+
+        assertEquals(1, bufferPool.idleCount());
+        assertEquals(1, bufferPool.directBufferCount());
+    }
+
+    @Test
+    void testRead_TempFileMode_AlwaysWritesToDisk() throws IOException {
+        properties.setMode(PdfIngestionProperties.Mode.TEMP_FILE);
+        byte[] bytes = randomBytes(1_000);
+
+        try (PdfSource pdfSource = pdfSourceFactory.read("temp.pdf", new ByteArrayInputStream(bytes), bytes.length)) {
+            assertFalse(pdfSource.isInMemory());
+            assertArrayEquals(bytes, readAll(pdfSource));
+        }
+        assertEmpty(spillDirectory);
+    }
+
+    @Test
+    void testRead_ContentHashIsTheSameInMemoryAndSpilled() throws IOException {
+        byte[] bytes = randomBytes(200_000);
+
+        try (PdfSource spilled = pdfSourceFactory.read("large.pdf", new ByteArrayInputStream(bytes), -1);
+             PdfSource inMemory = PdfSource.ofBytes("other-url.pdf", bytes)) {
+            assertFalse(spilled.isInMemory());
+            assertEquals(inMemory.getContentHash(), spilled.getContentHash());
+            assertEquals(64, spilled.getContentHash().length());
+        }
+        try (PdfSource other = pdfSourceFactory.read("small.pdf", new ByteArrayInputStream(randomBytes(1_000)), -1)) {
+            assertNotEquals(PdfSource.ofBytes("large.pdf", bytes).getContentHash(), other.getContentHash());
+        }
+    }
+
+    @Test
+    void testRead_UnknownLengthBeyondTheLimit_StopsReadingAndDeletesTheSpill() throws IOException {
+        byte[] bytes = randomBytes(200_000);
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(bytes);
+
+        assertThrows(PdfTooLargeException.class,
+                () -> pdfSourceFactory.read("chunked.pdf", inputStream, -1, 100_000));
+
+        assertTrue(inputStream.available() > 0, "The rest of the stream should not be read");
+        assertEquals(1, bufferPool.idleCount());
+        assertEmpty(spillDirectory);
+    }
+
+    @Test
+    void testRead_AnnouncedLengthBeyondTheLimit_IsRejectedBeforeReading() {
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(randomBytes(1_000));
+
+        assertThrows(PdfTooLargeException.class,
+                () -> pdfSourceFactory.read("announced.pdf", inputStream, 200_000, 100_000));
+
+        assertEquals(1_000, inputStream.available());
+    }
+
+    @Test
+    void testOpenReader_AfterClose_Throws() {
+        PdfSource pdfSource = PdfSource.ofBytes("closed.pdf", new byte[]{1, 2, 3});
+        pdfSource.close();
+
+        assertThrows(IOException.class, pdfSource::openReader);
+    }
+
+    private static byte[] readAll(PdfSource pdfSource) throws IOException {
+        try (RandomAccessRead reader = pdfSource.openReader()) {
+            byte[] bytes = new byte[(int) reader.length()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += reader.read(bytes, offset, bytes.length - offset);
+            }
+            return bytes;
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void assertEmpty(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count(), "Spill directory should be empty");
+        }
+    }
+}
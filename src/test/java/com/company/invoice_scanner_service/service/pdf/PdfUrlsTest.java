@@ -0,0 +1,22 @@
+package com.company.invoice_scanner_service.service.pdf;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PdfUrlsTest {
+
+    @Test
+    void testNormalize_IgnoresCaseOfSchemeAndHostDefaultPortsAndFragments() {
+        assertEquals("https://example.com/Invoice.pdf", PdfUrls.normalize(" HTTPS://Example.COM:443/Invoice.pdf#page=2 "));
+        assertEquals("http://example.com/a/invoice.pdf?id=1", PdfUrls.normalize("http://example.com/a/b/../invoice.pdf?id=1"));
+        assertEquals("http://example.com/", PdfUrls.normalize("http://example.com"));
+        assertEquals("http://example.com:8080/invoice.pdf", PdfUrls.normalize("http://example.com:8080/invoice.pdf"));
+    }
+
+    @Test
+    void testNormalize_KeepsValuesThatAreNoAbsoluteUrls() {
+        assertEquals("not a url", PdfUrls.normalize(" not a url "));
+        assertEquals("invoice.pdf", PdfUrls.normalize("invoice.pdf"));
+    }
+}